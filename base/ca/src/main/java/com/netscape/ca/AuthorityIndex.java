@@ -0,0 +1,142 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.ca;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.mozilla.jss.netscape.security.x509.X500Name;
+
+/**
+ * Index of the authorities by subject DN and by OCSP issuer name hash.
+ *
+ * The name hashes for a digest are computed for all authorities the
+ * first time the digest is used, then maintained as authorities are
+ * added, updated, or removed, so finding the issuer of an OCSP CertID
+ * does not require hashing the name of every authority.
+ *
+ * Lookups do not lock. Updates are serialized.
+ */
+public class AuthorityIndex {
+
+    public final static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(AuthorityIndex.class);
+
+    Set<CertificateAuthority> authorities = ConcurrentHashMap.newKeySet();
+
+    Map<X500Name, CertificateAuthority> dns = new ConcurrentHashMap<>();
+
+    // digest name -> issuer name hash -> authority
+    Map<String, Map<ByteBuffer, CertificateAuthority>> nameHashes = new ConcurrentHashMap<>();
+
+    public synchronized void add(CertificateAuthority ca) {
+
+        if (!authorities.add(ca)) {
+            return;
+        }
+
+        X500Name dn = ca.getX500Name();
+        if (dn != null) {
+            dns.put(dn, ca);
+        }
+
+        for (Map.Entry<String, Map<ByteBuffer, CertificateAuthority>> entry : nameHashes.entrySet()) {
+            addNameHash(entry.getValue(), entry.getKey(), ca);
+        }
+    }
+
+    public synchronized void remove(CertificateAuthority ca) {
+
+        if (!authorities.remove(ca)) {
+            return;
+        }
+
+        // the DN and the hashes may have changed since the
+        // authority was added, so remove by value
+        dns.values().removeIf(value -> value == ca);
+
+        for (Map<ByteBuffer, CertificateAuthority> index : nameHashes.values()) {
+            index.values().removeIf(value -> value == ca);
+        }
+    }
+
+    /**
+     * Reindexes the authority after its signing certificate has changed.
+     */
+    public synchronized void update(CertificateAuthority ca) {
+
+        if (!authorities.contains(ca)) {
+            return;
+        }
+
+        remove(ca);
+        add(ca);
+    }
+
+    void addNameHash(Map<ByteBuffer, CertificateAuthority> index, String digestName, CertificateAuthority ca) {
+
+        CertificateAuthority.IssuerHashes hashes = ca.getIssuerHashes(digestName);
+        if (hashes == null) {
+            // signing cert not available yet, the authority
+            // will be reindexed when it becomes available
+            return;
+        }
+
+        index.put(ByteBuffer.wrap(hashes.getNameHash()), ca);
+    }
+
+    Map<ByteBuffer, CertificateAuthority> getNameHashIndex(String digestName) {
+
+        Map<ByteBuffer, CertificateAuthority> index = nameHashes.get(digestName);
+        if (index != null) {
+            return index;
+        }
+
+        synchronized (this) {
+
+            index = nameHashes.get(digestName);
+            if (index != null) {
+                return index;
+            }
+
+            logger.info("AuthorityIndex: Indexing " + authorities.size() + " authorities with " + digestName);
+
+            index = new ConcurrentHashMap<>();
+            for (CertificateAuthority ca : authorities) {
+                addNameHash(index, digestName, ca);
+            }
+
+            nameHashes.put(digestName, index);
+            return index;
+        }
+    }
+
+    /**
+     * Returns the authority with the given subject DN, or null if
+     * not found.
+     */
+    public CertificateAuthority getCA(X500Name dn) {
+        return dns.get(dn);
+    }
+
+    /**
+     * Returns the authority whose subject DN has the given hash
+     * computed with the given digest, or null if not found.
+     */
+    public CertificateAuthority getCAByNameHash(String digestName, byte[] nameHash) {
+
+        if (digestName == null) {
+            return null;
+        }
+
+        return getNameHashIndex(digestName).get(ByteBuffer.wrap(nameHash));
+    }
+
+    public int size() {
+        return authorities.size();
+    }
+}
@@ -58,6 +58,9 @@ public class AuthorityMonitor implements Runnable {
     public Map<AuthorityID, CertificateAuthority> authorities =
             Collections.synchronizedSortedMap(new TreeMap<AuthorityID, CertificateAuthority>());
 
+    // Index of the authorities by DN and OCSP issuer name hash
+    public AuthorityIndex index = new AuthorityIndex();
+
     public Map<AuthorityID, Thread> keyRetrievers =
             Collections.synchronizedSortedMap(new TreeMap<AuthorityID, Thread>());
 
@@ -369,11 +372,18 @@ public class AuthorityMonitor implements Runnable {
     }
 
     public void addCA(AuthorityID aid, CertificateAuthority ca) {
-        authorities.put(aid, ca);
+        CertificateAuthority oldCA = authorities.put(aid, ca);
+        if (oldCA != null && oldCA != ca) {
+            index.remove(oldCA);
+        }
+        index.add(ca);
     }
 
     public void removeCA(AuthorityID aid) {
-        authorities.remove(aid);
+        CertificateAuthority ca = authorities.remove(aid);
+        if (ca != null) {
+            index.remove(ca);
+        }
         entryUSNs.remove(aid);
         nsUniqueIds.remove(aid);
     }
@@ -389,5 +399,12 @@ public class AuthorityMonitor implements Runnable {
     public void shutdown() {
         running = false;
         loader.shutdown();
+
+        // stop the key retrievers so they release their resources
+        synchronized (keyRetrievers) {
+            for (Thread thread : keyRetrievers.values()) {
+                thread.interrupt();
+            }
+        }
     }
 }
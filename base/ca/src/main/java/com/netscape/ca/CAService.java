@@ -857,7 +857,7 @@ public class CAService implements IService {
         /*
          * handle possible Certificate Transparency processing
          */
-        CTEngine ctEngine = new CTEngine();
+        CTEngine ctEngine = engine.getCTEngine();
         ctEngine.process(certi, hostCA, aid, algname);
 
         logger.debug("CAService: issueX509Cert: About to ca.sign cert.");
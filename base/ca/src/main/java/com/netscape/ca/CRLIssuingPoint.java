@@ -927,7 +927,9 @@ public class CRLIssuingPoint implements Runnable {
 
         try {
             logger.info("CRLIssuingPoint: reading CRL issuing point: " + mId);
+            long start = System.currentTimeMillis();
             crlRecord = mCRLRepository.readCRLIssuingPointRecord(mId);
+            logger.info("CRLIssuingPoint: CRL issuing point read in " + (System.currentTimeMillis() - start) + " ms");
 
         } catch (EDBNotAvailException e) {
             logger.error(CMS.getLogMessage("CMSCORE_CA_ISSUING_INST_CRL", e.toString()), e);
@@ -2514,6 +2516,73 @@ public class CRLIssuingPoint implements Runnable {
         }
     }
 
+    /**
+     * Adds a batch of revoked certificates to delta-CRL cache with
+     * a single cache lock acquisition, and stores the cache once for
+     * the whole batch.
+     *
+     * Without a request id the revocations cannot be recovered from
+     * the request queue after a restart, so the new entries are
+     * stored regardless of the cache update interval. Only the new
+     * entries are written unless a certificate released from hold
+     * is revoked again, which also changes the unrevoked certificates.
+     *
+     * @param revokedCerts revocation information by serial number
+     * @param requestId revocation request id, or null
+     */
+    public void addRevokedCerts(Map<BigInteger, RevokedCertImpl> revokedCerts, String requestId) {
+
+        logger.info("CRLIssuingPoint: Adding " + revokedCerts.size() + " revoked cert(s)");
+
+        if (!mEnable || !mEnableCRLCache || revokedCerts.isEmpty()) {
+            return;
+        }
+
+        CertRecordProcessor cp = new CertRecordProcessor(mCRLCerts, this, mAllowExtensions);
+        Hashtable<BigInteger, RevokedCertificate> newCerts = new Hashtable<>();
+        boolean unrevoked = false;
+
+        synchronized (cacheMonitor) {
+            for (Map.Entry<BigInteger, RevokedCertImpl> entry : revokedCerts.entrySet()) {
+
+                BigInteger serialNumber = entry.getKey();
+                RevokedCertImpl revokedCert = entry.getValue();
+                if (!cp.checkRevokedCertExtensions(revokedCert.getExtensions())) {
+                    continue;
+                }
+
+                unrevoked |= mUnrevokedCerts.containsKey(serialNumber);
+                updateRevokedCert(REVOKED_CERT, serialNumber, revokedCert, requestId);
+
+                RevokedCertificate newCert = mRevokedCerts.get(serialNumber);
+                if (newCert != null) {
+                    newCerts.put(serialNumber, newCert);
+                }
+            }
+        }
+
+        if (requestId == null && !unrevoked) {
+
+            if (newCerts.isEmpty()) {
+                return;
+            }
+
+            try {
+                mCRLRepository.addRevokedCerts(mId, newCerts);
+            } catch (EBaseException e) {
+                logger.warn(CMS.getLogMessage("CMSCORE_CA_ISSUING_STORE_REVOKED_CERT", mId, e.toString()), e);
+            }
+
+        } else if (mCacheUpdateInterval == 0 || requestId == null) {
+            try {
+                mCRLRepository.updateRevokedCerts(mId, mRevokedCerts, mUnrevokedCerts);
+                mFirstUnsaved = CRLIssuingPointRecord.CLEAN_CACHE;
+            } catch (EBaseException e) {
+                logger.warn(CMS.getLogMessage("CMSCORE_CA_ISSUING_STORE_REVOKED_CERT", mId, e.toString()), e);
+            }
+        }
+    }
+
     /**
      * Adds unrevoked certificate to delta-CRL cache.
      *
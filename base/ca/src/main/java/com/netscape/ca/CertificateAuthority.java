@@ -35,7 +35,9 @@ import java.security.interfaces.RSAKey;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
+import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.dogtagpki.server.ca.CAConfig;
 import org.dogtagpki.server.ca.CAEngine;
@@ -83,6 +85,7 @@ import com.netscape.certsrv.dbs.EDBRecordNotFoundException;
 import com.netscape.certsrv.ocsp.IOCSPService;
 import com.netscape.cmscore.apps.CMS;
 import com.netscape.cmscore.dbs.CertRecord;
+import com.netscape.cmscore.dbs.CertStatusCache;
 import com.netscape.cmscore.dbs.CertificateRepository;
 import com.netscape.cmscore.util.StatsSubsystem;
 import com.netscape.cmsutil.crypto.CryptoUtil;
@@ -207,6 +210,32 @@ public class CertificateAuthority extends Subsystem implements IAuthority, IOCSP
     private ResponderID mResponderIDByName = null;
     private ResponderID mResponderIDByHash = null;
 
+    /* cache OCSP issuer hashes of the signing cert by digest */
+    private volatile Map<String, IssuerHashes> issuerHashes = new ConcurrentHashMap<>();
+
+    /**
+     * Hashes of the issuer name and key identifying this CA in
+     * OCSP CertIDs.
+     */
+    public static class IssuerHashes {
+
+        byte[] nameHash;
+        byte[] keyHash;
+
+        public IssuerHashes(byte[] nameHash, byte[] keyHash) {
+            this.nameHash = nameHash;
+            this.keyHash = keyHash;
+        }
+
+        public byte[] getNameHash() {
+            return nameHash;
+        }
+
+        public byte[] getKeyHash() {
+            return keyHash;
+        }
+    }
+
     /**
      * Internal constants
      */
@@ -484,6 +513,43 @@ public class CertificateAuthority extends Subsystem implements IAuthority, IOCSP
         // not the isserDN object of the CA signing cert unless the it is self-signed.
         X500Name issuerName = (X500Name) mSubjectObj.get(CertificateIssuerName.DN_NAME);
         mIssuerObj = new CertificateIssuerName(issuerName);
+
+        issuerHashes = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Returns the OCSP issuer hashes of this CA computed with the
+     * given digest, or null if the digest is not supported or the
+     * signing cert is not available.
+     */
+    public IssuerHashes getIssuerHashes(String digestName) {
+
+        Map<String, IssuerHashes> cache = issuerHashes;
+        IssuerHashes hashes = cache.get(digestName);
+
+        if (hashes != null) {
+            return hashes;
+        }
+
+        if (mSigningUnit == null || mSigningUnit.getCertImpl() == null) {
+            return null;
+        }
+
+        X509Key key = (X509Key) mSigningUnit.getCertImpl().getPublicKey();
+
+        try {
+            MessageDigest md = MessageDigest.getInstance(digestName);
+            byte[] nameHash = md.digest(mName.getEncoded());
+            byte[] keyHash = md.digest(key.getKey());
+            hashes = new IssuerHashes(nameHash, keyHash);
+
+        } catch (NoSuchAlgorithmException | IOException e) {
+            logger.warn("CertificateAuthority: OCSP request hash algorithm " + digestName + " not recognised: " + e.getMessage(), e);
+            return null;
+        }
+
+        cache.put(digestName, hashes);
+        return hashes;
     }
 
     /**
@@ -994,42 +1060,65 @@ public class CertificateAuthority extends Subsystem implements IAuthority, IOCSP
         }
     }
 
+    CertStatus createCertStatus(String status, Date revokedOn) {
+
+        if (status == null) {
+            return new UnknownInfo();
+
+        } else if (status.equals(CertRecord.STATUS_VALID)) {
+            return new GoodInfo();
+
+        } else if (status.equals(CertRecord.STATUS_INVALID)) {  // not yet valid
+            return new UnknownInfo();
+
+        } else if (status.equals(CertRecord.STATUS_REVOKED)) {
+            return new RevokedInfo(new GeneralizedTime(revokedOn));
+
+        } else if (status.equals(CertRecord.STATUS_EXPIRED)) {
+            return new UnknownInfo();
+
+        } else if (status.equals(CertRecord.STATUS_REVOKED_EXPIRED)) {
+            return new RevokedInfo(new GeneralizedTime(revokedOn));
+
+        } else {
+            return new UnknownInfo();
+        }
+    }
+
     public SingleResponse getCertStatusFromDB(Request request) {
 
         CertID certID = request.getCertID();
         INTEGER serialNumber = certID.getSerialNumber();
         CertStatus certStatus = null;
 
-        try {
-            CertRecord rec = certRepository.readCertificateRecord(serialNumber);
-            String status = rec.getStatus();
-
-            if (status == null) {
-                certStatus = new UnknownInfo();
-
-            } else if (status.equals(CertRecord.STATUS_VALID)) {
-                certStatus = new GoodInfo();
-
-            } else if (status.equals(CertRecord.STATUS_INVALID)) {  // not yet valid
-                certStatus = new UnknownInfo();
+        CertStatusCache statusCache = certRepository.getStatusCache();
+        CertStatusCache.Entry entry = null;
+        long modCount = 0;
 
-            } else if (status.equals(CertRecord.STATUS_REVOKED)) {
-                certStatus = new RevokedInfo(new GeneralizedTime(rec.getRevokedOn()));
+        if (statusCache != null) {
+            entry = statusCache.get(serialNumber);
+            modCount = statusCache.getModCount();
+        }
 
-            } else if (status.equals(CertRecord.STATUS_EXPIRED)) {
-                certStatus = new UnknownInfo();
+        if (entry != null) {
+            certStatus = createCertStatus(entry.getStatus(), entry.getRevokedOn());
 
-            } else if (status.equals(CertRecord.STATUS_REVOKED_EXPIRED)) {
-                certStatus = new RevokedInfo(new GeneralizedTime(rec.getRevokedOn()));
+        } else try {
+            CertRecord rec = certRepository.readCertificateRecord(serialNumber);
+            certStatus = createCertStatus(rec.getStatus(), rec.getRevokedOn());
 
-            } else {
-                certStatus = new UnknownInfo();
+            if (statusCache != null) {
+                statusCache.put(serialNumber, rec, modCount);
             }
 
         } catch (EDBRecordNotFoundException e) {
             logger.info("CertificateAuthority: Cert record {} not found", serialNumber);
             certStatus = new UnknownInfo(); // not issued by this CA
 
+            if (statusCache != null) {
+                statusCache.putNotFound(serialNumber, modCount);
+            }
+
         } catch (Exception e) {
             // internal error
             logger.error("CertificateAuthority: Unable to retrieve cert record: " + e.getMessage(), e);
@@ -1093,9 +1182,6 @@ public class CertificateAuthority extends Subsystem implements IAuthority, IOCSP
 
         String name = "CertificateAuthority: processRequest: ";
 
-        X509CertImpl caCert = mSigningUnit.getCertImpl();
-        X509Key key = (X509Key) caCert.getPublicKey();
-
         CertID cid = req.getCertID();
         INTEGER serialNo = cid.getSerialNumber();
         logger.debug( name + "for cert 0x" + serialNo.toString(16));
@@ -1104,12 +1190,10 @@ public class CertificateAuthority extends Subsystem implements IAuthority, IOCSP
         byte[] keyHash = null;
         String digestName = cid.getDigestName();
         if (digestName != null) {
-            try {
-                MessageDigest md = MessageDigest.getInstance(digestName);
-                nameHash = md.digest(mName.getEncoded());
-                keyHash = md.digest(key.getKey());
-            } catch (NoSuchAlgorithmException | IOException e) {
-                logger.warn("CertificateAuthority: OCSP request hash algorithm " + digestName + " not recognised: " + e.getMessage(), e);
+            IssuerHashes hashes = getIssuerHashes(digestName);
+            if (hashes != null) {
+                nameHash = hashes.getNameHash();
+                keyHash = hashes.getKeyHash();
             }
         }
         if (!Arrays.equals(cid.getIssuerNameHash().toByteArray(), nameHash) ||
@@ -19,24 +19,49 @@
 package com.netscape.ca;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.util.Collection;
+import java.util.List;
 import java.util.Stack;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.apache.commons.lang3.StringUtils;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.netscape.certsrv.base.EBaseException;
 import com.netscape.certsrv.base.EPropertyNotFound;
 import com.netscape.cmscore.base.ConfigStore;
+import com.netscape.cmscore.util.ExternalProcessPool;
 import com.netscape.cmsutil.json.JSONObject;
 
 
+/**
+ * Key retriever that invokes an external process to retrieve
+ * the key of a lightweight CA.
+ *
+ * By default a new process is started for each attempt. If the
+ * "workers" parameter is set, up to that many persistent worker
+ * processes are started for this retriever and each attempt is sent
+ * to an idle worker as a single line of JSON:
+ * {"args": [&lt;nickname&gt;, &lt;host&gt;]} (see ExternalProcessPool).
+ * The workers are stopped when the retriever is shut down.
+ */
 public class ExternalProcessKeyRetriever implements KeyRetriever {
 
     public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(ExternalProcessKeyRetriever.class);
 
+    public static final int DEFAULT_TIMEOUT = 60; // seconds
+
     protected String executable;
+    protected int workers;
+    protected long timeout;
+
+    // created on first use, guarded by this
+    ExternalProcessPool pool;
+    boolean shutdown;
 
     public ExternalProcessKeyRetriever(ConfigStore config) {
         if (config == null)
@@ -44,6 +69,8 @@ public class ExternalProcessKeyRetriever implements KeyRetriever {
 
         try {
             this.executable = config.getString("executable");
+            this.workers = config.getInteger("workers", 0);
+            this.timeout = TimeUnit.SECONDS.toMillis(config.getInteger("timeout", DEFAULT_TIMEOUT));
         } catch (EPropertyNotFound e) {
             throw new IllegalArgumentException("Missing 'executable' config property");
         } catch (EBaseException e) {
@@ -56,6 +83,8 @@ public class ExternalProcessKeyRetriever implements KeyRetriever {
 
         logger.info("ExternalProcessKeyRetriever: Retrieving " + nickname + " key");
 
+        ExternalProcessPool pool = getPool();
+
         Stack<String> command = new Stack<>();
         command.push(this.executable);
         command.push(nickname);
@@ -63,6 +92,22 @@ public class ExternalProcessKeyRetriever implements KeyRetriever {
         for (String hostPort : hostPorts) {
             String host = hostPort.split(":")[0];
             command.push(host);
+
+            if (pool != null) {
+                try {
+                    Result result = retrieveKey(pool, nickname, host);
+                    command.pop();
+                    if (result != null) {
+                        return result;
+                    }
+                    continue;
+
+                } catch (IOException e) {
+                    // fall back to one-shot process
+                    logger.warn("ExternalProcessKeyRetriever: Unable to use worker process: " + e.getMessage(), e);
+                }
+            }
+
             logger.debug("ExternalProcessKeyRetriever: Command: " + command);
 
             ProcessBuilder pb = new ProcessBuilder(command)
@@ -77,7 +122,7 @@ public class ExternalProcessKeyRetriever implements KeyRetriever {
                     continue;
                 }
 
-                return parseResult(p.getInputStream());
+                return parseResult(new String(p.getInputStream().readAllBytes()));
 
             } catch (Throwable e) {
                 logger.warn("Unable to retrieve " + nickname + " key from " + host + ": " + e.getMessage(), e);
@@ -91,15 +136,93 @@ public class ExternalProcessKeyRetriever implements KeyRetriever {
         return null;
     }
 
+    /**
+     * Returns the worker pool, or null if persistent workers are
+     * not configured or the retriever has been shut down.
+     */
+    synchronized ExternalProcessPool getPool() {
+
+        if (workers <= 0 || shutdown) {
+            return null;
+        }
+
+        if (pool == null) {
+            pool = new ExternalProcessPool("ExternalProcessKeyRetriever", List.of(executable), workers);
+        }
+
+        return pool;
+    }
+
+    /**
+     * Stops the worker processes.
+     */
+    @Override
+    public synchronized void shutdown() {
+
+        shutdown = true;
+
+        if (pool == null) {
+            return;
+        }
+
+        logger.info("ExternalProcessKeyRetriever: Stopping worker processes");
+        pool.shutdown();
+        pool = null;
+    }
+
+    /**
+     * Sends the request to a persistent worker process.
+     *
+     * @return the result, or null if the key could not be retrieved
+     *         from the host
+     * @throws IOException if the worker process could not be used
+     */
+    Result retrieveKey(ExternalProcessPool pool, String nickname, String host) throws IOException {
+
+        ObjectMapper mapper = new ObjectMapper();
+        ObjectNode request = mapper.createObjectNode();
+        ArrayNode args = request.putArray("args");
+        args.add(nickname);
+        args.add(host);
+
+        logger.debug("ExternalProcessKeyRetriever: Request: " + request);
+
+        ExternalProcessPool.Response response;
+        try {
+            response = pool.execute(mapper.writeValueAsString(request), timeout);
+
+        } catch (TimeoutException e) {
+            logger.warn("Unable to retrieve " + nickname + " key from " + host + ": " + e.getMessage());
+            return null;
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Unable to retrieve " + nickname + " key from " + host + ": " + e.getMessage(), e);
+            return null;
+        }
+
+        if (response.getStatus() != 0) {
+            logger.warn("Unable to retrieve " + nickname + " key from " + host + ": RC=" + response.getStatus());
+            return null;
+        }
+
+        try {
+            return parseResult(response.getOutput());
+
+        } catch (Exception e) {
+            logger.warn("Unable to retrieve " + nickname + " key from " + host + ": " + e.getMessage(), e);
+            return null;
+        }
+    }
+
     /**
      * Read a PEM-encoded certificate and a base64-encoded
      * PKIArchiveOptions containing the wrapped private key.
      * Data is expected to be a JSON object with keys "certificate"
      * and "wrapped_key".
      */
-    private Result parseResult(InputStream in) throws IOException {
+    private Result parseResult(String result) throws IOException {
 
-        String result = new String(in.readAllBytes());
         logger.debug("ExternalProcessKeyRetriever: Result:\n" + result);
 
         JsonNode root = new JSONObject(result).getJsonNode();
@@ -36,6 +36,13 @@ public interface KeyRetriever {
      */
     Result retrieveKey(String nickname, Collection<String> hostPorts);
 
+    /**
+     * Release the resources held by the KeyRetriever. This is
+     * called by the KeyRetrieverRunner once it stops retrying.
+     */
+    default void shutdown() {
+    }
+
     class Result {
         private byte[] certificate;
         private byte[] pkiArchiveOptions;
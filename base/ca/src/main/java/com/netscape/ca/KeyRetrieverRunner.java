@@ -77,6 +77,8 @@ public class KeyRetrieverRunner implements Runnable {
             }
 
         } finally {
+            keyRetriever.shutdown();
+
             // remove self from tracker
             CAEngine engine = CAEngine.getInstance();
             engine.removeKeyRetriever(aid);
@@ -0,0 +1,644 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.ca;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.dogtagpki.server.ca.CAEngine;
+import org.mozilla.jss.netscape.security.x509.CRLExtensions;
+import org.mozilla.jss.netscape.security.x509.CRLReasonExtension;
+import org.mozilla.jss.netscape.security.x509.InvalidityDateExtension;
+import org.mozilla.jss.netscape.security.x509.RevocationReason;
+import org.mozilla.jss.netscape.security.x509.RevokedCertImpl;
+import org.mozilla.jss.netscape.security.x509.X509CertImpl;
+
+import com.netscape.certsrv.base.EBaseException;
+import com.netscape.certsrv.base.MetaInfo;
+import com.netscape.certsrv.base.SessionContext;
+import com.netscape.certsrv.ca.ECAException;
+import com.netscape.certsrv.dbs.EDBNotAvailException;
+import com.netscape.certsrv.logging.ILogger;
+import com.netscape.certsrv.logging.event.CertStatusChangeRequestProcessedEvent;
+import com.netscape.certsrv.request.RequestId;
+import com.netscape.certsrv.request.RequestStatus;
+import com.netscape.cms.servlet.cert.RevocationProcessor;
+import com.netscape.cmscore.apps.CMS;
+import com.netscape.cmscore.dbs.CertRecord;
+import com.netscape.cmscore.dbs.CertificateRepository;
+import com.netscape.cmscore.dbs.DBParallelSearch;
+import com.netscape.cmscore.dbs.RevocationInfo;
+import com.netscape.cmscore.ldap.CAPublisherProcessor;
+import com.netscape.cmscore.logging.Auditor;
+import com.netscape.cmscore.request.Request;
+
+/**
+ * Revokes many certificates without a revocation request per
+ * certificate.
+ *
+ * The certificates are processed in batches (ca.revocation.batch.size).
+ * For each batch the certificate records are read with a single
+ * search, the records are marked as revoked without waiting for each
+ * other, the OCSP and CRL caches are updated once, and a single audit
+ * event is logged. Unpublishing the revoked certificates is handed to
+ * a pool of threads (ca.revocation.batch.publishThreads) so it does
+ * not hold up the next batch. When the publishing queue is full the
+ * pipeline unpublishes on the calling thread.
+ */
+public class RevocationPipeline {
+
+    public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(RevocationPipeline.class);
+
+    public static final String PROP_BATCH_SIZE = "ca.revocation.batch.size";
+    public static final String PROP_MAX_SIZE = "ca.revocation.batch.maxSize";
+    public static final String PROP_SEARCH_THREADS = "ca.revocation.batch.searchThreads";
+    public static final String PROP_PUBLISH_THREADS = "ca.revocation.batch.publishThreads";
+    public static final String PROP_PUBLISH_QUEUE_SIZE = "ca.revocation.batch.publishQueueSize";
+
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    public static final int DEFAULT_MAX_SIZE = 100000;
+    public static final int DEFAULT_SEARCH_THREADS = 4;
+    public static final int DEFAULT_PUBLISH_THREADS = 2;
+    public static final int DEFAULT_PUBLISH_QUEUE_SIZE = 100;
+
+    public static final String STATUS_REVOKED = "revoked";
+    public static final String STATUS_ALREADY_REVOKED = "already-revoked";
+    public static final String STATUS_NOT_FOUND = "not-found";
+    public static final String STATUS_FAILED = "failed";
+
+    /**
+     * The outcome of the revocation of a certificate.
+     */
+    public static class Result {
+
+        BigInteger serialNumber;
+        String status;
+        String error;
+
+        public Result(BigInteger serialNumber, String status, String error) {
+            this.serialNumber = serialNumber;
+            this.status = status;
+            this.error = error;
+        }
+
+        public BigInteger getSerialNumber() {
+            return serialNumber;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        public String getError() {
+            return error;
+        }
+    }
+
+    /**
+     * The results of a revocation in the order of the certificates.
+     */
+    public static class Results extends ArrayList<Result> {
+
+        private static final long serialVersionUID = 1L;
+
+        boolean truncated;
+
+        /**
+         * Returns true if the search filter matched more than
+         * ca.revocation.batch.maxSize certificates.
+         */
+        public boolean isTruncated() {
+            return truncated;
+        }
+
+        public void setTruncated(boolean truncated) {
+            this.truncated = truncated;
+        }
+    }
+
+    CAEngine engine;
+
+    int batchSize;
+    int maxSize;
+    int searchThreads;
+
+    ThreadPoolExecutor publishExecutor;
+    AtomicLong pendingUnpublications = new AtomicLong();
+
+    public RevocationPipeline(CAEngine engine) {
+        this.engine = engine;
+    }
+
+    public void init() throws EBaseException {
+
+        batchSize = engine.getConfig().getInteger(PROP_BATCH_SIZE, DEFAULT_BATCH_SIZE);
+        maxSize = engine.getConfig().getInteger(PROP_MAX_SIZE, DEFAULT_MAX_SIZE);
+        searchThreads = engine.getConfig().getInteger(PROP_SEARCH_THREADS, DEFAULT_SEARCH_THREADS);
+
+        int publishThreads = engine.getConfig().getInteger(PROP_PUBLISH_THREADS, DEFAULT_PUBLISH_THREADS);
+        int publishQueueSize = engine.getConfig().getInteger(PROP_PUBLISH_QUEUE_SIZE, DEFAULT_PUBLISH_QUEUE_SIZE);
+
+        logger.info("RevocationPipeline: Initializing revocation pipeline");
+        logger.info("RevocationPipeline: - batch size: " + batchSize);
+        logger.info("RevocationPipeline: - max size: " + maxSize);
+        logger.info("RevocationPipeline: - publish threads: " + publishThreads);
+
+        AtomicInteger counter = new AtomicInteger();
+
+        publishExecutor = new ThreadPoolExecutor(
+                publishThreads,
+                publishThreads,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(publishQueueSize),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "RevocationPipeline-publish-" + counter.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns the number of revoked certificates waiting to be
+     * unpublished.
+     */
+    public long getPendingUnpublications() {
+        return pendingUnpublications.get();
+    }
+
+    CertificateRepository getCertificateRepository() {
+        return engine.getCertificateRepository();
+    }
+
+    /**
+     * Revokes the certificates with the given serial numbers.
+     *
+     * @return the result for each serial number in the same order
+     */
+    public Results revoke(
+            List<BigInteger> serialNumbers,
+            RevocationReason reason,
+            Date invalidityDate) throws EBaseException {
+
+        if (serialNumbers.size() > maxSize) {
+            throw new ECAException("Too many certificates to revoke: " + serialNumbers.size()
+                    + " (max " + maxSize + ")");
+        }
+
+        logger.info("RevocationPipeline: Revoking " + serialNumbers.size() + " cert(s)");
+
+        CertificateRepository repository = getCertificateRepository();
+        RevocationInfo info = createRevocationInfo(reason, invalidityDate);
+        Results results = new Results();
+
+        for (int i = 0; i < serialNumbers.size(); i += batchSize) {
+
+            List<BigInteger> batch = serialNumbers.subList(i, Math.min(i + batchSize, serialNumbers.size()));
+
+            StringBuilder filter = new StringBuilder("(|");
+            for (BigInteger serialNumber : batch) {
+                filter.append("(" + CertRecord.ATTR_ID + "=" + serialNumber + ")");
+            }
+            filter.append(")");
+
+            Map<BigInteger, CertRecord> records = new LinkedHashMap<>();
+            Enumeration<CertRecord> e = repository.searchCertificates(filter.toString(), batch.size(), 0);
+            while (e.hasMoreElements()) {
+                CertRecord record = e.nextElement();
+                records.put(record.getSerialNumber(), record);
+            }
+
+            Map<BigInteger, Result> batchResults = processBatch(records.values(), reason, info);
+
+            for (BigInteger serialNumber : batch) {
+                Result result = batchResults.get(serialNumber);
+                if (result == null) {
+                    result = new Result(serialNumber, STATUS_NOT_FOUND, null);
+                }
+                results.add(result);
+            }
+        }
+
+        return results;
+    }
+
+    /**
+     * Revokes the certificates matching the given filter, up to
+     * ca.revocation.batch.maxSize certificates. If more certificates
+     * match, the results are marked as truncated so the caller can
+     * repeat the revocation for the remaining certificates.
+     *
+     * @return the result for each certificate found
+     */
+    public Results revoke(
+            String filter,
+            RevocationReason reason,
+            Date invalidityDate) throws EBaseException {
+
+        logger.info("RevocationPipeline: Revoking certs matching " + filter);
+
+        CertificateRepository repository = getCertificateRepository();
+        RevocationInfo info = createRevocationInfo(reason, invalidityDate);
+        Results results = new Results();
+
+        DBParallelSearch<CertRecord> search = repository.createParallelSearch("revocation", filter, searchThreads);
+
+        // batches are collected and processed by a single thread
+        search.setProcessThreads(1);
+        search.setSizeLimit(maxSize);
+
+        // the records are processed on a search thread which
+        // needs the caller's context for auditing
+        Map<Object, Object> context = new HashMap<>(SessionContext.getContext());
+        List<CertRecord> batch = new ArrayList<>();
+
+        DBParallelSearch.Stats stats = search.run(record -> {
+
+            batch.add(record);
+            if (batch.size() < batchSize) {
+                return;
+            }
+
+            // the search threads are pooled, so the context
+            // must not outlive the batch
+            SessionContext.getContext().putAll(context);
+            try {
+                processBatch(batch, reason, info, results);
+            } finally {
+                SessionContext.releaseContext();
+                batch.clear();
+            }
+        });
+
+        if (!batch.isEmpty()) {
+            processBatch(batch, reason, info, results);
+        }
+
+        if (stats.isTruncated()) {
+            logger.warn("RevocationPipeline: Only the first " + maxSize + " cert(s) were revoked");
+            results.setTruncated(true);
+        }
+
+        return results;
+    }
+
+    RevocationInfo createRevocationInfo(RevocationReason reason, Date invalidityDate) throws EBaseException {
+
+        try {
+            CRLExtensions exts = new CRLExtensions();
+
+            CRLReasonExtension reasonExt = new CRLReasonExtension(reason);
+            exts.set(reasonExt.getName(), reasonExt);
+
+            if (invalidityDate != null) {
+                InvalidityDateExtension invalidityDateExt = new InvalidityDateExtension(invalidityDate);
+                exts.set(invalidityDateExt.getName(), invalidityDateExt);
+            }
+
+            return new RevocationInfo(new Date(), exts);
+
+        } catch (Exception e) {
+            throw new EBaseException("Unable to create revocation info: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Revokes a batch of certificates found by a search. If the batch
+     * fails the error is reported for each certificate of the batch.
+     */
+    void processBatch(
+            Collection<CertRecord> records,
+            RevocationReason reason,
+            RevocationInfo info,
+            List<Result> results) {
+
+        try {
+            results.addAll(processBatch(records, reason, info).values());
+
+        } catch (EBaseException e) {
+            logger.warn("RevocationPipeline: Unable to process batch: " + e.getMessage(), e);
+            for (CertRecord record : records) {
+                results.add(new Result(record.getSerialNumber(), STATUS_FAILED, e.getMessage()));
+            }
+        }
+    }
+
+    /**
+     * Revokes a batch of certificates.
+     *
+     * @return the result for each record by serial number
+     */
+    Map<BigInteger, Result> processBatch(
+            Collection<CertRecord> records,
+            RevocationReason reason,
+            RevocationInfo info) throws EBaseException {
+
+        if (CAService.mCLAConnector != null) {
+            throw new ECAException("Batch revocation is not supported with a clone master connector");
+        }
+
+        logger.info("RevocationPipeline: Processing batch of " + records.size() + " cert(s)");
+
+        CertificateRepository repository = getCertificateRepository();
+        BigInteger caSerialNumber = getCASerialNumber();
+
+        Map<BigInteger, Result> results = new LinkedHashMap<>();
+        Map<BigInteger, CertRecord> targets = new LinkedHashMap<>();
+
+        // serial number -> whether the cert was revoked on hold
+        Map<BigInteger, Boolean> ids = new LinkedHashMap<>();
+
+        for (CertRecord record : records) {
+
+            BigInteger serialNumber = record.getSerialNumber();
+            String status = record.getStatus();
+
+            if (serialNumber.equals(caSerialNumber)) {
+                results.put(serialNumber, new Result(serialNumber, STATUS_FAILED, "CA signing certificate"));
+                continue;
+            }
+
+            boolean revoked = CertRecord.STATUS_REVOKED.equals(status);
+
+            try {
+                if (isAlreadyRevoked(record, reason)) {
+                    results.put(serialNumber, new Result(serialNumber, STATUS_ALREADY_REVOKED, null));
+                    continue;
+                }
+            } catch (Exception e) {
+                results.put(serialNumber, new Result(serialNumber, STATUS_FAILED, e.getMessage()));
+                continue;
+            }
+
+            targets.put(serialNumber, record);
+            ids.put(serialNumber, revoked);
+        }
+
+        Map<BigInteger, EBaseException> errors;
+        try {
+            errors = repository.markAsRevoked(ids, info);
+
+        } catch (EDBNotAvailException e) {
+            throw e;
+
+        } catch (EBaseException e) {
+            errors = new LinkedHashMap<>();
+            for (BigInteger id : ids.keySet()) {
+                errors.put(id, e);
+            }
+        }
+
+        Map<BigInteger, RevokedCertImpl> revokedCerts = new LinkedHashMap<>();
+
+        for (BigInteger serialNumber : ids.keySet()) {
+
+            EBaseException error = errors.get(serialNumber);
+            if (error != null) {
+                results.put(serialNumber, new Result(serialNumber, STATUS_FAILED, error.getMessage()));
+                continue;
+            }
+
+            RevokedCertImpl revokedCert = new RevokedCertImpl(
+                    serialNumber,
+                    info.getRevocationDate(),
+                    info.getCRLEntryExtensions());
+            revokedCerts.put(serialNumber, revokedCert);
+
+            results.put(serialNumber, new Result(serialNumber, STATUS_REVOKED, null));
+
+            logger.info(CMS.getLogMessage("CMSCORE_CA_CERT_REVOKED", serialNumber.toString(16)));
+        }
+
+        updateCRLIssuingPoints(targets, revokedCerts);
+        unpublish(targets, revokedCerts.keySet());
+        audit(reason, results.values());
+
+        return results;
+    }
+
+    /**
+     * Checks whether the certificate cannot be revoked again. Same rules
+     * as CAService.revokeCert(): certificates on hold may be revoked, and
+     * superseded certificates may be revoked again for key compromise.
+     */
+    boolean isAlreadyRevoked(CertRecord record, RevocationReason reason) throws Exception {
+
+        String status = record.getStatus();
+
+        if (CertRecord.STATUS_REVOKED_EXPIRED.equals(status)) {
+            return true;
+        }
+
+        if (!CertRecord.STATUS_REVOKED.equals(status) || record.isCertOnHold()) {
+            return false;
+        }
+
+        RevocationReason revReason = record.getRevReason();
+        if (revReason == null) {
+            throw new EBaseException("Existing revoked cert missing revocation reason");
+        }
+
+        return revReason != RevocationReason.SUPERSEDED || reason != RevocationReason.KEY_COMPROMISE;
+    }
+
+    BigInteger getCASerialNumber() {
+        try {
+            return engine.getCA().getCACert().getSerialNumber();
+        } catch (Exception e) {
+            logger.warn("RevocationPipeline: Unable to get CA signing certificate: " + e.getMessage(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Adds the revoked certificates to the cache of each CRL issuing
+     * point that includes them.
+     */
+    void updateCRLIssuingPoints(Map<BigInteger, CertRecord> records, Map<BigInteger, RevokedCertImpl> revokedCerts) {
+
+        if (revokedCerts.isEmpty()) {
+            return;
+        }
+
+        for (CRLIssuingPoint ip : engine.getCRLIssuingPoints()) {
+
+            if (ip == null) {
+                continue;
+            }
+
+            Map<BigInteger, RevokedCertImpl> ipCerts = new LinkedHashMap<>();
+
+            for (Map.Entry<BigInteger, RevokedCertImpl> entry : revokedCerts.entrySet()) {
+
+                CertRecord record = records.get(entry.getKey());
+                boolean include = true;
+
+                if (ip.isCACertsOnly()) {
+                    X509CertImpl cert = record.getCertificate();
+                    if (cert != null) {
+                        include = cert.getBasicConstraintsIsCA();
+                    }
+                }
+
+                if (ip.isProfileCertsOnly()) {
+                    MetaInfo metaInfo = record.getMetaInfo();
+                    if (metaInfo != null) {
+                        String profileId = (String) metaInfo.get("profileId");
+                        if (profileId != null) {
+                            include = ip.checkCurrentProfile(profileId);
+                        }
+                    }
+                }
+
+                if (include) {
+                    ipCerts.put(entry.getKey(), entry.getValue());
+                }
+            }
+
+            ip.addRevokedCerts(ipCerts, null);
+        }
+    }
+
+    /**
+     * Hands the revoked certificates to the publishing threads.
+     */
+    void unpublish(Map<BigInteger, CertRecord> records, Collection<BigInteger> serialNumbers) {
+
+        CAPublisherProcessor processor = engine.getPublisherProcessor();
+
+        if (processor == null || !processor.isCertPublishingEnabled() || serialNumbers.isEmpty()) {
+            return;
+        }
+
+        List<CertRecord> batch = new ArrayList<>();
+        for (BigInteger serialNumber : serialNumbers) {
+            batch.add(records.get(serialNumber));
+        }
+
+        pendingUnpublications.addAndGet(batch.size());
+
+        publishExecutor.execute(() -> {
+            for (CertRecord record : batch) {
+                try {
+                    unpublish(processor, record);
+                } finally {
+                    pendingUnpublications.decrementAndGet();
+                }
+            }
+        });
+    }
+
+    void unpublish(CAPublisherProcessor processor, CertRecord record) {
+
+        X509CertImpl cert = record.getCertificate();
+        BigInteger serialNumber = record.getSerialNumber();
+
+        try {
+            // the publishing rules may need the enrollment request
+            Request request = null;
+
+            MetaInfo metaInfo = record.getMetaInfo();
+            String requestId = metaInfo == null ? null : (String) metaInfo.get(CertRecord.META_REQUEST_ID);
+
+            if (requestId != null) {
+                request = engine.getRequestRepository().readRequest(new RequestId(requestId));
+            }
+
+            processor.unpublishCert(cert, request);
+            logger.debug("RevocationPipeline: Unpublished cert 0x" + serialNumber.toString(16));
+
+        } catch (Exception e) {
+            logger.warn(CMS.getLogMessage("CMSCORE_LDAP_CERT_NOT_UNPUBLISH", serialNumber.toString(16), e.toString()), e);
+        }
+    }
+
+    /**
+     * Logs a single audit event for a batch.
+     */
+    void audit(RevocationReason reason, Collection<Result> results) {
+
+        StringBuilder serialNumbers = new StringBuilder();
+        int revoked = 0;
+        int skipped = 0;
+        int failed = 0;
+
+        for (Result result : results) {
+
+            if (STATUS_REVOKED.equals(result.status)) {
+                if (serialNumbers.length() > 0) {
+                    serialNumbers.append(",");
+                }
+                serialNumbers.append("0x" + result.serialNumber.toString(16));
+                revoked++;
+
+            } else if (STATUS_FAILED.equals(result.status)) {
+                failed++;
+
+            } else {
+                skipped++;
+            }
+        }
+
+        Auditor auditor = engine.getAuditor();
+
+        auditor.log(new CertStatusChangeRequestProcessedEvent(
+                auditor.getSubjectID(),
+                failed == 0 ? ILogger.SUCCESS : ILogger.FAILURE,
+                ILogger.SIGNED_AUDIT_EMPTY_VALUE,
+                revoked == 0 ? ILogger.SIGNED_AUDIT_EMPTY_VALUE : serialNumbers.toString(),
+                reason == RevocationReason.CERTIFICATE_HOLD ? RevocationProcessor.ON_HOLD : RevocationProcessor.REVOKE,
+                String.valueOf(reason.getCode()),
+                RequestStatus.COMPLETE,
+                "batch: revoked=" + revoked + ", skipped=" + skipped + ", failed=" + failed));
+    }
+
+    /**
+     * Waits for the pending unpublications to complete.
+     */
+    public void shutdown() {
+
+        if (publishExecutor == null) {
+            return;
+        }
+
+        publishExecutor.shutdown();
+
+        try {
+            if (!publishExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+                logger.warn("RevocationPipeline: " + pendingUnpublications.get() + " cert(s) not unpublished");
+                publishExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            publishExecutor.shutdownNow();
+        }
+    }
+}
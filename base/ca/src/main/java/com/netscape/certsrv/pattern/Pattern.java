@@ -17,7 +17,9 @@
 // --- END COPYRIGHT BLOCK ---
 package com.netscape.certsrv.pattern;
 
+import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.List;
 
 import com.netscape.certsrv.base.EBaseException;
 import com.netscape.certsrv.base.IAttrSet;
@@ -37,8 +39,34 @@ import com.netscape.certsrv.base.IAttrSet;
  */
 public class Pattern {
 
+    /**
+     * A literal string or a $key.name$ token in the pattern.
+     */
+    static class Segment {
+
+        String literal;
+        String attrKey;
+        String attrName;
+        String token;
+
+        Segment(String literal) {
+            this.literal = literal;
+        }
+
+        Segment(String attrKey, String attrName) {
+            this.attrKey = attrKey;
+            this.attrName = attrName;
+            this.token = "$" + attrKey + "." + attrName + "$";
+        }
+    }
+
+    private static final Segment[] MALFORMED = new Segment[0];
+
     private String mS = null;
 
+    // parsed on first substitution, MALFORMED if the pattern cannot be parsed
+    private volatile Segment[] mSegments;
+
     /**
      * Constructs a pattern object with the given string.
      *
@@ -48,6 +76,62 @@ public class Pattern {
         mS = s;
     }
 
+    /**
+     * Returns true if the pattern contains tokens to substitute.
+     */
+    public boolean hasTokens() {
+        return mS.indexOf('$') >= 0;
+    }
+
+    private Segment[] getSegments() {
+
+        Segment[] segments = mSegments;
+        if (segments != null) {
+            return segments;
+        }
+
+        List<Segment> list = new ArrayList<>();
+        int startPos = 0;
+
+        while (true) {
+            int lastPos = mS.indexOf('$', startPos);
+
+            if (lastPos == -1) {
+                if (startPos < mS.length()) {
+                    list.add(new Segment(mS.substring(startPos)));
+                }
+                break;
+            }
+
+            if (startPos < lastPos) {
+                list.add(new Segment(mS.substring(startPos, lastPos)));
+            }
+
+            int endPos = mS.indexOf('$', lastPos + 1);
+            if (endPos == -1) {
+                segments = MALFORMED;
+                break;
+            }
+
+            String token = mS.substring(lastPos + 1, endPos);
+            int dotPos = token.indexOf('.');
+            if (dotPos == -1) {
+                segments = MALFORMED;
+                break;
+            }
+
+            list.add(new Segment(token.substring(0, dotPos), token.substring(dotPos + 1)));
+            startPos = endPos + 1;
+        }
+
+        if (segments == null) {
+            segments = list.toArray(new Segment[list.size()]);
+        }
+
+        mSegments = segments;
+        return segments;
+    }
+
     /**
      * Subtitutes this pattern with the given attribute set.
      *
@@ -96,6 +180,53 @@ public class Pattern {
      * @return substituted string
      */
     public String substitute2(String key, IAttrSet attrSet) {
+
+        // if no '$', return the entire string
+        if (!hasTokens()) {
+            return mS;
+        }
+
+        Segment[] segments = getSegments();
+        if (segments == MALFORMED) {
+            return parseAndSubstitute(key, attrSet);
+        }
+
+        StringBuilder sb = new StringBuilder(mS.length());
+
+        for (Segment segment : segments) {
+
+            if (segment.literal != null) {
+                sb.append(segment.literal);
+                continue;
+            }
+
+            if (!key.equals(segment.attrKey)) {
+                sb.append(segment.token);
+                continue;
+            }
+
+            try {
+                Object o = attrSet.get(segment.attrName);
+
+                if (o instanceof String val) {
+                    sb.append(val);
+                } else {
+                    // if no such attrName, copy the token pattern over
+                    sb.append(segment.token);
+                }
+            } catch (EBaseException e) {
+                sb.append(segment.token);
+            }
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Original single-pass substitution. It is only used for
+     * malformed patterns so that they fail the same way as before.
+     */
+    String parseAndSubstitute(String key, IAttrSet attrSet) {
         StringBuffer sb = new StringBuffer();
 
         int startPos = 0;
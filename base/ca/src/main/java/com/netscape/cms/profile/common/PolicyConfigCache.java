@@ -0,0 +1,90 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cms.profile.common;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.netscape.certsrv.base.EBaseException;
+import com.netscape.certsrv.pattern.Pattern;
+import com.netscape.cmscore.base.ConfigStore;
+
+/**
+ * Parameter values and parsed patterns of a profile default or
+ * constraint for one version of the profile configuration.
+ *
+ * Policies are evaluated for every enrollment request but their
+ * parameters rarely change, so the values are read and the
+ * patterns are parsed once and reused until any property of the
+ * profile configuration is added, changed or removed.
+ */
+public class PolicyConfigCache {
+
+    public static final int MAX_PATTERNS = 100;
+
+    // marks parameters that are not defined
+    private static final String MISSING = new String();
+
+    private long modCount;
+    private Map<String, String> values = new ConcurrentHashMap<>();
+    private Map<String, Pattern> patterns = new ConcurrentHashMap<>();
+
+    public PolicyConfigCache(long modCount) {
+        this.modCount = modCount;
+    }
+
+    /**
+     * Returns the cache for the current version of the given
+     * parameters, or a new cache if the parameters have changed.
+     */
+    public static PolicyConfigCache getInstance(PolicyConfigCache cache, ConfigStore params) {
+        long modCount = params.getSource().getModCount();
+        if (cache != null && cache.modCount == modCount) {
+            return cache;
+        }
+        return new PolicyConfigCache(modCount);
+    }
+
+    /**
+     * Returns the parameter value, or the default value if the
+     * parameter is not defined.
+     */
+    public String getString(ConfigStore params, String name, String defval) throws EBaseException {
+
+        String value = values.get(name);
+
+        if (value == null) {
+            value = params.getString(name, null);
+            if (value == null) {
+                value = MISSING;
+            }
+            values.put(name, value);
+        }
+
+        return value == MISSING ? defval : value;
+    }
+
+    /**
+     * Returns the parsed pattern for the given string.
+     */
+    public Pattern getPattern(String pattern) {
+
+        Pattern p = patterns.get(pattern);
+        if (p != null) {
+            return p;
+        }
+
+        p = new Pattern(pattern);
+
+        // patterns normally come from the configuration, but don't
+        // let unexpected ones grow the cache without bounds
+        if (patterns.size() < MAX_PATTERNS) {
+            patterns.put(pattern, p);
+        }
+
+        return p;
+    }
+}
@@ -29,6 +29,7 @@ import com.netscape.certsrv.profile.ERejectException;
 import com.netscape.certsrv.property.EPropertyException;
 import com.netscape.certsrv.property.IDescriptor;
 import com.netscape.cms.profile.common.EnrollProfile;
+import com.netscape.cms.profile.common.PolicyConfigCache;
 import com.netscape.cmscore.base.ConfigStore;
 import com.netscape.cmscore.request.Request;
 
@@ -41,6 +42,8 @@ public abstract class EnrollConstraint extends PolicyConstraint {
 
     public static final String CONFIG_PARAMS = "params";
 
+    private volatile PolicyConfigCache mConfigCache;
+
     public EnrollConstraint() {
     }
 
@@ -73,6 +76,16 @@ public abstract class EnrollConstraint extends PolicyConstraint {
         return getConfig(name, "");
     }
 
+    /**
+     * Returns the parameter cache for the current version of
+     * the profile configuration.
+     */
+    protected PolicyConfigCache getConfigCache(ConfigStore params) {
+        PolicyConfigCache cache = PolicyConfigCache.getInstance(mConfigCache, params);
+        mConfigCache = cache;
+        return cache;
+    }
+
     /**
      * Get constraint parameter in profile configuration.
      *
@@ -94,7 +107,7 @@ public abstract class EnrollConstraint extends PolicyConstraint {
         }
 
         try {
-            return params.getString(name, defval);
+            return getConfigCache(params).getString(params, name, defval);
         } catch (EBaseException e) {
             logger.warn("Unable to get profile constraint " + name + " parameter: " + e.getMessage(), e);
             return null;
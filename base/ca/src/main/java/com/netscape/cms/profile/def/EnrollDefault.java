@@ -68,6 +68,7 @@ import com.netscape.certsrv.property.EPropertyException;
 import com.netscape.certsrv.property.IDescriptor;
 import com.netscape.certsrv.security.SigningUnitConfig;
 import com.netscape.cms.profile.common.EnrollProfile;
+import com.netscape.cms.profile.common.PolicyConfigCache;
 import com.netscape.cms.profile.common.PolicyDefaultConfig;
 import com.netscape.cmscore.apps.CMS;
 import com.netscape.cmscore.base.ConfigStore;
@@ -94,6 +95,8 @@ public abstract class EnrollDefault extends PolicyDefault {
     protected Vector<String> mConfigNames = new Vector<>();
     protected Vector<String> mValueNames = new Vector<>();
 
+    private volatile PolicyConfigCache mConfigCache;
+
     public EnrollDefault() {
     }
 
@@ -124,6 +127,16 @@ public abstract class EnrollDefault extends PolicyDefault {
         return getConfig(name, "");
     }
 
+    /**
+     * Returns the parameter cache for the current version of
+     * the profile configuration.
+     */
+    protected PolicyConfigCache getConfigCache(ConfigStore params) {
+        PolicyConfigCache cache = PolicyConfigCache.getInstance(mConfigCache, params);
+        mConfigCache = cache;
+        return cache;
+    }
+
     /**
      * Get constraint parameter in profile configuration.
      *
@@ -145,7 +158,7 @@ public abstract class EnrollDefault extends PolicyDefault {
         }
 
         try {
-            return params.getString(name, defval);
+            return getConfigCache(params).getString(params, name, defval);
         } catch (EBaseException e) {
             logger.warn("Unable to get profile default " + name + " parameter: " + e.getMessage(), e);
             return null;
@@ -831,9 +844,28 @@ public abstract class EnrollDefault extends PolicyDefault {
         return gn.toString();
     }
 
+    /**
+     * Returns the parsed pattern, cached with the profile
+     * configuration if the default has been initialized.
+     */
+    protected Pattern getPattern(String pattern) {
+
+        if (mConfig == null) {
+            return new Pattern(pattern);
+        }
+
+        return getConfigCache(mConfig.getSubStore("params", ConfigStore.class)).getPattern(pattern);
+    }
+
     protected String mapPattern(Request request, String pattern)
             throws IOException {
-        Pattern p = new Pattern(pattern);
+
+        Pattern p = getPattern(pattern);
+
+        if (!p.hasTokens()) {
+            return pattern;
+        }
+
         IAttrSet attrSet = null;
         if (request != null) {
             attrSet = request.asIAttrSet();
@@ -491,18 +491,13 @@ public class SubjectAltNameExtDefault extends EnrollExtDefault {
     @Override
     public String mapPattern(Request request, String pattern)
             throws IOException {
-        Pattern p = new Pattern(pattern);
-        IAttrSet attrSet = null;
-        if (request != null) {
-            attrSet = request.asIAttrSet();
-        }
-        return p.substitute("request", attrSet);
+        return super.mapPattern(request, pattern);
     }
 
     // for server-side generated values
     public String mapPattern(String val, Request request, String pattern)
             throws IOException {
-        Pattern p = new Pattern(pattern);
+        Pattern p = getPattern(pattern);
         IAttrSet attrSet = null;
         if (request != null) {
             attrSet = request.asIAttrSet();
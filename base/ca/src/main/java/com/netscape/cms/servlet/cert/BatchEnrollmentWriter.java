@@ -0,0 +1,123 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cms.servlet.cert;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.BitSet;
+
+import com.netscape.certsrv.cert.CertBatchEnrollmentResult;
+import com.netscape.certsrv.cert.CertRequestInfo;
+import com.netscape.cmscore.request.Request;
+
+/**
+ * Streams the results of a batch enrollment as they are completed.
+ *
+ * The output is a CertBatchEnrollmentResults JSON object whose
+ * entries are written one at a time as the items complete. If the
+ * batch is aborted, end() writes an error entry for each item that
+ * has not been reported so the output is still a complete object.
+ */
+public class BatchEnrollmentWriter implements EnrollmentProcessor.BatchHandler {
+
+    public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(BatchEnrollmentWriter.class);
+
+    public interface InfoFactory {
+        CertRequestInfo create(Request request) throws Exception;
+    }
+
+    Writer out;
+    InfoFactory infoFactory;
+
+    int total;
+    int count;
+
+    // items that have been reported, guarded by this
+    BitSet written = new BitSet();
+    boolean ended;
+
+    public BatchEnrollmentWriter(Writer out, InfoFactory infoFactory) {
+        this.out = out;
+        this.infoFactory = infoFactory;
+    }
+
+    public synchronized void begin(int total) throws IOException {
+        this.total = total;
+        out.write("{\"total\":" + total + ",\"entries\":[\n");
+        out.flush();
+    }
+
+    @Override
+    public void handle(int index, Request[] requests, String errorReason, Exception exception) throws Exception {
+
+        CertBatchEnrollmentResult result = new CertBatchEnrollmentResult();
+        result.setIndex(index);
+
+        if (requests != null) {
+            for (Request request : requests) {
+                result.addRequest(infoFactory.create(request));
+            }
+        }
+
+        if (exception != null) {
+            result.setError(exception.getMessage());
+
+        } else if (errorReason != null) {
+            result.setError(errorReason);
+        }
+
+        write(result);
+    }
+
+    synchronized void write(CertBatchEnrollmentResult result) throws IOException {
+
+        if (ended || written.get(result.getIndex())) {
+            return;
+        }
+
+        String json = result.toJSON();
+
+        if (count > 0) {
+            out.write(",\n");
+        }
+        out.write(json);
+        out.flush();
+
+        written.set(result.getIndex());
+        count++;
+    }
+
+    public void end() throws IOException {
+        end(null);
+    }
+
+    /**
+     * Completes the output. If the batch failed, the items that have
+     * not been reported are returned with the given error.
+     */
+    public synchronized void end(Exception exception) throws IOException {
+
+        if (ended) {
+            return;
+        }
+
+        if (exception != null) {
+            String error = "Unable to process enrollment request: " + exception.getMessage();
+            for (int index = written.nextClearBit(0); index < total; index = written.nextClearBit(index + 1)) {
+                CertBatchEnrollmentResult result = new CertBatchEnrollmentResult();
+                result.setIndex(index);
+                result.setError(error);
+                write(result);
+            }
+        }
+
+        ended = true;
+
+        out.write("\n]}\n");
+        out.flush();
+        logger.info("BatchEnrollmentWriter: Returned " + count + " result(s)");
+    }
+}
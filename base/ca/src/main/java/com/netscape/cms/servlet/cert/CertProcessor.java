@@ -51,7 +51,6 @@ import com.netscape.cmscore.apps.CMS;
 import com.netscape.cmscore.base.ConfigStore;
 import com.netscape.cmscore.logging.Auditor;
 import com.netscape.cmscore.request.Request;
-import com.netscape.cmscore.request.RequestNotifier;
 import com.netscape.cmsutil.ldap.LDAPUtil;
 
 public class CertProcessor extends CAProcessor {
@@ -250,6 +249,11 @@ public class CertProcessor extends CAProcessor {
 
                 logger.info("CertProcessor: Submitting certificate request to " + profile.getId() + " profile");
 
+                // Keep the request updates made during submission in memory
+                // and store the request once below with its final status.
+                // The certificate record is still stored when it is issued.
+                req.setExtData("delayLDAPCommit", "true");
+
                 profile.submit(authToken, req, explicitApprovalRequired);
 
                 req.setRequestStatus(RequestStatus.COMPLETE);
@@ -269,12 +273,8 @@ public class CertProcessor extends CAProcessor {
 
                 logger.warn("Certificate request deferred: " + e.getMessage());
 
+                // the pending notifier runs once the request is stored below
                 req.setRequestStatus(RequestStatus.PENDING);
-                // need to notify
-                RequestNotifier notify = engine.getRequestQueue().getPendingNotify();
-                if (notify != null) {
-                    notify.notify(req);
-                }
 
                 errorCode = "2";
                 req.setExtData(Request.ERROR_CODE, errorCode);
@@ -317,9 +317,13 @@ public class CertProcessor extends CAProcessor {
 
             try {
                 logger.info("Updating certificate request");
+                req.deleteExtData("delayLDAPCommit");
 
+                // store the request before the notifiers run
                 if (errorCode == null) {
                     engine.getRequestQueue().markAsServiced(req);
+                } else if (req.getRequestStatus() == RequestStatus.PENDING) {
+                    engine.getRequestQueue().markAsPending(req);
                 } else {
                     engine.getRequestRepository().updateRequest(req);
                 }
@@ -20,6 +20,7 @@ package com.netscape.cms.servlet.cert;
 
 import java.lang.reflect.Method;
 import java.math.BigInteger;
+import java.net.URI;
 import java.util.Date;
 
 import javax.ws.rs.Path;
@@ -90,20 +91,29 @@ public class CertRequestInfoFactory {
     }
 
     public static CertRequestInfo create(Request request, UriInfo uriInfo) throws SecurityException, NoSuchMethodException {
+        return create(request, uriInfo.getBaseUri());
+    }
+
+    /**
+     * Creates the request info with URLs relative to the given base URI.
+     * Unlike UriInfo, the base URI can be used outside of the thread
+     * processing the REST request.
+     */
+    public static CertRequestInfo create(Request request, URI baseUri) throws SecurityException, NoSuchMethodException {
 
         CertRequestInfo info = create(request);
 
         Method getRequestInfo = CertRequestResource.class.getMethod("getRequestInfo", RequestId.class);
         Path certRequestPath = getRequestInfo.getAnnotation(Path.class);
 
-        UriBuilder reqBuilder = uriInfo.getBaseUriBuilder();
+        UriBuilder reqBuilder = UriBuilder.fromUri(baseUri);
         reqBuilder.path(certRequestPath.value());
         info.setRequestURL(reqBuilder.build(info.getRequestID()).toString());
 
         Method getCert = CertResource.class.getMethod("getCert", CertId.class);
         Path certPath = getCert.getAnnotation(Path.class);
 
-        UriBuilder certBuilder = uriInfo.getBaseUriBuilder();
+        UriBuilder certBuilder = UriBuilder.fromUri(baseUri);
         certBuilder.path(certPath.value());
 
         CertId certID = info.getCertId();
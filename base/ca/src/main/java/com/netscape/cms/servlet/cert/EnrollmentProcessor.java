@@ -17,23 +17,35 @@
 // --- END COPYRIGHT BLOCK ---
 package com.netscape.cms.servlet.cert;
 
+import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.servlet.http.HttpServletRequest;
 
 import org.apache.commons.lang3.StringUtils;
 import org.dogtagpki.server.authentication.AuthManager;
 import org.dogtagpki.server.authentication.AuthToken;
+import org.dogtagpki.server.ca.CAEngine;
 
 import com.netscape.certsrv.authentication.AuthCredentials;
+import com.netscape.certsrv.authentication.ISSLClientCertProvider;
+import com.netscape.certsrv.authorization.EAuthzException;
 import com.netscape.certsrv.base.BadRequestDataException;
+import com.netscape.certsrv.base.EBaseException;
 import com.netscape.certsrv.base.SessionContext;
 import com.netscape.certsrv.ca.AuthorityID;
+import com.netscape.certsrv.cert.CertBatchEnrollmentRequest;
 import com.netscape.certsrv.cert.CertEnrollmentRequest;
 import com.netscape.certsrv.profile.ProfileAttribute;
 import com.netscape.certsrv.profile.ProfileInput;
@@ -49,6 +61,30 @@ public class EnrollmentProcessor extends CertProcessor {
 
     public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(EnrollmentProcessor.class);
 
+    public static final String PROP_BATCH_THREADS = "ca.enrollment.batch.threads";
+    public static final String PROP_BATCH_MAX_SIZE = "ca.enrollment.batch.maxSize";
+    public static final String PROP_BATCH_PROFILES = "ca.enrollment.batch.profiles";
+
+    public static final int DEFAULT_BATCH_THREADS = 4;
+    public static final int DEFAULT_BATCH_MAX_SIZE = 1000;
+
+    /**
+     * Receives the result of each item of a batch enrollment.
+     * Items are processed concurrently so the handler must be
+     * thread-safe.
+     */
+    public interface BatchHandler {
+        void handle(int index, Request[] requests, String errorReason, Exception exception) throws Exception;
+    }
+
+    // State of the batch caller resolved on the calling thread since
+    // the servlet request cannot be used from the worker threads.
+    // The session context is copied after authentication so that the
+    // workers see the authenticated user.
+    private Map<Object, Object> batchContext;
+    private String batchUserData;
+    private ISSLClientCertProvider batchCertProvider;
+
     public EnrollmentProcessor(String id, Locale locale) {
         super(id, locale);
     }
@@ -119,6 +155,31 @@ public class EnrollmentProcessor extends CertProcessor {
             AuthToken authToken)
         throws Exception {
 
+        // set arbitrary user data into request, if any
+        String userData = null;
+        if (request != null)
+            userData = request.getParameter("user-data");
+
+        return processEnrollment(
+                data,
+                request,
+                userData,
+                new SSLClientCertProvider(request),
+                aid,
+                credentials,
+                authToken);
+    }
+
+    private HashMap<String, Object> processEnrollment(
+            CertEnrollmentRequest data,
+            HttpServletRequest request,
+            String userData,
+            ISSLClientCertProvider certProvider,
+            AuthorityID aid,
+            AuthCredentials credentials,
+            AuthToken authToken)
+        throws Exception {
+
         try {
             if (logger.isDebugEnabled()) {
                 HashMap<String,String> params = data.toParams();
@@ -145,10 +206,6 @@ public class EnrollmentProcessor extends CertProcessor {
 
             Map<String, String> ctx = new HashMap<>();
 
-            // set arbitrary user data into request, if any
-            String userData = null;
-            if (request != null)
-                userData = request.getParameter("user-data");
             if (userData != null)
                 ctx.put(EnrollProfile.REQUEST_USER_DATA, userData);
 
@@ -168,7 +225,7 @@ public class EnrollmentProcessor extends CertProcessor {
             // insert profile context so that input parameter can be retrieved
             SessionContext context = SessionContext.getContext();
             context.put("profileContext", ctx);
-            context.put("sslClientCertProvider", new SSLClientCertProvider(request));
+            context.put("sslClientCertProvider", certProvider);
             logger.debug("EnrollmentProcessor: set sslClientCertProvider");
 
             // before creating the request, authenticate the request
@@ -233,7 +290,214 @@ public class EnrollmentProcessor extends CertProcessor {
         }
     }
 
+    public int getBatchMaxSize() throws Exception {
+        return engine.getConfig().getInteger(PROP_BATCH_MAX_SIZE, DEFAULT_BATCH_MAX_SIZE);
+    }
 
+    /**
+     * Returns the profiles that allow batch enrollment. A batch is
+     * authenticated once for all its items, so profiles whose
+     * credentials are meant for a single certificate (e.g. one-time
+     * PINs or directory passwords) must not be listed.
+     */
+    public Set<String> getBatchProfiles() throws Exception {
 
+        String value = engine.getConfig().getString(PROP_BATCH_PROFILES, "");
 
+        Set<String> profiles = new HashSet<>();
+        for (String profileId : value.split(",")) {
+            profileId = profileId.trim();
+            if (!profileId.isEmpty()) {
+                profiles.add(profileId);
+            }
+        }
+
+        return profiles;
+    }
+
+    /**
+     * Authenticates and authorizes a batch enrollment once with the
+     * enrollment request shared by all items.
+     *
+     * @return auth token to process the items with, or null if the
+     * profile does not have an authenticator
+     */
+    public AuthToken authenticateBatch(
+            CertBatchEnrollmentRequest batch,
+            HttpServletRequest request,
+            AuthorityID aid,
+            AuthCredentials credentials)
+            throws Exception {
+
+        batchUserData = request.getParameter("user-data");
+
+        X509Certificate[] clientCerts = (X509Certificate[]) request.getAttribute("javax.servlet.request.X509Certificate");
+        batchCertProvider = () -> clientCerts;
+
+        try {
+            CertEnrollmentRequest data = batch.getRequest();
+
+            String profileId = (this.profileID == null) ? data.getProfileId() : this.profileID;
+            logger.info("EnrollmentProcessor: Authenticating batch enrollment with profile " + profileId);
+
+            Profile profile = ps.getProfile(profileId);
+            if (profile == null) {
+                logger.error(CMS.getUserMessage(locale, "CMS_PROFILE_NOT_FOUND", CMSTemplate.escapeJavaScriptStringHTML(profileId)));
+                throw new BadRequestDataException(CMS.getUserMessage(locale, "CMS_PROFILE_NOT_FOUND", CMSTemplate.escapeJavaScriptStringHTML(profileId)));
+            }
+            if (!ps.isProfileEnable(profileId)) {
+                logger.error("EnrollmentProcessor: Profile " + profileId + " not enabled");
+                throw new BadRequestDataException("Profile " + profileId + " not enabled");
+            }
+
+            if (!getBatchProfiles().contains(profileId)) {
+                logger.error("EnrollmentProcessor: Batch enrollment not allowed with profile " + profileId);
+                throw new EAuthzException("Batch enrollment not allowed with profile " + profileId);
+            }
+
+            Map<String, String> ctx = new HashMap<>();
+            if (aid != null)
+                ctx.put(EnrollProfile.REQUEST_AUTHORITY_ID, aid.toString());
+
+            setInputsIntoContext(data, profile, ctx);
+
+            AuthToken authToken = null;
+            AuthManager authenticator = ps.getProfileAuthenticator(profile);
+            if (authenticator != null) {
+                setCredentialsIntoContext(request, credentials, authenticator, ctx);
+
+                SessionContext context = SessionContext.getContext();
+                context.put("profileContext", ctx);
+                context.put("sslClientCertProvider", batchCertProvider);
+
+                authToken = authenticate(request, null, authenticator, context, false, credentials);
+            }
+
+            authorize(profileId, profile, authToken);
+
+            // the workers set up their own profile context and cert provider
+            batchContext = new HashMap<>(SessionContext.getContext());
+            batchContext.remove("profileContext");
+            batchContext.remove("sslClientCertProvider");
+
+            return authToken;
+
+        } finally {
+            SessionContext.releaseContext();
+        }
+    }
+
+    /**
+     * Enrolls each item of a batch with the auth token returned by
+     * authenticateBatch(). The items are processed concurrently by
+     * the CA's batch enrollment pool (ca.enrollment.batch.threads)
+     * and each result is passed to the handler as soon as the item
+     * is complete. A failed item does not stop the batch, but if the
+     * handler fails the remaining items are skipped. This method
+     * returns only after all workers of the batch have stopped.
+     */
+    public void processBatchEnrollment(
+            CertBatchEnrollmentRequest batch,
+            AuthorityID aid,
+            AuthCredentials credentials,
+            AuthToken authToken,
+            BatchHandler handler)
+            throws Exception {
+
+        CAEngine caEngine = (CAEngine) engine;
+        int threads = caEngine.getConfig().getInteger(PROP_BATCH_THREADS, DEFAULT_BATCH_THREADS);
+
+        int size = batch.getCertRequests().size();
+        int workers = Math.max(1, Math.min(threads, size));
+        logger.info("EnrollmentProcessor: Processing " + size + " request(s) with " + workers + " worker(s)");
+
+        AtomicInteger next = new AtomicInteger();
+        Map<Object, Object> context = batchContext == null ? new HashMap<>() : batchContext;
+
+        Runnable worker = () -> {
+
+            // each worker uses its own processor since processors keep per-request state
+            EnrollmentProcessor processor = new EnrollmentProcessor(id, locale);
+            processor.setCMSEngine(engine);
+
+            try {
+                processor.init();
+            } catch (EBaseException e) {
+                throw new RuntimeException(e);
+            }
+
+            int index;
+            while ((index = next.getAndIncrement()) < size) {
+
+                SessionContext.getContext().putAll(context);
+
+                try {
+                    CertEnrollmentRequest data = batch.createRequest(index);
+                    HashMap<String, Object> results = processor.processEnrollment(
+                            data,
+                            null,
+                            batchUserData,
+                            batchCertProvider,
+                            aid,
+                            credentials,
+                            authToken);
+
+                    handler.handle(
+                            index,
+                            (Request[]) results.get(ARG_REQUESTS),
+                            (String) results.get(ARG_ERROR_REASON),
+                            null);
+
+                } catch (Exception e) {
+                    logger.warn("EnrollmentProcessor: Unable to enroll batch item " + index + ": " + e.getMessage(), e);
+                    try {
+                        handler.handle(index, null, null, e);
+                    } catch (Exception ex) {
+                        throw new RuntimeException(ex);
+                    }
+
+                } finally {
+                    SessionContext.releaseContext();
+                }
+            }
+        };
+
+        ExecutorService executorService = caEngine.getBatchEnrollmentExecutor();
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < workers; i++) {
+            futures.add(executorService.submit(worker));
+        }
+
+        Exception failure = null;
+
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+
+            } catch (InterruptedException e) {
+                // skip the remaining items, the running ones will complete
+                next.set(size);
+                throw e;
+
+            } catch (ExecutionException e) {
+                // skip the remaining items but wait for the other workers
+                next.set(size);
+                if (failure == null) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException && cause.getCause() instanceof Exception ex) {
+                        failure = ex;
+                    } else if (cause instanceof Exception ex) {
+                        failure = ex;
+                    } else {
+                        failure = e;
+                    }
+                }
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
 }
@@ -25,7 +25,11 @@ import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
 
 import org.dogtagpki.server.ca.CAEngine;
 import org.mozilla.jss.netscape.security.x509.CRLExtensions;
@@ -33,12 +37,18 @@ import org.mozilla.jss.netscape.security.x509.CRLReasonExtension;
 import org.mozilla.jss.netscape.security.x509.InvalidityDateExtension;
 import org.mozilla.jss.netscape.security.x509.RevocationReason;
 import org.mozilla.jss.netscape.security.x509.RevokedCertImpl;
+import org.mozilla.jss.netscape.security.x509.X500Name;
 import org.mozilla.jss.netscape.security.x509.X509CertImpl;
 
 import com.netscape.ca.CertificateAuthority;
+import com.netscape.ca.RevocationPipeline;
 import com.netscape.certsrv.base.BadRequestException;
 import com.netscape.certsrv.base.EBaseException;
 import com.netscape.certsrv.base.UnauthorizedException;
+import com.netscape.certsrv.cert.CertBatchRevocationRequest;
+import com.netscape.certsrv.cert.CertBatchRevocationResult;
+import com.netscape.certsrv.cert.CertBatchRevocationResults;
+import com.netscape.certsrv.cert.CertRevokeRequest;
 import com.netscape.certsrv.dbs.certdb.CertId;
 import com.netscape.certsrv.logging.AuditFormat;
 import com.netscape.certsrv.logging.ILogger;
@@ -67,6 +77,11 @@ public class RevocationProcessor extends CertProcessor {
     public final static String ON_HOLD = "on-hold";
     public final static String OFF_HOLD = "off-hold";
 
+    // batch revocation nonces are stored in the session under a
+    // fixed ID since they are not tied to a certificate
+    public final static String BATCH_NONCE_NAME = "cert-revoke-batch";
+    public final static String BATCH_NONCE_ID = "batch";
+
     long startTime;
 
     CertificateAuthority authority;
@@ -200,6 +215,99 @@ public class RevocationProcessor extends CertProcessor {
         }
     }
 
+    /**
+     * Creates a nonce for the next batch revocation in the session
+     * of the agent.
+     *
+     * @return the nonce, or null if nonces are disabled
+     */
+    public Long createBatchNonce(HttpServletRequest servletRequest) {
+
+        CAEngine engine = CAEngine.getInstance();
+        if (!engine.getEnableNonces()) {
+            return null;
+        }
+
+        long nonce = engine.getJSSSubsystem().getRandomNumberGenerator().nextLong();
+
+        Map<Object, Long> nonces = engine.getNonces(servletRequest, BATCH_NONCE_NAME);
+        nonces.put(BATCH_NONCE_ID, nonce);
+
+        return nonce;
+    }
+
+    /**
+     * Validates the nonce of a batch revocation like the nonce of
+     * a single revocation. The nonce can only be used once.
+     */
+    public void validateBatchNonce(
+            HttpServletRequest servletRequest,
+            X509Certificate clientCert,
+            CertBatchRevocationRequest batch) throws EBaseException {
+
+        CAEngine engine = CAEngine.getInstance();
+        if (!engine.getEnableNonces() || isMemberOfSubsystemGroup(clientCert)) {
+            return;
+        }
+
+        CertRevokeRequest data = batch.getRequest();
+        Long nonce = data == null ? null : data.getNonce();
+
+        validateNonce(servletRequest, BATCH_NONCE_NAME, BATCH_NONCE_ID, nonce);
+    }
+
+    /**
+     * Validates the client certificate of the agent revoking
+     * certificates.
+     *
+     * @return the record of the client certificate if it was issued
+     * by this CA, or null
+     */
+    public CertRecord validateClientCertificate(X509Certificate clientCert) throws EBaseException {
+
+        if (clientCert == null) {
+            return null;
+        }
+
+        X500Name caX500DN = authority.getCACert().getSubjectName();
+        X500Name x500issuerDN = (X500Name) clientCert.getIssuerDN();
+
+        /*
+         * internal revocation check only to be conducted for certs
+         * issued by this CA
+         * For client certs issued by external CAs, TLS mutual auth
+         * would have completed the authenticaton/verification if
+         * OCSP was enabled;
+         * Furthermore, prior to the actual revocation, client cert
+         * is mapped against the agent group database for proper
+         * privilege regardless of the issuer.
+         */
+        if (x500issuerDN.equals(caX500DN)) {
+            logger.info("RevocationProcessor: client cert issued by this CA");
+            CertRecord clientRecord = getCertificateRecord(clientCert.getSerialNumber());
+
+            // Verify client cert is not revoked.
+            // TODO: This should be checked during authentication.
+            if (clientRecord.getStatus().equals(CertRecord.STATUS_REVOKED)) {
+                throw new UnauthorizedException(CMS.getLogMessage("CMSGW_UNAUTHORIZED"));
+            }
+
+            return clientRecord;
+        }
+
+        logger.info("RevocationProcessor: client cert not issued by this CA");
+
+        CAEngine engine = CAEngine.getInstance();
+        if (engine.getAllowExtCASignedAgentCerts()) {
+            logger.info("RevocationProcessor: allowExtCASignedAgentCerts true;");
+        } else {
+            logger.error("RevocationProcessor: allowExtCASignedAgentCerts false;");
+            throw new UnauthorizedException(CMS.getLogMessage("CMSGW_UNAUTHORIZED"));
+        }
+
+        return null;
+    }
+
     public void validateCertificateToRevoke(String subjectDN, CertRecord targetRecord, boolean revokingCACert)
                 throws EBaseException {
 
@@ -407,6 +515,85 @@ public class RevocationProcessor extends CertProcessor {
         }
     }
 
+    /**
+     * Revokes a batch of certificates specified by serial number or by
+     * search filter with the revocation pipeline. The certificates are
+     * revoked without a revocation request.
+     *
+     * The authority and the initiative must be set, and the client
+     * certificate must be validated with validateClientCertificate()
+     * as for a single revocation.
+     */
+    public CertBatchRevocationResults processBatchRevocation(CertBatchRevocationRequest batch) throws EBaseException {
+
+        CertRevokeRequest data = batch.getRequest();
+        if (data == null) {
+            throw new BadRequestException("Missing revocation request");
+        }
+
+        String filter = batch.getFilter();
+        List<String> serialNumbers = batch.getSerialNumbers();
+        boolean hasSerialNumbers = serialNumbers != null && !serialNumbers.isEmpty();
+
+        if (filter == null && !hasSerialNumbers) {
+            throw new BadRequestException("Missing serial numbers or filter");
+        }
+
+        if (filter != null && hasSerialNumbers) {
+            throw new BadRequestException("Serial numbers and filter are mutually exclusive");
+        }
+
+        RevocationReason reason = data.getReason() == null
+                ? RevocationReason.UNSPECIFIED
+                : RevocationReason.valueOf(data.getReason());
+
+        if (reason == null) {
+            throw new BadRequestException("Invalid revocation reason: " + data.getReason());
+        }
+
+        if (reason == RevocationReason.REMOVE_FROM_CRL) {
+            throw new BadRequestException("Batch unrevocation is not supported");
+        }
+
+        logger.info("RevocationProcessor: Processing batch revocation");
+        logger.debug("RevocationProcessor: - initiative: " + initiative);
+        logger.debug("RevocationProcessor: - reason: " + reason);
+
+        CAEngine engine = CAEngine.getInstance();
+        RevocationPipeline pipeline = engine.getRevocationPipeline();
+
+        RevocationPipeline.Results results;
+
+        if (filter != null) {
+            results = pipeline.revoke(filter, reason, data.getInvalidityDate());
+
+        } else {
+            List<BigInteger> ids = new ArrayList<>();
+            for (String serialNumber : serialNumbers) {
+                try {
+                    ids.add(new CertId(serialNumber).toBigInteger());
+                } catch (NumberFormatException e) {
+                    throw new BadRequestException("Invalid serial number: " + serialNumber);
+                }
+            }
+            results = pipeline.revoke(ids, reason, data.getInvalidityDate());
+        }
+
+        CertBatchRevocationResults batchResults = new CertBatchRevocationResults();
+
+        for (RevocationPipeline.Result result : results) {
+            CertBatchRevocationResult batchResult = new CertBatchRevocationResult();
+            batchResult.setSerialNumber(new CertId(result.getSerialNumber()).toHexString());
+            batchResult.setStatus(result.getStatus());
+            batchResult.setError(result.getError());
+            batchResults.addEntry(batchResult);
+        }
+
+        batchResults.setTotal(results.size());
+        batchResults.setTruncated(results.isTruncated());
+        return batchResults;
+    }
+
     /**
      * A system certificate such as the CA signing certificate
      * should not be allowed to delete.
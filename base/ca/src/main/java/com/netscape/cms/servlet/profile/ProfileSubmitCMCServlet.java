@@ -79,7 +79,6 @@ import com.netscape.cmscore.apps.CMSEngine;
 import com.netscape.cmscore.logging.Auditor;
 import com.netscape.cmscore.profile.ProfileSubsystem;
 import com.netscape.cmscore.request.Request;
-import com.netscape.cmscore.request.RequestNotifier;
 
 /**
  * This servlet submits end-user request into the profile framework.
@@ -878,6 +877,10 @@ public class ProfileSubmitCMCServlet extends ProfileServlet {
                         }
                     }
 
+                    // Keep the request updates made during submission in memory
+                    // and store the request once below with its final status.
+                    reqs[k].setExtData("delayLDAPCommit", "true");
+
                     profile.submit(authToken, reqs[k]);
                     reqs[k].setRequestStatus(RequestStatus.COMPLETE);
 
@@ -895,12 +898,8 @@ public class ProfileSubmitCMCServlet extends ProfileServlet {
                 } catch (EDeferException e) {
                     // return defer message to the user
                     logger.warn("ProfileSubmitCMCServlet: set request to PENDING");
+                    // the pending notifier runs once the request is stored below
                     reqs[k].setRequestStatus(RequestStatus.PENDING);
-                    // need to notify
-                    RequestNotifier notify = engine.getRequestQueue().getPendingNotify();
-                    if (notify != null) {
-                        notify.notify(reqs[k]);
-                    }
 
                     logger.warn("ProfileSubmitCMCServlet: submit " + e.getMessage());
                     errorCode = "2";
@@ -918,12 +917,8 @@ public class ProfileSubmitCMCServlet extends ProfileServlet {
                 } catch (ECMCPopRequiredException e) {
                     // return popRequired message to the user
                     logger.warn("ProfileSubmitCMCServlet: popRequired; set request to PENDING");
+                    // the pending notifier runs once the request is stored below
                     reqs[k].setRequestStatus(RequestStatus.PENDING);
-                    // need to notify
-                    RequestNotifier notify = engine.getRequestQueue().getPendingNotify();
-                    if (notify != null) {
-                        notify.notify(reqs[k]);
-                    }
 
                     logger.warn("ProfileSubmitCMCServlet: submit " + e.getMessage(), e);
                     errorCode = "4";
@@ -939,8 +934,13 @@ public class ProfileSubmitCMCServlet extends ProfileServlet {
                 }
 
                 try {
+                    reqs[k].deleteExtData("delayLDAPCommit");
+
+                    // store the request before the notifiers run
                     if (errorCode == null) {
                         engine.getRequestQueue().markAsServiced(reqs[k]);
+                    } else if (reqs[k].getRequestStatus() == RequestStatus.PENDING) {
+                        engine.getRequestQueue().markAsPending(reqs[k]);
                     } else {
                         engine.getRequestRepository().updateRequest(reqs[k]);
                     }
@@ -375,6 +375,30 @@ public class CRLRepository extends Repository {
         modifyCRLIssuingPointRecord(id, mods);
     }
 
+    /**
+     * Adds recently revoked certificates to CRL issuing point record
+     * without storing the whole cache again. The certificates are
+     * stored as an additional value of the revoked certificates
+     * attribute which is merged when the record is read and replaced
+     * the next time the whole cache is stored.
+     *
+     * @param id issuing point record id
+     * @param revokedCerts list of newly revoked certificates
+     * @exception EBaseException failed to update issuing point record
+     */
+    public void addRevokedCerts(
+            String id,
+            Hashtable<BigInteger, RevokedCertificate> revokedCerts)
+            throws EBaseException {
+
+        logger.info("CRLRepository: Adding " + revokedCerts.size() + " revoked certificate(s)");
+
+        ModificationSet mods = new ModificationSet();
+        mods.add(CRLIssuingPointRecord.ATTR_REVOKED_CERTS, Modification.MOD_ADD, revokedCerts);
+
+        modifyCRLIssuingPointRecord(id, mods);
+    }
+
     /**
      * Updates CRL issuing point record with recently expired certificates info.
      *
@@ -0,0 +1,337 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.dbs;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+
+import com.netscape.certsrv.base.EBaseException;
+
+/**
+ * In-memory timeline of valid and revoked certificates ordered
+ * by their notAfter date.
+ *
+ * The timeline only tracks certificates expiring before a horizon
+ * which moves forward as time passes, so the memory usage depends
+ * on the number of certificates expiring within the horizon rather
+ * than on the size of the repository. It is loaded from the database
+ * once per horizon period and kept up to date by the certificate
+ * repository as certificates are issued, revoked, or modified.
+ *
+ * Certificates are grouped into time buckets so that valid certificates
+ * crossing the current time can be retrieved without a database
+ * search. Revoked certificates are only tracked so that they can be
+ * expired if they are taken off hold; revoked certificates that have
+ * expired are left to the database search which also notifies the
+ * CRL issuing points. Updates are serialized, but loading from the
+ * database does not block the updates.
+ */
+public class CertExpiryTimeline {
+
+    public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(CertExpiryTimeline.class);
+
+    public static class Entry {
+
+        BigInteger serialNumber;
+        long notAfter;
+        String status;
+
+        Entry(BigInteger serialNumber, long notAfter, String status) {
+            this.serialNumber = serialNumber;
+            this.notAfter = notAfter;
+            this.status = status;
+        }
+
+        public BigInteger getSerialNumber() {
+            return serialNumber;
+        }
+
+        public Date getNotAfter() {
+            return new Date(notAfter);
+        }
+
+        public String getStatus() {
+            return status;
+        }
+    }
+
+    long bucketSize;
+    long horizon;
+
+    // bucket start time -> serial number -> entry
+    ConcurrentSkipListMap<Long, Map<BigInteger, Entry>> buckets = new ConcurrentSkipListMap<>();
+
+    // serial number -> bucket start time
+    ConcurrentHashMap<BigInteger, Long> index = new ConcurrentHashMap<>();
+
+    // certificates expiring up to this time are tracked, -1 if not loaded
+    volatile long loadedUntil = -1;
+
+    // serializes loads without blocking the repository hooks
+    Object loadLock = new Object();
+
+    // certificates modified through the repository hooks while
+    // loading, null if no load is in progress
+    Set<BigInteger> modified;
+
+    /**
+     * @param bucketSize bucket size in seconds
+     * @param horizon horizon in seconds
+     */
+    public CertExpiryTimeline(long bucketSize, long horizon) {
+        this.bucketSize = TimeUnit.SECONDS.toMillis(Math.max(1, bucketSize));
+        this.horizon = TimeUnit.SECONDS.toMillis(Math.max(1, horizon));
+    }
+
+    public boolean isLoaded() {
+        return loadedUntil >= 0;
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * Loads the certificates that will expire before the horizon but
+     * have not been loaded yet. This is a no-op if less than half of
+     * the horizon has passed since the last load.
+     *
+     * @param repository certificate repository
+     * @param now current time
+     */
+    public void load(CertificateRepository repository, Date now) throws EBaseException {
+        synchronized (loadLock) {
+            loadRange(repository, now);
+        }
+    }
+
+    void loadRange(CertificateRepository repository, Date now) throws EBaseException {
+
+        long until = now.getTime() + horizon;
+        if (loadedUntil >= 0 && loadedUntil > now.getTime() + horizon / 2) {
+            return;
+        }
+
+        Date from = loadedUntil < 0 ? null : new Date(loadedUntil);
+        Date to = new Date(until);
+
+        logger.info("CertExpiryTimeline: Loading certs expiring " + (from == null ? "" : "after " + from + " ")
+                + "until " + to);
+
+        // Extend the tracked range before searching so that certificates
+        // issued during the search are tracked by the repository hooks.
+        long previous = loadedUntil;
+        loadedUntil = until;
+
+        synchronized (this) {
+            modified = new HashSet<>();
+        }
+
+        int count = 0;
+        try {
+            for (CertStatusRecord record : repository.getValidCertsByNotAfterDate(from, to)) {
+                if (load(record)) count++;
+            }
+
+            for (CertStatusRecord record : repository.getRevokedCertsByNotAfterDate(from, to)) {
+                if (load(record)) count++;
+            }
+
+        } catch (EBaseException | RuntimeException e) {
+            loadedUntil = previous;
+            throw e;
+
+        } finally {
+            synchronized (this) {
+                modified = null;
+            }
+        }
+
+        logger.info("CertExpiryTimeline: - loaded: " + count);
+        logger.info("CertExpiryTimeline: - tracked: " + index.size());
+    }
+
+    synchronized boolean load(CertStatusRecord record) {
+
+        if (record == null || record.getSerialNumber() == null || record.getNotAfter() == null) {
+            return false;
+        }
+
+        BigInteger serialNumber = record.getSerialNumber();
+
+        // changes received through the repository hooks during
+        // the search are newer than the search results
+        if (modified != null && modified.contains(serialNumber)) {
+            return false;
+        }
+
+        long notAfter = record.getNotAfter().getTime();
+        String status = record.getStatus();
+
+        // an entry loaded earlier may be outdated if a change was
+        // received while no load was in progress, so replace the
+        // entry unless it matches the record
+        Entry entry = get(serialNumber);
+        if (entry != null && entry.notAfter == notAfter && Objects.equals(entry.status, status)) {
+            return false;
+        }
+
+        if (!isTracked(status)) {
+            removeEntry(serialNumber);
+            return false;
+        }
+
+        put(new Entry(serialNumber, notAfter, status));
+        return true;
+    }
+
+    /**
+     * Tracks a new or modified certificate.
+     */
+    public synchronized void add(BigInteger serialNumber, Date notAfter, String status) {
+
+        if (!isLoaded()) {
+            return;
+        }
+
+        touch(serialNumber);
+
+        if (!isTracked(status) || notAfter.getTime() > loadedUntil) {
+            // the certificate will be loaded once the horizon moves
+            removeEntry(serialNumber);
+            return;
+        }
+
+        put(new Entry(serialNumber, notAfter.getTime(), status));
+    }
+
+    /**
+     * Updates the status of a tracked certificate.
+     */
+    public synchronized void setStatus(BigInteger serialNumber, String status) {
+
+        touch(serialNumber);
+
+        Entry entry = get(serialNumber);
+        if (entry == null) {
+            return;
+        }
+
+        if (!isTracked(status)) {
+            removeEntry(serialNumber);
+            return;
+        }
+
+        put(new Entry(serialNumber, entry.notAfter, status));
+    }
+
+    public synchronized void remove(BigInteger serialNumber) {
+        touch(serialNumber);
+        removeEntry(serialNumber);
+    }
+
+    /**
+     * Removes and returns valid certificates whose notAfter date has
+     * been reached.
+     *
+     * @param now current time
+     * @param maxEntries maximum number of entries to return
+     * @return expired entries
+     */
+    public synchronized List<Entry> pollExpired(Date now, int maxEntries) {
+
+        List<Entry> results = new ArrayList<>();
+        long time = now.getTime();
+
+        ConcurrentNavigableMap<Long, Map<BigInteger, Entry>> expired = buckets.headMap(time, true);
+
+        for (Map.Entry<Long, Map<BigInteger, Entry>> bucket : expired.entrySet()) {
+
+            Iterator<Entry> i = bucket.getValue().values().iterator();
+            while (i.hasNext() && results.size() < maxEntries) {
+
+                Entry entry = i.next();
+                if (entry.notAfter > time || !CertRecord.STATUS_VALID.equals(entry.status)) {
+                    continue;
+                }
+
+                i.remove();
+                index.remove(entry.serialNumber, bucket.getKey());
+                results.add(entry);
+            }
+
+            if (bucket.getValue().isEmpty()) {
+                buckets.remove(bucket.getKey());
+            }
+
+            if (results.size() >= maxEntries) {
+                break;
+            }
+        }
+
+        return results;
+    }
+
+    Entry get(BigInteger serialNumber) {
+
+        Long bucket = index.get(serialNumber);
+        if (bucket == null) {
+            return null;
+        }
+
+        Map<BigInteger, Entry> entries = buckets.get(bucket);
+        return entries == null ? null : entries.get(serialNumber);
+    }
+
+    void touch(BigInteger serialNumber) {
+        if (modified != null) {
+            modified.add(serialNumber);
+        }
+    }
+
+    void removeEntry(BigInteger serialNumber) {
+
+        Long bucket = index.remove(serialNumber);
+        if (bucket == null) {
+            return;
+        }
+
+        Map<BigInteger, Entry> entries = buckets.get(bucket);
+        if (entries != null) {
+            entries.remove(serialNumber);
+        }
+    }
+
+    void put(Entry entry) {
+
+        long bucket = entry.notAfter - Math.floorMod(entry.notAfter, bucketSize);
+
+        Long previous = index.put(entry.serialNumber, bucket);
+        if (previous != null && previous.longValue() != bucket) {
+            Map<BigInteger, Entry> entries = buckets.get(previous);
+            if (entries != null) {
+                entries.remove(entry.serialNumber);
+            }
+        }
+
+        buckets.computeIfAbsent(bucket, key -> new ConcurrentHashMap<>()).put(entry.serialNumber, entry);
+    }
+
+    boolean isTracked(String status) {
+        return CertRecord.STATUS_VALID.equals(status) || CertRecord.STATUS_REVOKED.equals(status);
+    }
+}
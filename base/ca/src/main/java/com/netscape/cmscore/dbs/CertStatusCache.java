@@ -0,0 +1,249 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.dbs;
+
+import java.math.BigInteger;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.mozilla.jss.netscape.security.x509.CRLExtensions;
+import org.mozilla.jss.netscape.security.x509.CRLReasonExtension;
+
+/**
+ * In-memory cache of certificate status used by the CA-embedded
+ * OCSP responder.
+ *
+ * Each entry only keeps the status, revocation date and revocation
+ * reason of a certificate. The cache is kept up to date by the
+ * certificate repository as certificates are issued, revoked, or
+ * modified, and by the retrieve modifications task for changes made
+ * by clones. Serial numbers that are not in the repository are
+ * cached for a limited time since they may be issued later.
+ *
+ * The number of entries is bounded, the least recently used entries
+ * are evicted first.
+ */
+public class CertStatusCache {
+
+    public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(CertStatusCache.class);
+
+    public static class Entry {
+
+        // null if the certificate is not in the repository
+        String status;
+
+        long revokedOn = -1;
+        int reason = -1;
+
+        // only for certificates not in the repository
+        long expiration = Long.MAX_VALUE;
+
+        public String getStatus() {
+            return status;
+        }
+
+        public Date getRevokedOn() {
+            return revokedOn < 0 ? null : new Date(revokedOn);
+        }
+
+        /**
+         * Returns the revocation reason code, or -1 if not available.
+         */
+        public int getReason() {
+            return reason;
+        }
+
+        public boolean isFound() {
+            return status != null;
+        }
+    }
+
+    int maxSize;
+    long notFoundTimeout;
+
+    Map<BigInteger, Entry> entries;
+
+    // incremented whenever the repository changes a status
+    long modCount;
+
+    public CertStatusCache(int maxSize, long notFoundTimeout) {
+
+        this.maxSize = maxSize;
+        this.notFoundTimeout = notFoundTimeout;
+
+        entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<BigInteger, Entry> eldest) {
+                return size() > CertStatusCache.this.maxSize;
+            }
+        };
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getNotFoundTimeout() {
+        return notFoundTimeout;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getModCount() {
+        return modCount;
+    }
+
+    /**
+     * Returns the cached status, or null if the status is not cached.
+     */
+    public synchronized Entry get(BigInteger serialNumber) {
+
+        Entry entry = entries.get(serialNumber);
+        if (entry == null) {
+            return null;
+        }
+
+        if (System.currentTimeMillis() >= entry.expiration) {
+            entries.remove(serialNumber);
+            return null;
+        }
+
+        return entry;
+    }
+
+    static Entry createEntry(CertRecord record) {
+
+        Entry entry = new Entry();
+        entry.status = record.getStatus();
+
+        Date revokedOn = record.getRevokedOn();
+        if (revokedOn != null) {
+            entry.revokedOn = revokedOn.getTime();
+        }
+
+        RevocationInfo info = record.getRevocationInfo();
+        if (info != null) {
+            entry.reason = getReason(info);
+        }
+
+        return entry;
+    }
+
+    static int getReason(RevocationInfo info) {
+
+        CRLExtensions exts = info.getCRLEntryExtensions();
+        if (exts == null) {
+            return -1;
+        }
+
+        try {
+            CRLReasonExtension ext = (CRLReasonExtension) exts.get(CRLReasonExtension.NAME);
+            return ext.getReason().getCode();
+
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Caches a record read from the repository unless the repository
+     * has changed any status since the given modification count, in
+     * which case the record may already be stale.
+     */
+    public synchronized void put(BigInteger serialNumber, CertRecord record, long readModCount) {
+
+        if (modCount != readModCount) {
+            return;
+        }
+
+        entries.put(serialNumber, createEntry(record));
+    }
+
+    /**
+     * Caches a serial number that is not in the repository, unless
+     * the repository has changed since the given modification count.
+     */
+    public synchronized void putNotFound(BigInteger serialNumber, long readModCount) {
+
+        if (modCount != readModCount || notFoundTimeout <= 0) {
+            return;
+        }
+
+        Entry entry = new Entry();
+        entry.expiration = System.currentTimeMillis() + notFoundTimeout;
+        entries.put(serialNumber, entry);
+    }
+
+    /**
+     * Updates the cache with a record added or modified in the
+     * repository.
+     */
+    public synchronized void update(BigInteger serialNumber, CertRecord record) {
+        modCount++;
+        entries.put(serialNumber, createEntry(record));
+    }
+
+    public synchronized void setRevoked(BigInteger serialNumber, Date revokedOn, RevocationInfo info) {
+
+        modCount++;
+
+        Entry entry = new Entry();
+        entry.status = CertRecord.STATUS_REVOKED;
+        entry.revokedOn = revokedOn.getTime();
+        entry.reason = info == null ? -1 : getReason(info);
+
+        entries.put(serialNumber, entry);
+    }
+
+    /**
+     * Updates the status of a cached certificate.
+     */
+    public synchronized void setStatus(BigInteger serialNumber, String status) {
+
+        modCount++;
+
+        Entry entry = entries.get(serialNumber);
+        if (entry == null) {
+            return;
+        }
+
+        if (!entry.isFound()) {
+            // the record has been added since
+            entries.remove(serialNumber);
+            return;
+        }
+
+        if (CertRecord.STATUS_REVOKED.equals(status) && entry.revokedOn < 0) {
+            // revocation date is not known
+            entries.remove(serialNumber);
+            return;
+        }
+
+        // entries returned by get() are not modified
+        Entry newEntry = new Entry();
+        newEntry.status = status;
+
+        if (!CertRecord.STATUS_VALID.equals(status) && !CertRecord.STATUS_INVALID.equals(status)) {
+            newEntry.revokedOn = entry.revokedOn;
+            newEntry.reason = entry.reason;
+        }
+
+        entries.put(serialNumber, newEntry);
+    }
+
+    public synchronized void remove(BigInteger serialNumber) {
+        modCount++;
+        entries.remove(serialNumber);
+    }
+
+    public synchronized void clear() {
+        modCount++;
+        entries.clear();
+    }
+}
@@ -17,12 +17,27 @@
 // --- END COPYRIGHT BLOCK ---
 package com.netscape.cmscore.dbs;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.dogtagpki.server.ca.CAEngine;
 
@@ -38,11 +53,24 @@ public class CertStatusUpdateTask implements Runnable {
 
     CertificateRepository repository;
 
+    static final String SCAN_INVALID = "invalid";
+    static final String SCAN_VALID = "valid";
+
     int interval;
     int pageSize = 200;
     int maxRecords = 1000000;
 
+    // partitioned mode, disabled if threads is 0
+    int threads;
+    int partitions = 16;
+    int batchSize = 100;
+    int lookbackDays = 3650;
+
+    File checkpointFile;
+    Map<String, Date> checkpoints = new ConcurrentHashMap<>();
+
     ScheduledExecutorService executorService;
+    ExecutorService workerService;
 
     public CertStatusUpdateTask(
             CertificateRepository repository,
@@ -56,7 +84,46 @@ public class CertStatusUpdateTask implements Runnable {
         this.maxRecords = maxRecords;
     }
 
+    /**
+     * Enables partitioned mode. The date range of each status scan is
+     * split into partitions which are processed by a pool of worker
+     * threads, each using its own database connections, and the status
+     * modifications are applied in batches.
+     *
+     * @param threads number of worker threads, 0 to disable
+     * @param partitions number of date ranges per scan
+     * @param batchSize number of status modifications per database session
+     * @param lookbackDays size of the partitioned date range when no checkpoint exists
+     */
+    public void setPartitioning(int threads, int partitions, int batchSize, int lookbackDays) {
+        this.threads = threads;
+        this.partitions = Math.max(1, partitions);
+        this.batchSize = Math.max(1, batchSize);
+        this.lookbackDays = Math.max(1, lookbackDays);
+    }
+
+    /**
+     * Sets the file that stores the scan checkpoints between passes
+     * and server restarts.
+     */
+    public void setCheckpointFile(File checkpointFile) {
+        this.checkpointFile = checkpointFile;
+    }
+
     public void start() {
+
+        if (threads > 0) {
+            loadCheckpoints();
+
+            AtomicInteger counter = new AtomicInteger();
+            workerService = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    return new Thread(r, "CertStatusUpdateTask-" + counter.incrementAndGet());
+                }
+            });
+        }
+
         // schedule task to run immediately and repeat after specified interval
         executorService = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
             @Override
@@ -74,23 +141,52 @@ public class CertStatusUpdateTask implements Runnable {
     public void updateInvalidCertificates() throws Exception {
 
         logger.info("CertStatusUpdateTask: Updating invalid certs to valid");
+
+        // invalid certs are not tracked by the expiry timeline,
+        // so add them once they become valid
+        CertExpiryTimeline expiryTimeline = repository.getExpiryTimeline();
+
+        if (workerService != null) {
+            updatePartitioned(
+                    SCAN_INVALID,
+                    CertRecord.STATUS_VALID,
+                    repository::getInvalidCertsByNotBeforeDate,
+                    expiryTimeline == null ? null : records -> {
+                        for (CertStatusRecord record : records) {
+                            addToTimeline(expiryTimeline, record);
+                        }
+                    });
+            return;
+        }
+
         Date now = new Date();
 
-        RecordPagedList<CertRecord> recordList = repository.getInvalidCertsByNotBeforeDate(now);
-        Iterator<CertRecord> certRecIterator = recordList.iterator();
+        RecordPagedList<CertStatusRecord> recordList = repository.getInvalidCertsByNotBeforeDate(now);
+        Iterator<CertStatusRecord> certRecIterator = recordList.iterator();
 
         int recs = 0;
         while (certRecIterator.hasNext() && recs < maxRecords) {
-            CertRecord certRecord = certRecIterator.next();
+            CertStatusRecord certRecord = certRecIterator.next();
             CertId certID = new CertId(certRecord.getSerialNumber());
 
             logger.debug("CertStatusUpdateTask: Cert {} has become valid", certID.toHexString());
             repository.updateStatus(certID, CertRecord.STATUS_VALID);
+
+            if (expiryTimeline != null) {
+                addToTimeline(expiryTimeline, certRecord);
+            }
+
             recs++;
         }
         logger.debug("CertStatusUpdateTask: - invalid list size: {}", recs);
     }
 
+    void addToTimeline(CertExpiryTimeline expiryTimeline, CertStatusRecord record) {
+        if (record.getNotAfter() != null) {
+            expiryTimeline.add(record.getSerialNumber(), record.getNotAfter(), CertRecord.STATUS_VALID);
+        }
+    }
+
     /**
      * Updates a certificate status from VALID to EXPIRED
      * if a certificate becomes expired.
@@ -98,14 +194,24 @@ public class CertStatusUpdateTask implements Runnable {
     public void updateValidCertificates() throws Exception {
 
         logger.info("CertStatusUpdateTask: Updating valid certs to expired");
+
+        if (workerService != null) {
+            updatePartitioned(
+                    SCAN_VALID,
+                    CertRecord.STATUS_EXPIRED,
+                    repository::getValidCertsByNotAfterDate,
+                    null);
+            return;
+        }
+
         Date now = new Date();
 
-        RecordPagedList<CertRecord> recordList = repository.getValidCertsByNotAfterDate(now);
-        Iterator<CertRecord> certRecIterator = recordList.iterator();
+        RecordPagedList<CertStatusRecord> recordList = repository.getValidCertsByNotAfterDate(now);
+        Iterator<CertStatusRecord> certRecIterator = recordList.iterator();
 
         int recs = 0;
         while (certRecIterator.hasNext() && recs < maxRecords) {
-            CertRecord certRecord = certRecIterator.next();
+            CertStatusRecord certRecord = certRecIterator.next();
             CertId certID = new CertId(certRecord.getSerialNumber());
 
             logger.debug("CertStatusUpdateTask: Cert {} has become expired", certID.toHexString());
@@ -119,34 +225,271 @@ public class CertStatusUpdateTask implements Runnable {
      * Updates a certificate status from REVOKED to REVOKED_EXPIRED
      * if a revoked certificate becomes expired.
      */
-    public void updateRevokedExpiredCertificates() throws EBaseException {
+    public void updateRevokedExpiredCertificates() throws Exception {
 
         logger.info("CertStatusUpdateTask: Updating revoked certs to expired");
-        CAEngine engine = CAEngine.getInstance();
+
+        if (workerService != null) {
+            // revoked certs are not checkpointed since a cert
+            // can be revoked after its notAfter date has passed
+            updatePartitioned(
+                    null,
+                    CertRecord.STATUS_REVOKED_EXPIRED,
+                    repository::getRevokedCertsByNotAfterDate,
+                    records -> {
+                        List<BigInteger> serialNumbers = new ArrayList<>(records.size());
+                        for (CertStatusRecord record : records) {
+                            serialNumbers.add(record.getSerialNumber());
+                        }
+                        addExpiredCerts(serialNumbers);
+                    });
+            return;
+        }
+
         Date now = new Date();
 
-        RecordPagedList<CertRecord> recordList = repository.getRevokedCertsByNotAfterDate(now);
-        Iterator<CertRecord> certRecIterator = recordList.iterator();
+        RecordPagedList<CertStatusRecord> recordList = repository.getRevokedCertsByNotAfterDate(now);
+        Iterator<CertStatusRecord> certRecIterator = recordList.iterator();
 
         int recs = 0;
         while (certRecIterator.hasNext() && recs < maxRecords) {
-            CertRecord certRecord = certRecIterator.next();
+            CertStatusRecord certRecord = certRecIterator.next();
             CertId certID = new CertId(certRecord.getSerialNumber());
 
             logger.debug("CertStatusUpdateTask: Cert {} has become expired", certID.toHexString());
             repository.updateStatus(certID, CertRecord.STATUS_REVOKED_EXPIRED);
-            // notify all CRL issuing points about revoked and expired certificate
-            for (CRLIssuingPoint issuingPoint : engine.getCRLIssuingPoints()) {
-                issuingPoint.addExpiredCert(certID.toBigInteger());
-            }
+            addExpiredCerts(List.of(certID.toBigInteger()));
             recs++;
         }
         logger.debug("CertStatusUpdateTask: - valid list size: {}", recs);
     }
 
+    /**
+     * Notifies all CRL issuing points about revoked and expired certificates.
+     */
+    void addExpiredCerts(List<BigInteger> serialNumbers) {
+        CAEngine engine = CAEngine.getInstance();
+        for (CRLIssuingPoint issuingPoint : engine.getCRLIssuingPoints()) {
+            for (BigInteger serialNumber : serialNumbers) {
+                issuingPoint.addExpiredCert(serialNumber);
+            }
+        }
+    }
+
+    /**
+     * Updates certificate status in partitioned mode.
+     *
+     * The date range between the checkpoint (or the lookback period if
+     * there is no checkpoint) and the current time is split into
+     * partitions which are processed concurrently. Records older than
+     * the lookback period are processed in an additional partition.
+     *
+     * Once a pass completes, the checkpoint is moved to the end of the
+     * last partition before which all partitions have been processed
+     * completely, so the next pass resumes from there.
+     *
+     * @param scan checkpoint name, or null to always scan the full range
+     * @param status new certificate status
+     * @param finder returns the records to update within a date range
+     * @param listener called after each batch has been updated, or null
+     */
+    void updatePartitioned(
+            String scan,
+            String status,
+            CertStatusFinder finder,
+            CertStatusListener listener) throws Exception {
+
+        Date now = new Date();
+        Date checkpoint = scan == null ? null : checkpoints.get(scan);
+        List<Date> bounds = createPartitionBounds(checkpoint, now);
+
+        AtomicInteger remaining = new AtomicInteger(maxRecords);
+        List<Future<Boolean>> futures = new ArrayList<>();
+
+        for (int i = 0; i < bounds.size() - 1; i++) {
+            Date from = bounds.get(i);
+            Date to = bounds.get(i + 1);
+            futures.add(workerService.submit(
+                    () -> updatePartition(status, finder, listener, from, to, remaining)));
+        }
+
+        Date newCheckpoint = checkpoint;
+        boolean complete = true;
+
+        for (int i = 0; i < futures.size(); i++) {
+
+            boolean done;
+            try {
+                done = futures.get(i).get();
+
+            } catch (ExecutionException e) {
+                logger.warn("CertStatusUpdateTask: Unable to update partition "
+                        + bounds.get(i) + " - " + bounds.get(i + 1) + ": " + e.getCause().getMessage(),
+                        e.getCause());
+                done = false;
+            }
+
+            if (complete && done) {
+                newCheckpoint = bounds.get(i + 1);
+            } else {
+                complete = false;
+            }
+        }
+
+        logger.debug("CertStatusUpdateTask: - records updated: {}",
+                maxRecords - Math.max(0, remaining.get()));
+
+        if (scan != null && newCheckpoint != null && !newCheckpoint.equals(checkpoint)) {
+            logger.info("CertStatusUpdateTask: - " + scan + " checkpoint: " + newCheckpoint);
+            checkpoints.put(scan, newCheckpoint);
+            storeCheckpoints();
+        }
+    }
+
+    /**
+     * Returns the partition boundaries. The first boundary is exclusive
+     * and may be null for a partition without a lower bound.
+     */
+    List<Date> createPartitionBounds(Date checkpoint, Date now) {
+
+        List<Date> bounds = new ArrayList<>();
+        long start;
+
+        if (checkpoint != null && checkpoint.before(now)) {
+            start = checkpoint.getTime();
+
+        } else {
+            // process records older than the lookback period
+            // in a partition without lower bound
+            bounds.add(null);
+            start = now.getTime() - TimeUnit.DAYS.toMillis(lookbackDays);
+        }
+
+        bounds.add(new Date(start));
+        long span = now.getTime() - start;
+
+        for (int i = 1; i < partitions; i++) {
+            long bound = start + span * i / partitions;
+            if (bound > bounds.get(bounds.size() - 1).getTime()) {
+                bounds.add(new Date(bound));
+            }
+        }
+
+        bounds.add(now);
+        return bounds;
+    }
+
+    /**
+     * Updates the records in a single partition.
+     *
+     * @return true if all records in the partition have been processed
+     */
+    boolean updatePartition(
+            String status,
+            CertStatusFinder finder,
+            CertStatusListener listener,
+            Date from,
+            Date to,
+            AtomicInteger remaining) throws Exception {
+
+        logger.debug("CertStatusUpdateTask: Updating partition {} - {}", from, to);
+
+        RecordPagedList<CertStatusRecord> recordList = finder.find(from, to);
+        List<CertStatusRecord> batch = new ArrayList<>(batchSize);
+        boolean done = true;
+
+        for (CertStatusRecord certRecord : recordList) {
+
+            if (remaining.getAndDecrement() <= 0) {
+                done = false;
+                break;
+            }
+
+            batch.add(certRecord);
+
+            if (batch.size() >= batchSize) {
+                updateBatch(status, listener, batch);
+            }
+        }
+
+        updateBatch(status, listener, batch);
+        return done;
+    }
+
+    void updateBatch(String status, CertStatusListener listener, List<CertStatusRecord> batch) throws Exception {
+
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        List<CertId> certIDs = new ArrayList<>(batch.size());
+        for (CertStatusRecord record : batch) {
+            certIDs.add(new CertId(record.getSerialNumber()));
+        }
+
+        repository.updateStatus(certIDs, status);
+
+        if (listener != null) {
+            listener.updated(batch);
+        }
+
+        batch.clear();
+    }
+
+    void loadCheckpoints() {
+
+        if (checkpointFile == null || !checkpointFile.exists()) {
+            return;
+        }
+
+        Properties props = new Properties();
+        try (InputStream in = new FileInputStream(checkpointFile)) {
+            props.load(in);
+
+        } catch (Exception e) {
+            logger.warn("CertStatusUpdateTask: Unable to load checkpoints: " + e.getMessage(), e);
+            return;
+        }
+
+        for (String scan : props.stringPropertyNames()) {
+            try {
+                checkpoints.put(scan, new Date(Long.parseLong(props.getProperty(scan))));
+            } catch (NumberFormatException e) {
+                logger.warn("CertStatusUpdateTask: Invalid " + scan + " checkpoint: " + props.getProperty(scan));
+            }
+        }
+    }
+
+    synchronized void storeCheckpoints() {
+
+        if (checkpointFile == null) {
+            return;
+        }
+
+        Properties props = new Properties();
+        for (Map.Entry<String, Date> entry : checkpoints.entrySet()) {
+            props.setProperty(entry.getKey(), Long.toString(entry.getValue().getTime()));
+        }
+
+        try (OutputStream out = new FileOutputStream(checkpointFile)) {
+            props.store(out, "Certificate status update checkpoints");
+
+        } catch (Exception e) {
+            logger.warn("CertStatusUpdateTask: Unable to store checkpoints: " + e.getMessage(), e);
+        }
+    }
+
     /**
      * Updates certificate status.
      *
+     * If the expiry timeline is enabled it replaces only the search
+     * for valid certs that have expired. Revoked certs are still
+     * expired with the database search: they can be revoked after
+     * their notAfter date has passed, and each cert moved to
+     * REVOKED_EXPIRED has to be reported to the CRL issuing points.
+     * The search only matches revoked certs, which are a small part
+     * of the database.
+     *
      * This code and processRevokedCerts() are mutually exclusive.
      *
      * @exception EBaseException failed to update
@@ -159,15 +502,69 @@ public class CertStatusUpdateTask implements Runnable {
         updateInvalidCertificates();
         logger.debug(CMS.getLogMessage("CMSCORE_DBS_FINISH_VALID_SEARCH"));
 
-        logger.debug(CMS.getLogMessage("CMSCORE_DBS_START_EXPIRED_SEARCH"));
-        updateValidCertificates();
-        logger.debug(CMS.getLogMessage("CMSCORE_DBS_FINISH_EXPIRED_SEARCH"));
+        CertExpiryTimeline expiryTimeline = repository.getExpiryTimeline();
+
+        if (expiryTimeline != null) {
+            updateExpiredCertificates(expiryTimeline);
+
+        } else {
+            logger.debug(CMS.getLogMessage("CMSCORE_DBS_START_EXPIRED_SEARCH"));
+            updateValidCertificates();
+            logger.debug(CMS.getLogMessage("CMSCORE_DBS_FINISH_EXPIRED_SEARCH"));
+        }
 
         logger.debug(CMS.getLogMessage("CMSCORE_DBS_START_REVOKED_EXPIRED_SEARCH"));
         updateRevokedExpiredCertificates();
         logger.debug(CMS.getLogMessage("CMSCORE_DBS_FINISH_REVOKED_EXPIRED_SEARCH"));
     }
 
+    /**
+     * Updates a certificate status from VALID to EXPIRED using the
+     * expiry timeline instead of searching the database. The timeline
+     * is loaded on the first run and extended as its horizon approaches.
+     */
+    public void updateExpiredCertificates(CertExpiryTimeline expiryTimeline) throws Exception {
+
+        logger.info("CertStatusUpdateTask: Updating valid certs to expired from expiry timeline");
+        Date now = new Date();
+
+        expiryTimeline.load(repository, now);
+
+        List<CertExpiryTimeline.Entry> entries = expiryTimeline.pollExpired(now, maxRecords);
+        logger.debug("CertStatusUpdateTask: - expired certs: {}", entries.size());
+
+        int i = 0;
+
+        try {
+            while (i < entries.size()) {
+
+                List<CertExpiryTimeline.Entry> batch =
+                        entries.subList(i, Math.min(i + batchSize, entries.size()));
+
+                List<CertId> certIDs = new ArrayList<>();
+
+                for (CertExpiryTimeline.Entry entry : batch) {
+                    CertId certID = new CertId(entry.getSerialNumber());
+                    logger.debug("CertStatusUpdateTask: Cert {} has become expired", certID.toHexString());
+                    certIDs.add(certID);
+                }
+
+                // certs revoked in the meantime are skipped
+                repository.updateStatus(certIDs, CertRecord.STATUS_VALID, CertRecord.STATUS_EXPIRED);
+
+                i += batch.size();
+            }
+
+        } catch (Exception e) {
+            // put the unprocessed entries back so they will be retried,
+            // entries that have already been updated will be skipped
+            for (CertExpiryTimeline.Entry entry : entries.subList(i, entries.size())) {
+                expiryTimeline.add(entry.getSerialNumber(), entry.getNotAfter(), entry.getStatus());
+            }
+            throw e;
+        }
+    }
+
     /**
      * Processes revoked certificates.
      *
@@ -205,5 +602,14 @@ public class CertStatusUpdateTask implements Runnable {
     public void stop() {
         // shutdown executorService without interrupting running task
         if (executorService != null) executorService.shutdown();
+        if (workerService != null) workerService.shutdown();
+    }
+
+    interface CertStatusFinder {
+        RecordPagedList<CertStatusRecord> find(Date from, Date to) throws EBaseException;
+    }
+
+    interface CertStatusListener {
+        void updated(List<CertStatusRecord> records) throws EBaseException;
     }
 }
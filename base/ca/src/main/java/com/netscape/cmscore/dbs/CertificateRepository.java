@@ -25,7 +25,11 @@ import java.util.Date;
 import java.util.Enumeration;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.CompletableFuture;
 
 import org.mozilla.jss.netscape.security.x509.CertificateValidity;
 import org.mozilla.jss.netscape.security.x509.X500Name;
@@ -37,7 +41,10 @@ import com.netscape.certsrv.base.MetaInfo;
 import com.netscape.certsrv.base.SessionContext;
 import com.netscape.certsrv.dbs.DBPagedSearch;
 import com.netscape.certsrv.dbs.DBVirtualList;
+import com.netscape.certsrv.dbs.EDBException;
+import com.netscape.certsrv.dbs.EDBNotAvailException;
 import com.netscape.certsrv.dbs.EDBRecordNotFoundException;
+import com.netscape.certsrv.dbs.IDBObj;
 import com.netscape.certsrv.dbs.Modification;
 import com.netscape.certsrv.dbs.ModificationSet;
 import com.netscape.certsrv.dbs.certdb.CertId;
@@ -46,6 +53,7 @@ import com.netscape.certsrv.request.RequestId;
 import com.netscape.cmscore.apps.DatabaseConfig;
 import com.netscape.cmscore.apps.EngineConfig;
 
+import netscape.ldap.LDAPException;
 import netscape.ldap.LDAPSearchResults;
 
 /**
@@ -87,6 +95,9 @@ public class CertificateRepository extends Repository {
 
     private boolean mConsistencyCheck = false;
 
+    private CertExpiryTimeline expiryTimeline;
+    private CertStatusCache statusCache;
+
     private boolean mEnableRandomSerialNumbers;
     private int mBitLength = 0;
     private BigInteger mRangeSize = null;
@@ -674,6 +685,30 @@ public class CertificateRepository extends Repository {
         }
     }
 
+    public CertExpiryTimeline getExpiryTimeline() {
+        return expiryTimeline;
+    }
+
+    /**
+     * Sets the expiry timeline to be kept up to date
+     * as certificate records are added and modified.
+     */
+    public void setExpiryTimeline(CertExpiryTimeline expiryTimeline) {
+        this.expiryTimeline = expiryTimeline;
+    }
+
+    public CertStatusCache getStatusCache() {
+        return statusCache;
+    }
+
+    /**
+     * Sets the status cache to be kept up to date
+     * as certificate records are added and modified.
+     */
+    public void setStatusCache(CertStatusCache statusCache) {
+        this.statusCache = statusCache;
+    }
+
     public void setConsistencyCheck(boolean ConsistencyCheck) {
         mConsistencyCheck = ConsistencyCheck;
     }
@@ -707,42 +742,87 @@ public class CertificateRepository extends Repository {
             String name = "cn=" + record.getSerialNumber() + "," + mBaseDN;
             logger.debug("CertificateRepository: Adding certificate record " + name);
 
-            X509CertImpl x509cert = (X509CertImpl) record.get(CertRecord.ATTR_X509CERT);
-            logger.debug("CertificateRepository: - subject: " + x509cert.getSubjectName());
-            logger.debug("CertificateRepository: - issuer: " + x509cert.getIssuerName());
+            prepareCertificateRecord(record);
+            s.add(name, record);
+            certificateRecordAdded(record);
+
+        } catch (EBaseException e) {
+            throw new EBaseException("Unable to add certificate record: " + e.getMessage(), e);
 
-            SessionContext ctx = SessionContext.getContext();
-            String uid = (String) ctx.get(SessionContext.USER_ID);
+        }
+    }
 
-            if (uid == null) {
-                // XXX is this right?
-                uid = "system";
-                // logger.error("XXX servlet should set USER_ID");
-                // throw new EBaseException(BaseResources.UNKNOWN_PRINCIPAL_1, "null");
-            }
+    /**
+     * Sends a certificate record to the repository without waiting
+     * for the result, so the caller can do other work while the
+     * record is being added. If the asynchronous session is disabled
+     * the record is added before this method returns.
+     *
+     * @param record X.509 certificate
+     * @return future completed when the record has been added
+     * @exception EBaseException failed to send new certificate to
+     *                the repository
+     */
+    public CompletableFuture<Void> addCertificateRecordAsync(CertRecord record) throws EBaseException {
 
-            record.set(CertRecord.ATTR_ISSUED_BY, uid);
-            logger.debug("CertificateRepository: - issued by: " + uid);
+        LDAPAsyncSession session = dbSubsystem.getAsyncSession();
 
-            // Check validity of this certificate. If it is not invalid,
-            // mark it so. We will have a thread to transit the status
-            // from INVALID to VALID.
+        if (session == null) {
+            addCertificateRecord(record);
+            return CompletableFuture.completedFuture(null);
+        }
 
-            Date now = new Date();
+        String name = "cn=" + record.getSerialNumber() + "," + mBaseDN;
+        logger.debug("CertificateRepository: Adding certificate record " + name + " asynchronously");
 
-            String status = (String) record.get(CertRecord.ATTR_CERT_STATUS);
-            if (x509cert.getNotBefore().after(now)) {
-                // not yet valid
-                status = CertRecord.STATUS_INVALID;
-                record.set(CertRecord.ATTR_CERT_STATUS, status);
-            }
-            logger.debug("CertificateRepository: - status: " + status);
+        prepareCertificateRecord(record);
 
-            s.add(name, record);
+        return session.add(name, record).thenRun(() -> certificateRecordAdded(record));
+    }
 
-        } catch (EBaseException e) {
-            throw new EBaseException("Unable to add certificate record: " + e.getMessage(), e);
+    void prepareCertificateRecord(CertRecord record) throws EBaseException {
+
+        X509CertImpl x509cert = (X509CertImpl) record.get(CertRecord.ATTR_X509CERT);
+        logger.debug("CertificateRepository: - subject: " + x509cert.getSubjectName());
+        logger.debug("CertificateRepository: - issuer: " + x509cert.getIssuerName());
+
+        SessionContext ctx = SessionContext.getContext();
+        String uid = (String) ctx.get(SessionContext.USER_ID);
+
+        if (uid == null) {
+            // XXX is this right?
+            uid = "system";
+            // logger.error("XXX servlet should set USER_ID");
+            // throw new EBaseException(BaseResources.UNKNOWN_PRINCIPAL_1, "null");
+        }
+
+        record.set(CertRecord.ATTR_ISSUED_BY, uid);
+        logger.debug("CertificateRepository: - issued by: " + uid);
+
+        // Check validity of this certificate. If it is not invalid,
+        // mark it so. We will have a thread to transit the status
+        // from INVALID to VALID.
+
+        Date now = new Date();
+
+        String status = (String) record.get(CertRecord.ATTR_CERT_STATUS);
+        if (x509cert.getNotBefore().after(now)) {
+            // not yet valid
+            status = CertRecord.STATUS_INVALID;
+            record.set(CertRecord.ATTR_CERT_STATUS, status);
+        }
+        logger.debug("CertificateRepository: - status: " + status);
+    }
+
+    void certificateRecordAdded(CertRecord record) {
 
+        if (expiryTimeline != null) {
+            X509CertImpl x509cert = record.getCertificate();
+            expiryTimeline.add(record.getSerialNumber(), x509cert.getNotAfter(), record.getStatus());
+        }
+
+        if (statusCache != null) {
+            statusCache.update(record.getSerialNumber(), record);
         }
     }
 
@@ -763,14 +843,119 @@ public class CertificateRepository extends Repository {
 
             s.add(name, record);
         }
+
+        X509CertImpl cert = record.getCertificate();
+
+        if (expiryTimeline != null && cert != null) {
+            expiryTimeline.add(record.getSerialNumber(), cert.getNotAfter(), record.getStatus());
+        }
+
+        if (statusCache != null) {
+            statusCache.update(record.getSerialNumber(), record);
+        }
+    }
+
+    /**
+     * Updates the status of multiple certificates using a single
+     * database session.
+     *
+     * @param list serial numbers
+     * @param status certificate status
+     * @exception EBaseException failed to update status
+     */
+    public void updateStatus(List<CertId> list, String status) throws EBaseException {
+
+        if (list.isEmpty()) {
+            return;
+        }
+
+        logger.info("CertificateRepository: Updating " + list.size() + " certs status to " + status);
+
+        try (DBSSession s = dbSubsystem.createSession()) {
+            for (CertId certID : list) {
+                ModificationSet mods = new ModificationSet();
+                mods.add(CertRecord.ATTR_CERT_STATUS, Modification.MOD_REPLACE, status);
+                mods.add(CertRecord.ATTR_MODIFY_TIME, Modification.MOD_REPLACE, new Date());
+
+                s.modify("cn=" + certID.toBigInteger() + "," + mBaseDN, mods);
+
+                if (expiryTimeline != null) {
+                    expiryTimeline.setStatus(certID.toBigInteger(), status);
+                }
+
+                if (statusCache != null) {
+                    statusCache.setStatus(certID.toBigInteger(), status);
+                }
+            }
+        }
     }
 
-    public void updateStatus(ArrayList<CertId> list, String status) throws EBaseException {
+    /**
+     * Updates the status of multiple certificates using a single
+     * database session, but only if their current status matches
+     * the expected status. Certificates whose status has changed
+     * in the meantime are skipped.
+     *
+     * @param list serial numbers
+     * @param oldStatus expected certificate status
+     * @param newStatus new certificate status
+     * @return serial numbers of the updated certificates
+     * @exception EBaseException failed to update status
+     */
+    public List<CertId> updateStatus(List<CertId> list, String oldStatus, String newStatus)
+            throws EBaseException {
+
+        List<CertId> updated = new ArrayList<>();
+
+        if (list.isEmpty()) {
+            return updated;
+        }
+
+        logger.info("CertificateRepository: Updating " + list.size() + " certs status from "
+                + oldStatus + " to " + newStatus);
+
+        try (DBSSession s = dbSubsystem.createSession()) {
+            for (CertId certID : list) {
+
+                // the delete fails if the current status does not match
+                ModificationSet mods = new ModificationSet();
+                mods.add(CertRecord.ATTR_CERT_STATUS, Modification.MOD_DELETE, oldStatus);
+                mods.add(CertRecord.ATTR_CERT_STATUS, Modification.MOD_ADD, newStatus);
+                mods.add(CertRecord.ATTR_MODIFY_TIME, Modification.MOD_REPLACE, new Date());
+
+                try {
+                    s.modify("cn=" + certID.toBigInteger() + "," + mBaseDN, mods);
+
+                } catch (EDBNotAvailException e) {
+                    throw e;
+
+                } catch (EDBRecordNotFoundException e) {
+                    logger.debug("CertificateRepository: Cert " + certID.toHexString() + " not found");
+                    continue;
+
+                } catch (EDBException e) {
+                    if (e.getCause() instanceof LDAPException ldapException
+                            && ldapException.getLDAPResultCode() == LDAPException.NO_SUCH_ATTRIBUTE) {
+                        logger.debug("CertificateRepository: Cert " + certID.toHexString()
+                                + " status is no longer " + oldStatus);
+                        continue;
+                    }
+                    throw e;
+                }
+
+                if (expiryTimeline != null) {
+                    expiryTimeline.setStatus(certID.toBigInteger(), newStatus);
+                }
 
-        for (int i = 0; i < list.size(); i++) {
-            CertId certID = list.get(i);
-            updateStatus(certID, status);
+                if (statusCache != null) {
+                    statusCache.setStatus(certID.toBigInteger(), newStatus);
+                }
+
+                updated.add(certID);
+            }
         }
+
+        return updated;
     }
 
     /**
@@ -800,6 +985,58 @@ public class CertificateRepository extends Repository {
             String name = "cn=" + serialNo + "," + mBaseDN;
             s.delete(name);
         }
+
+        if (expiryTimeline != null) {
+            expiryTimeline.remove(serialNo);
+        }
+
+        if (statusCache != null) {
+            statusCache.remove(serialNo);
+        }
+    }
+
+    /**
+     * Deletes certificate records using a single database session.
+     * Records that cannot be deleted are logged and skipped.
+     *
+     * @param serialNos serial numbers of the certificates
+     * @param subtree true to delete with the tree delete control
+     * @return serial numbers of the deleted certificates
+     * @exception EBaseException database not available
+     */
+    public List<BigInteger> deleteCertificateRecords(List<BigInteger> serialNos, boolean subtree)
+            throws EBaseException {
+
+        List<BigInteger> deleted = new ArrayList<>();
+
+        try (DBSSession s = dbSubsystem.createSession()) {
+            for (BigInteger serialNo : serialNos) {
+                String name = "cn=" + serialNo + "," + mBaseDN;
+
+                try {
+                    s.delete(name, subtree);
+
+                } catch (EDBNotAvailException e) {
+                    throw e;
+
+                } catch (EBaseException e) {
+                    logger.warn("CertificateRepository: Unable to delete cert 0x" + serialNo.toString(16) + ": " + e.getMessage(), e);
+                    continue;
+                }
+
+                deleted.add(serialNo);
+
+                if (expiryTimeline != null) {
+                    expiryTimeline.remove(serialNo);
+                }
+
+                if (statusCache != null) {
+                    statusCache.remove(serialNo);
+                }
+            }
+        }
+
+        return deleted;
     }
 
     /**
@@ -878,6 +1115,87 @@ public class CertificateRepository extends Repository {
         }
     }
 
+    /**
+     * Sends certificate record modifications without waiting for the
+     * result. If the asynchronous session is disabled the record is
+     * modified before this method returns. Status changes are applied
+     * to the expiry timeline and the status cache once the record has
+     * been modified.
+     *
+     * @param serialNo serial number of record
+     * @param mods modifications
+     * @return future completed when the record has been modified
+     * @exception EBaseException failed to send modifications
+     */
+    public CompletableFuture<Void> modifyCertificateRecordAsync(BigInteger serialNo,
+            ModificationSet mods) throws EBaseException {
+
+        LDAPAsyncSession session = dbSubsystem.getAsyncSession();
+
+        if (session == null) {
+            modifyCertificateRecord(serialNo, mods);
+            certificateRecordModified(serialNo, mods);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        String name = "cn=" + serialNo + "," + mBaseDN;
+
+        mods.add(CertRecord.ATTR_MODIFY_TIME, Modification.MOD_REPLACE,
+                new Date());
+        return session.modify(name, mods).thenRun(() -> certificateRecordModified(serialNo, mods));
+    }
+
+    /**
+     * Applies the status change in the modifications, if any, to the
+     * expiry timeline and the status cache.
+     */
+    void certificateRecordModified(BigInteger serialNo, ModificationSet mods) {
+
+        String status = null;
+        Date revokedOn = null;
+        RevocationInfo info = null;
+
+        Enumeration<Modification> e = mods.getModifications();
+        while (e.hasMoreElements()) {
+            Modification mod = e.nextElement();
+
+            if (mod.getOp() == Modification.MOD_DELETE) {
+                continue;
+            }
+
+            if (CertRecord.ATTR_CERT_STATUS.equals(mod.getName())) {
+                status = (String) mod.getValue();
+
+            } else if (CertRecord.ATTR_REVOKED_ON.equals(mod.getName())) {
+                revokedOn = (Date) mod.getValue();
+
+            } else if (CertRecord.ATTR_REVO_INFO.equals(mod.getName())) {
+                info = (RevocationInfo) mod.getValue();
+            }
+        }
+
+        if (status == null && revokedOn != null) {
+            // revocation of a cert on hold keeps the status
+            status = CertRecord.STATUS_REVOKED;
+        }
+
+        if (status == null) {
+            return;
+        }
+
+        if (expiryTimeline != null) {
+            expiryTimeline.setStatus(serialNo, status);
+        }
+
+        if (statusCache != null) {
+            if (CertRecord.STATUS_REVOKED.equals(status) && revokedOn != null) {
+                statusCache.setRevoked(serialNo, revokedOn, info);
+            } else {
+                statusCache.setStatus(serialNo, status);
+            }
+        }
+    }
+
     /**
      * Checks if the certificate exists in this repository.
      *
@@ -925,44 +1243,103 @@ public class CertificateRepository extends Repository {
      */
     public void markAsRevoked(BigInteger id, RevocationInfo info, boolean isAlreadyRevoked)
             throws EBaseException {
-        ModificationSet mods = new ModificationSet();
-        if (isAlreadyRevoked) {
-            mods.add(CertRecord.ATTR_REVO_INFO, Modification.MOD_REPLACE, info);
-        } else {
-            mods.add(CertRecord.ATTR_REVO_INFO, Modification.MOD_ADD, info);
+
+        Date revokedOn = new Date();
+        ModificationSet mods = createRevocationModifications(info, isAlreadyRevoked, getRevokedBy(), revokedOn);
+
+        modifyCertificateRecord(id, mods);
+
+        if (expiryTimeline != null) {
+            expiryTimeline.setStatus(id, CertRecord.STATUS_REVOKED);
+        }
+
+        if (statusCache != null) {
+            statusCache.setRevoked(id, revokedOn, info);
+        }
+    }
+
+    /**
+     * Marks a batch of certificates as revoked with the same revocation
+     * information. The modifications are sent without waiting for each
+     * other and the caches are updated as each one completes.
+     *
+     * @param ids serial numbers, each mapped to whether the certificate
+     *            was already revoked (possibly onHold)
+     * @param info revocation information
+     * @return errors of the certificates that could not be marked
+     * @exception EBaseException failed to send the modifications
+     */
+    public Map<BigInteger, EBaseException> markAsRevoked(Map<BigInteger, Boolean> ids, RevocationInfo info)
+            throws EBaseException {
+
+        Date revokedOn = new Date();
+        String revokedBy = getRevokedBy();
+
+        Map<BigInteger, CompletableFuture<Void>> futures = new LinkedHashMap<>();
+        Map<BigInteger, EBaseException> errors = new LinkedHashMap<>();
+
+        for (Map.Entry<BigInteger, Boolean> entry : ids.entrySet()) {
+            BigInteger id = entry.getKey();
+            ModificationSet mods = createRevocationModifications(info, entry.getValue(), revokedBy, revokedOn);
+
+            try {
+                futures.put(id, modifyCertificateRecordAsync(id, mods));
+
+            } catch (EDBNotAvailException e) {
+                throw e;
+
+            } catch (EBaseException e) {
+                errors.put(id, e);
+            }
+        }
+
+        for (Map.Entry<BigInteger, CompletableFuture<Void>> entry : futures.entrySet()) {
+            BigInteger id = entry.getKey();
+
+            try {
+                LDAPAsyncSession.get(entry.getValue());
+
+            } catch (EBaseException e) {
+                logger.warn("CertificateRepository: Unable to mark cert 0x" + id.toString(16) + " as revoked: " + e.getMessage(), e);
+                errors.put(id, e);
+            }
         }
+
+        return errors;
+    }
+
+    String getRevokedBy() {
         SessionContext ctx = SessionContext.getContext();
         String uid = (String) ctx.get(SessionContext.USER_ID);
+        return uid == null ? "system" : uid;
+    }
+
+    ModificationSet createRevocationModifications(
+            RevocationInfo info,
+            boolean isAlreadyRevoked,
+            String revokedBy,
+            Date revokedOn) {
+
+        ModificationSet mods = new ModificationSet();
 
         /*
          * When already revoked onHold, the fields already existing in record
          * can only be replaced instead of added
          */
         if (isAlreadyRevoked) {
-            if (uid == null) {
-                mods.add(CertRecord.ATTR_REVOKED_BY, Modification.MOD_REPLACE,
-                        "system");
-            } else {
-                mods.add(CertRecord.ATTR_REVOKED_BY, Modification.MOD_REPLACE,
-                        uid);
-            }
-            mods.add(CertRecord.ATTR_REVOKED_ON, Modification.MOD_REPLACE,
-                    new Date());
+            mods.add(CertRecord.ATTR_REVO_INFO, Modification.MOD_REPLACE, info);
+            mods.add(CertRecord.ATTR_REVOKED_BY, Modification.MOD_REPLACE, revokedBy);
+            mods.add(CertRecord.ATTR_REVOKED_ON, Modification.MOD_REPLACE, revokedOn);
+
         } else {
-            if (uid == null) {
-                mods.add(CertRecord.ATTR_REVOKED_BY, Modification.MOD_ADD,
-                        "system");
-            } else {
-                mods.add(CertRecord.ATTR_REVOKED_BY, Modification.MOD_ADD,
-                        uid);
-            }
-            mods.add(CertRecord.ATTR_REVOKED_ON, Modification.MOD_ADD,
-                    new Date());
+            mods.add(CertRecord.ATTR_REVO_INFO, Modification.MOD_ADD, info);
+            mods.add(CertRecord.ATTR_REVOKED_BY, Modification.MOD_ADD, revokedBy);
+            mods.add(CertRecord.ATTR_REVOKED_ON, Modification.MOD_ADD, revokedOn);
             mods.add(CertRecord.ATTR_CERT_STATUS, Modification.MOD_REPLACE,
                     CertRecord.STATUS_REVOKED);
         }
 
-        modifyCertificateRecord(id, mods);
+        return mods;
     }
 
     /**
@@ -985,6 +1362,14 @@ public class CertificateRepository extends Repository {
         mods.add(CertRecord.ATTR_CERT_STATUS, Modification.MOD_REPLACE,
                 CertRecord.STATUS_VALID);
         modifyCertificateRecord(id, mods);
+
+        if (expiryTimeline != null) {
+            expiryTimeline.setStatus(id, CertRecord.STATUS_VALID);
+        }
+
+        if (statusCache != null) {
+            statusCache.setStatus(id, CertRecord.STATUS_VALID);
+        }
     }
 
     /**
@@ -1002,6 +1387,14 @@ public class CertificateRepository extends Repository {
         mods.add(CertRecord.ATTR_CERT_STATUS, Modification.MOD_REPLACE, status);
 
         modifyCertificateRecord(id.toBigInteger(), mods);
+
+        if (expiryTimeline != null) {
+            expiryTimeline.setStatus(id.toBigInteger(), status);
+        }
+
+        if (statusCache != null) {
+            statusCache.setStatus(id.toBigInteger(), status);
+        }
     }
 
     /**
@@ -1270,6 +1663,124 @@ public class CertificateRepository extends Repository {
         }
     }
 
+    /**
+     * Finds a list of certificate status records that satisfies
+     * the filter. Only the serial number, status, validity dates,
+     * and revocation date are retrieved so the certificates do not
+     * have to be transferred or decoded.
+     *
+     * If consistency check is enabled, the full certificate records
+     * are retrieved instead, and the serial numbers and validity dates
+     * are taken from the decoded certificates.
+     *
+     * @param filter search filter
+     * @param sortKey key to use for sorting the returned elements
+     * @return a list of certificate status records
+     * @exception EBaseException failed to search
+     */
+    public RecordPagedList<CertStatusRecord> findPagedCertStatusRecords(String filter,
+            String sortKey)
+            throws EBaseException {
+
+        logger.debug("CertificateRepository.findPagedCertStatusRecords()");
+
+        try (DBSSession session = dbSubsystem.createSession()) {
+
+            if (!mConsistencyCheck) {
+                DBPagedSearch<CertStatusRecord> page = session.createProjectedPagedSearch(
+                        CertStatusRecord.class,
+                        mBaseDN,
+                        filter,
+                        sortKey);
+
+                return new RecordPagedList<>(page);
+            }
+
+            DBPagedSearch<CertRecord> records = session.<CertRecord>createPagedSearch(
+                    CertRecord.class,
+                    mBaseDN,
+                    filter,
+                    null,
+                    sortKey);
+
+            DBPagedSearch<CertStatusRecord> page = new DBPagedSearch<>() {
+
+                @Override
+                public List<CertStatusRecord> getPage() throws EBaseException {
+                    return toStatusRecords(records.getPage());
+                }
+
+                @Override
+                public List<CertStatusRecord> getPage(int size) throws EBaseException {
+                    return toStatusRecords(records.getPage(size));
+                }
+            };
+
+            return new RecordPagedList<>(page);
+        }
+    }
+
+    static List<CertStatusRecord> toStatusRecords(List<CertRecord> records) {
+
+        List<CertStatusRecord> list = new ArrayList<>();
+        for (CertRecord record : records) {
+            list.add(new CertStatusRecord(record));
+        }
+
+        return list;
+    }
+
+    /**
+     * Creates a search that finds the certificate records that
+     * satisfy the filter with concurrent searches over ranges of
+     * serial numbers.
+     *
+     * @param name name of the search for logging
+     * @param filter search filter
+     * @param threads number of concurrent searches
+     * @return parallel search
+     */
+    public DBParallelSearch<CertRecord> createParallelSearch(String name, String filter, int threads) {
+        return createParallelSearch(name, CertRecord.class, filter, threads);
+    }
+
+    /**
+     * Creates a search like createParallelSearch() that returns
+     * CertStatusRecord projections, so the certificates are neither
+     * retrieved nor decoded.
+     *
+     * @param name name of the search for logging
+     * @param filter search filter
+     * @param threads number of concurrent searches
+     * @return parallel search
+     */
+    public DBParallelSearch<CertStatusRecord> createStatusParallelSearch(String name, String filter, int threads) {
+
+        DBParallelSearch<CertStatusRecord> search = createParallelSearch(name, CertStatusRecord.class, filter, threads);
+        search.setProjection(true);
+
+        return search;
+    }
+
+    <T extends IDBObj> DBParallelSearch<T> createParallelSearch(String name, Class<T> type, String filter, int threads) {
+
+        DBParallelSearch<T> search = new DBParallelSearch<>(
+                name,
+                dbSubsystem,
+                type,
+                mBaseDN,
+                filter,
+                CertRecord.ATTR_ID);
+
+        // more ranges than threads so that sparse ranges
+        // do not leave threads idle
+        search.setRanges(getIDLimit(), threads * 4);
+        search.setSearchThreads(threads);
+        search.setProcessThreads(threads);
+
+        return search;
+    }
+
     /**
      * Finds certificate records. Here is a list of filter
      * attribute can be used:
@@ -1882,95 +2393,104 @@ public class CertificateRepository extends Repository {
      * The certificate are still invalid but the notBefore date has been reached.
      *
      * @param date reference date
-     * @return a list of certificate records
+     * @return a list of certificate status records
      * @exception EBaseException failed to retrieve
      */
-    public RecordPagedList<CertRecord> getInvalidCertsByNotBeforeDate(Date date)
+    public RecordPagedList<CertStatusRecord> getInvalidCertsByNotBeforeDate(Date date)
             throws EBaseException {
+        return getInvalidCertsByNotBeforeDate(null, date);
+    }
 
-        RecordPagedList<CertRecord>  list = null;
-
-        StringBuilder ldapfilter = new StringBuilder();
-        ldapfilter.append("(&");
-        ldapfilter.append("(").append(CertRecord.ATTR_CERT_STATUS).append("=").append(CertRecord.STATUS_INVALID).append(")");
-        ldapfilter.append("(").append(CertificateValidity.NOT_BEFORE).append("<=").append(DateMapper.dateToDB(date)).append(")");
-        ldapfilter.append(")");
-        String[] attrs = null;
-
-        if (!mConsistencyCheck) {
-            attrs = new String[] { "objectclass", CertRecord.ATTR_ID, CertRecord.ATTR_X509CERT };
-        }
+    /**
+     * Gets Invalid certs whose notBefore date is within a date range.
+     *
+     * @param from exclusive lower bound, or null for no lower bound
+     * @param to inclusive upper bound
+     * @return a list of certificate status records
+     * @exception EBaseException failed to retrieve
+     */
+    public RecordPagedList<CertStatusRecord> getInvalidCertsByNotBeforeDate(Date from, Date to)
+            throws EBaseException {
 
+        String ldapfilter = createStatusDateFilter(
+                CertRecord.STATUS_INVALID, CertificateValidity.NOT_BEFORE, from, to);
         logger.debug("getInvalidCertificatesByNotBeforeDate filter {}", ldapfilter);
 
-        logger.debug("getInvalidCertificatesByNotBeforeDate: about to call findCertRecordsInList");
-
-        list = findPagedCertRecords(ldapfilter.toString(), attrs, null);
-        return list;
-
+        return findPagedCertStatusRecords(ldapfilter, null);
     }
 
     /**
      * Gets valid certs orderes where notAfter date has been reached.
      *
      * @param date reference date
-     * @return a list of certificate records
+     * @return a list of certificate status records
      * @exception EBaseException failed to retrieve
      */
-    public RecordPagedList<CertRecord> getValidCertsByNotAfterDate(Date date)
+    public RecordPagedList<CertStatusRecord> getValidCertsByNotAfterDate(Date date)
             throws EBaseException {
+        return getValidCertsByNotAfterDate(null, date);
+    }
 
-        RecordPagedList<CertRecord>  list = null;
-        StringBuilder ldapfilter = new StringBuilder();
-        ldapfilter.append("(&");
-        ldapfilter.append("(").append(CertRecord.ATTR_CERT_STATUS).append("=").append(CertRecord.STATUS_VALID).append(")");
-        ldapfilter.append("(").append(CertificateValidity.NOT_AFTER).append("<=").append(DateMapper.dateToDB(date)).append(")");
-        ldapfilter.append(")");
-
-        String[] attrs = null;
-
-        if (!mConsistencyCheck) {
-            attrs = new String[] { "objectclass", CertRecord.ATTR_ID, CertRecord.ATTR_X509CERT };
-        }
+    /**
+     * Gets valid certs whose notAfter date is within a date range.
+     *
+     * @param from exclusive lower bound, or null for no lower bound
+     * @param to inclusive upper bound
+     * @return a list of certificate status records
+     * @exception EBaseException failed to retrieve
+     */
+    public RecordPagedList<CertStatusRecord> getValidCertsByNotAfterDate(Date from, Date to)
+            throws EBaseException {
 
+        String ldapfilter = createStatusDateFilter(
+                CertRecord.STATUS_VALID, CertificateValidity.NOT_AFTER, from, to);
         logger.debug("getValidCertsByNotAfterDate filter {}", ldapfilter);
 
-        list = findPagedCertRecords(ldapfilter.toString(), attrs, null);
-
-        return list;
+        return findPagedCertStatusRecords(ldapfilter, null);
     }
 
     /**
      * Gets Revoked certs orderes by noAfter date has been reached.
      *
      * @param date reference date
-     * @return a list of certificate records
+     * @return a list of certificate status records
      * @exception EBaseException failed to retrieve
      */
-    public RecordPagedList<CertRecord> getRevokedCertsByNotAfterDate(Date date)
+    public RecordPagedList<CertStatusRecord> getRevokedCertsByNotAfterDate(Date date)
             throws EBaseException {
+        return getRevokedCertsByNotAfterDate(null, date);
+    }
 
-        RecordPagedList<CertRecord> list = null;
-        StringBuilder ldapfilter = new StringBuilder();
-        ldapfilter.append("(&");
-        ldapfilter.append("(").append(CertRecord.ATTR_CERT_STATUS).append("=").append(CertRecord.STATUS_REVOKED).append(")");
-        ldapfilter.append("(").append(CertificateValidity.NOT_AFTER).append("<=").append(DateMapper.dateToDB(date)).append(")");
-        ldapfilter.append(")");
-
-        String[] attrs = null;
-
-        if (!mConsistencyCheck) {
-            attrs = new String[] { "objectclass", CertRecord.ATTR_REVOKED_ON, CertRecord.ATTR_ID,
-                        CertRecord.ATTR_REVO_INFO, CertificateValidity.NOT_AFTER, CertRecord.ATTR_X509CERT };
-        }
+    /**
+     * Gets Revoked certs whose notAfter date is within a date range.
+     *
+     * @param from exclusive lower bound, or null for no lower bound
+     * @param to inclusive upper bound
+     * @return a list of certificate status records
+     * @exception EBaseException failed to retrieve
+     */
+    public RecordPagedList<CertStatusRecord> getRevokedCertsByNotAfterDate(Date from, Date to)
+            throws EBaseException {
 
+        String ldapfilter = createStatusDateFilter(
+                CertRecord.STATUS_REVOKED, CertificateValidity.NOT_AFTER, from, to);
         logger.debug("getRevokedCertificatesByNotAfterDate filter {}", ldapfilter);
 
-        logger.debug("getRevokedCertificatesByNotAfterDate: about to call findCertRecordsInList");
-        list = findPagedCertRecords(ldapfilter.toString(), attrs, null);
+        return findPagedCertStatusRecords(ldapfilter, null);
+    }
 
-        return list;
+    private String createStatusDateFilter(String status, String dateAttr, Date from, Date to) {
+
+        StringBuilder ldapfilter = new StringBuilder();
+        ldapfilter.append("(&");
+        ldapfilter.append("(").append(CertRecord.ATTR_CERT_STATUS).append("=").append(status).append(")");
+        ldapfilter.append("(").append(dateAttr).append("<=").append(DateMapper.dateToDB(to)).append(")");
+        if (from != null) {
+            ldapfilter.append("(!(").append(dateAttr).append("<=").append(DateMapper.dateToDB(from)).append("))");
+        }
+        ldapfilter.append(")");
 
+        return ldapfilter.toString();
     }
 
     /**
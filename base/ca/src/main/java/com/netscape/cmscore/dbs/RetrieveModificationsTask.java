@@ -24,6 +24,7 @@ import java.util.concurrent.TimeUnit;
 
 import org.dogtagpki.server.ca.CAEngine;
 import org.mozilla.jss.netscape.security.x509.RevokedCertImpl;
+import org.mozilla.jss.netscape.security.x509.X509CertImpl;
 
 import com.netscape.ca.CRLIssuingPoint;
 import com.netscape.certsrv.base.EBaseException;
@@ -115,6 +116,19 @@ public class RetrieveModificationsTask implements Runnable {
             return;
         }
 
+        CertExpiryTimeline expiryTimeline = repository.getExpiryTimeline();
+        X509CertImpl cert = certRecord.getCertificate();
+
+        if (expiryTimeline != null && cert != null) {
+            expiryTimeline.add(certRecord.getSerialNumber(), cert.getNotAfter(), status);
+        }
+
+        CertStatusCache statusCache = repository.getStatusCache();
+
+        if (statusCache != null) {
+            statusCache.update(certRecord.getSerialNumber(), certRecord);
+        }
+
         if (!status.equals(CertRecord.STATUS_VALID) && !status.equals(CertRecord.STATUS_REVOKED)) {
             return;
         }
@@ -112,7 +112,17 @@ public class CAPublisherProcessor extends PublisherProcessor {
                 int savePublishingStatus = queueConfig.getSaveStatus();
                 logger.info("CAPublisherProcessor: - save status: " + savePublishingStatus);
 
+                int maxSize = queueConfig.getMaxSize();
+                logger.info("CAPublisherProcessor: - max size: " + maxSize);
+
+                int maxRetries = queueConfig.getMaxRetries();
+                logger.info("CAPublisherProcessor: - max retries: " + maxRetries);
+
+                int retryDelay = queueConfig.getRetryDelay();
+                logger.info("CAPublisherProcessor: - retry delay: " + retryDelay + " seconds");
+
                 RequestNotifier requestNotifier = engine.getRequestNotifier();
+                requestNotifier.setPublishingQueueLimits(maxSize, maxRetries, retryDelay);
                 requestNotifier.setPublishingQueue(
                         isPublishingQueueEnabled,
                         publishingQueuePriorityLevel,
@@ -134,6 +144,11 @@ public class CAPublisherProcessor extends PublisherProcessor {
             engine.removeRequestListener(requestListener);
         }
 
+        RequestNotifier requestNotifier = CAEngine.getInstance().getRequestNotifier();
+        if (requestNotifier != null) {
+            requestNotifier.shutdown();
+        }
+
         super.shutdown();
     }
 
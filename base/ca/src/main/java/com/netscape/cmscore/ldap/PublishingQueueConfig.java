@@ -60,4 +60,25 @@ public class PublishingQueueConfig extends ConfigStore {
     public int getSaveStatus() throws EBaseException {
         return getInteger("saveStatus", 0);
     }
+
+    /**
+     * Returns ca.publish.queue.maxSize parameter.
+     */
+    public int getMaxSize() throws EBaseException {
+        return getInteger("maxSize", 10000);
+    }
+
+    /**
+     * Returns ca.publish.queue.maxRetries parameter.
+     */
+    public int getMaxRetries() throws EBaseException {
+        return getInteger("maxRetries", 5);
+    }
+
+    /**
+     * Returns ca.publish.queue.retryDelay parameter.
+     */
+    public int getRetryDelay() throws EBaseException {
+        return getInteger("retryDelay", 1);
+    }
 }
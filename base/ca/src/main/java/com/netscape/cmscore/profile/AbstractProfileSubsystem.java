@@ -19,8 +19,8 @@ package com.netscape.cmscore.profile;
 
 import java.util.Collections;
 import java.util.Enumeration;
-import java.util.Hashtable;
 import java.util.LinkedHashMap;
+import java.util.Map;
 
 import org.apache.commons.lang3.StringUtils;
 import org.dogtagpki.server.authentication.AuthManager;
@@ -44,8 +44,12 @@ public abstract class AbstractProfileSubsystem extends Subsystem {
     protected static final String PROP_ENABLE_BY = "enableBy";
 
     protected ConfigStore mConfig;
-    protected LinkedHashMap<String, Profile> mProfiles = new LinkedHashMap<>();
-    protected Hashtable<String, String> mProfileClassIds = new Hashtable<>();
+
+    /* Immutable snapshots of the profiles and their class IDs.
+     * Readers never lock; writers replace the snapshots under
+     * the subsystem lock (see putProfile() and removeProfile()). */
+    protected volatile Map<String, Profile> mProfiles = Collections.emptyMap();
+    protected volatile Map<String, String> mProfileClassIds = Collections.emptyMap();
 
     /**
      * Returns the root configuration storage of this system.
@@ -73,6 +77,47 @@ public abstract class AbstractProfileSubsystem extends Subsystem {
     public void setId(String id) throws EBaseException {
     }
 
+    /**
+     * Adds or replaces a profile in the snapshot.
+     */
+    protected synchronized void putProfile(String id, String classId, Profile profile) {
+
+        Map<String, String> classIds = new LinkedHashMap<>(mProfileClassIds);
+        classIds.put(id, classId);
+
+        Map<String, Profile> profiles = new LinkedHashMap<>(mProfiles);
+        profiles.put(id, profile);
+
+        // publish the class ID first so that a reader that finds
+        // the profile also finds its class ID
+        mProfileClassIds = Collections.unmodifiableMap(classIds);
+        mProfiles = Collections.unmodifiableMap(profiles);
+    }
+
+    /**
+     * Removes a profile from the snapshot.
+     */
+    protected synchronized void removeProfile(String id) {
+
+        if (!mProfiles.containsKey(id) && !mProfileClassIds.containsKey(id)) {
+            return;
+        }
+
+        Map<String, Profile> profiles = new LinkedHashMap<>(mProfiles);
+        profiles.remove(id);
+
+        Map<String, String> classIds = new LinkedHashMap<>(mProfileClassIds);
+        classIds.remove(id);
+
+        mProfiles = Collections.unmodifiableMap(profiles);
+        mProfileClassIds = Collections.unmodifiableMap(classIds);
+    }
+
+    protected synchronized void clearProfiles() {
+        mProfiles = Collections.emptyMap();
+        mProfileClassIds = Collections.emptyMap();
+    }
+
     public boolean isProfileEnable(String id) throws EBaseException{
         Profile profile = mProfiles.get(id);
         String enable = profile.getConfigStore().getString(PROP_ENABLE, null);
@@ -151,7 +196,7 @@ public abstract class AbstractProfileSubsystem extends Subsystem {
         // is not fully initialised with its inputs, outputs and
         // policy objects.
         //
-        mProfiles.put(id, newProfile);
+        putProfile(id, classId, newProfile);
 
         // finally commit the configStore
         //
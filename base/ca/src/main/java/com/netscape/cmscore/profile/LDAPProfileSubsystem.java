@@ -20,10 +20,22 @@ package com.netscape.cmscore.profile;
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Enumeration;
-import java.util.TreeMap;
-import java.util.TreeSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.dogtagpki.server.ca.CAEngine;
 import org.dogtagpki.server.ca.CAEngineConfig;
@@ -31,6 +43,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.netscape.certsrv.base.EBaseException;
+import com.netscape.certsrv.base.ServiceUnavailableException;
 import com.netscape.certsrv.ldap.ELdapException;
 import com.netscape.certsrv.profile.EProfileException;
 import com.netscape.certsrv.util.AsyncLoader;
@@ -64,6 +77,33 @@ public class LDAPProfileSubsystem
 
     public final static Logger logger = LoggerFactory.getLogger(LDAPProfileSubsystem.class);
 
+    public static final String PROP_LOAD_THREADS = "loadThreads";
+    public static final int DEFAULT_LOAD_THREADS = 4;
+
+    public static final String PROP_LOAD_TIMEOUT = "loadTimeout";
+    public static final int DEFAULT_LOAD_TIMEOUT = 300; // seconds
+
+    /**
+     * A profile that has been read from LDAP and initialized,
+     * but not yet made visible to the rest of the subsystem.
+     */
+    static class LoadedProfile {
+
+        String id;
+        String classId;
+        Profile profile;
+        BigInteger entryUSN;
+        String nsUniqueId;
+
+        LoadedProfile(String id, String classId, Profile profile, BigInteger entryUSN, String nsUniqueId) {
+            this.id = id;
+            this.classId = classId;
+            this.profile = profile;
+            this.entryUSN = entryUSN;
+            this.nsUniqueId = nsUniqueId;
+        }
+    }
+
     private String profileContainerDNString;
     private DN profileContainerDN;
 
@@ -73,16 +113,32 @@ public class LDAPProfileSubsystem
     private Thread monitor;
 
     /* Map of profileId -> entryUSN for the most recent view
-     * of the profile entry that this instance has seen */
-    private TreeMap<String,BigInteger> entryUSNs = new TreeMap<>();
+     * of the profile entry that this instance has seen.
+     *
+     * The map is kept when the profile change monitor reconnects
+     * so that profiles that have not changed in the meantime are
+     * not parsed and initialized again. */
+    private Map<String,BigInteger> entryUSNs = new ConcurrentHashMap<>();
 
-    private TreeMap<String,String> nsUniqueIds = new TreeMap<>();
+    private Map<String,String> nsUniqueIds = new ConcurrentHashMap<>();
 
     /* Set of nsUniqueIds of deleted entries */
-    private TreeSet<String> deletedNsUniqueIds = new TreeSet<>();
+    private Set<String> deletedNsUniqueIds = ConcurrentHashMap.newKeySet();
 
     private AsyncLoader loader = new AsyncLoader(10 /*10s timeout*/);
 
+    /* Released once the results of the first search have been
+     * loaded. Unlike the loader it is not released by a watchdog,
+     * so requests for profiles that are not loaded yet keep
+     * waiting for the initial load instead of failing. */
+    CountDownLatch initialLoadDone = new CountDownLatch(1);
+
+    // maximum time to wait for the initial load in milliseconds
+    long loadTimeout = TimeUnit.SECONDS.toMillis(DEFAULT_LOAD_TIMEOUT);
+
+    /* Loads the profiles found by the initial search in parallel */
+    private ExecutorService loadExecutor;
+
     /**
      * Initializes this subsystem with the given configuration
      * store.
@@ -114,6 +170,27 @@ public class LDAPProfileSubsystem
         profileContainerDNString = "ou=certificateProfiles,ou=ca," + basedn;
         profileContainerDN = new DN(profileContainerDNString);
 
+        int loadThreads = mConfig.getInteger(PROP_LOAD_THREADS, DEFAULT_LOAD_THREADS);
+        logger.debug("LDAPProfileSubsystem: load threads: " + loadThreads);
+
+        loadTimeout = TimeUnit.SECONDS.toMillis(mConfig.getInteger(PROP_LOAD_TIMEOUT, DEFAULT_LOAD_TIMEOUT));
+        logger.debug("LDAPProfileSubsystem: load timeout: " + loadTimeout + " ms");
+
+        if (loadThreads > 1) {
+            ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+            AtomicInteger counter = new AtomicInteger();
+
+            loadExecutor = Executors.newFixedThreadPool(loadThreads, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "ProfileLoader-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    thread.setContextClassLoader(classLoader);
+                    return thread;
+                }
+            });
+        }
+
         monitor = new Thread(this, "ProfileChangeMonitor");
         monitor.start();
         try {
@@ -127,33 +204,86 @@ public class LDAPProfileSubsystem
         logger.debug("LDAPProfileSubsystem: finished init");
     }
 
+    /**
+     * Waits until the profiles found by the first search have been
+     * loaded.
+     *
+     * @throws ServiceUnavailableException if the profiles are still
+     *         being loaded after the load timeout
+     */
+    void awaitInitialLoad() {
+
+        if (initialLoadDone.getCount() == 0) {
+            return;
+        }
+
+        logger.info("LDAPProfileSubsystem: Waiting for profiles to be loaded");
+
+        try {
+            if (initialLoadDone.await(loadTimeout, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        throw new ServiceUnavailableException("Certificate profiles are still being loaded, try again later");
+    }
+
+    /*
+     * The profiles are read from the current snapshot without waiting
+     * for the profile change monitor. Profiles reloaded after a
+     * reconnection replace the existing ones one at a time, so
+     * requests are served from the previous snapshot in the meantime.
+     * Only a profile that is not found waits for the initial load to
+     * complete, since it may not have been loaded yet.
+     */
+
     @Override
     public Profile getProfile(String id)
             throws EProfileException {
-        try {
-            loader.awaitLoadDone();
-        } catch (InterruptedException e) {
-            logger.warn("LDAPProfileSubsystem.getProfile: caught InterruptedException "
-                    + "while waiting for profiles to be loaded: " + e, e);
+
+        Profile profile = super.getProfile(id);
+        if (profile != null) {
+            return profile;
         }
+
+        awaitInitialLoad();
         return super.getProfile(id);
     }
 
     @Override
     public Enumeration<String> getProfileIds() {
-        try {
-            loader.awaitLoadDone();
-        } catch (InterruptedException e) {
-            logger.warn("LDAPProfileSubsystem.getProfile: caught InterruptedException "
-                    + "while waiting for profiles to be loaded: " + e, e);
-        }
+        awaitInitialLoad();
         return super.getProfileIds();
     }
 
+    private String getProfileId(String dn) {
+        if (!dn.startsWith("cn=")) {
+            return null;
+        }
+        return LDAPDN.explodeDN(dn, true)[0];
+    }
+
     /**
      * Read the given LDAPEntry into the profile subsystem.
      */
-    private synchronized void readProfile(LDAPEntry ldapProfile) {
+    private void readProfile(LDAPEntry ldapProfile) {
+        LoadedProfile loadedProfile = loadProfile(ldapProfile);
+        if (loadedProfile != null) {
+            installProfile(loadedProfile);
+        }
+    }
+
+    /**
+     * Parse and initialize the profile in the given LDAPEntry
+     * without making it visible. This does not take the subsystem
+     * lock so multiple profiles can be loaded concurrently.
+     *
+     * @return the loaded profile, or null if the entry was skipped
+     */
+    private LoadedProfile loadProfile(LDAPEntry ldapProfile) {
 
         CAEngine engine = CAEngine.getInstance();
         PluginRegistry registry = engine.getPluginRegistry();
@@ -163,16 +293,15 @@ public class LDAPProfileSubsystem
         if (deletedNsUniqueIds.contains(nsUniqueId)) {
             logger.warn("readProfile: ignoring entry with nsUniqueId '"
                     + nsUniqueId + "' due to deletion");
-            return;
+            return null;
         }
 
-        String profileId = null;
         String dn = ldapProfile.getDN();
-        if (!dn.startsWith("cn=")) {
+        String profileId = getProfileId(dn);
+        if (profileId == null) {
             logger.error("Error reading profile entry: DN " + dn + " does not start with 'cn='");
-            return;
+            return null;
         }
-        profileId = LDAPDN.explodeDN(dn, true)[0];
 
         BigInteger newEntryUSN = new BigInteger(
                 ldapProfile.getAttribute("entryUSN").getStringValueArray()[0]);
@@ -183,7 +312,7 @@ public class LDAPProfileSubsystem
             logger.debug("readProfile: known entryUSN = " + knownEntryUSN);
             if (newEntryUSN.compareTo(knownEntryUSN) <= 0) {
                 logger.info("readProfile: data is current");
-                return;
+                return null;
             }
         }
 
@@ -195,23 +324,41 @@ public class LDAPProfileSubsystem
         PluginInfo info = registry.getPluginInfo("profile", classId);
         if (info == null) {
             logger.error("Error loading profile: No plugins for type : profile, with classId " + classId);
-        } else {
-            try {
-                logger.debug("Start Profile Creation - " + profileId + " " + classId + " " + info.getClassName());
-                createProfile(profileId, classId, info.getClassName(), data);
-                entryUSNs.put(profileId, newEntryUSN);
-                nsUniqueIds.put(profileId, nsUniqueId);
-                logger.info("Done Profile Creation - " + profileId);
-            } catch (EProfileException e) {
-                logger.error("Error creating profile '" + profileId + "': " + e, e);
-            }
+            return null;
+        }
+
+        try {
+            logger.debug("Start Profile Creation - " + profileId + " " + classId + " " + info.getClassName());
+            Profile profile = newProfile(profileId, classId, info.getClassName(), data);
+            logger.info("Done Profile Creation - " + profileId);
+            return new LoadedProfile(profileId, classId, profile, newEntryUSN, nsUniqueId);
+
+        } catch (EProfileException e) {
+            logger.error("Error creating profile '" + profileId + "': " + e, e);
+            return null;
         }
     }
 
-    @Override
-    public synchronized Profile createProfile(String id, String classid, String className)
-            throws EProfileException {
-        return createProfile(id, classid, className, null);
+    /**
+     * Make a loaded profile visible unless the profile has been
+     * deleted or a newer version has been installed in the meantime.
+     */
+    private synchronized void installProfile(LoadedProfile loadedProfile) {
+
+        if (deletedNsUniqueIds.contains(loadedProfile.nsUniqueId)) {
+            logger.info("installProfile: profile " + loadedProfile.id + " has been deleted");
+            return;
+        }
+
+        BigInteger knownEntryUSN = entryUSNs.get(loadedProfile.id);
+        if (knownEntryUSN != null && loadedProfile.entryUSN.compareTo(knownEntryUSN) <= 0) {
+            logger.info("installProfile: profile " + loadedProfile.id + " is already current");
+            return;
+        }
+
+        putProfile(loadedProfile.id, loadedProfile.classId, loadedProfile.profile);
+        entryUSNs.put(loadedProfile.id, loadedProfile.entryUSN);
+        nsUniqueIds.put(loadedProfile.id, loadedProfile.nsUniqueId);
     }
 
     /**
@@ -221,7 +368,19 @@ public class LDAPProfileSubsystem
      * with the same profileId from Monitor and ProfileService,
      * so the method is synchronized.
      */
-    private synchronized Profile createProfile(
+    @Override
+    public synchronized Profile createProfile(String id, String classid, String className)
+            throws EProfileException {
+        Profile profile = newProfile(id, classid, className, null);
+        putProfile(id, classid, profile);
+        return profile;
+    }
+
+    /**
+     * Creates and initializes a profile instance without making
+     * it visible.
+     */
+    private Profile newProfile(
             String id, String classid, String className, InputStream data)
             throws EProfileException {
 
@@ -247,8 +406,6 @@ public class LDAPProfileSubsystem
             Profile profile = (Profile) Class.forName(className).getDeclaredConstructor().newInstance();
             profile.setId(id);
             profile.init(engineConfig, registry, profileConfig);
-            mProfiles.put(id, profile);
-            mProfileClassIds.put(id, classid);
             return profile;
 
         } catch (Exception e) {
@@ -281,7 +438,10 @@ public class LDAPProfileSubsystem
             }
         }
 
-        deletedNsUniqueIds.add(nsUniqueIds.get(id));
+        String nsUniqueId = nsUniqueIds.get(id);
+        if (nsUniqueId != null) {
+            deletedNsUniqueIds.add(nsUniqueId);
+        }
         forgetProfile(id);
     }
 
@@ -291,22 +451,21 @@ public class LDAPProfileSubsystem
         if (attr != null)
             nsUniqueId = attr.getStringValueArray()[0];
 
-       if (deletedNsUniqueIds.remove(nsUniqueId)) {
-           logger.debug("handleDELETE: delete was already effected");
+        if (nsUniqueId != null && deletedNsUniqueIds.remove(nsUniqueId)) {
+            logger.debug("handleDELETE: delete was already effected");
             return;
         }
 
-        String profileId = null;
         String dn = entry.getDN();
-        if (!dn.startsWith("cn=")) {
+        String profileId = getProfileId(dn);
+        if (profileId == null) {
             logger.debug("handleDELETE: DN " + dn + " does not start with 'cn='");
             return;
         }
-        profileId = LDAPDN.explodeDN(dn, true)[0];
         forgetProfile(profileId);
     }
 
-    private synchronized void handleMODDN(DN oldDN, LDAPEntry entry) {
+    private void handleMODDN(DN oldDN, LDAPEntry entry) {
         if (oldDN.isDescendantOf(profileContainerDN))
             forgetProfile(oldDN.explodeDN(true)[0]);
 
@@ -335,7 +494,11 @@ public class LDAPProfileSubsystem
             LDAPAttribute attr = entry.getAttribute("entryUSN");
             if (attr != null)
                 entryUSN = new BigInteger(attr.getStringValueArray()[0]);
-            entryUSNs.put(id, entryUSN);
+            if (entryUSN != null) {
+                entryUSNs.put(id, entryUSN);
+            } else {
+                entryUSNs.remove(id);
+            }
             logger.debug("commitProfile: new entryUSN = " + entryUSN);
 
             String nsUniqueId = null;
@@ -343,7 +506,9 @@ public class LDAPProfileSubsystem
             if (attr != null)
                 nsUniqueId = attr.getStringValueArray()[0];
             logger.debug("commitProfile: nsUniqueId = " + nsUniqueId);
-            nsUniqueIds.put(id, nsUniqueId);
+            if (nsUniqueId != null) {
+                nsUniqueIds.put(id, nsUniqueId);
+            }
         } catch (EBaseException e) {
             logger.error("commitProfile: Failed to commit config store of profile '" + id + ": " + e, e);
             throw new EProfileException(
@@ -357,9 +522,8 @@ public class LDAPProfileSubsystem
      * This method is used when the profile change monitor receives
      * notification that a profile was deleted.
      */
-    private void forgetProfile(String id) {
-        mProfiles.remove(id);
-        mProfileClassIds.remove(id);
+    private synchronized void forgetProfile(String id) {
+        removeProfile(id);
         entryUSNs.remove(id);
         nsUniqueIds.remove(id);
     }
@@ -381,12 +545,14 @@ public class LDAPProfileSubsystem
     public void shutdown() {
         stopped = true;
         monitor = null;
+        if (loadExecutor != null) {
+            loadExecutor.shutdownNow();
+        }
         forgetAllProfiles();
     }
 
-    private void forgetAllProfiles() {
-        mProfiles.clear();
-        mProfileClassIds.clear();
+    private synchronized void forgetAllProfiles() {
+        clearProfiles();
         entryUSNs.clear();
         nsUniqueIds.clear();
         deletedNsUniqueIds.clear();
@@ -421,6 +587,39 @@ public class LDAPProfileSubsystem
         }
     }
 
+    /**
+     * Complete the initial load: wait for the profiles that are still
+     * being loaded, forget the profiles that were not returned by the
+     * initial search, and release the threads waiting for the load.
+     */
+    private void finishLoading(Set<String> profileIds, List<Future<?>> pending, int numItemsRead) {
+
+        logger.info("Profile change monitor: waiting for " + pending.size() + " profile(s) to load");
+
+        for (Future<?> future : pending) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                logger.error("Profile change monitor: Unable to load profile: " + e.getCause(), e.getCause());
+            }
+        }
+        pending.clear();
+
+        for (String id : mProfiles.keySet()) {
+            if (!profileIds.contains(id)) {
+                logger.info("Profile change monitor: forgetting removed profile " + id);
+                forgetProfile(id);
+            }
+        }
+
+        logger.info("Profile change monitor: loaded " + mProfiles.size() + " profile(s)");
+        loader.setNumItems(numItemsRead);
+        initialLoadDone.countDown();
+    }
+
     @Override
     public void run() {
         int op = LDAPPersistSearchControl.ADD
@@ -452,12 +651,21 @@ public class LDAPProfileSubsystem
                  * we can continue to service requests while LDAP is
                  * down.
                  *
-                 * Once we reconnect, we need to forget all profiles
-                 * and reload in case some were removed in the
-                 * interim.
+                 * Once we reconnect, we need to reload all profiles in
+                 * case some were changed or removed in the interim.
+                 * The existing profiles stay visible while the initial
+                 * results are loaded, profiles whose entryUSN has not
+                 * changed are not parsed again, and profiles that no
+                 * longer exist are forgotten once the initial results
+                 * have been processed.
                  */
                 loader.startLoading();
-                forgetAllProfiles();
+
+                Set<String> profileIds = new HashSet<>();
+                List<Future<?>> pending = new ArrayList<>();
+                Integer numItems = null;
+                int numItemsRead = 0;
+                boolean loading = true;
 
                 while (!stopped && results.hasMoreElements()) {
                     LDAPEntry entry = results.next();
@@ -472,7 +680,11 @@ public class LDAPProfileSubsystem
                          * entries).  In that case AsyncLoader has a watchdog
                          * timer to interrupt waiting threads.
                          */
-                        loader.setNumItems(Integer.valueOf(entry.getAttribute("numSubordinates").getStringValueArray()[0]));
+                        numItems = Integer.valueOf(entry.getAttribute("numSubordinates").getStringValueArray()[0]);
+                        if (loading && numItemsRead >= numItems) {
+                            finishLoading(profileIds, pending, numItemsRead);
+                            loading = false;
+                        }
                         continue;
                     }
 
@@ -492,6 +704,11 @@ public class LDAPProfileSubsystem
                         /* It is not a certProfile; ignore it.  But it does
                          * contribute to numSubordinates so increment the loader. */
                         loader.increment();
+                        numItemsRead++;
+                        if (loading && numItems != null && numItemsRead >= numItems) {
+                            finishLoading(profileIds, pending, numItemsRead);
+                            loading = false;
+                        }
                         continue;
                     }
 
@@ -502,6 +719,15 @@ public class LDAPProfileSubsystem
                             LDAPEntryChangeControl.class, results.getResponseControls());
                     logger.debug("Profile change monitor: Processed change controls.");
                     if (changeControl != null) {
+
+                        /* Changes are only sent after the initial results,
+                         * so the initial load is complete even if fewer
+                         * entries than numSubordinates were returned. */
+                        if (loading) {
+                            finishLoading(profileIds, pending, numItemsRead);
+                            loading = false;
+                        }
+
                         int changeType = changeControl.getChangeType();
                         switch (changeType) {
                         case LDAPPersistSearchControl.ADD:
@@ -526,8 +752,24 @@ public class LDAPProfileSubsystem
                         }
                     } else {
                         logger.debug("Profile change monitor: immediate result");
-                        readProfile(entry);
+
+                        String profileId = getProfileId(entry.getDN());
+                        if (profileId != null) {
+                            profileIds.add(profileId);
+                        }
+
+                        if (loadExecutor == null) {
+                            readProfile(entry);
+                        } else {
+                            pending.add(loadExecutor.submit(() -> readProfile(entry)));
+                        }
+
                         loader.increment();
+                        numItemsRead++;
+                        if (loading && numItems != null && numItemsRead >= numItems) {
+                            finishLoading(profileIds, pending, numItemsRead);
+                            loading = false;
+                        }
                     }
                 }
             } catch (ELdapException e) {
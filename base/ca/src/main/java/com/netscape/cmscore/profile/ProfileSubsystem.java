@@ -138,8 +138,7 @@ public class ProfileSubsystem
             profile.setId(id);
             profile.init(engineConfig, registry, profileConfig);
 
-            mProfiles.put(id, profile);
-            mProfileClassIds.put(id, classid);
+            putProfile(id, classid, profile);
 
             if (isNew) {
                 createProfileConfig(id, classid);
@@ -193,8 +192,7 @@ public class ProfileSubsystem
         if (!file1.delete()) {
             logger.warn("ProfileSubsystem: Unable to delete configuration: " + configPath);
         }
-        mProfiles.remove(id);
-        mProfileClassIds.remove(id);
+        removeProfile(id);
         try {
             cs.commit(false);
         } catch (Exception e) {
@@ -238,7 +236,6 @@ public class ProfileSubsystem
      */
     @Override
     public void shutdown() {
-        mProfiles.clear();
-        mProfileClassIds.clear();
+        clearProfiles();
     }
 }
@@ -8,6 +8,7 @@ package org.dogtagpki.ct;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.security.KeyFactory;
 import java.security.MessageDigest;
 import java.security.PublicKey;
@@ -17,8 +18,27 @@ import java.security.spec.X509EncodedKeySpec;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.net.ntp.TimeStamp;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
 import org.dogtagpki.ct.sct.SCTProcessor;
 import org.dogtagpki.server.ca.CAEngine;
 import org.mozilla.jss.netscape.security.util.Cert;
@@ -36,10 +56,8 @@ import com.netscape.certsrv.base.EBaseException;
 import com.netscape.certsrv.ca.AuthorityID;
 import com.netscape.certsrv.util.JSONSerializer;
 import com.netscape.cmscore.cert.CertUtils;
+import com.netscape.cmscore.util.StatsSubsystem;
 import com.netscape.cmsutil.crypto.CryptoUtil;
-import com.netscape.cmsutil.http.HttpClient;
-import com.netscape.cmsutil.http.HttpRequest;
-import com.netscape.cmsutil.http.HttpResponse;
 
 /**
  * Certificate Transparency (v1) engine for CA
@@ -53,13 +71,77 @@ public class CTEngine {
     public static org.slf4j.Logger logger =
             org.slf4j.LoggerFactory.getLogger(CTEngine.class);
 
-    SCTProcessor ctConfig = null;
-    public void init()  throws Exception {
+    volatile SCTProcessor ctConfig = null;
+
+    /*
+     * Submissions to the CT log servers run concurrently on this pool.
+     * The HTTP client keeps persistent connections to each log server
+     * so that they can be reused across issuances.
+     */
+    ExecutorService executorService;
+    CloseableHttpClient httpClient;
+
+    public synchronized void init()  throws Exception {
+
+        if (ctConfig != null) {
+            return;
+        }
+
         // for getting CT config from CS.cfg
-        ctConfig = new SCTProcessor();
+        SCTProcessor config = new SCTProcessor();
 
         // Initialize CT configuration
-        ctConfig.init();
+        config.init();
+
+        int maxThreads = config.getMaxThreads();
+        int timeout = config.getTimeout();
+        logger.info("CTEngine: max threads: " + maxThreads);
+        logger.info("CTEngine: timeout: " + timeout);
+
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(maxThreads);
+        connectionManager.setDefaultMaxPerRoute(maxThreads);
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(timeout)
+                .setConnectionRequestTimeout(timeout)
+                .setSocketTimeout(timeout)
+                .build();
+
+        httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .build();
+
+        executorService = Executors.newFixedThreadPool(maxThreads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "CTEngine");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        ctConfig = config;
+    }
+
+    public synchronized void shutdown() {
+
+        if (executorService != null) {
+            executorService.shutdownNow();
+            executorService = null;
+        }
+
+        if (httpClient != null) {
+            try {
+                httpClient.close();
+            } catch (IOException e) {
+                logger.warn("CTEngine: Unable to close HTTP client: " + e.getMessage(), e);
+            }
+            httpClient = null;
+        }
+
+        ctConfig = null;
     }
 
     /**
@@ -167,50 +249,18 @@ public class CTEngine {
             byte[] tbsCert = certi.getEncodedInfo(true);
 
             List<LogServer> logServers = ctConfig.getLogServerConfig();
-            List<String> ctResponses = new ArrayList<>();
-
-            // loop through all CT log servers
-            for (LogServer ls : logServers) {
-                logger.debug(method + "Processing log server ID: " + ls.getId());
-
-                String ct_host = ls.getUrl().getHost();
-                logger.debug(method + "Log server host: " + ct_host);
-
-                int ct_port = ls.getUrl().getPort();
-                logger.debug(method + "Log server port: " + ct_port);
+            List<String> ctResponses;
 
-                // TODO: Refactor to form right rest API
-                String ct_uri = ls.getUrl() + "ct/v1/add-pre-chain";
-                logger.debug(method + "Log server URI: " + ct_uri);
+            StatsSubsystem statsSub = (StatsSubsystem) engine.getSubsystem(StatsSubsystem.ID);
+            if (statsSub != null) {
+                statsSub.startTiming("ct_submission");
+            }
 
-                String respS = certTransSendReq(ct_host, ct_port, ct_uri, ctRequest);
-                if (respS == null) {
-                    errMsg = method + "Response from CT log server null";
-                    logger.warn(errMsg);
-                    // allow for CT log to fail to respond
-                    // skip to next CT log server
-                    continue;
-                }
-                logger.debug(method + "Response from CT log server " + respS);
-
-                // verify the sct
-
-                /* TODO this should be a configurable; hardcoded for now */
-                boolean allowFailedSCTVerification = true;
-                final CTResponse response = JSONSerializer.fromJSON(respS, CTResponse.class);
-                boolean verified = verifySCT(response, tbsCert, ls.getPublicKey(), ctCA);
-                if (verified) {
-                    logger.info(method + "verifySCT returned true; SCT is valid");
-                } else {
-                    // log at WARN if !verified, regardless of how we are treating
-                    // failed verifications, because it is indicative of log server
-                    // misbehavoiur
-                    logger.warn(method + "verifySCT returns false; SCT failed to verify");
-                }
-                if (verified || allowFailedSCTVerification) {
-                    ctResponses.add(respS);
-                } else {
-                    throw new EBaseException(errMsg);
+            try {
+                ctResponses = collectSCTs(logServers, ctRequest, tbsCert, ctCA);
+            } finally {
+                if (statsSub != null) {
+                    statsSub.endTiming("ct_submission");
                 }
             }
 
@@ -238,6 +288,138 @@ public class CTEngine {
         }
     }
 
+    /**
+     * (Certificate Transparency)
+     *
+     * collectSCTs submits the pre-cert to all CT log servers concurrently
+     * and collects the responses until the configured quorum is reached
+     * or the per-issuance deadline expires, whichever comes first.
+     * Log servers that fail to respond are skipped.
+     *
+     * @param logServers enabled CT log servers
+     * @param ctRequest CT request containing the pre-cert chain
+     * @param tbsCert encoded TBSCert without the poison extension
+     * @param ctCA issuing CA
+     * @return list of CT responses
+     */
+    List<String> collectSCTs(
+            List<LogServer> logServers,
+            CTRequest ctRequest,
+            byte[] tbsCert,
+            CertificateAuthority ctCA) throws Exception {
+
+        String method = "CTEngine.collectSCTs: ";
+
+        int quorum = ctConfig.getQuorum();
+        if (quorum <= 0 || quorum > logServers.size()) {
+            quorum = logServers.size();
+        }
+        logger.debug(method + "waiting for " + quorum + " of " + logServers.size() + " CT log server(s)");
+
+        long deadline = System.currentTimeMillis() + ctConfig.getTimeout();
+
+        CompletionService<String> completionService = new ExecutorCompletionService<>(executorService);
+        List<Future<String>> futures = new ArrayList<>();
+
+        for (LogServer ls : logServers) {
+            futures.add(completionService.submit(() -> submitToLogServer(ls, ctRequest, tbsCert, ctCA)));
+        }
+
+        List<String> ctResponses = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < futures.size() && ctResponses.size() < quorum; i++) {
+
+                long remaining = Math.max(deadline - System.currentTimeMillis(), 0);
+                Future<String> future = completionService.poll(remaining, TimeUnit.MILLISECONDS);
+
+                if (future == null) {
+                    logger.warn(method + "Deadline expired with " + ctResponses.size() + " SCT(s) collected");
+                    break;
+                }
+
+                try {
+                    String respS = future.get();
+                    if (respS != null) {
+                        ctResponses.add(respS);
+                    }
+
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof EBaseException) {
+                        throw (EBaseException) cause;
+                    }
+                    // allow for CT log to fail to respond
+                    logger.warn(method + "Unable to get SCT from CT log server: " + cause.getMessage(), cause);
+                }
+            }
+
+        } finally {
+            // abandon submissions that are no longer needed
+            for (Future<String> future : futures) {
+                future.cancel(true);
+            }
+        }
+
+        logger.debug(method + "collected " + ctResponses.size() + " SCT(s)");
+        return ctResponses;
+    }
+
+    /**
+     * (Certificate Transparency)
+     *
+     * submitToLogServer sends the CT request to a single CT log server
+     * and verifies the returned SCT.
+     *
+     * @param ls CT log server
+     * @param ctRequest CT request containing the pre-cert chain
+     * @param tbsCert encoded TBSCert without the poison extension
+     * @param ctCA issuing CA
+     * @return CT response, or null if the log server did not respond
+     */
+    String submitToLogServer(
+            LogServer ls,
+            CTRequest ctRequest,
+            byte[] tbsCert,
+            CertificateAuthority ctCA) throws Exception {
+
+        String method = "CTEngine.submitToLogServer: ";
+        String errMsg = "";
+        logger.debug(method + "Processing log server ID: " + ls.getId());
+
+        // TODO: Refactor to form right rest API
+        String ct_uri = ls.getUrl() + "ct/v1/add-pre-chain";
+        logger.debug(method + "Log server URI: " + ct_uri);
+
+        String respS = certTransSendReq(ct_uri, ctRequest);
+        if (respS == null) {
+            errMsg = method + "Response from CT log server null";
+            logger.warn(errMsg);
+            return null;
+        }
+        logger.debug(method + "Response from CT log server " + respS);
+
+        // verify the sct
+
+        /* TODO this should be a configurable; hardcoded for now */
+        boolean allowFailedSCTVerification = true;
+        final CTResponse response = JSONSerializer.fromJSON(respS, CTResponse.class);
+        boolean verified = verifySCT(response, tbsCert, ls.getPublicKey(), ctCA);
+        if (verified) {
+            logger.info(method + "verifySCT returned true; SCT is valid");
+        } else {
+            // log at WARN if !verified, regardless of how we are treating
+            // failed verifications, because it is indicative of log server
+            // misbehavoiur
+            logger.warn(method + "verifySCT returns false; SCT failed to verify");
+        }
+        if (verified || allowFailedSCTVerification) {
+            return respS;
+        }
+
+        throw new EBaseException(method + "SCT from CT log server " + ls.getId() + " failed to verify");
+    }
+
     /**
      * (Certificate Transparency)
      *
@@ -665,42 +847,40 @@ public class CTEngine {
 
     /**
      * (Certificate Transparency)
-     * certTransSendReq connects to CT host and send ct request
-     * @param ct_host host name
-     * @param ct_port port #
+     * certTransSendReq sends ct request to the CT host over a
+     * pooled persistent connection
      * @param ct_uri uri of the CT log server
      * @param ctReq CT request
      * @return response content from CT log server
      */
-    private String certTransSendReq(String ct_host, int ct_port, String ct_uri, CTRequest ctReq) {
+    private String certTransSendReq(String ct_uri, CTRequest ctReq) {
         String method = "CTEngine.certTransSendReq: ";
-        HttpClient client = new HttpClient();
-        HttpRequest req = new HttpRequest();
-        HttpResponse resp = null;
 
         logger.debug(method + "begins");
-        try {
-            client.connect(ct_host, ct_port);
-            req.setMethod("POST");
-            req.setURI(ct_uri);
-            req.setHeader("Content-Type", "application/json");
-            req.setContent(ctReq.toString());
-            req.setHeader("Content-Length", Integer.toString(ctReq.toString().length()));
-
-            resp = client.send(req);
-            if (resp == null)
+
+        HttpPost post = new HttpPost(ct_uri);
+        post.setEntity(new StringEntity(ctReq.toString(), ContentType.APPLICATION_JSON));
+
+        try (CloseableHttpResponse resp = httpClient.execute(post)) {
+            logger.debug("status " + resp.getStatusLine());
+
+            // consume the entity fully so the connection can be reused
+            HttpEntity entity = resp.getEntity();
+            String content = entity == null ? null : EntityUtils.toString(entity, StandardCharsets.UTF_8);
+            logger.debug("content " + content);
+
+            if (resp.getStatusLine().getStatusCode() != HttpStatus.SC_OK) {
+                logger.warn(method + "CT log server returned " + resp.getStatusLine());
                 return null;
-            logger.debug("version " + resp.getHttpVers());
-            logger.debug("status code " + resp.getStatusCode());
-            logger.debug("reason " + resp.getReasonPhrase());
-            logger.debug("content " + resp.getContent());
-            logger.debug("CAService.certTransSendReq ends");
+            }
+
+            logger.debug(method + "ends");
+            return content;
+
         } catch (Exception e) {
             logger.debug(method + e.toString());
             return null;
         }
-
-        return (resp.getContent());
     }
 
 }
@@ -65,6 +65,32 @@ public class SCTProcessor {
         }
     }
 
+    /**
+     * Number of SCTs to collect before the CT stage of an issuance
+     * completes (ca.certTransparency.quorum). A value of 0 or a value
+     * larger than the number of enabled log servers means that all
+     * enabled log servers will be waited for.
+     */
+    public int getQuorum() throws EBaseException {
+        return mConfig.getInteger("quorum", 0);
+    }
+
+    /**
+     * Maximum time in milliseconds to wait for the CT log servers to
+     * respond during a single issuance (ca.certTransparency.timeout).
+     */
+    public int getTimeout() throws EBaseException {
+        return mConfig.getInteger("timeout", 10000);
+    }
+
+    /**
+     * Maximum number of concurrent submissions to the CT log servers
+     * (ca.certTransparency.maxThreads).
+     */
+    public int getMaxThreads() throws EBaseException {
+        return mConfig.getInteger("maxThreads", 10);
+    }
+
     /**
      * Read log server configuration from CA's CS.cfg
      *
@@ -82,6 +108,9 @@ public class SCTProcessor {
      * ca.certTransparency.log.2.url=http://ct.googleapis.com:80/logs/crucible/
      * ca.certTransparency.log.2.version=1
      * ca.certTransparency.log.num=2
+     * ca.certTransparency.quorum=0
+     * ca.certTransparency.timeout=10000
+     * ca.certTransparency.maxThreads=10
      * }
      * </pre>
      *
@@ -63,6 +63,34 @@ public class CAConfig extends ConfigStore {
         putBoolean("ocspUseCacheIncludeExpiredCerts", ocspUseCacheIncludeExpiredCerts);
     }
 
+    public boolean getOCSPStatusCache() throws EBaseException {
+        return getBoolean("ocspStatusCache", false);
+    }
+
+    public void setOCSPStatusCache(boolean ocspStatusCache) {
+        putBoolean("ocspStatusCache", ocspStatusCache);
+    }
+
+    public int getOCSPStatusCacheSize() throws EBaseException {
+        return getInteger("ocspStatusCacheSize", 100000);
+    }
+
+    public void setOCSPStatusCacheSize(int ocspStatusCacheSize) {
+        putInteger("ocspStatusCacheSize", ocspStatusCacheSize);
+    }
+
+    /**
+     * Returns the time in seconds serial numbers not found in the
+     * repository are cached.
+     */
+    public int getOCSPStatusCacheNotFoundTimeout() throws EBaseException {
+        return getInteger("ocspStatusCacheNotFoundTimeout", 60);
+    }
+
+    public void setOCSPStatusCacheNotFoundTimeout(int ocspStatusCacheNotFoundTimeout) {
+        putInteger("ocspStatusCacheNotFoundTimeout", ocspStatusCacheNotFoundTimeout);
+    }
+
     /**
      * Returns ca.publish.* parameters.
      */
@@ -18,10 +18,10 @@
 
 package org.dogtagpki.server.ca;
 
+import java.io.File;
 import java.io.IOException;
 import java.math.BigInteger;
 import java.security.KeyPair;
-import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.PublicKey;
 import java.security.SecureRandom;
@@ -39,6 +39,10 @@ import java.util.Hashtable;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpSession;
@@ -47,6 +51,7 @@ import org.apache.commons.lang3.StringUtils;
 import org.dogtagpki.common.CAInfo;
 import org.dogtagpki.common.KRAInfo;
 import org.dogtagpki.common.KRAInfoClient;
+import org.dogtagpki.ct.CTEngine;
 import org.dogtagpki.legacy.ca.CAPolicy;
 import org.dogtagpki.legacy.ca.CAPolicyConfig;
 import org.dogtagpki.server.authentication.AuthToken;
@@ -85,6 +90,7 @@ import com.netscape.ca.CRLIssuingPointConfig;
 import com.netscape.ca.CertificateAuthority;
 import com.netscape.ca.KeyRetriever;
 import com.netscape.ca.KeyRetrieverRunner;
+import com.netscape.ca.RevocationPipeline;
 import com.netscape.certsrv.authentication.ISharedToken;
 import com.netscape.certsrv.base.BadRequestDataException;
 import com.netscape.certsrv.base.EBaseException;
@@ -136,6 +142,8 @@ import com.netscape.cmscore.cert.CertUtils;
 import com.netscape.cmscore.cert.CrossCertPairSubsystem;
 import com.netscape.cmscore.dbs.CRLRepository;
 import com.netscape.cmscore.dbs.CertRecord;
+import com.netscape.cmscore.dbs.CertExpiryTimeline;
+import com.netscape.cmscore.dbs.CertStatusCache;
 import com.netscape.cmscore.dbs.CertStatusUpdateTask;
 import com.netscape.cmscore.dbs.CertificateRepository;
 import com.netscape.cmscore.dbs.ReplicaIDRepository;
@@ -181,6 +189,7 @@ public class CAEngine extends CMSEngine {
 
     protected CAPolicy caPolicy;
     protected CAService caService;
+    protected CTEngine ctEngine = new CTEngine();
 
     protected CertificateVersion defaultCertVersion;
     protected long defaultCertValidity;
@@ -199,6 +208,10 @@ public class CAEngine extends CMSEngine {
     protected boolean ocspResponderByName = true;
     protected CRLPublisher crlPublisher;
     protected CAPublisherProcessor publisherProcessor;
+    protected RevocationPipeline revocationPipeline;
+
+    // shared by all batch enrollments, created on first use
+    protected ExecutorService batchEnrollmentExecutor;
 
     protected Map<String, CRLIssuingPoint> crlIssuingPoints = new HashMap<>();
 
@@ -294,6 +307,16 @@ public class CAEngine extends CMSEngine {
         return caService;
     }
 
+    /**
+     * Retrieves the Certificate Transparency engine shared by all
+     * issuances so that its connections can be reused.
+     *
+     * @return CT engine
+     */
+    public CTEngine getCTEngine() {
+        return ctEngine;
+    }
+
     /**
      * Retrieves the default certificate version.
      *
@@ -380,6 +403,42 @@ public class CAEngine extends CMSEngine {
         return publisherProcessor;
     }
 
+    public RevocationPipeline getRevocationPipeline() {
+        return revocationPipeline;
+    }
+
+    /**
+     * Returns the thread pool that processes the items of batch
+     * enrollments. The pool is shared by all batches, so the number
+     * of items enrolled concurrently is bounded by
+     * ca.enrollment.batch.threads regardless of the number of batches.
+     */
+    public synchronized ExecutorService getBatchEnrollmentExecutor() throws EBaseException {
+
+        if (batchEnrollmentExecutor == null) {
+
+            int threads = config.getInteger(
+                    EnrollmentProcessor.PROP_BATCH_THREADS,
+                    EnrollmentProcessor.DEFAULT_BATCH_THREADS);
+            logger.info("CAEngine: Creating batch enrollment pool with " + threads + " thread(s)");
+
+            ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+            AtomicInteger counter = new AtomicInteger();
+
+            batchEnrollmentExecutor = Executors.newFixedThreadPool(Math.max(1, threads), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "BatchEnrollment-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    thread.setContextClassLoader(classLoader);
+                    return thread;
+                }
+            });
+        }
+
+        return batchEnrollmentExecutor;
+    }
+
     public Collection<CRLIssuingPoint> getCRLIssuingPoints() {
         return crlIssuingPoints.values();
     }
@@ -942,6 +1001,18 @@ public class CAEngine extends CMSEngine {
         int maxRecords = caConfig.getInteger(CertificateRepository.PROP_TRANS_MAXRECORDS, 1000000);
         logger.info("CAEngine: - max records: " + maxRecords);
 
+        int threads = caConfig.getInteger("certStatusUpdateThreads", 0);
+        logger.info("CAEngine: - threads: " + threads);
+
+        int partitions = caConfig.getInteger("certStatusUpdatePartitions", 16);
+        logger.info("CAEngine: - partitions: " + partitions);
+
+        int batchSize = caConfig.getInteger("certStatusUpdateBatchSize", 100);
+        logger.info("CAEngine: - batch size: " + batchSize);
+
+        int lookbackDays = caConfig.getInteger("certStatusUpdateLookbackDays", 3650);
+        logger.info("CAEngine: - lookback days: " + lookbackDays);
+
         if (certStatusUpdateTask != null) {
             certStatusUpdateTask.stop();
         }
@@ -950,11 +1021,28 @@ public class CAEngine extends CMSEngine {
             retrieveModificationsTask.stop();
         }
 
+        certificateRepository.setExpiryTimeline(null);
+
         if (interval == 0) {
             logger.info("CAEngine: Cert status update task is disabled");
             return;
         }
 
+        ConfigStore timelineConfig = caConfig.getSubStore("expiryTimeline", ConfigStore.class);
+        boolean timelineEnabled = timelineConfig.getBoolean("enable", false);
+        logger.info("CAEngine: - expiry timeline: " + timelineEnabled);
+
+        if (timelineEnabled) {
+            int bucketSize = timelineConfig.getInteger("bucketSize", 60);
+            logger.info("CAEngine:   - bucket size: " + bucketSize + " seconds");
+
+            int horizon = timelineConfig.getInteger("horizon", 7 * 24 * 60 * 60);
+            logger.info("CAEngine:   - horizon: " + horizon + " seconds");
+
+            // the timeline is loaded by the cert status update task
+            certificateRepository.setExpiryTimeline(new CertExpiryTimeline(bucketSize, horizon));
+        }
+
         if (listenToCloneModifications) {
             logger.info("CAEngine: Starting retrieve modifications task");
             retrieveModificationsTask = new RetrieveModificationsTask(certificateRepository);
@@ -967,6 +1055,9 @@ public class CAEngine extends CMSEngine {
                 interval,
                 pageSize,
                 maxRecords);
+        certStatusUpdateTask.setPartitioning(threads, partitions, batchSize, lookbackDays);
+        certStatusUpdateTask.setCheckpointFile(
+                new File(instanceDir + "/conf/" + id + "/certStatusUpdate.checkpoint"));
         certStatusUpdateTask.start();
     }
 
@@ -1055,6 +1146,9 @@ public class CAEngine extends CMSEngine {
         logger.info("CAEngine: Initializing CA service");
         caService = new CAService();
 
+        revocationPipeline = new RevocationPipeline(this);
+        revocationPipeline.init();
+
         logger.info("CAEngine: Initializing CA request notifier");
         requestNotifier = new CANotify();
         requestNotifier.setCMSEngine(this);
@@ -1341,13 +1435,7 @@ public class CAEngine extends CMSEngine {
     }
 
     public CertificateAuthority getCA(X500Name dn) {
-
-        for (CertificateAuthority ca : getCAs()) {
-            if (ca.getX500Name().equals(dn))
-                return ca;
-        }
-
-        return null;
+        return authorityMonitor.index.getCA(dn);
     }
 
     public X509CertImpl generateSigningCert(
@@ -1529,7 +1617,7 @@ public class CAEngine extends CMSEngine {
         }
 
         CertificateAuthority ca = createCA(parentCA, authToken, subjectDN, description);
-        authorityMonitor.authorities.put(ca.getAuthorityID(), ca);
+        authorityMonitor.addCA(ca.getAuthorityID(), ca);
 
         return ca;
     }
@@ -1908,6 +1996,11 @@ public class CAEngine extends CMSEngine {
 
         ca.setCertSigningUnit(certSigningUnit);
 
+        if (authorityMonitor != null) {
+            // the issuer hashes depend on the signing cert
+            authorityMonitor.index.update(ca);
+        }
+
         org.mozilla.jss.crypto.X509Certificate caCert = certSigningUnit.getCert();
         logger.info("CAEngine: - nickname: " + caCert.getNickname());
 
@@ -2270,7 +2363,7 @@ public class CAEngine extends CMSEngine {
 
         logger.info("CAEngine: Initializing cert repository");
 
-        ConfigStore caConfig = mConfig.getSubStore(CertificateAuthority.ID, ConfigStore.class);
+        CAConfig caConfig = getConfig().getCAConfig();
         int increment = caConfig.getInteger(CertificateRepository.PROP_INCREMENT, 5);
         logger.info("CAEngine: - increment: " + increment);
 
@@ -2279,6 +2372,24 @@ public class CAEngine extends CMSEngine {
         certificateRepository = new CertificateRepository(secureRandom, dbSubsystem);
         certificateRepository.setCMSEngine(this);
         certificateRepository.init();
+
+        boolean statusCacheEnabled = caConfig.getOCSPStatusCache();
+        logger.info("CAEngine: - OCSP status cache: " + statusCacheEnabled);
+
+        if (statusCacheEnabled) {
+            int size = caConfig.getOCSPStatusCacheSize();
+            logger.info("CAEngine:   - size: " + size);
+
+            int notFoundTimeout = caConfig.getOCSPStatusCacheNotFoundTimeout();
+            logger.info("CAEngine:   - not found timeout: " + notFoundTimeout + " seconds");
+
+            if (!caConfig.getBoolean("listenToCloneModifications", false)) {
+                logger.warn("CAEngine: OCSP status cache will not see changes made by clones"
+                        + " unless ca.listenToCloneModifications is enabled");
+            }
+
+            certificateRepository.setStatusCache(new CertStatusCache(size, notFoundTimeout * 1000L));
+        }
     }
 
     public void initCrlDatabase() throws Exception {
@@ -2710,26 +2821,16 @@ public class CAEngine extends CMSEngine {
          *    Otherwise, we move forward to generate and sign the
          *    aggregate OCSP response.
          */
-        for (CertificateAuthority ocspCA : getCAs()) {
+        if (authorityMonitor != null) {
             Request request = tbsRequest.getRequestAt(0);
             CertID certID = request.getCertID();
-            byte[] nameHash = null;
-            String digestName = certID.getDigestName();
 
-            if (digestName != null) {
-                try {
-                    MessageDigest md = MessageDigest.getInstance(digestName);
-                    nameHash = md.digest(ocspCA.getSubjectObj().getX500Name().getEncoded());
-                } catch (NoSuchAlgorithmException | IOException e) {
-                    logger.warn("CAEngine: OCSP request hash algorithm " + digestName + " not recognised: " + e.getMessage(), e);
-                }
-            }
+            CertificateAuthority ocspCA = authorityMonitor.index.getCAByNameHash(
+                    certID.getDigestName(),
+                    certID.getIssuerNameHash().toByteArray());
 
-            if (Arrays.equals(nameHash, certID.getIssuerNameHash().toByteArray())) {
-                if (ocspCA != ca) {
-                    return validate(ocspCA, ocspRequest);
-                }
-                break;
+            if (ocspCA != null && ocspCA != ca) {
+                return validate(ocspCA, ocspRequest);
             }
         }
 
@@ -2935,9 +3036,22 @@ public class CAEngine extends CMSEngine {
             certificateRepository.shutdown();
         }
 
+        if (revocationPipeline != null) {
+            revocationPipeline.shutdown();
+        }
+
+        synchronized (this) {
+            if (batchEnrollmentExecutor != null) {
+                batchEnrollmentExecutor.shutdownNow();
+                batchEnrollmentExecutor = null;
+            }
+        }
+
         if (publisherProcessor != null) {
             publisherProcessor.shutdown();
         }
+
+        ctEngine.shutdown();
     }
 
     public void shutdownAuthorityMonitor() {
@@ -5,10 +5,23 @@
 //
 package org.dogtagpki.server.ca.job;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.Collection;
 import java.util.Date;
-import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.dogtagpki.server.ca.CAEngine;
 import org.mozilla.jss.netscape.security.x509.X509CertImpl;
@@ -16,16 +29,19 @@ import org.mozilla.jss.netscape.security.x509.X509CertImpl;
 import com.netscape.certsrv.base.EBaseException;
 import com.netscape.certsrv.base.IExtendedPluginInfo;
 import com.netscape.certsrv.base.MetaInfo;
+import com.netscape.certsrv.dbs.IDBObj;
 import com.netscape.certsrv.dbs.certdb.CertId;
 import com.netscape.certsrv.request.RequestId;
 import com.netscape.certsrv.request.RequestStatus;
 import com.netscape.cms.jobs.Job;
+import com.netscape.cmscore.apps.CMS;
 import com.netscape.cmscore.dbs.CertRecord;
+import com.netscape.cmscore.dbs.CertStatusRecord;
 import com.netscape.cmscore.dbs.CertificateRepository;
+import com.netscape.cmscore.dbs.DBParallelSearch;
 import com.netscape.cmscore.dbs.Repository.IDGenerator;
 import com.netscape.cmscore.jobs.JobConfig;
 import com.netscape.cmscore.jobs.JobsScheduler;
-import com.netscape.cmscore.request.Request;
 import com.netscape.cmscore.request.RequestRecord;
 import com.netscape.cmscore.request.RequestRepository;
 
@@ -34,19 +50,88 @@ import com.netscape.cmscore.request.RequestRepository;
  */
 public class PruningJob extends Job implements IExtendedPluginInfo {
 
+    public static final long MIN_DELAY = 10;
+    public static final long MAX_DELAY = 10000;
+
     int certRetentionTime;
     int certRetentionUnit;
     int certSearchSizeLimit;
     int certSearchTimeLimit;
+    int certSearchThreads;
+    int certBatchSize;
 
     int requestRetentionTime;
     int requestRetentionUnit;
     int requestSearchSizeLimit;
     int requestSearchTimeLimit;
+    int requestSearchThreads;
+    int requestBatchSize;
+
+    int cursorRanges;
+    boolean treeDelete;
+    int maxLatency;
 
     CertificateRepository certRepository;
     RequestRepository requestRepository;
 
+    // progress of the current or last run
+    volatile boolean running;
+    volatile Date startTime;
+    volatile Date endTime;
+    AtomicLong certsPruned = new AtomicLong();
+    AtomicLong certsFailed = new AtomicLong();
+    AtomicLong requestsPruned = new AtomicLong();
+    AtomicLong requestsFailed = new AtomicLong();
+
+    // delay between batches in milliseconds
+    long delay;
+
+    // start of the range where the next run resumes for each
+    // record type, stored in the cursor file across restarts
+    Map<String, String> cursors = new HashMap<>();
+    File cursorFile;
+
+    public interface BatchDeleter<T> {
+        void delete(List<T> records) throws Exception;
+    }
+
+    /**
+     * Collects the records found by concurrent threads into batches.
+     */
+    public static class Batch<T> {
+
+        int size;
+        List<T> records = new ArrayList<>();
+
+        public Batch(int size) {
+            this.size = size;
+        }
+
+        /**
+         * Adds a record and returns the batch if it is full.
+         */
+        public synchronized List<T> add(T record) {
+
+            records.add(record);
+            if (records.size() < size) {
+                return null;
+            }
+
+            List<T> batch = records;
+            records = new ArrayList<>();
+            return batch;
+        }
+
+        /**
+         * Returns the remaining records.
+         */
+        public synchronized List<T> drain() {
+            List<T> batch = records;
+            records = new ArrayList<>();
+            return batch;
+        }
+    }
+
     @Override
     public String[] getConfigParams() {
         return new String[] {
@@ -56,10 +141,17 @@ public class PruningJob extends Job implements IExtendedPluginInfo {
                 "certRetentionUnit",
                 "certSearchSizeLimit",
                 "certSearchTimeLimit",
+                "certSearchThreads",
+                "certBatchSize",
                 "requestRetentionTime",
                 "requestRetentionUnit",
                 "requestSearchSizeLimit",
-                "requestSearchTimeLimit"
+                "requestSearchTimeLimit",
+                "requestSearchThreads",
+                "requestBatchSize",
+                "cursorRanges",
+                "treeDelete",
+                "maxLatency"
         };
     }
 
@@ -76,10 +168,21 @@ public class PruningJob extends Job implements IExtendedPluginInfo {
                 "certRetentionUnit;integer;Certificate retention unit: year, month, day (default), hour, minute",
                 "certSearchSizeLimit;integer;Certificate search size limit (default: 1000)",
                 "certSearchTimeLimit;integer;Certificate search time limit in seconds (default: 0)",
+                "certSearchThreads;integer;Number of ranges searched concurrently and threads deleting" +
+                        " certificates (default: 1)",
+                "certBatchSize;integer;Number of certificates deleted per batch (default: 100)",
                 "requestRetentionTime;integer;Request retention time (default: 30)",
                 "requestRetentionUnit;integer;Request retention unit: year, month, day (default), hour, minute",
                 "requestSearchSizeLimit;integer;Request search size limit (default: 1000)",
                 "requestSearchTimeLimit;integer;Request search time limit in seconds (default: 0)",
+                "requestSearchThreads;integer;Number of ranges searched concurrently and threads deleting" +
+                        " requests (default: 1)",
+                "requestBatchSize;integer;Number of requests deleted per batch (default: 100)",
+                "cursorRanges;integer;Number of ID ranges to search, each run resumes from the first" +
+                        " range the previous run did not complete, also after a restart (default: 64)",
+                "treeDelete;boolean;Delete records with the LDAP tree delete control (default: false)",
+                "maxLatency;integer;Maximum average deletion time per record in milliseconds before" +
+                        " the job slows down, 0 to disable (default: 0)",
                 IExtendedPluginInfo.HELP_TOKEN + ";configuration-jobrules-pruningjobs",
         };
     }
@@ -130,6 +233,12 @@ public class PruningJob extends Job implements IExtendedPluginInfo {
         certSearchTimeLimit = config.getInteger("certSearchTimeLimit", 0);
         logger.info("PruningJob: - cert search time limit: " + certSearchTimeLimit);
 
+        certSearchThreads = config.getInteger("certSearchThreads", 1);
+        logger.info("PruningJob: - cert search threads: " + certSearchThreads);
+
+        certBatchSize = config.getInteger("certBatchSize", 100);
+        logger.info("PruningJob: - cert batch size: " + certBatchSize);
+
         requestRetentionTime = config.getInteger("requestRetentionTime", 30);
         logger.info("PruningJob: - request retention time: " + requestRetentionTime);
 
@@ -144,6 +253,238 @@ public class PruningJob extends Job implements IExtendedPluginInfo {
         // default LDAPSearchConstraints.serverTimeLimit is 0
         requestSearchTimeLimit = config.getInteger("requestSearchTimeLimit", 0);
         logger.info("PruningJob: - request search time limit: " + requestSearchTimeLimit);
+
+        requestSearchThreads = config.getInteger("requestSearchThreads", 1);
+        logger.info("PruningJob: - request search threads: " + requestSearchThreads);
+
+        requestBatchSize = config.getInteger("requestBatchSize", 100);
+        logger.info("PruningJob: - request batch size: " + requestBatchSize);
+
+        cursorRanges = config.getInteger("cursorRanges", 64);
+        logger.info("PruningJob: - cursor ranges: " + cursorRanges);
+
+        treeDelete = config.getBoolean("treeDelete", false);
+        logger.info("PruningJob: - tree delete: " + treeDelete);
+
+        maxLatency = config.getInteger("maxLatency", 0);
+        logger.info("PruningJob: - max latency: " + maxLatency);
+
+        cursorFile = new File(CMS.getInstanceDir() + "/conf/" + engine.getID() + "/" + id + ".cursor");
+        logger.info("PruningJob: - cursor file: " + cursorFile);
+
+        loadCursors();
+    }
+
+    @Override
+    public Map<String, String> getStatus() {
+
+        Map<String, String> status = new LinkedHashMap<>();
+        status.put("running", Boolean.toString(running));
+
+        Date startTime = this.startTime;
+        if (startTime == null) {
+            return status;
+        }
+
+        Date endTime = this.endTime;
+        status.put("startTime", startTime.toString());
+        if (endTime != null) {
+            status.put("endTime", endTime.toString());
+        }
+
+        long pruned = certsPruned.get() + requestsPruned.get();
+        long elapsedTime = (endTime == null ? System.currentTimeMillis() : endTime.getTime()) - startTime.getTime();
+
+        status.put("certsPruned", Long.toString(certsPruned.get()));
+        status.put("certsFailed", Long.toString(certsFailed.get()));
+        status.put("requestsPruned", Long.toString(requestsPruned.get()));
+        status.put("requestsFailed", Long.toString(requestsFailed.get()));
+        status.put("rate", String.format("%.1f", elapsedTime == 0 ? 0.0 : pruned * 1000.0 / elapsedTime));
+        status.put("delay", Long.toString(getDelay()));
+        status.put("certCursor", getCursor("certCursor"));
+        status.put("requestCursor", getCursor("requestCursor"));
+
+        return status;
+    }
+
+    synchronized long getDelay() {
+        return delay;
+    }
+
+    synchronized String getCursor(String name) {
+        return cursors.getOrDefault(name, "");
+    }
+
+    synchronized void setCursor(String name, String cursor) {
+        cursors.put(name, cursor);
+        storeCursors();
+    }
+
+    synchronized void loadCursors() {
+
+        if (cursorFile == null || !cursorFile.exists()) {
+            return;
+        }
+
+        Properties props = new Properties();
+        try (InputStream in = new FileInputStream(cursorFile)) {
+            props.load(in);
+
+        } catch (Exception e) {
+            logger.warn("PruningJob: Unable to load cursors: " + e.getMessage(), e);
+            return;
+        }
+
+        for (String name : props.stringPropertyNames()) {
+            String cursor = props.getProperty(name);
+            logger.info("PruningJob: - " + name + ": " + cursor);
+            cursors.put(name, cursor);
+        }
+    }
+
+    synchronized void storeCursors() {
+
+        if (cursorFile == null) {
+            return;
+        }
+
+        Properties props = new Properties();
+        props.putAll(cursors);
+
+        try (OutputStream out = new FileOutputStream(cursorFile)) {
+            props.store(out, "Pruning job cursors");
+
+        } catch (Exception e) {
+            logger.warn("PruningJob: Unable to store cursors: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Adjusts the delay between batches to the deletion latency:
+     * the delay doubles while the average time to delete a record
+     * exceeds the maximum latency and halves otherwise.
+     */
+    synchronized long updateDelay(long elapsedTime, int count) {
+
+        if (maxLatency <= 0 || count == 0) {
+            return 0;
+        }
+
+        long latency = elapsedTime / count;
+
+        if (latency > maxLatency) {
+            delay = Math.min(Math.max(delay * 2, MIN_DELAY), MAX_DELAY);
+
+        } else {
+            delay = delay / 2 < MIN_DELAY ? 0 : delay / 2;
+        }
+
+        return delay;
+    }
+
+    void throttle(long startTime, int count) throws InterruptedException {
+
+        long delay = updateDelay(System.currentTimeMillis() - startTime, count);
+        if (delay == 0) {
+            return;
+        }
+
+        logger.debug("PruningJob: Waiting " + delay + " ms");
+        Thread.sleep(delay);
+    }
+
+    /**
+     * Returns the index of the range where the cursor points to.
+     */
+    int findRange(List<DBParallelSearch.Range> ranges, String cursor) {
+
+        if (cursor == null || cursor.isEmpty()) {
+            return 0;
+        }
+
+        BigInteger id = new BigInteger(cursor, 16);
+
+        for (int i = 0; i < ranges.size(); i++) {
+            DBParallelSearch.Range range = ranges.get(i);
+            BigInteger start = range.getStart();
+            BigInteger end = range.getEnd();
+
+            // the ranges may have changed since the cursor was saved
+            if ((start == null || start.compareTo(id) <= 0) && (end == null || id.compareTo(end) < 0)) {
+                return i;
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * Searches all ranges concurrently starting from the range stored
+     * in the cursor and deletes the records found in batches. The
+     * ranges are started in order, so when a size or time limit stops
+     * the search the cursor is moved to the first range that has not
+     * been searched completely and the next run resumes there instead
+     * of searching the same records again.
+     */
+    <T extends IDBObj> void pruneRecords(
+            String cursorName,
+            DBParallelSearch<T> search,
+            BigInteger idLimit,
+            long sizeLimit,
+            int timeLimit,
+            int batchSize,
+            BatchDeleter<T> deleter) throws EBaseException {
+
+        List<DBParallelSearch.Range> ranges = DBParallelSearch.createRanges(idLimit, cursorRanges);
+
+        String cursor = getCursor(cursorName);
+        int index = findRange(ranges, cursor);
+        logger.info("PruningJob: - " + cursorName + ": " + ranges.get(index));
+
+        // search the ranges in order starting from the cursor
+        List<DBParallelSearch.Range> orderedRanges = new ArrayList<>();
+        orderedRanges.addAll(ranges.subList(index, ranges.size()));
+        orderedRanges.addAll(ranges.subList(0, index));
+
+        search.setRanges(orderedRanges);
+        search.setSizeLimit(sizeLimit);
+        search.setTimeLimit(timeLimit);
+
+        Batch<T> batch = new Batch<>(batchSize);
+
+        DBParallelSearch.Stats stats = search.run(record -> {
+            List<T> records = batch.add(record);
+            if (records != null) {
+                deleter.delete(records);
+            }
+        });
+
+        List<T> records = batch.drain();
+        if (!records.isEmpty()) {
+            try {
+                deleter.delete(records);
+            } catch (Exception e) {
+                throw new EBaseException("Unable to prune records: " + e.getMessage(), e);
+            }
+        }
+
+        // resume from the first range that was not searched completely,
+        // or keep the cursor if all ranges were searched
+        DBParallelSearch.Range next = orderedRanges.get(0);
+        for (DBParallelSearch.Range range : orderedRanges) {
+            if (!stats.isCompleted(range)) {
+                next = range;
+                break;
+            }
+        }
+
+        BigInteger start = next.getStart();
+        String newCursor = start == null ? "" : start.toString(16);
+
+        if (!newCursor.equals(cursor)) {
+            logger.info("PruningJob: Moving " + cursorName + " to " + next);
+            setCursor(cursorName, newCursor);
+        }
     }
 
     public void pruneCertRecord(CertRecord certRecord) throws Exception {
@@ -172,6 +513,60 @@ public class PruningJob extends Job implements IExtendedPluginInfo {
         requestRepository.removeRequest(requestID);
     }
 
+    /**
+     * Deletes a batch of expired certificates and their requests.
+     */
+    public void pruneCertRecords(List<CertStatusRecord> certRecords) throws Exception {
+
+        long startTime = System.currentTimeMillis();
+
+        List<BigInteger> serialNumbers = new ArrayList<>();
+        for (CertStatusRecord certRecord : certRecords) {
+            CertId certID = new CertId(certRecord.getSerialNumber());
+            logger.info("PruningJob: Pruning cert " + certID.toHexString());
+            logger.info("PruningJob: - expired: " + certRecord.getNotAfter());
+            serialNumbers.add(certRecord.getSerialNumber());
+        }
+
+        List<BigInteger> deleted = certRepository.deleteCertificateRecords(serialNumbers, treeDelete);
+        certsPruned.addAndGet(deleted.size());
+        certsFailed.addAndGet(serialNumbers.size() - deleted.size());
+
+        Set<BigInteger> deletedSet = new HashSet<>(deleted);
+        List<RequestId> requestIDs = new ArrayList<>();
+
+        for (CertStatusRecord certRecord : certRecords) {
+
+            if (!deletedSet.contains(certRecord.getSerialNumber())) {
+                continue;
+            }
+
+            CertId certID = new CertId(certRecord.getSerialNumber());
+
+            MetaInfo metaInfo = certRecord.getMetaInfo();
+            if (metaInfo == null) {
+                logger.info("PruningJob: Cert " + certID.toHexString() + " has no metadata");
+                continue;
+            }
+
+            String requestIDString = (String) metaInfo.get(CertRecord.META_REQUEST_ID);
+            if (requestIDString == null) {
+                logger.info("PruningJob: Cert " + certID.toHexString() + " has no request");
+                continue;
+            }
+
+            RequestId requestID = new RequestId(requestIDString);
+            logger.info("PruningJob: Removing request " + requestID.toHexString() + " for cert " + certID.toHexString());
+            requestIDs.add(requestID);
+        }
+
+        if (!requestIDs.isEmpty()) {
+            requestRepository.removeRequests(requestIDs, treeDelete);
+        }
+
+        throttle(startTime, certRecords.size());
+    }
+
     public void pruneCertRecords(Calendar calendar) throws EBaseException {
 
         Calendar pruningCalendar = (Calendar) calendar.clone();
@@ -185,22 +580,46 @@ public class PruningJob extends Job implements IExtendedPluginInfo {
         String filter = "(&(x509Cert.notAfter<=" + time + ")(!(x509Cert.notAfter=" + time + ")))";
         logger.info("PruningJob: - filter: " + filter);
 
-        Enumeration<CertRecord> certRecords = certRepository.searchCertificates(
-                filter, certSearchSizeLimit, certSearchTimeLimit);
+        // only the serial number, expiration date and request ID are needed,
+        // so the certificates are neither retrieved nor decoded
+        DBParallelSearch<CertStatusRecord> search = certRepository.createStatusParallelSearch(
+                mId,
+                filter,
+                certSearchThreads);
+
+        pruneRecords(
+                "certCursor",
+                search,
+                certRepository.getIDLimit(),
+                certSearchSizeLimit,
+                certSearchTimeLimit,
+                certBatchSize,
+                this::pruneCertRecords);
+
+        logger.info("PruningJob: Pruned " + certsPruned.get() + " cert(s)");
+    }
 
-        while (certRecords.hasMoreElements()) {
-            CertRecord certRecord = certRecords.nextElement();
+    /**
+     * Deletes a batch of incomplete requests.
+     */
+    public void pruneRequestRecords(List<RequestRecord> records) throws Exception {
 
-            CertId certID = new CertId(certRecord.getSerialNumber());
-            logger.info("PruningJob: Pruning cert " + certID.toHexString());
-            logger.info("PruningJob: - expired: " + certRecord.getNotAfter());
+        long startTime = System.currentTimeMillis();
 
-            try {
-                pruneCertRecord(certRecord);
-            } catch (Exception e) {
-                logger.warn("Unable to prune cert " + certID.toHexString() + ": " + e.getMessage(), e);
-            }
+        List<RequestId> requestIDs = new ArrayList<>();
+        for (RequestRecord record : records) {
+            RequestId requestID = record.getRequestId();
+            logger.info("PruningJob: Pruning request " + requestID.toHexString());
+            logger.info("PruningJob: - status: " + record.get(RequestRecord.ATTR_REQUEST_STATE));
+            logger.info("PruningJob: - last modified: " + record.get(RequestRecord.ATTR_MODIFY_TIME));
+            requestIDs.add(requestID);
         }
+
+        List<RequestId> removed = requestRepository.removeRequests(requestIDs, treeDelete);
+        requestsPruned.addAndGet(removed.size());
+        requestsFailed.addAndGet(requestIDs.size() - removed.size());
+
+        throttle(startTime, records.size());
     }
 
     public void pruneRequestRecords(Calendar calendar) throws EBaseException {
@@ -219,22 +638,26 @@ public class PruningJob extends Job implements IExtendedPluginInfo {
                 "(!(" + RequestRecord.ATTR_MODIFY_TIME + "=" + time + ")))";
         logger.info("PruningJob: - filter: " + filter);
 
-        Collection<RequestRecord> records = requestRepository.listRequestsByFilter(
-                filter, requestSearchSizeLimit, requestSearchTimeLimit);
-
-        for (RequestRecord record : records) {
-            Request request = record.toRequest();
-            RequestId requestID = request.getRequestId();
-            logger.info("PruningJob: Pruning request " + requestID.toHexString());
-            logger.info("PruningJob: - status: " + request.getRequestStatus());
-            logger.info("PruningJob: - last modified: " + request.getModificationTime());
-
-            try {
-                requestRepository.removeRequest(requestID);
-            } catch (EBaseException e) {
-                logger.warn("Unable to prune cert " + requestID.toHexString() + ": " + e.getMessage(), e);
-            }
-        }
+        DBParallelSearch<RequestRecord> search = new DBParallelSearch<>(
+                mId,
+                engine.getDBSubsystem(),
+                RequestRecord.class,
+                requestRepository.getBaseDN(),
+                filter,
+                RequestRecord.ATTR_REQUEST_ID);
+        search.setSearchThreads(requestSearchThreads);
+        search.setProcessThreads(requestSearchThreads);
+
+        pruneRecords(
+                "requestCursor",
+                search,
+                requestRepository.getIDLimit(),
+                requestSearchSizeLimit,
+                requestSearchTimeLimit,
+                requestBatchSize,
+                this::pruneRequestRecords);
+
+        logger.info("PruningJob: Pruned " + requestsPruned.get() + " request(s)");
     }
 
     @Override
@@ -257,6 +680,14 @@ public class PruningJob extends Job implements IExtendedPluginInfo {
             throw new RuntimeException(message);
         }
 
+        running = true;
+        startTime = time;
+        endTime = null;
+        certsPruned.set(0);
+        certsFailed.set(0);
+        requestsPruned.set(0);
+        requestsFailed.set(0);
+
         try {
             pruneCertRecords(calendar);
         } catch (EBaseException e) {
@@ -268,5 +699,8 @@ public class PruningJob extends Job implements IExtendedPluginInfo {
         } catch (EBaseException e) {
             logger.warn("PruningJob: Unable to prune requests: " + e.getMessage(), e);
         }
+
+        endTime = new Date();
+        running = false;
     }
 }
@@ -41,7 +41,6 @@ import org.mozilla.jss.netscape.security.x509.AlgorithmId;
 import org.mozilla.jss.netscape.security.x509.CRLExtensions;
 import org.mozilla.jss.netscape.security.x509.CRLReasonExtension;
 import org.mozilla.jss.netscape.security.x509.RevocationReason;
-import org.mozilla.jss.netscape.security.x509.X500Name;
 import org.mozilla.jss.netscape.security.x509.X509CertImpl;
 import org.mozilla.jss.netscape.security.x509.X509ExtensionException;
 
@@ -49,8 +48,9 @@ import com.netscape.ca.CertificateAuthority;
 import com.netscape.certsrv.base.BadRequestException;
 import com.netscape.certsrv.base.EBaseException;
 import com.netscape.certsrv.base.PKIException;
-import com.netscape.certsrv.base.UnauthorizedException;
 import com.netscape.certsrv.cert.AgentCertResource;
+import com.netscape.certsrv.cert.CertBatchRevocationRequest;
+import com.netscape.certsrv.cert.CertBatchRevocationResults;
 import com.netscape.certsrv.cert.CertData;
 import com.netscape.certsrv.cert.CertNotFoundException;
 import com.netscape.certsrv.cert.CertRequestInfo;
@@ -63,7 +63,6 @@ import com.netscape.certsrv.logging.ILogger;
 import com.netscape.cms.servlet.base.PKIService;
 import com.netscape.cms.servlet.cert.RevocationProcessor;
 import com.netscape.cms.servlet.processors.CAProcessor;
-import com.netscape.cmscore.apps.CMS;
 import com.netscape.cmscore.dbs.CertRecord;
 import com.netscape.cmscore.dbs.CertificateRepository;
 import com.netscape.cmscore.dbs.RevocationInfo;
@@ -165,7 +164,6 @@ public class AgentCertService extends PKIService implements AgentCertResource {
 
         CAEngine engine = CAEngine.getInstance();
 
-        X500Name caX500DN = null;
         RevocationProcessor processor;
         try {
             processor = new RevocationProcessor("caDoRevoke-agent", getLocale(headers));
@@ -187,8 +185,6 @@ public class AgentCertService extends PKIService implements AgentCertResource {
 
             processor.setAuthority(authority);
 
-            caX500DN = authority.getCACert().getSubjectName();
-
         } catch (EBaseException e) {
             logger.error("Unable to revoke certificate: " + e.getMessage(), e);
             throw new PKIException("Unable to revoke certificate: " + e.getMessage(), e);
@@ -210,35 +206,7 @@ public class AgentCertService extends PKIService implements AgentCertResource {
                 clientSerialNumber = clientCert.getSerialNumber();
                 clientSubjectDN = clientCert.getSubjectDN().toString();
 
-                X500Name x500issuerDN = (X500Name) clientCert.getIssuerDN();
-                /*
-                 * internal revocation check only to be conducted for certs
-                 * issued by this CA
-                 * For client certs issued by external CAs, TLS mutual auth
-                 * would have completed the authenticaton/verification if
-                 * OCSP was enabled;
-                 * Furthermore, prior to the actual revocation, client cert
-                 * is mapped against the agent group database for proper
-                 * privilege regardless of the issuer.
-                 */
-                if (x500issuerDN.equals(caX500DN)) {
-                    logger.info("CertService.revokeCert: client cert issued by this CA");
-                    clientRecord = processor.getCertificateRecord(clientSerialNumber);
-
-                    // Verify client cert is not revoked.
-                    // TODO: This should be checked during authentication.
-                    if (clientRecord.getStatus().equals(CertRecord.STATUS_REVOKED)) {
-                        throw new UnauthorizedException(CMS.getLogMessage("CMSGW_UNAUTHORIZED"));
-                    }
-                } else {
-                    logger.info("CertService.revokeCert: client cert not issued by this CA");
-                    if (engine.getAllowExtCASignedAgentCerts()) {
-                        logger.info("CertService.revokeCert: allowExtCASignedAgentCerts true;");
-                    } else {
-                        logger.error("CertService.revokeCert: allowExtCASignedAgentCerts false;");
-                        throw new UnauthorizedException(CMS.getLogMessage("CMSGW_UNAUTHORIZED"));
-                    }
-                }
+                clientRecord = processor.validateClientCertificate(clientCert);
             }
 
             if (engine.getEnableNonces() &&
@@ -309,6 +277,58 @@ public class AgentCertService extends PKIService implements AgentCertResource {
         }
     }
 
+    @Override
+    public Response reviewCerts() {
+
+        CAEngine engine = CAEngine.getInstance();
+
+        RevocationProcessor processor = new RevocationProcessor("caDoRevoke-agent", getLocale(headers));
+        processor.setCMSEngine(engine);
+
+        CertRevokeRequest request = new CertRevokeRequest();
+        request.setNonce(processor.createBatchNonce(servletRequest));
+
+        return createOKResponse(request);
+    }
+
+    @Override
+    public Response revokeCerts(CertBatchRevocationRequest request) {
+
+        if (request == null) {
+            logger.warn("revokeCerts: request is null");
+            throw new BadRequestException("Unable to revoke certs: invalid request");
+        }
+
+        CAEngine engine = CAEngine.getInstance();
+
+        try {
+            RevocationProcessor processor = new RevocationProcessor("caDoRevoke-agent", getLocale(headers));
+            processor.setCMSEngine(engine);
+            processor.init();
+
+            // TODO: set initiative based on auth info
+            processor.setInitiative(AuditFormat.FROMAGENT);
+            processor.setAuthority(authority);
+
+            X509Certificate clientCert = null;
+            try {
+                clientCert = CAProcessor.getSSLClientCertificate(servletRequest);
+            } catch (EBaseException e) {
+                // No client certificate, ignore.
+            }
+
+            processor.validateClientCertificate(clientCert);
+            processor.validateBatchNonce(servletRequest, clientCert, request);
+
+            CertBatchRevocationResults results = processor.processBatchRevocation(request);
+            return createOKResponse(results);
+
+        } catch (EBaseException e) {
+            logger.error("Unable to revoke certificates: " + e.getMessage(), e);
+            throw new PKIException("Unable to revoke certificates: " + e.getMessage(), e);
+        }
+    }
+
     @Override
     public Response unrevokeCert(CertId id) {
 
@@ -176,6 +176,28 @@ public class CertRequestDAO extends CMSRequestDAO {
         return info;
     }
 
+    /**
+     * Creates the authentication credentials from the enrollment request.
+     */
+    public static AuthCredentials createCredentials(CertEnrollmentRequest data) {
+
+        AuthCredentials credentials = new AuthCredentials();
+        String uid = data.getAttribute(DirBasedAuthentication.CRED_UID);
+        if (uid != null) {
+            credentials.set(DirBasedAuthentication.CRED_UID, uid);
+        }
+        String password = data.getAttribute(DirBasedAuthentication.CRED_PWD);
+        if (password != null) {
+            credentials.set(DirBasedAuthentication.CRED_PWD, password);
+        }
+        String pin = data.getAttribute(DirBasedAuthentication.CRED_PIN);
+        if (pin != null) {
+            credentials.set(DirBasedAuthentication.CRED_PIN, pin);
+        }
+
+        return credentials;
+    }
+
     /**
      * Submits an enrollment request and processes it.
      *
@@ -193,19 +215,7 @@ public class CertRequestDAO extends CMSRequestDAO {
 
         CertRequestInfos ret = new CertRequestInfos();
 
-        AuthCredentials credentials = new AuthCredentials();
-        String uid = data.getAttribute(DirBasedAuthentication.CRED_UID);
-        if (uid != null) {
-            credentials.set(DirBasedAuthentication.CRED_UID, uid);
-        }
-        String password = data.getAttribute(DirBasedAuthentication.CRED_PWD);
-        if (password != null) {
-            credentials.set(DirBasedAuthentication.CRED_PWD, password);
-        }
-        String pin = data.getAttribute(DirBasedAuthentication.CRED_PIN);
-        if (pin != null) {
-            credentials.set(DirBasedAuthentication.CRED_PIN, pin);
-        }
+        AuthCredentials credentials = createCredentials(data);
 
         CAEngine engine = CAEngine.getInstance();
 
@@ -19,16 +19,24 @@
 package org.dogtagpki.server.ca.rest;
 
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.List;
 
+import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 
+import org.dogtagpki.server.authentication.AuthToken;
 import org.dogtagpki.server.ca.CAEngine;
 import org.mozilla.jss.netscape.security.x509.X500Name;
 
 import com.netscape.ca.CertificateAuthority;
+import com.netscape.certsrv.authentication.AuthCredentials;
 import com.netscape.certsrv.authentication.EAuthException;
 import com.netscape.certsrv.authorization.EAuthzException;
 import com.netscape.certsrv.base.BadRequestDataException;
@@ -39,6 +47,7 @@ import com.netscape.certsrv.base.PKIException;
 import com.netscape.certsrv.base.ResourceNotFoundException;
 import com.netscape.certsrv.base.UnauthorizedException;
 import com.netscape.certsrv.ca.AuthorityID;
+import com.netscape.certsrv.cert.CertBatchEnrollmentRequest;
 import com.netscape.certsrv.cert.CertEnrollmentRequest;
 import com.netscape.certsrv.cert.CertRequestInfo;
 import com.netscape.certsrv.cert.CertRequestInfos;
@@ -51,6 +60,9 @@ import com.netscape.certsrv.request.RequestId;
 import com.netscape.certsrv.request.RequestNotFoundException;
 import com.netscape.cms.profile.common.Profile;
 import com.netscape.cms.servlet.base.PKIService;
+import com.netscape.cms.servlet.cert.BatchEnrollmentWriter;
+import com.netscape.cms.servlet.cert.CertRequestInfoFactory;
+import com.netscape.cms.servlet.cert.EnrollmentProcessor;
 import com.netscape.cmscore.profile.ProfileSubsystem;
 
 /**
@@ -107,44 +119,7 @@ public class CertRequestService extends PKIService implements CertRequestResourc
             throw new BadRequestException(message);
         }
 
-        if (aidString != null && adnString != null)
-            throw new BadRequestException("Cannot provide both issuer-id and issuer-dn");
-
-        CAEngine engine = CAEngine.getInstance();
-        CertificateAuthority ca = engine.getCA();
-
-        AuthorityID aid = null;
-        if (aidString != null) {
-            try {
-                aid = new AuthorityID(aidString);
-            } catch (IllegalArgumentException e) {
-                throw new BadRequestException("invalid AuthorityID: " + aidString, e);
-            }
-
-            ca = engine.getCA(aid);
-
-            if (ca == null)
-                throw new ResourceNotFoundException("CA not found: " + aidString);
-        }
-
-        if (adnString != null) {
-            X500Name adn = null;
-            try {
-                adn = new X500Name(adnString);
-            } catch (IOException e) {
-                throw new BadRequestException("invalid DN: " + adnString, e);
-            }
-
-            ca = engine.getCA(adn);
-
-            if (ca == null)
-                throw new ResourceNotFoundException("CA not found: " + adnString);
-
-            aid = ca.getAuthorityID();
-        }
-
-        if (!ca.getAuthorityEnabled())
-            throw new ConflictingOperationException("CA not enabled: " + aid.toString());
+        AuthorityID aid = getAuthorityID(aidString, adnString);
 
         data.setRemoteHost(servletRequest.getRemoteHost());
         data.setRemoteAddr(servletRequest.getRemoteAddr());
@@ -188,6 +163,153 @@ public class CertRequestService extends PKIService implements CertRequestResourc
         return createOKResponse(infos);
     }
 
+    @Override
+    public Response enrollCerts(String batchRequest, String aidString, String adnString) {
+
+        logger.info("CertRequestService: Receiving batch certificate request");
+
+        CertBatchEnrollmentRequest batch = unmarshall(batchRequest, CertBatchEnrollmentRequest.class);
+
+        if (batch == null || batch.getRequest() == null) {
+            String message = "Unable to create enrollment requests: Missing input data";
+            logger.error(message);
+            throw new BadRequestException(message);
+        }
+
+        AuthorityID aid = getAuthorityID(aidString, adnString);
+
+        CertEnrollmentRequest data = batch.getRequest();
+        data.setRemoteHost(servletRequest.getRemoteHost());
+        data.setRemoteAddr(servletRequest.getRemoteAddr());
+
+        int size = batch.getCertRequests().size();
+        logger.info("CertRequestService: - size: " + size);
+
+        CAEngine engine = CAEngine.getInstance();
+
+        EnrollmentProcessor processor;
+        AuthCredentials credentials;
+        AuthToken authToken;
+
+        try {
+            processor = new EnrollmentProcessor("caProfileSubmit", getLocale(headers));
+            processor.setCMSEngine(engine);
+            processor.init();
+
+            int maxSize = processor.getBatchMaxSize();
+            if (size > maxSize) {
+                throw new BadRequestDataException("Too many certificate requests: " + size + " > " + maxSize);
+            }
+
+            credentials = CertRequestDAO.createCredentials(data);
+            authToken = processor.authenticateBatch(batch, servletRequest, aid, credentials);
+
+        } catch (EAuthException e) {
+            String message = "Authentication failed: " + e.getMessage();
+            logger.error(message, e);
+            throw new UnauthorizedException(message, e);
+
+        } catch (EAuthzException e) {
+            String message = "Authorization failed: " + e.getMessage();
+            logger.error(message, e);
+            throw new UnauthorizedException(message, e);
+
+        } catch (BadRequestDataException e) {
+            String message = "Bad request data: " + e.getMessage();
+            logger.error(message, e);
+            throw new BadRequestException(message, e);
+
+        } catch (Exception e) {
+            String message = "Unable to create enrollment requests: " + e.getMessage();
+            logger.error(message, e);
+            throw new PKIException(message, e);
+        }
+
+        // the items are processed while the results are streamed
+        // so the client receives each result as soon as it is ready
+
+        // the URI info is a thread-local proxy that cannot be used
+        // from the batch enrollment threads
+        URI baseUri = uriInfo.getBaseUri();
+
+        StreamingOutput stream = output -> {
+
+            Writer writer = new OutputStreamWriter(output, StandardCharsets.UTF_8);
+            BatchEnrollmentWriter results = new BatchEnrollmentWriter(
+                    writer,
+                    request -> CertRequestInfoFactory.create(request, baseUri));
+
+            results.begin(size);
+
+            try {
+                processor.processBatchEnrollment(batch, aid, credentials, authToken, results);
+
+            } catch (IOException e) {
+                // the client cannot receive any more results
+                throw e;
+
+            } catch (Exception e) {
+                // the status has already been sent, so report the
+                // failure in the entries that have not been returned
+                logger.error("Unable to process enrollment requests: " + e.getMessage(), e);
+                results.end(e);
+                return;
+            }
+
+            results.end();
+        };
+
+        return Response.ok(stream, MediaType.APPLICATION_JSON).build();
+    }
+
+    /**
+     * Returns the ID of the CA specified by issuer ID or issuer DN,
+     * or null for the host CA.
+     */
+    AuthorityID getAuthorityID(String aidString, String adnString) {
+
+        if (aidString != null && adnString != null)
+            throw new BadRequestException("Cannot provide both issuer-id and issuer-dn");
+
+        CAEngine engine = CAEngine.getInstance();
+        CertificateAuthority ca = engine.getCA();
+
+        AuthorityID aid = null;
+        if (aidString != null) {
+            try {
+                aid = new AuthorityID(aidString);
+            } catch (IllegalArgumentException e) {
+                throw new BadRequestException("invalid AuthorityID: " + aidString, e);
+            }
+
+            ca = engine.getCA(aid);
+
+            if (ca == null)
+                throw new ResourceNotFoundException("CA not found: " + aidString);
+        }
+
+        if (adnString != null) {
+            X500Name adn = null;
+            try {
+                adn = new X500Name(adnString);
+            } catch (IOException e) {
+                throw new BadRequestException("invalid DN: " + adnString, e);
+            }
+
+            ca = engine.getCA(adn);
+
+            if (ca == null)
+                throw new ResourceNotFoundException("CA not found: " + adnString);
+
+            aid = ca.getAuthorityID();
+        }
+
+        if (!ca.getAuthorityEnabled())
+            throw new ConflictingOperationException("CA not enabled: " + aid.toString());
+
+        return aid;
+    }
+
     @Override
     public Response getEnrollmentTemplate(String profileId) {
         if (profileId == null) {
@@ -35,7 +35,6 @@ import org.mozilla.jss.netscape.security.x509.AlgorithmId;
 import org.mozilla.jss.netscape.security.x509.CRLExtensions;
 import org.mozilla.jss.netscape.security.x509.CRLReasonExtension;
 import org.mozilla.jss.netscape.security.x509.RevocationReason;
-import org.mozilla.jss.netscape.security.x509.X500Name;
 import org.mozilla.jss.netscape.security.x509.X509CertImpl;
 import org.mozilla.jss.netscape.security.x509.X509ExtensionException;
 import org.slf4j.Logger;
@@ -47,7 +46,8 @@ import com.netscape.certsrv.base.BadRequestException;
 import com.netscape.certsrv.base.EBaseException;
 import com.netscape.certsrv.base.PKIException;
 import com.netscape.certsrv.base.ResourceNotFoundException;
-import com.netscape.certsrv.base.UnauthorizedException;
+import com.netscape.certsrv.cert.CertBatchRevocationRequest;
+import com.netscape.certsrv.cert.CertBatchRevocationResults;
 import com.netscape.certsrv.cert.CertData;
 import com.netscape.certsrv.cert.CertNotFoundException;
 import com.netscape.certsrv.cert.CertRequestInfo;
@@ -61,7 +61,6 @@ import com.netscape.certsrv.util.JSONSerializer;
 import com.netscape.cms.servlet.cert.CertRequestInfoFactory;
 import com.netscape.cms.servlet.cert.RevocationProcessor;
 import com.netscape.cms.servlet.processors.CAProcessor;
-import com.netscape.cmscore.apps.CMS;
 import com.netscape.cmscore.dbs.CertRecord;
 import com.netscape.cmscore.dbs.CertificateRepository;
 import com.netscape.cmscore.dbs.RevocationInfo;
@@ -86,6 +85,18 @@ public class AgentCertServlet extends CAServlet{
             return;
         }
 
+        if (request.getPathInfo().equals("/revoke")) {
+            RevocationProcessor processor = new RevocationProcessor("caDoRevoke-agent", request.getLocale());
+            processor.setCMSEngine(getCAEngine());
+
+            CertRevokeRequest revokeRequest = new CertRevokeRequest();
+            revokeRequest.setNonce(processor.createBatchNonce(request));
+
+            PrintWriter out = response.getWriter();
+            out.println(revokeRequest.toJSON());
+            return;
+        }
+
         CertId id;
         try {
             id = new CertId(request.getPathInfo().substring(1));
@@ -116,6 +127,23 @@ public class AgentCertServlet extends CAServlet{
         }
         String[] pathElement = request.getPathInfo().substring(1).split("/");
 
+        if (pathElement.length == 1 && pathElement[0].equals("revoke")) {
+            logger.info("AgentCertServlet: batch revocation");
+            BufferedReader reader = request.getReader();
+            String postMessage = reader.lines().collect(Collectors.joining());
+
+            CertBatchRevocationRequest data;
+            try {
+                data = JSONSerializer.fromJSON(postMessage, CertBatchRevocationRequest.class);
+            } catch (JsonProcessingException ex) {
+                throw new BadRequestException(ex.getMessage());
+            }
+            CertBatchRevocationResults results = revokeCerts(request, data);
+            PrintWriter out = response.getWriter();
+            out.print(results.toJSON());
+            return;
+        }
+
         if (pathElement.length != 2) {
             response.sendError(HttpServletResponse.SC_NOT_FOUND, request.getRequestURI());
             return;
@@ -262,7 +290,6 @@ public class AgentCertServlet extends CAServlet{
 
         CAEngine engine = CAEngine.getInstance();
 
-        X500Name caX500DN = null;
         RevocationProcessor processor;
         try {
             processor = new RevocationProcessor("caDoRevoke-agent", servletRequest.getLocale());
@@ -284,8 +311,6 @@ public class AgentCertServlet extends CAServlet{
 
             processor.setAuthority(authority);
 
-            caX500DN = authority.getCACert().getSubjectName();
-
         } catch (EBaseException e) {
             logger.error("Unable to revoke certificate: " + e.getMessage(), e);
             throw new PKIException("Unable to revoke certificate: " + e.getMessage(), e);
@@ -307,35 +332,7 @@ public class AgentCertServlet extends CAServlet{
                 clientSerialNumber = clientCert.getSerialNumber();
                 clientSubjectDN = clientCert.getSubjectDN().toString();
 
-                X500Name x500issuerDN = (X500Name) clientCert.getIssuerDN();
-                /*
-                 * internal revocation check only to be conducted for certs
-                 * issued by this CA
-                 * For client certs issued by external CAs, TLS mutual auth
-                 * would have completed the authenticaton/verification if
-                 * OCSP was enabled;
-                 * Furthermore, prior to the actual revocation, client cert
-                 * is mapped against the agent group database for proper
-                 * privilege regardless of the issuer.
-                 */
-                if (x500issuerDN.equals(caX500DN)) {
-                    logger.info("CertService.revokeCert: client cert issued by this CA");
-                    clientRecord = processor.getCertificateRecord(clientSerialNumber);
-
-                    // Verify client cert is not revoked.
-                    // TODO: This should be checked during authentication.
-                    if (clientRecord.getStatus().equals(CertRecord.STATUS_REVOKED)) {
-                        throw new UnauthorizedException(CMS.getLogMessage("CMSGW_UNAUTHORIZED"));
-                    }
-                } else {
-                    logger.info("CertService.revokeCert: client cert not issued by this CA");
-                    if (engine.getAllowExtCASignedAgentCerts()) {
-                        logger.info("CertService.revokeCert: allowExtCASignedAgentCerts true;");
-                    } else {
-                        logger.error("CertService.revokeCert: allowExtCASignedAgentCerts false;");
-                        throw new UnauthorizedException(CMS.getLogMessage("CMSGW_UNAUTHORIZED"));
-                    }
-                }
+                clientRecord = processor.validateClientCertificate(clientCert);
             }
 
             if (engine.getEnableNonces() &&
@@ -404,6 +401,42 @@ public class AgentCertServlet extends CAServlet{
         }
     }
 
+    private CertBatchRevocationResults revokeCerts(HttpServletRequest servletRequest, CertBatchRevocationRequest request) {
+
+        if (request == null) {
+            logger.warn("revokeCerts: request is null");
+            throw new BadRequestException("Unable to revoke certs: invalid request");
+        }
+
+        CAEngine engine = getCAEngine();
+
+        try {
+            RevocationProcessor processor = new RevocationProcessor("caDoRevoke-agent", servletRequest.getLocale());
+            processor.setCMSEngine(engine);
+            processor.init();
+
+            // TODO: set initiative based on auth info
+            processor.setInitiative(AuditFormat.FROMAGENT);
+            processor.setAuthority(engine.getCA());
+
+            X509Certificate clientCert = null;
+            try {
+                clientCert = CAProcessor.getSSLClientCertificate(servletRequest);
+            } catch (EBaseException e) {
+                // No client certificate, ignore.
+            }
+
+            processor.validateClientCertificate(clientCert);
+            processor.validateBatchNonce(servletRequest, clientCert, request);
+
+            return processor.processBatchRevocation(request);
+
+        } catch (EBaseException e) {
+            logger.error("Unable to revoke certificates: " + e.getMessage(), e);
+            throw new PKIException("Unable to revoke certificates: " + e.getMessage(), e);
+        }
+    }
+
     private CertRequestInfo unrevokeCert(HttpServletRequest servletRequest, CertId id) {
 
         if (id == null) {
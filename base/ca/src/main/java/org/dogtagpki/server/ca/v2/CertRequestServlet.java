@@ -20,8 +20,10 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
 
+import org.dogtagpki.server.authentication.AuthToken;
 import org.dogtagpki.server.ca.CAEngine;
 import org.dogtagpki.server.ca.CAServlet;
+import org.dogtagpki.server.ca.rest.CertRequestDAO;
 import org.dogtagpki.server.ca.rest.ProfileService;
 import org.mozilla.jss.netscape.security.x509.X500Name;
 import org.slf4j.Logger;
@@ -39,6 +41,7 @@ import com.netscape.certsrv.base.PKIException;
 import com.netscape.certsrv.base.ResourceNotFoundException;
 import com.netscape.certsrv.base.UnauthorizedException;
 import com.netscape.certsrv.ca.AuthorityID;
+import com.netscape.certsrv.cert.CertBatchEnrollmentRequest;
 import com.netscape.certsrv.cert.CertEnrollmentRequest;
 import com.netscape.certsrv.cert.CertRequestInfo;
 import com.netscape.certsrv.cert.CertRequestInfos;
@@ -50,6 +53,7 @@ import com.netscape.certsrv.request.RequestId;
 import com.netscape.certsrv.request.RequestNotFoundException;
 import com.netscape.certsrv.util.JSONSerializer;
 import com.netscape.cms.profile.common.Profile;
+import com.netscape.cms.servlet.cert.BatchEnrollmentWriter;
 import com.netscape.cms.servlet.cert.CertRequestInfoFactory;
 import com.netscape.cms.servlet.cert.EnrollmentProcessor;
 import com.netscape.cms.servlet.cert.RenewalProcessor;
@@ -114,6 +118,11 @@ public class CertRequestServlet extends CAServlet {
         HttpSession session = request.getSession();
         logger.debug("CertServlet.post(): session: {}", session.getId());
 
+        if ("/batch".equals(request.getPathInfo())) {
+            enrollCerts(request, response);
+            return;
+        }
+
         if(request.getPathInfo() != null) {
             response.sendError(HttpServletResponse.SC_NOT_FOUND, request.getRequestURI());
             return;
@@ -140,6 +149,46 @@ public class CertRequestServlet extends CAServlet {
     private CertRequestInfos enrollCert(HttpServletRequest servletRequest, CertEnrollmentRequest data, String aidString, String adnString) {
 
         logger.info("CertRequestServlet: Receiving certificate request");
+        AuthorityID aid = getAuthorityID(aidString, adnString);
+
+        data.setRemoteHost(servletRequest.getRemoteHost());
+        data.setRemoteAddr(servletRequest.getRemoteAddr());
+
+        CertRequestInfos infos;
+        try {
+            infos = submitRequest(aid, data, servletRequest);
+
+        } catch (EAuthException e) {
+            String message = "Authentication failed: " + e.getMessage();
+            logger.error(message, e);
+            throw new UnauthorizedException(message, e);
+
+        } catch (EAuthzException e) {
+            String message = "Authorization failed: " + e.getMessage();
+            logger.error(message, e);
+            throw new UnauthorizedException(message, e);
+
+        } catch (BadRequestDataException e) {
+            String message = "Bad request data: " + e.getMessage();
+            logger.error(message, e);
+            throw new BadRequestException(message, e);
+
+        } catch (EBaseException e) {
+            String message = "Unable to create enrollment request: " + e.getMessage();
+            logger.error(message, e);
+            throw new PKIException(message, e);
+
+        } catch (Exception e) {
+            String message = "Unable to create enrollment request: " + e.getMessage();
+            logger.error(message, e);
+            throw new PKIException(message, e);
+        }
+        return infos;
+    }
+
+
+    private AuthorityID getAuthorityID(String aidString, String adnString) {
+
         if (aidString != null && adnString != null)
             throw new BadRequestException("Cannot provide both issuer-id and issuer-dn");
 
@@ -179,12 +228,51 @@ public class CertRequestServlet extends CAServlet {
         if (!ca.getAuthorityEnabled())
             throw new ConflictingOperationException("CA not enabled: " + aid.toString());
 
-        data.setRemoteHost(servletRequest.getRemoteHost());
-        data.setRemoteAddr(servletRequest.getRemoteAddr());
+        return aid;
+    }
+
+    private void enrollCerts(HttpServletRequest request, HttpServletResponse response) throws Exception {
+
+        logger.info("CertRequestServlet: Receiving batch certificate request");
+
+        BufferedReader reader = request.getReader();
+        String postMessage = reader.lines().collect(Collectors.joining());
+
+        CertBatchEnrollmentRequest batch = JSONSerializer.fromJSON(postMessage, CertBatchEnrollmentRequest.class);
+        if (batch == null || batch.getRequest() == null) {
+            String message = "Unable to create enrollment requests: Missing input data";
+            logger.error(message);
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, message);
+            return;
+        }
+
+        AuthorityID aid = getAuthorityID(request.getParameter("issuer-id"), request.getParameter("issuer-dn"));
+
+        CertEnrollmentRequest data = batch.getRequest();
+        data.setRemoteHost(request.getRemoteHost());
+        data.setRemoteAddr(request.getRemoteAddr());
+
+        int size = batch.getCertRequests().size();
+        logger.info("CertRequestServlet: - size: " + size);
+
+        CAEngine engine = CAEngine.getInstance();
+
+        EnrollmentProcessor processor;
+        AuthCredentials credentials;
+        AuthToken authToken;
 
-        CertRequestInfos infos;
         try {
-            infos = submitRequest(aid, data, servletRequest);
+            processor = new EnrollmentProcessor("caProfileSubmit", request.getLocale());
+            processor.setCMSEngine(engine);
+            processor.init();
+
+            int maxSize = processor.getBatchMaxSize();
+            if (size > maxSize) {
+                throw new BadRequestDataException("Too many certificate requests: " + size + " > " + maxSize);
+            }
+
+            credentials = CertRequestDAO.createCredentials(data);
+            authToken = processor.authenticateBatch(batch, request, aid, credentials);
 
         } catch (EAuthException e) {
             String message = "Authentication failed: " + e.getMessage();
@@ -201,19 +289,35 @@ public class CertRequestServlet extends CAServlet {
             logger.error(message, e);
             throw new BadRequestException(message, e);
 
-        } catch (EBaseException e) {
-            String message = "Unable to create enrollment request: " + e.getMessage();
+        } catch (Exception e) {
+            String message = "Unable to create enrollment requests: " + e.getMessage();
             logger.error(message, e);
             throw new PKIException(message, e);
+        }
+
+        BatchEnrollmentWriter results = new BatchEnrollmentWriter(
+                response.getWriter(),
+                CertRequestInfoFactory::create);
+
+        results.begin(size);
+
+        try {
+            processor.processBatchEnrollment(batch, aid, credentials, authToken, results);
+
+        } catch (IOException e) {
+            // the client cannot receive any more results
+            throw e;
 
         } catch (Exception e) {
-            String message = "Unable to create enrollment request: " + e.getMessage();
-            logger.error(message, e);
-            throw new PKIException(message, e);
+            // the status has already been sent, so report the
+            // failure in the entries that have not been returned
+            logger.error("Unable to process enrollment requests: " + e.getMessage(), e);
+            results.end(e);
+            return;
         }
-        return infos;
-    }
 
+        results.end();
+    }
 
     /**
      * Submits an enrollment request and processes it.
@@ -230,15 +334,7 @@ public class CertRequestServlet extends CAServlet {
 
         CertRequestInfos ret = new CertRequestInfos();
 
-        AuthCredentials credentials = new AuthCredentials();
-        String uid = data.getAttribute("uid");
-        if (uid != null) {
-            credentials.set("uid", uid);
-        }
-        String password = data.getAttribute("pwd");
-        if (password != null) {
-            credentials.set("pwd", password);
-        }
+        AuthCredentials credentials = CertRequestDAO.createCredentials(data);
 
         CAEngine engine = CAEngine.getInstance();
 
@@ -0,0 +1,63 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package org.dogtagpki.server.ca.v2;
+
+import java.io.PrintWriter;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+
+import org.dogtagpki.server.ca.CAEngine;
+import org.dogtagpki.server.ca.CAServlet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.netscape.certsrv.publish.PublishingQueueInfo;
+import com.netscape.cmscore.request.PublishingQueue;
+import com.netscape.cmscore.request.RequestNotifier;
+
+/**
+ * Provides the status of the publishing queue.
+ */
+@WebServlet(
+        name = "caPublishingQueue",
+        urlPatterns = "/v2/publishing/queue")
+public class PublishingQueueServlet extends CAServlet {
+    private static final long serialVersionUID = 1L;
+    private static Logger logger = LoggerFactory.getLogger(PublishingQueueServlet.class);
+
+    @Override
+    public void get(HttpServletRequest request, HttpServletResponse response) throws Exception {
+        HttpSession session = request.getSession();
+        logger.debug("PublishingQueueServlet.get(): session: " + session.getId());
+
+        CAEngine engine = getCAEngine();
+        RequestNotifier requestNotifier = engine.getRequestNotifier();
+
+        PublishingQueueInfo info = new PublishingQueueInfo();
+        info.setEnabled(requestNotifier.isPublishingQueueEnabled());
+
+        PublishingQueue queue = requestNotifier.getPublishingQueue();
+        if (queue != null) {
+            info.setSize(queue.size());
+            info.setMaxSize(queue.getMaxSize());
+            info.setMaxThreads(queue.getMaxThreads());
+            info.setLag(queue.getLag());
+            info.setPendingSearch(queue.hasPendingSearch());
+            info.setPublished(queue.getPublished());
+            info.setFailed(queue.getFailed());
+            info.setRetried(queue.getRetried());
+            info.setDeduplicated(queue.getDeduplicated());
+            info.setCoalesced(queue.getCoalesced());
+            info.setOverflowed(queue.getOverflowed());
+        }
+
+        PrintWriter out = response.getWriter();
+        out.println(info.toJSON());
+    }
+}
@@ -0,0 +1,335 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.ca;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mozilla.jss.netscape.security.x509.RevocationReason;
+import org.mozilla.jss.netscape.security.x509.RevokedCertImpl;
+
+import com.netscape.certsrv.base.EBaseException;
+import com.netscape.certsrv.base.SessionContext;
+import com.netscape.certsrv.ca.ECAException;
+import com.netscape.certsrv.dbs.DBPagedSearch;
+import com.netscape.cmscore.dbs.CertRecord;
+import com.netscape.cmscore.dbs.CertificateRepository;
+import com.netscape.cmscore.dbs.DBParallelSearch;
+import com.netscape.cmscore.dbs.DBSSession;
+import com.netscape.cmscore.dbs.RevocationInfo;
+
+public class RevocationPipelineTest {
+
+    static final BigInteger CA_SERIAL = BigInteger.valueOf(1);
+    static final BigInteger FAILED_SERIAL = BigInteger.valueOf(7);
+
+    /**
+     * Repository that keeps the certificate records in memory.
+     */
+    static class TestRepository extends CertificateRepository {
+
+        Map<BigInteger, CertRecord> records = new LinkedHashMap<>();
+        List<Integer> searches = new ArrayList<>();
+
+        TestRepository() {
+            super(null, null);
+        }
+
+        void add(int serial, String status) throws EBaseException {
+            CertRecord record = new CertRecord();
+            record.set(CertRecord.ATTR_ID, BigInteger.valueOf(serial));
+            record.set(CertRecord.ATTR_CERT_STATUS, status);
+            records.put(BigInteger.valueOf(serial), record);
+        }
+
+        String getStatus(int serial) {
+            return records.get(BigInteger.valueOf(serial)).getStatus();
+        }
+
+        @Override
+        public Enumeration<CertRecord> searchCertificates(String filter, int maxSize, int timeLimit) {
+
+            searches.add(maxSize);
+
+            Vector<CertRecord> v = new Vector<>();
+            for (CertRecord record : records.values()) {
+                if (filter.contains("(" + CertRecord.ATTR_ID + "=" + record.getSerialNumber() + ")")) {
+                    v.add(record);
+                }
+            }
+
+            return v.elements();
+        }
+
+        @Override
+        public synchronized Map<BigInteger, EBaseException> markAsRevoked(
+                Map<BigInteger, Boolean> ids,
+                RevocationInfo info) throws EBaseException {
+
+            Map<BigInteger, EBaseException> errors = new LinkedHashMap<>();
+
+            for (BigInteger id : ids.keySet()) {
+
+                if (id.equals(FAILED_SERIAL)) {
+                    errors.put(id, new EBaseException("Unable to modify record"));
+                    continue;
+                }
+
+                records.get(id).set(CertRecord.ATTR_CERT_STATUS, CertRecord.STATUS_REVOKED);
+            }
+
+            return errors;
+        }
+
+        @Override
+        public DBParallelSearch<CertRecord> createParallelSearch(String name, String filter, int threads) {
+            return new TestSearch(this);
+        }
+    }
+
+    /**
+     * Search that returns all certificate records in pages of 10.
+     */
+    static class TestSearch extends DBParallelSearch<CertRecord> {
+
+        TestRepository repository;
+
+        TestSearch(TestRepository repository) {
+            super("test", null, CertRecord.class, "ou=test", "(objectClass=*)", CertRecord.ATTR_ID);
+            this.repository = repository;
+            setSearchThreads(1);
+        }
+
+        @Override
+        protected DBSSession createSession() {
+            return new DBSSession();
+        }
+
+        @Override
+        protected DBPagedSearch<CertRecord> createPagedSearch(DBSSession session, Range range) {
+
+            List<CertRecord> records = new ArrayList<>(repository.records.values());
+
+            return new DBPagedSearch<>() {
+
+                int next;
+
+                @Override
+                public List<CertRecord> getPage() throws EBaseException {
+                    return getPage(10);
+                }
+
+                @Override
+                public List<CertRecord> getPage(int size) throws EBaseException {
+                    List<CertRecord> page = records.subList(next, Math.min(next + size, records.size()));
+                    next += page.size();
+                    return new ArrayList<>(page);
+                }
+            };
+        }
+    }
+
+    /**
+     * Pipeline that records the CRL, publishing and audit updates
+     * instead of sending them to the CA subsystems.
+     */
+    static class TestPipeline extends RevocationPipeline {
+
+        TestRepository repository = new TestRepository();
+
+        List<BigInteger> crlUpdates = new ArrayList<>();
+        List<BigInteger> unpublished = new ArrayList<>();
+        List<Integer> audits = new ArrayList<>();
+
+        // session context seen by each batch
+        List<Map<Object, Object>> contexts = new ArrayList<>();
+
+        TestPipeline(int batchSize, int maxSize) {
+            super(null);
+            this.batchSize = batchSize;
+            this.maxSize = maxSize;
+            this.searchThreads = 1;
+        }
+
+        @Override
+        CertificateRepository getCertificateRepository() {
+            return repository;
+        }
+
+        @Override
+        BigInteger getCASerialNumber() {
+            return CA_SERIAL;
+        }
+
+        @Override
+        Map<BigInteger, Result> processBatch(
+                Collection<CertRecord> records,
+                RevocationReason reason,
+                RevocationInfo info) throws EBaseException {
+
+            SessionContext context = SessionContext.getContext();
+            contexts.add(new LinkedHashMap<>(context));
+
+            // leave something behind in the context of this thread
+            context.put("batch", contexts.size());
+
+            return super.processBatch(records, reason, info);
+        }
+
+        @Override
+        void updateCRLIssuingPoints(Map<BigInteger, CertRecord> records, Map<BigInteger, RevokedCertImpl> revokedCerts) {
+            crlUpdates.addAll(revokedCerts.keySet());
+        }
+
+        @Override
+        void unpublish(Map<BigInteger, CertRecord> records, Collection<BigInteger> serialNumbers) {
+            unpublished.addAll(serialNumbers);
+        }
+
+        @Override
+        void audit(RevocationReason reason, Collection<Result> results) {
+            audits.add(results.size());
+        }
+    }
+
+    static List<BigInteger> serials(int... serials) {
+        List<BigInteger> list = new ArrayList<>();
+        for (int serial : serials) {
+            list.add(BigInteger.valueOf(serial));
+        }
+        return list;
+    }
+
+    @AfterEach
+    public void releaseContext() {
+        SessionContext.releaseContext();
+    }
+
+    @Test
+    public void testRevokeSerialNumbers() throws Exception {
+
+        TestPipeline pipeline = new TestPipeline(2, 100);
+        TestRepository repository = pipeline.repository;
+
+        repository.add(1, CertRecord.STATUS_VALID);
+        repository.add(2, CertRecord.STATUS_VALID);
+        repository.add(3, CertRecord.STATUS_REVOKED_EXPIRED);
+        repository.add(5, CertRecord.STATUS_VALID);
+        repository.add(7, CertRecord.STATUS_VALID);
+
+        List<RevocationPipeline.Result> results = pipeline.revoke(
+                serials(5, 1, 2, 3, 4, 7),
+                RevocationReason.KEY_COMPROMISE,
+                null);
+
+        // one search per batch
+        assertEquals(List.of(2, 2, 2), repository.searches);
+
+        // the results are returned in the order of the request
+        assertEquals(serials(5, 1, 2, 3, 4, 7), results.stream().map(r -> r.getSerialNumber()).toList());
+
+        assertEquals(RevocationPipeline.STATUS_REVOKED, results.get(0).getStatus());
+        assertNull(results.get(0).getError());
+
+        // the CA signing certificate is never revoked
+        assertEquals(RevocationPipeline.STATUS_FAILED, results.get(1).getStatus());
+        assertEquals(CertRecord.STATUS_VALID, repository.getStatus(1));
+
+        assertEquals(RevocationPipeline.STATUS_REVOKED, results.get(2).getStatus());
+        assertEquals(RevocationPipeline.STATUS_ALREADY_REVOKED, results.get(3).getStatus());
+        assertEquals(RevocationPipeline.STATUS_NOT_FOUND, results.get(4).getStatus());
+
+        assertEquals(RevocationPipeline.STATUS_FAILED, results.get(5).getStatus());
+        assertEquals("Unable to modify record", results.get(5).getError());
+
+        // only the revoked certificates are added to the CRLs and unpublished
+        assertEquals(serials(5, 2), pipeline.crlUpdates);
+        assertEquals(serials(5, 2), pipeline.unpublished);
+
+        // one audit event per batch, without the certificates not found
+        assertEquals(List.of(2, 2, 1), pipeline.audits);
+    }
+
+    @Test
+    public void testMaxSize() throws Exception {
+
+        TestPipeline pipeline = new TestPipeline(2, 3);
+
+        assertThrows(ECAException.class, () -> pipeline.revoke(
+                serials(2, 3, 4, 5),
+                RevocationReason.UNSPECIFIED,
+                null));
+
+        assertTrue(pipeline.repository.searches.isEmpty());
+    }
+
+    @Test
+    public void testRevokeFilter() throws Exception {
+
+        TestPipeline pipeline = new TestPipeline(10, 100);
+        TestRepository repository = pipeline.repository;
+
+        for (int i = 2; i < 27; i++) {
+            repository.add(i, CertRecord.STATUS_VALID);
+        }
+
+        SessionContext.getContext().put(SessionContext.USER_ID, "agent");
+
+        List<RevocationPipeline.Result> results = pipeline.revoke(
+                "(certStatus=VALID)",
+                RevocationReason.SUPERSEDED,
+                null);
+
+        assertEquals(25, results.size());
+        for (RevocationPipeline.Result result : results) {
+            assertEquals(RevocationPipeline.STATUS_REVOKED, result.getStatus());
+        }
+
+        assertEquals(List.of(10, 10, 5), pipeline.audits);
+
+        // each batch sees the caller's context but not the context
+        // left by the previous batch on the same search thread
+        assertEquals(3, pipeline.contexts.size());
+        for (Map<Object, Object> context : pipeline.contexts) {
+            assertEquals("agent", context.get(SessionContext.USER_ID));
+            assertNull(context.get("batch"));
+        }
+    }
+
+    @Test
+    public void testRevokeFilterSizeLimit() throws Exception {
+
+        TestPipeline pipeline = new TestPipeline(10, 15);
+        TestRepository repository = pipeline.repository;
+
+        for (int i = 2; i < 42; i++) {
+            repository.add(i, CertRecord.STATUS_VALID);
+        }
+
+        RevocationPipeline.Results results = pipeline.revoke(
+                "(certStatus=VALID)",
+                RevocationReason.UNSPECIFIED,
+                null);
+
+        // the search stops at the maximum size
+        assertEquals(15, results.size());
+        assertTrue(results.isTruncated());
+        assertEquals(List.of(10, 5), pipeline.audits);
+    }
+}
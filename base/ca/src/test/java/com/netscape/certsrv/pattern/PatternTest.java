@@ -0,0 +1,143 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.certsrv.pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.netscape.certsrv.base.IAttrSet;
+
+public class PatternTest {
+
+    static class TestAttrSet implements IAttrSet {
+
+        private static final long serialVersionUID = 1L;
+
+        Map<String, Object> attrs = new HashMap<>();
+
+        @Override
+        public void set(String name, Object obj) {
+            attrs.put(name, obj);
+        }
+
+        @Override
+        public Object get(String name) {
+            return attrs.get(name);
+        }
+
+        @Override
+        public void delete(String name) {
+            attrs.remove(name);
+        }
+
+        @Override
+        public Enumeration<String> getElements() {
+            return Collections.enumeration(attrs.keySet());
+        }
+    }
+
+    static TestAttrSet createAttrSet() {
+        TestAttrSet attrSet = new TestAttrSet();
+        attrSet.set("requestor_email", "user@example.com");
+        attrSet.set("screenname", "user");
+        attrSet.set("dollar", "a$b.c$d");
+        attrSet.set("number", Integer.valueOf(1));
+        return attrSet;
+    }
+
+    /**
+     * Checks that the parsed pattern gives the same result as
+     * the original single-pass substitution.
+     */
+    static void assertSubstitute(String expected, String pattern) {
+
+        TestAttrSet attrSet = createAttrSet();
+        Pattern p = new Pattern(pattern);
+
+        String result = p.substitute2("request", attrSet);
+        assertEquals(expected, result);
+        assertEquals(p.parseAndSubstitute("request", attrSet), result);
+
+        // the parsed segments are reused
+        assertEquals(expected, p.substitute("request", attrSet));
+    }
+
+    @Test
+    public void testLiteral() throws Exception {
+        assertSubstitute("", "");
+        assertSubstitute("user@example.com", "user@example.com");
+        assertFalse(new Pattern("user@example.com").hasTokens());
+        assertTrue(new Pattern("$request.screenname$").hasTokens());
+    }
+
+    @Test
+    public void testTokens() throws Exception {
+        assertSubstitute("user@example.com", "$request.requestor_email$");
+        assertSubstitute("user@redhat.com", "$request.screenname$@redhat.com");
+        assertSubstitute("cn=user,e=user@example.com", "cn=$request.screenname$,e=$request.requestor_email$");
+
+        // adjacent tokens
+        assertSubstitute("useruser@example.com", "$request.screenname$$request.requestor_email$");
+    }
+
+    @Test
+    public void testUnresolvedTokens() throws Exception {
+
+        // other attribute sets are left for later substitutions
+        assertSubstitute("$ctx.user_id$ user", "$ctx.user_id$ $request.screenname$");
+
+        // missing and non-string attributes are copied over
+        assertSubstitute("$request.missing$", "$request.missing$");
+        assertSubstitute("$request.number$", "$request.number$");
+
+        // attribute names may contain dots
+        assertSubstitute("$request.a.b$", "$request.a.b$");
+    }
+
+    @Test
+    public void testNestedDollar() throws Exception {
+
+        // substituted values are not substituted again
+        assertSubstitute("a$b.c$d", "$request.dollar$");
+
+        // the first '$' after a token start ends the token
+        assertSubstitute("$request.$user", "$request.$$request.screenname$");
+        assertSubstitute("$request.x$screennameuser", "$request.x$screenname$request.screenname$");
+    }
+
+    @Test
+    public void testUnterminatedToken() throws Exception {
+
+        TestAttrSet attrSet = createAttrSet();
+
+        // malformed patterns fail the same way as before
+        for (String pattern : new String[] { "$", "$request.screenname", "user$request.screenname$$" }) {
+            Pattern p = new Pattern(pattern);
+            assertThrows(StringIndexOutOfBoundsException.class, () -> p.substitute2("request", attrSet));
+            assertThrows(StringIndexOutOfBoundsException.class, () -> p.parseAndSubstitute("request", attrSet));
+        }
+    }
+
+    @Test
+    public void testTokenWithoutDot() throws Exception {
+
+        TestAttrSet attrSet = createAttrSet();
+
+        for (String pattern : new String[] { "$$", "$request$", "a$$b" }) {
+            Pattern p = new Pattern(pattern);
+            assertThrows(StringIndexOutOfBoundsException.class, () -> p.substitute2("request", attrSet));
+        }
+    }
+}
@@ -0,0 +1,75 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cms.servlet.cert;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.netscape.certsrv.cert.CertBatchEnrollmentResult;
+import com.netscape.certsrv.cert.CertBatchEnrollmentResults;
+import com.netscape.certsrv.util.JSONSerializer;
+
+public class BatchEnrollmentWriterTest {
+
+    static List<CertBatchEnrollmentResult> parse(StringWriter out) throws Exception {
+        CertBatchEnrollmentResults results = JSONSerializer.fromJSON(out.toString(), CertBatchEnrollmentResults.class);
+        return new ArrayList<>(results.getEntries());
+    }
+
+    @Test
+    public void testResults() throws Exception {
+
+        StringWriter out = new StringWriter();
+        BatchEnrollmentWriter writer = new BatchEnrollmentWriter(out, request -> null);
+
+        writer.begin(2);
+        writer.handle(1, null, "rejected", null);
+        writer.handle(0, null, null, null);
+        writer.end();
+
+        List<CertBatchEnrollmentResult> entries = parse(out);
+        assertEquals(2, entries.size());
+
+        // results are returned in completion order
+        assertEquals(1, entries.get(0).getIndex());
+        assertEquals("rejected", entries.get(0).getError());
+        assertEquals(0, entries.get(1).getIndex());
+        assertNull(entries.get(1).getError());
+    }
+
+    @Test
+    public void testFailedBatch() throws Exception {
+
+        StringWriter out = new StringWriter();
+        BatchEnrollmentWriter writer = new BatchEnrollmentWriter(out, request -> null);
+
+        writer.begin(3);
+        writer.handle(1, null, null, null);
+        writer.end(new Exception("failed"));
+
+        // results after the end are ignored
+        writer.handle(2, null, null, null);
+        writer.end();
+
+        List<CertBatchEnrollmentResult> entries = parse(out);
+        assertEquals(3, entries.size());
+
+        assertEquals(1, entries.get(0).getIndex());
+        assertNull(entries.get(0).getError());
+
+        // the unreported items are returned with the error
+        assertEquals(0, entries.get(1).getIndex());
+        assertEquals("Unable to process enrollment request: failed", entries.get(1).getError());
+        assertEquals(2, entries.get(2).getIndex());
+        assertEquals("Unable to process enrollment request: failed", entries.get(2).getError());
+    }
+}
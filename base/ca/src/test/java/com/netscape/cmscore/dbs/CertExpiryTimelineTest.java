@@ -0,0 +1,188 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.dbs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigInteger;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.mozilla.jss.netscape.security.x509.CertificateValidity;
+
+public class CertExpiryTimelineTest {
+
+    static final long HOUR = 60 * 60 * 1000L;
+
+    static Date date(long time) {
+        return new Date(time);
+    }
+
+    static BigInteger serial(long serialNumber) {
+        return BigInteger.valueOf(serialNumber);
+    }
+
+    @Test
+    public void testLoad() throws Exception {
+
+        long now = 100 * HOUR;
+
+        TestCertificateRepository repository = new TestCertificateRepository();
+        repository.add(1, CertRecord.STATUS_VALID, date(0), date(now + HOUR));
+        repository.add(2, CertRecord.STATUS_REVOKED, date(0), date(now + 2 * HOUR));
+        repository.add(3, CertRecord.STATUS_EXPIRED, date(0), date(now + HOUR));
+        repository.add(4, CertRecord.STATUS_VALID, date(0), date(now + 20 * HOUR));
+
+        // 10-hour horizon
+        CertExpiryTimeline timeline = new CertExpiryTimeline(60, 10 * 60 * 60);
+        assertFalse(timeline.isLoaded());
+
+        timeline.load(repository, date(now));
+
+        assertTrue(timeline.isLoaded());
+        assertEquals(2, timeline.size());
+        assertEquals(CertRecord.STATUS_VALID, timeline.get(serial(1)).getStatus());
+        assertEquals(CertRecord.STATUS_REVOKED, timeline.get(serial(2)).getStatus());
+
+        // loading again before half of the horizon has passed is a no-op
+        timeline.load(repository, date(now + HOUR));
+        assertEquals(2, repository.searches);
+
+        // moving past half of the horizon loads the next range only
+        timeline.load(repository, date(now + 11 * HOUR));
+        assertEquals(4, repository.searches);
+        assertEquals(3, timeline.size());
+        assertEquals(date(now + 20 * HOUR), timeline.get(serial(4)).getNotAfter());
+    }
+
+    @Test
+    public void testLoadReplacesOutdatedEntry() throws Exception {
+
+        CertExpiryTimeline timeline = new CertExpiryTimeline(60, 10 * 60 * 60);
+        timeline.loadedUntil = 10 * HOUR;
+
+        TestCertificateRepository repository = new TestCertificateRepository();
+        repository.add(1, CertRecord.STATUS_VALID, date(0), date(HOUR));
+        CertStatusRecord record = repository.records.get(serial(1));
+
+        assertTrue(timeline.load(record));
+
+        // identical record
+        assertFalse(timeline.load(record));
+
+        // different notAfter date
+        record.set(CertificateValidity.NOT_AFTER, date(2 * HOUR));
+        assertTrue(timeline.load(record));
+        assertEquals(date(2 * HOUR), timeline.get(serial(1)).getNotAfter());
+        assertEquals(1, timeline.size());
+
+        // different status
+        record.set(CertRecord.ATTR_CERT_STATUS, CertRecord.STATUS_REVOKED);
+        assertTrue(timeline.load(record));
+        assertEquals(CertRecord.STATUS_REVOKED, timeline.get(serial(1)).getStatus());
+
+        // status that is not tracked
+        record.set(CertRecord.ATTR_CERT_STATUS, CertRecord.STATUS_REVOKED_EXPIRED);
+        assertFalse(timeline.load(record));
+        assertNull(timeline.get(serial(1)));
+        assertEquals(0, timeline.size());
+    }
+
+    @Test
+    public void testLoadSkipsModifiedEntry() throws Exception {
+
+        long now = 100 * HOUR;
+
+        CertExpiryTimeline timeline = new CertExpiryTimeline(60, 10 * 60 * 60);
+
+        // revoke the cert while the valid certs are being searched
+        TestCertificateRepository repository = new TestCertificateRepository() {
+            @Override
+            public RecordPagedList<CertStatusRecord> getValidCertsByNotAfterDate(Date from, Date to) {
+                RecordPagedList<CertStatusRecord> list = super.getValidCertsByNotAfterDate(from, to);
+                timeline.setStatus(serial(1), CertRecord.STATUS_REVOKED);
+                timeline.add(serial(2), date(now + 3 * HOUR), CertRecord.STATUS_REVOKED);
+                return list;
+            }
+        };
+        repository.add(1, CertRecord.STATUS_VALID, date(0), date(now + HOUR));
+        repository.add(2, CertRecord.STATUS_VALID, date(0), date(now + 2 * HOUR));
+
+        timeline.load(repository, date(now));
+
+        // cert 1 was not tracked when it was revoked, so it is not loaded
+        assertNull(timeline.get(serial(1)));
+
+        // cert 2 keeps the state received through the hook
+        assertEquals(CertRecord.STATUS_REVOKED, timeline.get(serial(2)).getStatus());
+        assertEquals(date(now + 3 * HOUR), timeline.get(serial(2)).getNotAfter());
+        assertNull(timeline.modified);
+
+        // after the load the hooks no longer block the search results
+        CertStatusRecord record = repository.records.get(serial(2));
+        assertTrue(timeline.load(record));
+        assertEquals(CertRecord.STATUS_VALID, timeline.get(serial(2)).getStatus());
+    }
+
+    @Test
+    public void testAdd() throws Exception {
+
+        CertExpiryTimeline timeline = new CertExpiryTimeline(60, 10 * 60 * 60);
+
+        // ignored until loaded
+        timeline.add(serial(1), date(HOUR), CertRecord.STATUS_VALID);
+        assertEquals(0, timeline.size());
+
+        timeline.loadedUntil = 10 * HOUR;
+
+        timeline.add(serial(1), date(HOUR), CertRecord.STATUS_VALID);
+        timeline.add(serial(2), date(20 * HOUR), CertRecord.STATUS_VALID);
+        timeline.add(serial(3), date(HOUR), CertRecord.STATUS_INVALID);
+        assertEquals(1, timeline.size());
+
+        // moved beyond the horizon
+        timeline.add(serial(1), date(20 * HOUR), CertRecord.STATUS_VALID);
+        assertEquals(0, timeline.size());
+        assertTrue(timeline.buckets.values().stream().allMatch(entries -> entries.isEmpty()));
+    }
+
+    @Test
+    public void testPollExpired() throws Exception {
+
+        CertExpiryTimeline timeline = new CertExpiryTimeline(60, 10 * 60 * 60);
+        timeline.loadedUntil = 10 * HOUR;
+
+        for (int i = 1; i <= 5; i++) {
+            timeline.add(serial(i), date(i * HOUR), CertRecord.STATUS_VALID);
+        }
+        timeline.setStatus(serial(2), CertRecord.STATUS_REVOKED);
+
+        List<CertExpiryTimeline.Entry> entries = timeline.pollExpired(date(4 * HOUR), 2);
+        assertEquals(2, entries.size());
+        assertEquals(serial(1), entries.get(0).getSerialNumber());
+        assertEquals(serial(3), entries.get(1).getSerialNumber());
+
+        entries = timeline.pollExpired(date(4 * HOUR), 10);
+        assertEquals(1, entries.size());
+        assertEquals(serial(4), entries.get(0).getSerialNumber());
+
+        // revoked certs are kept until their status changes
+        assertEquals(CertRecord.STATUS_REVOKED, timeline.get(serial(2)).getStatus());
+
+        // a cert taken off hold after expiring is returned again
+        timeline.setStatus(serial(2), CertRecord.STATUS_VALID);
+        entries = timeline.pollExpired(date(4 * HOUR), 10);
+        assertEquals(1, entries.size());
+        assertEquals(serial(2), entries.get(0).getSerialNumber());
+
+        timeline.setStatus(serial(5), CertRecord.STATUS_EXPIRED);
+        assertEquals(0, timeline.size());
+    }
+}
@@ -0,0 +1,219 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.dbs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.netscape.certsrv.base.EBaseException;
+import com.netscape.certsrv.dbs.Modification;
+import com.netscape.certsrv.dbs.ModificationSet;
+import com.netscape.certsrv.dbs.certdb.CertId;
+
+public class CertStatusCacheTest {
+
+    static final BigInteger SERIAL = BigInteger.valueOf(1);
+
+    /**
+     * Repository that records the modifications instead of sending
+     * them to the database so the cache hooks can be tested.
+     */
+    static class TestRepository extends CertificateRepository {
+
+        List<BigInteger> modified = new ArrayList<>();
+
+        TestRepository(CertStatusCache statusCache) {
+            super(null, null);
+            setStatusCache(statusCache);
+        }
+
+        @Override
+        public synchronized void modifyCertificateRecord(BigInteger serialNo, ModificationSet mods) {
+            modified.add(serialNo);
+        }
+    }
+
+    static CertRecord createRecord(String status) throws EBaseException {
+        CertRecord record = new CertRecord();
+        record.set(CertRecord.ATTR_ID, SERIAL);
+        record.set(CertRecord.ATTR_CERT_STATUS, status);
+        return record;
+    }
+
+    @Test
+    public void testHit() throws Exception {
+
+        CertStatusCache cache = new CertStatusCache(10, 1000);
+        assertNull(cache.get(SERIAL));
+
+        cache.put(SERIAL, createRecord(CertRecord.STATUS_VALID), cache.getModCount());
+
+        CertStatusCache.Entry entry = cache.get(SERIAL);
+        assertNotNull(entry);
+        assertTrue(entry.isFound());
+        assertEquals(CertRecord.STATUS_VALID, entry.getStatus());
+        assertNull(entry.getRevokedOn());
+
+        // the entry is reused until the status changes
+        assertSame(entry, cache.get(SERIAL));
+    }
+
+    @Test
+    public void testStaleRead() throws Exception {
+
+        CertStatusCache cache = new CertStatusCache(10, 1000);
+
+        // the status changes while the record is being read
+        long modCount = cache.getModCount();
+        cache.setRevoked(SERIAL, new Date(), null);
+        cache.put(SERIAL, createRecord(CertRecord.STATUS_VALID), modCount);
+
+        assertEquals(CertRecord.STATUS_REVOKED, cache.get(SERIAL).getStatus());
+
+        // same for serial numbers not found in the database
+        BigInteger serial = BigInteger.valueOf(2);
+        modCount = cache.getModCount();
+        cache.remove(serial);
+        cache.putNotFound(serial, modCount);
+
+        assertNull(cache.get(serial));
+    }
+
+    @Test
+    public void testRevoke() throws Exception {
+
+        CertStatusCache cache = new CertStatusCache(10, 1000);
+        TestRepository repository = new TestRepository(cache);
+
+        cache.put(SERIAL, createRecord(CertRecord.STATUS_VALID), cache.getModCount());
+
+        repository.markAsRevoked(SERIAL, null);
+        assertEquals(List.of(SERIAL), repository.modified);
+
+        CertStatusCache.Entry entry = cache.get(SERIAL);
+        assertEquals(CertRecord.STATUS_REVOKED, entry.getStatus());
+        assertNotNull(entry.getRevokedOn());
+        assertEquals(-1, entry.getReason());
+
+        repository.unmarkRevoked(SERIAL, null, entry.getRevokedOn(), "admin");
+
+        entry = cache.get(SERIAL);
+        assertEquals(CertRecord.STATUS_VALID, entry.getStatus());
+        assertNull(entry.getRevokedOn());
+    }
+
+    @Test
+    public void testModify() throws Exception {
+
+        CertStatusCache cache = new CertStatusCache(10, 1000);
+        TestRepository repository = new TestRepository(cache);
+
+        cache.put(SERIAL, createRecord(CertRecord.STATUS_VALID), cache.getModCount());
+
+        repository.updateStatus(new CertId(SERIAL), CertRecord.STATUS_EXPIRED);
+        assertEquals(CertRecord.STATUS_EXPIRED, cache.get(SERIAL).getStatus());
+
+        // a revocation without a known date is read again from the database
+        repository.updateStatus(new CertId(SERIAL), CertRecord.STATUS_REVOKED);
+        assertNull(cache.get(SERIAL));
+
+        // the status of uncached certificates is not added
+        BigInteger serial = BigInteger.valueOf(2);
+        repository.updateStatus(new CertId(serial), CertRecord.STATUS_EXPIRED);
+        assertNull(cache.get(serial));
+    }
+
+    @Test
+    public void testModifiedRecord() throws Exception {
+
+        CertStatusCache cache = new CertStatusCache(10, 1000);
+        TestRepository repository = new TestRepository(cache);
+
+        cache.put(SERIAL, createRecord(CertRecord.STATUS_VALID), cache.getModCount());
+
+        // modifications sent asynchronously are applied on completion
+        Date revokedOn = new Date();
+        repository.certificateRecordModified(
+                SERIAL,
+                repository.createRevocationModifications(null, false, "admin", revokedOn));
+
+        CertStatusCache.Entry entry = cache.get(SERIAL);
+        assertEquals(CertRecord.STATUS_REVOKED, entry.getStatus());
+        assertEquals(revokedOn, entry.getRevokedOn());
+
+        // revoking a cert on hold does not replace the status
+        Date newRevokedOn = new Date(revokedOn.getTime() + 1000);
+        repository.certificateRecordModified(
+                SERIAL,
+                repository.createRevocationModifications(null, true, "admin", newRevokedOn));
+
+        assertEquals(newRevokedOn, cache.get(SERIAL).getRevokedOn());
+
+        // modifications without status changes are ignored
+        ModificationSet mods = new ModificationSet();
+        mods.add(CertRecord.ATTR_AUTO_RENEW, Modification.MOD_REPLACE, CertRecord.AUTO_RENEWAL_DONE);
+        repository.certificateRecordModified(SERIAL, mods);
+
+        assertEquals(CertRecord.STATUS_REVOKED, cache.get(SERIAL).getStatus());
+    }
+
+    @Test
+    public void testNotFoundExpiry() throws Exception {
+
+        CertStatusCache cache = new CertStatusCache(10, 50);
+
+        cache.putNotFound(SERIAL, cache.getModCount());
+
+        CertStatusCache.Entry entry = cache.get(SERIAL);
+        assertNotNull(entry);
+        assertFalse(entry.isFound());
+
+        Thread.sleep(100);
+        assertNull(cache.get(SERIAL));
+        assertEquals(0, cache.size());
+
+        // a certificate issued later replaces the entry
+        cache.putNotFound(SERIAL, cache.getModCount());
+        cache.update(SERIAL, createRecord(CertRecord.STATUS_VALID));
+
+        Thread.sleep(100);
+        assertTrue(cache.get(SERIAL).isFound());
+
+        // serial numbers not found are not cached without a timeout
+        CertStatusCache disabled = new CertStatusCache(10, 0);
+        disabled.putNotFound(SERIAL, disabled.getModCount());
+        assertNull(disabled.get(SERIAL));
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+
+        CertStatusCache cache = new CertStatusCache(2, 1000);
+
+        cache.update(BigInteger.valueOf(1), createRecord(CertRecord.STATUS_VALID));
+        cache.update(BigInteger.valueOf(2), createRecord(CertRecord.STATUS_VALID));
+
+        // the least recently used entry is evicted
+        cache.get(BigInteger.valueOf(1));
+        cache.update(BigInteger.valueOf(3), createRecord(CertRecord.STATUS_VALID));
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get(BigInteger.valueOf(1)));
+        assertNull(cache.get(BigInteger.valueOf(2)));
+        assertNotNull(cache.get(BigInteger.valueOf(3)));
+    }
+}
@@ -0,0 +1,133 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.dbs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.Test;
+
+public class CertStatusUpdateTaskTest {
+
+    static final long HOUR = 60 * 60 * 1000L;
+
+    static class TestTask extends CertStatusUpdateTask {
+
+        List<BigInteger> expiredCerts = new ArrayList<>();
+
+        TestTask(CertificateRepository repository) {
+            super(repository, 600, 200, 1000);
+        }
+
+        @Override
+        synchronized void addExpiredCerts(List<BigInteger> serialNumbers) {
+            expiredCerts.addAll(serialNumbers);
+        }
+    }
+
+    /**
+     * Creates a repository with an invalid cert that has become valid,
+     * a valid cert and a revoked cert that have expired, and a valid
+     * cert that will expire within the timeline horizon.
+     */
+    static TestCertificateRepository createRepository(long now) throws Exception {
+
+        TestCertificateRepository repository = new TestCertificateRepository();
+        repository.add(1, CertRecord.STATUS_VALID, new Date(now - 10 * HOUR), new Date(now - HOUR));
+        repository.add(2, CertRecord.STATUS_REVOKED, new Date(now - 10 * HOUR), new Date(now - HOUR));
+        repository.add(3, CertRecord.STATUS_VALID, new Date(now - 10 * HOUR), new Date(now + HOUR));
+        repository.add(4, CertRecord.STATUS_INVALID, new Date(now - HOUR), new Date(now + 2 * HOUR));
+
+        return repository;
+    }
+
+    void assertUpdated(TestCertificateRepository repository, TestTask task) {
+
+        assertEquals(CertRecord.STATUS_EXPIRED, repository.getStatus(1));
+        assertEquals(CertRecord.STATUS_REVOKED_EXPIRED, repository.getStatus(2));
+        assertEquals(CertRecord.STATUS_VALID, repository.getStatus(3));
+        assertEquals(CertRecord.STATUS_VALID, repository.getStatus(4));
+
+        // CRL issuing points are notified about revoked certs only
+        assertEquals(List.of(BigInteger.valueOf(2)), task.expiredCerts);
+    }
+
+    @Test
+    public void testUpdateCertStatus() throws Exception {
+
+        TestCertificateRepository repository = createRepository(System.currentTimeMillis());
+        TestTask task = new TestTask(repository);
+
+        task.updateCertStatus();
+
+        assertUpdated(repository, task);
+    }
+
+    @Test
+    public void testUpdateCertStatusWithTimeline() throws Exception {
+
+        long now = System.currentTimeMillis();
+        TestCertificateRepository repository = createRepository(now);
+
+        CertExpiryTimeline timeline = new CertExpiryTimeline(60, 24 * 60 * 60);
+        repository.setExpiryTimeline(timeline);
+        timeline.load(repository, new Date(now));
+        repository.searches = 0;
+
+        TestTask task = new TestTask(repository);
+        task.updateCertStatus();
+
+        assertUpdated(repository, task);
+
+        // valid certs are expired from the timeline, so only
+        // the invalid and revoked certs are searched
+        assertEquals(2, repository.searches);
+
+        // the cert that became valid is tracked without another search
+        assertNotNull(timeline.get(BigInteger.valueOf(3)));
+        assertNotNull(timeline.get(BigInteger.valueOf(4)));
+        assertNull(timeline.get(BigInteger.valueOf(1)));
+        assertNull(timeline.get(BigInteger.valueOf(2)));
+        assertEquals(2, timeline.size());
+
+        timeline.add(BigInteger.valueOf(3), new Date(System.currentTimeMillis() - 1000), CertRecord.STATUS_VALID);
+        task.updateCertStatus();
+
+        assertEquals(CertRecord.STATUS_EXPIRED, repository.getStatus(3));
+        assertNull(timeline.get(BigInteger.valueOf(3)));
+    }
+
+    @Test
+    public void testUpdateCertStatusPartitioned() throws Exception {
+
+        long now = System.currentTimeMillis();
+        TestCertificateRepository repository = createRepository(now);
+
+        CertExpiryTimeline timeline = new CertExpiryTimeline(60, 24 * 60 * 60);
+        repository.setExpiryTimeline(timeline);
+        timeline.load(repository, new Date(now));
+
+        TestTask task = new TestTask(repository);
+        task.setPartitioning(2, 4, 10, 30);
+        task.workerService = Executors.newFixedThreadPool(2);
+
+        try {
+            task.updateCertStatus();
+        } finally {
+            task.workerService.shutdown();
+        }
+
+        assertUpdated(repository, task);
+        assertNotNull(timeline.get(BigInteger.valueOf(4)));
+    }
+}
@@ -0,0 +1,157 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.dbs;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.mozilla.jss.netscape.security.x509.CertificateValidity;
+
+import com.netscape.certsrv.base.EBaseException;
+import com.netscape.certsrv.dbs.DBPagedSearch;
+import com.netscape.certsrv.dbs.certdb.CertId;
+
+/**
+ * In-memory certificate repository that only supports the status
+ * searches and updates used by the cert status update task.
+ */
+class TestCertificateRepository extends CertificateRepository {
+
+    Map<BigInteger, CertStatusRecord> records = new LinkedHashMap<>();
+
+    // number of status searches
+    int searches;
+
+    TestCertificateRepository() {
+        super(null, null);
+    }
+
+    void add(long serialNumber, String status, Date notBefore, Date notAfter) throws EBaseException {
+
+        CertStatusRecord record = new CertStatusRecord();
+        record.set(CertRecord.ATTR_ID, BigInteger.valueOf(serialNumber));
+        record.set(CertRecord.ATTR_CERT_STATUS, status);
+        record.set(CertificateValidity.NOT_BEFORE, notBefore);
+        record.set(CertificateValidity.NOT_AFTER, notAfter);
+
+        records.put(record.getSerialNumber(), record);
+    }
+
+    String getStatus(long serialNumber) {
+        return records.get(BigInteger.valueOf(serialNumber)).getStatus();
+    }
+
+    static RecordPagedList<CertStatusRecord> createList(List<CertStatusRecord> list) {
+        return new RecordPagedList<>(new DBPagedSearch<CertStatusRecord>() {
+
+            boolean done;
+
+            @Override
+            public List<CertStatusRecord> getPage() {
+                return getPage(list.size());
+            }
+
+            @Override
+            public List<CertStatusRecord> getPage(int size) {
+                if (done) {
+                    return new ArrayList<>();
+                }
+                done = true;
+                return list;
+            }
+        });
+    }
+
+    RecordPagedList<CertStatusRecord> find(String status, boolean notBefore, Date from, Date to) {
+
+        searches++;
+        List<CertStatusRecord> results = new ArrayList<>();
+
+        for (CertStatusRecord record : records.values()) {
+
+            if (!status.equals(record.getStatus())) {
+                continue;
+            }
+
+            Date date = notBefore ? record.getNotBefore() : record.getNotAfter();
+            if ((from == null || date.after(from)) && !date.after(to)) {
+                results.add(copy(record));
+            }
+        }
+
+        return createList(results);
+    }
+
+    static CertStatusRecord copy(CertStatusRecord record) {
+        try {
+            CertStatusRecord copy = new CertStatusRecord();
+            copy.set(CertRecord.ATTR_ID, record.getSerialNumber());
+            copy.set(CertRecord.ATTR_CERT_STATUS, record.getStatus());
+            copy.set(CertificateValidity.NOT_BEFORE, record.getNotBefore());
+            copy.set(CertificateValidity.NOT_AFTER, record.getNotAfter());
+            return copy;
+        } catch (EBaseException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public RecordPagedList<CertStatusRecord> getInvalidCertsByNotBeforeDate(Date from, Date to) {
+        return find(CertRecord.STATUS_INVALID, true, from, to);
+    }
+
+    @Override
+    public RecordPagedList<CertStatusRecord> getValidCertsByNotAfterDate(Date from, Date to) {
+        return find(CertRecord.STATUS_VALID, false, from, to);
+    }
+
+    @Override
+    public RecordPagedList<CertStatusRecord> getRevokedCertsByNotAfterDate(Date from, Date to) {
+        return find(CertRecord.STATUS_REVOKED, false, from, to);
+    }
+
+    void setStatus(BigInteger serialNumber, String status) throws EBaseException {
+
+        records.get(serialNumber).set(CertRecord.ATTR_CERT_STATUS, status);
+
+        CertExpiryTimeline expiryTimeline = getExpiryTimeline();
+        if (expiryTimeline != null) {
+            expiryTimeline.setStatus(serialNumber, status);
+        }
+    }
+
+    @Override
+    public void updateStatus(CertId id, String status) throws EBaseException {
+        setStatus(id.toBigInteger(), status);
+    }
+
+    @Override
+    public void updateStatus(List<CertId> list, String status) throws EBaseException {
+        for (CertId certID : list) {
+            setStatus(certID.toBigInteger(), status);
+        }
+    }
+
+    @Override
+    public List<CertId> updateStatus(List<CertId> list, String oldStatus, String newStatus)
+            throws EBaseException {
+
+        List<CertId> updated = new ArrayList<>();
+
+        for (CertId certID : list) {
+            if (oldStatus.equals(records.get(certID.toBigInteger()).getStatus())) {
+                setStatus(certID.toBigInteger(), newStatus);
+                updated.add(certID);
+            }
+        }
+
+        return updated;
+    }
+}
@@ -0,0 +1,87 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.profile;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.netscape.certsrv.base.ServiceUnavailableException;
+import com.netscape.cms.profile.common.CAEnrollProfile;
+import com.netscape.cms.profile.common.Profile;
+
+public class LDAPProfileSubsystemTest {
+
+    @Test
+    public void testLoadedProfile() throws Exception {
+
+        LDAPProfileSubsystem subsystem = new LDAPProfileSubsystem();
+        subsystem.loadTimeout = 100;
+
+        Profile profile = new CAEnrollProfile();
+        subsystem.putProfile("caUserCert", "caEnrollImpl", profile);
+
+        // a loaded profile does not wait for the remaining profiles
+        assertSame(profile, subsystem.getProfile("caUserCert"));
+    }
+
+    @Test
+    public void testLoadTimeout() throws Exception {
+
+        LDAPProfileSubsystem subsystem = new LDAPProfileSubsystem();
+        subsystem.loadTimeout = 100;
+
+        assertThrows(ServiceUnavailableException.class, () -> subsystem.getProfile("caUserCert"));
+        assertThrows(ServiceUnavailableException.class, () -> subsystem.getProfileIds());
+    }
+
+    @Test
+    public void testWaitForInitialLoad() throws Exception {
+
+        LDAPProfileSubsystem subsystem = new LDAPProfileSubsystem();
+        subsystem.loadTimeout = TimeUnit.SECONDS.toMillis(10);
+
+        CompletableFuture<Profile> result = CompletableFuture.supplyAsync(() -> {
+            try {
+                return subsystem.getProfile("caUserCert");
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        Thread.sleep(100);
+        assertFalse(result.isDone());
+
+        Profile profile = new CAEnrollProfile();
+        subsystem.putProfile("caUserCert", "caEnrollImpl", profile);
+        subsystem.initialLoadDone.countDown();
+
+        assertSame(profile, result.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testMissingProfileAfterInitialLoad() throws Exception {
+
+        LDAPProfileSubsystem subsystem = new LDAPProfileSubsystem();
+        subsystem.loadTimeout = TimeUnit.SECONDS.toMillis(10);
+        subsystem.initialLoadDone.countDown();
+
+        long start = System.currentTimeMillis();
+        assertNull(subsystem.getProfile("caUserCert"));
+        assertTrue(System.currentTimeMillis() - start < subsystem.loadTimeout);
+
+        assertEquals(0, Collections.list(subsystem.getProfileIds()).size());
+    }
+}
@@ -0,0 +1,207 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package org.dogtagpki.server.ca.job;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.File;
+import java.math.BigInteger;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.netscape.certsrv.base.EBaseException;
+import com.netscape.certsrv.dbs.DBPagedSearch;
+import com.netscape.cmscore.dbs.DBParallelSearch;
+import com.netscape.cmscore.dbs.DBSSession;
+import com.netscape.cmscore.dbs.RepositoryRecord;
+
+public class PruningJobTest {
+
+    static final BigInteger LIMIT = BigInteger.valueOf(100);
+
+    /**
+     * Search over the IDs from 0 to 100 that have not been deleted.
+     */
+    static class TestSearch extends DBParallelSearch<RepositoryRecord> {
+
+        Set<BigInteger> deleted = ConcurrentHashMap.newKeySet();
+
+        TestSearch() {
+            super("test", null, RepositoryRecord.class, "ou=test", "(objectClass=*)", RepositoryRecord.ATTR_SERIALNO);
+            setSearchThreads(1);
+            setProcessThreads(1);
+        }
+
+        @Override
+        protected DBSSession createSession() {
+            return new DBSSession();
+        }
+
+        @Override
+        protected DBPagedSearch<RepositoryRecord> createPagedSearch(DBSSession session, Range range) {
+
+            int start = range.getStart() == null ? 0 : range.getStart().intValue();
+            int end = range.getEnd() == null ? LIMIT.intValue() : range.getEnd().intValue();
+
+            return new DBPagedSearch<>() {
+
+                int next = start;
+
+                @Override
+                public List<RepositoryRecord> getPage() throws EBaseException {
+                    return getPage(10);
+                }
+
+                @Override
+                public List<RepositoryRecord> getPage(int size) throws EBaseException {
+
+                    List<RepositoryRecord> page = new ArrayList<>();
+
+                    while (page.size() < size && next < end) {
+                        BigInteger id = BigInteger.valueOf(next++);
+                        if (deleted.contains(id)) {
+                            continue;
+                        }
+                        RepositoryRecord record = new RepositoryRecord();
+                        record.set(RepositoryRecord.ATTR_SERIALNO, id);
+                        page.add(record);
+                    }
+
+                    return page;
+                }
+            };
+        }
+    }
+
+    @Test
+    public void testFindRange() throws Exception {
+
+        PruningJob job = new PruningJob();
+        List<DBParallelSearch.Range> ranges = DBParallelSearch.createRanges(LIMIT, 4);
+
+        assertEquals(0, job.findRange(ranges, null));
+        assertEquals(0, job.findRange(ranges, ""));
+
+        // 0x19 = 25
+        assertEquals(1, job.findRange(ranges, "19"));
+
+        // cursors saved with different ranges
+        assertEquals(1, job.findRange(ranges, "1a"));
+        assertEquals(3, job.findRange(ranges, "1000"));
+    }
+
+    @Test
+    public void testUpdateDelay() throws Exception {
+
+        PruningJob job = new PruningJob();
+
+        // disabled
+        assertEquals(0, job.updateDelay(1000, 10));
+
+        job.maxLatency = 10;
+        assertEquals(0, job.updateDelay(1000, 0));
+
+        // slow deletions double the delay up to the maximum
+        assertEquals(PruningJob.MIN_DELAY, job.updateDelay(1000, 10));
+        assertEquals(PruningJob.MIN_DELAY * 2, job.updateDelay(1000, 10));
+
+        for (int i = 0; i < 20; i++) {
+            job.updateDelay(1000, 10);
+        }
+        assertEquals(PruningJob.MAX_DELAY, job.getDelay());
+
+        // fast deletions halve the delay down to zero
+        assertEquals(PruningJob.MAX_DELAY / 2, job.updateDelay(10, 10));
+
+        for (int i = 0; i < 20; i++) {
+            job.updateDelay(10, 10);
+        }
+        assertEquals(0, job.getDelay());
+
+        // no waiting without a delay
+        long start = System.currentTimeMillis();
+        job.throttle(start, 10);
+        assertEquals(0, job.getDelay());
+    }
+
+    @Test
+    public void testBatch() throws Exception {
+
+        PruningJob.Batch<Integer> batch = new PruningJob.Batch<>(3);
+
+        assertNull(batch.add(1));
+        assertNull(batch.add(2));
+        assertEquals(List.of(1, 2, 3), batch.add(3));
+
+        assertNull(batch.add(4));
+        assertEquals(List.of(4), batch.drain());
+        assertEquals(List.of(), batch.drain());
+    }
+
+    @Test
+    public void testCursorResume() throws Exception {
+
+        PruningJob job = new PruningJob();
+        job.cursorRanges = 4;
+
+        TestSearch search = new TestSearch();
+        List<Integer> batchSizes = new ArrayList<>();
+
+        PruningJob.BatchDeleter<RepositoryRecord> deleter = records -> {
+            batchSizes.add(records.size());
+            for (RepositoryRecord record : records) {
+                search.deleted.add(record.getSerialNumber());
+            }
+        };
+
+        // the size limit stops the search in the second range
+        job.pruneRecords("certCursor", search, LIMIT, 30, 0, 8, deleter);
+        assertEquals(30, search.deleted.size());
+        assertEquals(List.of(8, 8, 8, 6), batchSizes);
+        assertEquals("19", job.getCursor("certCursor"));
+
+        // the next run resumes from the second range
+        job.pruneRecords("certCursor", search, LIMIT, 30, 0, 8, deleter);
+        assertEquals(60, search.deleted.size());
+        assertEquals("32", job.getCursor("certCursor"));
+
+        // 0x4b = 75
+        job.pruneRecords("certCursor", search, LIMIT, 30, 0, 8, deleter);
+        assertEquals(90, search.deleted.size());
+        assertEquals("4b", job.getCursor("certCursor"));
+
+        // the cursor stays when all ranges are completed
+        job.pruneRecords("certCursor", search, LIMIT, 30, 0, 8, deleter);
+        assertEquals(100, search.deleted.size());
+        assertEquals("4b", job.getCursor("certCursor"));
+    }
+
+    @Test
+    public void testCursorFile(@TempDir Path dir) throws Exception {
+
+        File cursorFile = dir.resolve("pruning.cursor").toFile();
+
+        PruningJob job = new PruningJob();
+        job.cursorFile = cursorFile;
+        job.setCursor("certCursor", "19");
+        job.setCursor("requestCursor", "4b");
+
+        // the cursors are restored after a restart
+        PruningJob newJob = new PruningJob();
+        newJob.cursorFile = cursorFile;
+        newJob.loadCursors();
+
+        assertEquals("19", newJob.getCursor("certCursor"));
+        assertEquals("4b", newJob.getCursor("requestCursor"));
+    }
+}
@@ -22,6 +22,8 @@ import javax.ws.rs.client.Entity;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.netscape.certsrv.cert.CertBatchRevocationRequest;
+import com.netscape.certsrv.cert.CertBatchRevocationResults;
 import com.netscape.certsrv.cert.CertData;
 import com.netscape.certsrv.cert.CertRequestInfo;
 import com.netscape.certsrv.cert.CertRevokeRequest;
@@ -54,6 +56,15 @@ public class CAAgentCertClient extends Client {
         return post(id.toHexString() + "/revoke-ca", null, entity, CertRequestInfo.class);
     }
 
+    public CertRevokeRequest reviewCerts() throws Exception {
+        return get("revoke", CertRevokeRequest.class);
+    }
+
+    public CertBatchRevocationResults revokeCerts(CertBatchRevocationRequest request) throws Exception {
+        Entity<CertBatchRevocationRequest> entity = client.entity(request);
+        return post("revoke", null, entity, CertBatchRevocationResults.class);
+    }
+
     public CertRequestInfo unrevokeCert(CertId id) throws Exception {
         return post(id.toHexString() + "/unrevoke", CertRequestInfo.class);
     }
@@ -34,6 +34,10 @@ import org.slf4j.LoggerFactory;
 import com.netscape.certsrv.authentication.EAuthException;
 import com.netscape.certsrv.cert.CertData;
 import com.netscape.certsrv.cert.CertDataInfos;
+import com.netscape.certsrv.cert.CertBatchEnrollmentRequest;
+import com.netscape.certsrv.cert.CertBatchEnrollmentResults;
+import com.netscape.certsrv.cert.CertBatchRevocationRequest;
+import com.netscape.certsrv.cert.CertBatchRevocationResults;
 import com.netscape.certsrv.cert.CertEnrollmentRequest;
 import com.netscape.certsrv.cert.CertRequestInfo;
 import com.netscape.certsrv.cert.CertRequestInfos;
@@ -110,6 +114,14 @@ public class CACertClient extends Client {
         return agentCertClient.revokeCACert(id, request);
     }
 
+    public CertRevokeRequest reviewCerts() throws Exception {
+        return agentCertClient.reviewCerts();
+    }
+
+    public CertBatchRevocationResults revokeCerts(CertBatchRevocationRequest request) throws Exception {
+        return agentCertClient.revokeCerts(request);
+    }
+
     public CertRequestInfo unrevokeCert(CertId id) throws Exception {
         return agentCertClient.unrevokeCert(id);
     }
@@ -119,6 +131,11 @@ public class CACertClient extends Client {
         return certRequestClient.enrollRequest(data, aid, adn);
     }
 
+    public CertBatchEnrollmentResults enrollRequests(
+            CertBatchEnrollmentRequest data, AuthorityID aid, X500Name adn) throws Exception {
+        return certRequestClient.enrollRequests(data, aid, adn);
+    }
+
     public CertRequestInfo getRequest(RequestId id) throws Exception {
         return certRequestClient.getRequest(id);
     }
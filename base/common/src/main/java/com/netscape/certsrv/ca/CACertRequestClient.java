@@ -26,6 +26,8 @@ import org.mozilla.jss.netscape.security.x509.X500Name;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.netscape.certsrv.cert.CertBatchEnrollmentRequest;
+import com.netscape.certsrv.cert.CertBatchEnrollmentResults;
 import com.netscape.certsrv.cert.CertEnrollmentRequest;
 import com.netscape.certsrv.cert.CertRequestInfo;
 import com.netscape.certsrv.cert.CertRequestInfos;
@@ -59,6 +61,16 @@ public class CACertRequestClient extends Client {
         return post(null, params, entity, CertRequestInfos.class);
     }
 
+    public CertBatchEnrollmentResults enrollRequests(
+            CertBatchEnrollmentRequest data, AuthorityID aid, X500Name adn) throws Exception {
+        Map<String, Object> params = new HashMap<>();
+        if (aid != null) params.put("issuer-id", aid.toString());
+        if (adn != null) params.put("issuer-dn", adn.toLdapDNString());
+        String batchRequest = (String) client.marshall(data);
+        Entity<String> entity = client.entity(batchRequest);
+        return post("batch", params, entity, CertBatchEnrollmentResults.class);
+    }
+
     public ProfileDataInfos listEnrollmentTemplates(Integer start, Integer size) throws Exception {
         Map<String, Object> params = new HashMap<>();
         if (start != null) params.put("start",start);
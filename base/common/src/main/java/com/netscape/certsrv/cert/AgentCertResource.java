@@ -31,6 +31,26 @@ public interface AgentCertResource {
     @AuthMethodMapping("certs")
     public Response revokeCert(@PathParam("id") CertId id, CertRevokeRequest request);
 
+    /**
+     * Returns a batch revocation request template with the nonce
+     * for the next batch revocation.
+     */
+    @GET
+    @Path("revoke")
+    @ACLMapping("certs")
+    @AuthMethodMapping("certs")
+    public Response reviewCerts();
+
+    /**
+     * Revokes a batch of certificates specified by serial number
+     * or by search filter.
+     */
+    @POST
+    @Path("revoke")
+    @ACLMapping("certs")
+    @AuthMethodMapping("certs")
+    public Response revokeCerts(CertBatchRevocationRequest request);
+
     @POST
     @Path("{id}/unrevoke")
     @ACLMapping("certs")
@@ -0,0 +1,101 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.certsrv.cert;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.netscape.certsrv.profile.ProfileAttribute;
+import com.netscape.certsrv.profile.ProfileInput;
+import com.netscape.certsrv.util.JSONSerializer;
+
+/**
+ * A batch of certificate requests enrolled with the same profile.
+ *
+ * The enrollment request contains the profile, the credentials and
+ * the inputs shared by all items. Each item is enrolled with a copy
+ * of the enrollment request where the cert_request input is replaced
+ * with one of the certificate requests.
+ */
+@JsonInclude(Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown=true)
+public class CertBatchEnrollmentRequest implements JSONSerializer {
+
+    CertEnrollmentRequest request;
+    List<String> certRequests = new ArrayList<>();
+
+    public CertEnrollmentRequest getRequest() {
+        return request;
+    }
+
+    public void setRequest(CertEnrollmentRequest request) {
+        this.request = request;
+    }
+
+    public List<String> getCertRequests() {
+        return certRequests;
+    }
+
+    public void setCertRequests(List<String> certRequests) {
+        this.certRequests = certRequests;
+    }
+
+    public void addCertRequest(String certRequest) {
+        certRequests.add(certRequest);
+    }
+
+    /**
+     * Creates the enrollment request for the given item.
+     */
+    public CertEnrollmentRequest createRequest(int index) throws Exception {
+
+        CertEnrollmentRequest item = JSONSerializer.fromJSON(request.toJSON(), CertEnrollmentRequest.class);
+        String certRequest = certRequests.get(index);
+
+        for (ProfileInput input : item.getInputs()) {
+            ProfileAttribute attr = input.getAttribute("cert_request");
+            if (attr != null) {
+                attr.setValue(certRequest);
+            }
+        }
+
+        return item;
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + ((certRequests == null) ? 0 : certRequests.hashCode());
+        result = prime * result + ((request == null) ? 0 : request.hashCode());
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        CertBatchEnrollmentRequest other = (CertBatchEnrollmentRequest) obj;
+        if (certRequests == null) {
+            if (other.certRequests != null)
+                return false;
+        } else if (!certRequests.equals(other.certRequests))
+            return false;
+        if (request == null) {
+            if (other.request != null)
+                return false;
+        } else if (!request.equals(other.request))
+            return false;
+        return true;
+    }
+}
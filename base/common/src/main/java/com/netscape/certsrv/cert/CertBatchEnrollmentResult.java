@@ -0,0 +1,94 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.certsrv.cert;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.netscape.certsrv.util.JSONSerializer;
+
+/**
+ * The result of one item of a batch enrollment.
+ */
+@JsonInclude(Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown=true)
+public class CertBatchEnrollmentResult implements JSONSerializer {
+
+    Integer index;
+    List<CertRequestInfo> requests = new ArrayList<>();
+    String error;
+
+    /**
+     * Returns the position of the certificate request in the batch.
+     */
+    public Integer getIndex() {
+        return index;
+    }
+
+    public void setIndex(Integer index) {
+        this.index = index;
+    }
+
+    public List<CertRequestInfo> getRequests() {
+        return requests;
+    }
+
+    public void setRequests(List<CertRequestInfo> requests) {
+        this.requests = requests;
+    }
+
+    public void addRequest(CertRequestInfo request) {
+        requests.add(request);
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + ((error == null) ? 0 : error.hashCode());
+        result = prime * result + ((index == null) ? 0 : index.hashCode());
+        result = prime * result + ((requests == null) ? 0 : requests.hashCode());
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        CertBatchEnrollmentResult other = (CertBatchEnrollmentResult) obj;
+        if (error == null) {
+            if (other.error != null)
+                return false;
+        } else if (!error.equals(other.error))
+            return false;
+        if (index == null) {
+            if (other.index != null)
+                return false;
+        } else if (!index.equals(other.index))
+            return false;
+        if (requests == null) {
+            if (other.requests != null)
+                return false;
+        } else if (!requests.equals(other.requests))
+            return false;
+        return true;
+    }
+}
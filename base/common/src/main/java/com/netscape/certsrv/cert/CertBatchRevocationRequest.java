@@ -0,0 +1,95 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.certsrv.cert;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.netscape.certsrv.util.JSONSerializer;
+
+/**
+ * A batch of certificates revoked with the same reason.
+ *
+ * The certificates are specified either by serial number or by
+ * a search filter. The revocation request contains the reason,
+ * the invalidity date, and the comments shared by all certificates.
+ */
+@JsonInclude(Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown=true)
+public class CertBatchRevocationRequest implements JSONSerializer {
+
+    CertRevokeRequest request;
+    List<String> serialNumbers = new ArrayList<>();
+    String filter;
+
+    public CertRevokeRequest getRequest() {
+        return request;
+    }
+
+    public void setRequest(CertRevokeRequest request) {
+        this.request = request;
+    }
+
+    public List<String> getSerialNumbers() {
+        return serialNumbers;
+    }
+
+    public void setSerialNumbers(List<String> serialNumbers) {
+        this.serialNumbers = serialNumbers;
+    }
+
+    public void addSerialNumber(String serialNumber) {
+        serialNumbers.add(serialNumber);
+    }
+
+    public String getFilter() {
+        return filter;
+    }
+
+    public void setFilter(String filter) {
+        this.filter = filter;
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + ((filter == null) ? 0 : filter.hashCode());
+        result = prime * result + ((request == null) ? 0 : request.hashCode());
+        result = prime * result + ((serialNumbers == null) ? 0 : serialNumbers.hashCode());
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        CertBatchRevocationRequest other = (CertBatchRevocationRequest) obj;
+        if (filter == null) {
+            if (other.filter != null)
+                return false;
+        } else if (!filter.equals(other.filter))
+            return false;
+        if (request == null) {
+            if (other.request != null)
+                return false;
+        } else if (!request.equals(other.request))
+            return false;
+        if (serialNumbers == null) {
+            if (other.serialNumbers != null)
+                return false;
+        } else if (!serialNumbers.equals(other.serialNumbers))
+            return false;
+        return true;
+    }
+}
@@ -0,0 +1,43 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.certsrv.cert;
+
+import java.util.Collection;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.netscape.certsrv.base.DataCollection;
+import com.netscape.certsrv.util.JSONSerializer;
+
+/**
+ * The results of a batch revocation.
+ */
+@JsonInclude(Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown=true)
+public class CertBatchRevocationResults extends DataCollection<CertBatchRevocationResult> implements JSONSerializer {
+
+    boolean truncated;
+
+    @Override
+    public Collection<CertBatchRevocationResult> getEntries() {
+        return super.getEntries();
+    }
+
+    /**
+     * Returns true if the filter matched more certificates than
+     * the server revokes in one batch. The remaining certificates
+     * are not revoked; the client can send the same filter again
+     * to revoke them.
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    public void setTruncated(boolean truncated) {
+        this.truncated = truncated;
+    }
+}
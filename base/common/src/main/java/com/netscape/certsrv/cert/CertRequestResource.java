@@ -36,6 +36,18 @@ public interface CertRequestResource {
         @QueryParam("issuer-id") String caIDString,
         @QueryParam("issuer-dn") String caDNString);
 
+    /**
+     * Submits a batch of certificate requests that share the same
+     * enrollment request. The results are streamed as the items
+     * are processed.
+     */
+    @POST
+    @Path("batch")
+    public Response enrollCerts(
+        String batchRequest,
+        @QueryParam("issuer-id") String caIDString,
+        @QueryParam("issuer-dn") String caDNString);
+
     /**
      * Used to retrieve cert request info for a specific request
      */
@@ -0,0 +1,171 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.certsrv.publish;
+
+import java.util.Objects;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.netscape.certsrv.util.JSONSerializer;
+
+/**
+ * Publishing queue status.
+ */
+@JsonInclude(Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown=true)
+public class PublishingQueueInfo implements JSONSerializer {
+
+    boolean enabled;
+    int size;
+    int maxSize;
+    int maxThreads;
+    long lag;
+    boolean pendingSearch;
+    long published;
+    long failed;
+    long retried;
+    long deduplicated;
+    long coalesced;
+    long overflowed;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Number of requests being published or waiting in the queue.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    public void setSize(int size) {
+        this.size = size;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public int getMaxThreads() {
+        return maxThreads;
+    }
+
+    public void setMaxThreads(int maxThreads) {
+        this.maxThreads = maxThreads;
+    }
+
+    /**
+     * Time in milliseconds the oldest queued request has been waiting.
+     */
+    public long getLag() {
+        return lag;
+    }
+
+    public void setLag(long lag) {
+        this.lag = lag;
+    }
+
+    /**
+     * Whether there are completed requests in the database that
+     * did not fit into the queue.
+     */
+    public boolean isPendingSearch() {
+        return pendingSearch;
+    }
+
+    public void setPendingSearch(boolean pendingSearch) {
+        this.pendingSearch = pendingSearch;
+    }
+
+    public long getPublished() {
+        return published;
+    }
+
+    public void setPublished(long published) {
+        this.published = published;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public void setFailed(long failed) {
+        this.failed = failed;
+    }
+
+    public long getRetried() {
+        return retried;
+    }
+
+    public void setRetried(long retried) {
+        this.retried = retried;
+    }
+
+    public long getDeduplicated() {
+        return deduplicated;
+    }
+
+    public void setDeduplicated(long deduplicated) {
+        this.deduplicated = deduplicated;
+    }
+
+    public long getCoalesced() {
+        return coalesced;
+    }
+
+    public void setCoalesced(long coalesced) {
+        this.coalesced = coalesced;
+    }
+
+    public long getOverflowed() {
+        return overflowed;
+    }
+
+    public void setOverflowed(long overflowed) {
+        this.overflowed = overflowed;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(coalesced, deduplicated, enabled, failed, lag, maxSize, maxThreads,
+                overflowed, pendingSearch, published, retried, size);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        PublishingQueueInfo other = (PublishingQueueInfo) obj;
+        return coalesced == other.coalesced && deduplicated == other.deduplicated
+                && enabled == other.enabled && failed == other.failed && lag == other.lag
+                && maxSize == other.maxSize && maxThreads == other.maxThreads
+                && overflowed == other.overflowed && pendingSearch == other.pendingSearch
+                && published == other.published && retried == other.retried && size == other.size;
+    }
+
+    @Override
+    public String toString() {
+        try {
+            return toJSON();
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -29,6 +29,9 @@ public class JobInfo implements JSONSerializer {
 
     Map<String, String> parameters = new LinkedHashMap<>();
 
+    // progress reported by the running job, if any
+    Map<String, String> status;
+
     public String getID() {
         return id;
     }
@@ -81,9 +84,17 @@ public class JobInfo implements JSONSerializer {
         parameters.put(name, value);
     }
 
+    public Map<String, String> getStatus() {
+        return status;
+    }
+
+    public void setStatus(Map<String, String> status) {
+        this.status = status;
+    }
+
     @Override
     public int hashCode() {
-        return Objects.hash(cron, enabled, id, owner, parameters, pluginName);
+        return Objects.hash(cron, enabled, id, owner, parameters, pluginName, status);
     }
 
     @Override
@@ -97,7 +108,8 @@ public class JobInfo implements JSONSerializer {
         JobInfo other = (JobInfo) obj;
         return Objects.equals(cron, other.cron) && enabled == other.enabled && Objects.equals(id, other.id)
                 && Objects.equals(owner, other.owner) && Objects.equals(parameters, other.parameters)
-                && Objects.equals(pluginName, other.pluginName);
+                && Objects.equals(pluginName, other.pluginName)
+                && Objects.equals(status, other.status);
     }
 
     @Override
@@ -0,0 +1,95 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.certsrv.cert;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.netscape.certsrv.profile.ProfileAttribute;
+import com.netscape.certsrv.profile.ProfileInput;
+import com.netscape.certsrv.request.RequestId;
+import com.netscape.certsrv.request.RequestStatus;
+import com.netscape.certsrv.util.JSONSerializer;
+
+public class CertBatchEnrollmentRequestTest {
+
+    private static CertEnrollmentRequest request = new CertEnrollmentRequest();
+    private static CertBatchEnrollmentRequest before = new CertBatchEnrollmentRequest();
+
+    @BeforeAll
+    public static void setUpBefore() {
+        request.setProfileId("caServerCert");
+
+        ProfileInput certReq = request.createInput("CertReqInput");
+        certReq.addAttribute(new ProfileAttribute("cert_request_type", "pkcs10", null));
+        certReq.addAttribute(new ProfileAttribute("cert_request", null, null));
+
+        request.setAttribute("uid", "testuser");
+        request.setAttribute("pwd", "password");
+
+        before.setRequest(request);
+        before.addCertRequest("csr1");
+        before.addCertRequest("csr2");
+    }
+
+    @Test
+    public void testJSON() throws Exception {
+        // Act
+        String json = before.toJSON();
+        System.out.println("JSON (before): " + json);
+
+        CertBatchEnrollmentRequest afterJSON = JSONSerializer.fromJSON(json, CertBatchEnrollmentRequest.class);
+        System.out.println("JSON (after): " + afterJSON.toJSON());
+
+        // Assert
+        assertEquals(before, afterJSON);
+    }
+
+    @Test
+    public void testCreateRequest() throws Exception {
+
+        CertEnrollmentRequest item = before.createRequest(1);
+
+        assertNotSame(request, item);
+        assertEquals("caServerCert", item.getProfileId());
+        assertEquals("testuser", item.getAttribute("uid"));
+        assertEquals("csr2", item.getInput("CertReqInput").getAttribute("cert_request").getValue());
+
+        // the shared request is not modified
+        assertEquals(null, request.getInput("CertReqInput").getAttribute("cert_request").getValue());
+    }
+
+    @Test
+    public void testResultsJSON() throws Exception {
+
+        CertRequestInfo info = new CertRequestInfo();
+        info.setRequestID(new RequestId("0x1"));
+        info.setRequestType("enrollment");
+        info.setRequestStatus(RequestStatus.COMPLETE);
+
+        CertBatchEnrollmentResult result1 = new CertBatchEnrollmentResult();
+        result1.setIndex(0);
+        result1.addRequest(info);
+
+        CertBatchEnrollmentResult result2 = new CertBatchEnrollmentResult();
+        result2.setIndex(1);
+        result2.setError("Invalid CSR");
+
+        // same format as streamed by the server
+        String json = "{\"total\":2,\"entries\":[\n"
+                + result2.toJSON() + ",\n"
+                + result1.toJSON() + "\n]}\n";
+
+        CertBatchEnrollmentResults results = JSONSerializer.fromJSON(json, CertBatchEnrollmentResults.class);
+
+        assertEquals(2, results.getTotal());
+        assertEquals(result2, results.getEntries().toArray()[0]);
+        assertEquals(result1, results.getEntries().toArray()[1]);
+    }
+}
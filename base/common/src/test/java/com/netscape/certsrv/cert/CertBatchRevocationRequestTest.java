@@ -0,0 +1,71 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.certsrv.cert;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.netscape.certsrv.util.JSONSerializer;
+
+public class CertBatchRevocationRequestTest {
+
+    private static CertBatchRevocationRequest before = new CertBatchRevocationRequest();
+
+    @BeforeAll
+    public static void setUpBefore() {
+        CertRevokeRequest request = new CertRevokeRequest();
+        request.setReason("Key_Compromise");
+        request.setComments("compromised");
+
+        before.setRequest(request);
+        before.addSerialNumber("0x10");
+        before.addSerialNumber("0x11");
+    }
+
+    @Test
+    public void testJSON() throws Exception {
+        // Act
+        String json = before.toJSON();
+        System.out.println("JSON (before): " + json);
+
+        CertBatchRevocationRequest afterJSON = JSONSerializer.fromJSON(json, CertBatchRevocationRequest.class);
+        System.out.println("JSON (after): " + afterJSON.toJSON());
+
+        // Assert
+        assertEquals(before, afterJSON);
+    }
+
+    @Test
+    public void testResultsJSON() throws Exception {
+
+        CertBatchRevocationResult result1 = new CertBatchRevocationResult();
+        result1.setSerialNumber("0x10");
+        result1.setStatus("revoked");
+
+        CertBatchRevocationResult result2 = new CertBatchRevocationResult();
+        result2.setSerialNumber("0x11");
+        result2.setStatus("not-found");
+
+        CertBatchRevocationResults before = new CertBatchRevocationResults();
+        before.addEntry(result1);
+        before.addEntry(result2);
+        before.setTotal(2);
+        before.setTruncated(true);
+
+        String json = before.toJSON();
+        System.out.println("JSON: " + json);
+
+        CertBatchRevocationResults after = JSONSerializer.fromJSON(json, CertBatchRevocationResults.class);
+
+        assertEquals(2, after.getTotal());
+        assertTrue(after.isTruncated());
+        assertEquals(result1, after.getEntries().toArray()[0]);
+        assertEquals(result2, after.getEntries().toArray()[1]);
+    }
+}
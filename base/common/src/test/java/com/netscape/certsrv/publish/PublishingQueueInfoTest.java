@@ -0,0 +1,47 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.certsrv.publish;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.netscape.certsrv.util.JSONSerializer;
+
+public class PublishingQueueInfoTest {
+
+    private static PublishingQueueInfo before = new PublishingQueueInfo();
+
+    @BeforeAll
+    public static void setUpBefore() {
+        before.setEnabled(true);
+        before.setSize(42);
+        before.setMaxSize(10000);
+        before.setMaxThreads(3);
+        before.setLag(1500);
+        before.setPendingSearch(true);
+        before.setPublished(1000);
+        before.setFailed(1);
+        before.setRetried(2);
+        before.setDeduplicated(3);
+        before.setCoalesced(4);
+        before.setOverflowed(5);
+    }
+
+    @Test
+    public void testJSON() throws Exception {
+        // Act
+        String json = before.toJSON();
+        System.out.println("JSON (before): " + json);
+
+        PublishingQueueInfo afterJSON = JSONSerializer.fromJSON(json, PublishingQueueInfo.class);
+        System.out.println("JSON (after): " + afterJSON.toJSON());
+
+        // Assert
+        assertEquals(before, afterJSON);
+    }
+}
@@ -16,6 +16,7 @@ public class SelfTestResultTest {
         before.setID("selftest1");
         before.setStatus("PASSED");
         before.setOutput(null);
+        before.setDuration(25L);
     }
 
     @Test
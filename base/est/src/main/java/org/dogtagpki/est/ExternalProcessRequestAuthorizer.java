@@ -8,7 +8,9 @@ package org.dogtagpki.est;
 import java.io.IOException;
 import java.security.cert.CertificateEncodingException;
 import java.security.cert.X509Certificate;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
@@ -27,10 +29,16 @@ import org.mozilla.jss.netscape.security.pkcs.PKCS10;
 
 import com.netscape.certsrv.base.ForbiddenException;
 import com.netscape.certsrv.base.PKIException;
+import com.netscape.cmscore.util.ExternalProcessPool;
 
 /**
  * Request authorizer that invokes an external process to calculate
  * the authorization result.
+ *
+ * By default a new process is started for each request. If the
+ * "workers" parameter is set, up to that many persistent worker
+ * processes are kept running and each request is sent to an idle
+ * worker as a single line of JSON (see ExternalProcessPool).
  */
 public class ExternalProcessRequestAuthorizer extends ESTRequestAuthorizer {
 
@@ -39,6 +47,7 @@ public class ExternalProcessRequestAuthorizer extends ESTRequestAuthorizer {
 
     static final String CONFIG_EXECUTABLE = "executable";
     static final String CONFIG_TIMEOUT = "timeout";
+    static final String CONFIG_WORKERS = "workers";
 
     static final long DEFAULT_TIMEOUT = 3;  // seconds
 
@@ -47,6 +56,8 @@ public class ExternalProcessRequestAuthorizer extends ESTRequestAuthorizer {
 
     String executable;
     long timeout = DEFAULT_TIMEOUT;
+    ExternalProcessPool pool;
+    ObjectMapper mapper = new ObjectMapper();
 
     @Override
     public void start() throws Throwable {
@@ -64,6 +75,26 @@ public class ExternalProcessRequestAuthorizer extends ESTRequestAuthorizer {
                 throw new IllegalArgumentException("Invalid timeout value: must be positive");
             }
         }
+
+        String workersConfig = config.getParameter(CONFIG_WORKERS);
+        if (workersConfig != null && !workersConfig.isEmpty()) {
+            int workers = Integer.parseInt(workersConfig);
+            if (workers < 0) {
+                throw new IllegalArgumentException("Invalid workers value: must not be negative");
+            }
+            if (workers > 0) {
+                logger.info("ExternalProcessRequestAuthorizer: Using " + workers + " persistent worker(s)");
+                pool = new ExternalProcessPool("ExternalProcessRequestAuthorizer", List.of(executable), workers);
+            }
+        }
+    }
+
+    @Override
+    public void stop() throws Throwable {
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
     }
 
     @Override
@@ -86,8 +117,6 @@ public class ExternalProcessRequestAuthorizer extends ESTRequestAuthorizer {
             PKCS10 csr,
             X509Certificate toBeRenewed)
             throws PKIException {
-        logger.debug("About to execute command: " + this.executable);
-        ProcessBuilder pb = new ProcessBuilder(this.executable);
 
         // prepare object to be serialised to stdin of external process
         Data data = new Data();
@@ -95,7 +124,19 @@ public class ExternalProcessRequestAuthorizer extends ESTRequestAuthorizer {
         data.authzData = authzData;
         data.csr = csr;
         data.toBeRenewed = toBeRenewed;
-        ObjectMapper mapper = new ObjectMapper();
+
+        ExternalProcessPool pool = this.pool;
+        if (pool != null) {
+            try {
+                return check(pool, data);
+            } catch (IOException e) {
+                // fall back to one-shot process
+                logger.warn("ExternalProcessRequestAuthorizer: Unable to use worker process: " + e.getMessage(), e);
+            }
+        }
+
+        logger.debug("About to execute command: " + this.executable);
+        ProcessBuilder pb = new ProcessBuilder(this.executable);
 
         Process p;
         String stdout = "";
@@ -132,6 +173,29 @@ public class ExternalProcessRequestAuthorizer extends ESTRequestAuthorizer {
         return stdout;
     }
 
+    String check(ExternalProcessPool pool, Data data) throws IOException, PKIException {
+
+        ExternalProcessPool.Response response;
+        try {
+            response = pool.execute(mapper.writeValueAsString(data), TimeUnit.SECONDS.toMillis(timeout));
+
+        } catch (TimeoutException e) {
+            throw new PKIException("Request validation timed out");
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PKIException("Request validation interrupted", e);
+        }
+
+        logger.debug("ExternalProcessRequestAuthorizer: status: " + response.getStatus());
+        logger.debug("ExternalProcessRequestAuthorizer: output: " + response.getOutput());
+
+        if (response.getStatus() != 0)
+            throw new ForbiddenException(response.getOutput());
+
+        return response.getOutput();
+    }
+
 
     static class Data {
 
@@ -19,7 +19,6 @@ package com.netscape.cms.ocsp;
 
 import java.io.IOException;
 import java.security.cert.CertificateException;
-import java.security.cert.X509CRLEntry;
 import java.util.Arrays;
 import java.util.Enumeration;
 
@@ -28,12 +27,12 @@ import org.mozilla.jss.netscape.security.x509.AuthorityKeyIdentifierExtension;
 import org.mozilla.jss.netscape.security.x509.KeyIdentifier;
 import org.mozilla.jss.netscape.security.x509.PKIXExtensions;
 import org.mozilla.jss.netscape.security.x509.SubjectKeyIdentifierExtension;
-import org.mozilla.jss.netscape.security.x509.X509CRLImpl;
 import org.mozilla.jss.netscape.security.x509.X509CertImpl;
 import org.mozilla.jss.ssl.SSLCertificateApprovalCallback;
 
 import com.netscape.certsrv.base.EBaseException;
 import com.netscape.cmscore.dbs.CRLIssuingPointRecord;
+import com.netscape.cmscore.dbs.RevokedSerialStore;
 
 public class CRLLdapValidator implements SSLCertificateApprovalCallback {
 
@@ -53,6 +52,7 @@ public class CRLLdapValidator implements SSLCertificateApprovalCallback {
     public boolean approve(X509Certificate certificate, ValidityStatus currentStatus) {
         logger.info("CRLLdapValidator: validate of peer's certificate for the connection " + certificate.getSubjectDN());
         CRLIssuingPointRecord pt = null;
+        X509CertImpl issuerCert = null;
         try {
             X509CertImpl peerCert = new X509CertImpl(certificate.getEncoded());
             Enumeration<CRLIssuingPointRecord> eCRL = crlStore.searchAllCRLIssuingPointRecord(-1);
@@ -76,6 +76,7 @@ public class CRLLdapValidator implements SSLCertificateApprovalCallback {
                     KeyIdentifier peerAKIId = (KeyIdentifier) peerAKIExt.get(AuthorityKeyIdentifierExtension.KEY_ID);
                     if(Arrays.equals(caSKIId.getIdentifier(), peerAKIId.getIdentifier())) {
                         pt = tPt;
+                        issuerCert = caCert;
                     }
                 } catch (IOException e) {
                     logger.error("CRLLdapValidator: problem extracting key from SKI/AKI: " + e.getMessage(), e);
@@ -90,10 +91,12 @@ public class CRLLdapValidator implements SSLCertificateApprovalCallback {
             return false;
         }
         try {
-            X509CRLImpl crl = new X509CRLImpl(pt.getCRL());
-            X509CRLEntry crlentry = crl.getRevokedCertificate(certificate.getSerialNumber());
+            RevokedSerialStore crl = crlStore.getRevokedSerials(issuerCert);
+            if (crl == null) {
+                throw new Exception("Missing CRL data for issuing CA: " + pt.getId());
+            }
 
-            if (crlentry == null) {
+            if (!crl.contains(certificate.getSerialNumber())) {
                 if (crlStore.isNotFoundGood()) {
                     return true;
                 }
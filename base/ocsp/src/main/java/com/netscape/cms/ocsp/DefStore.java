@@ -17,11 +17,15 @@
 // --- END COPYRIGHT BLOCK ---
 package com.netscape.cms.ocsp;
 
+import java.io.IOException;
 import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.security.MessageDigest;
 import java.security.cert.CRLException;
 import java.security.cert.X509CRL;
-import java.security.cert.X509CRLEntry;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.Enumeration;
@@ -30,6 +34,7 @@ import java.util.Locale;
 import java.util.Vector;
 
 import org.apache.commons.codec.binary.Hex;
+import org.dogtagpki.server.ocsp.OCSPEngine;
 import org.mozilla.jss.asn1.GeneralizedTime;
 import org.mozilla.jss.asn1.INTEGER;
 import org.mozilla.jss.netscape.security.x509.RevokedCertificate;
@@ -52,6 +57,7 @@ import com.netscape.cmscore.dbs.DBSSession;
 import com.netscape.cmscore.dbs.DBSearchResults;
 import com.netscape.cmscore.dbs.DBSubsystem;
 import com.netscape.cmscore.dbs.RepositoryRecord;
+import com.netscape.cmscore.dbs.RevokedSerialStore;
 import com.netscape.cmsutil.ocsp.CertID;
 import com.netscape.cmsutil.ocsp.CertStatus;
 import com.netscape.cmsutil.ocsp.GoodInfo;
@@ -59,6 +65,8 @@ import com.netscape.cmsutil.ocsp.Request;
 import com.netscape.cmsutil.ocsp.RevokedInfo;
 import com.netscape.cmsutil.ocsp.SingleResponse;
 import com.netscape.cmsutil.ocsp.UnknownInfo;
+import com.netscape.ocsp.OCSPAuthority;
+import com.netscape.ocsp.OCSPResponseGenerator;
 
 /**
  * This is the default OCSP store that stores revocation information
@@ -88,6 +96,7 @@ public class DefStore implements IDefStore, IExtendedPluginInfo {
     private static final String PROP_NOT_FOUND_GOOD = "notFoundAsGood";
     private static final String PROP_INCLUDE_NEXT_UPDATE =
             "includeNextUpdate";
+    private static final String PROP_CACHE_DIR = "cacheDir";
 
     protected Hashtable<String, Long> mReqCounts = new Hashtable<>();
     protected boolean mNotFoundGood = true;
@@ -100,6 +109,9 @@ public class DefStore implements IDefStore, IExtendedPluginInfo {
     private DBSubsystem dbSubsystem;
     private int mStateCount = 0;
 
+    // directory where the revoked serial stores are kept
+    private Path mCacheDir;
+
     /**
      * Constructs the default store.
      */
@@ -157,6 +169,11 @@ public class DefStore implements IDefStore, IExtendedPluginInfo {
         mIncludeNextUpdate = mConfig.getBoolean(PROP_INCLUDE_NEXT_UPDATE,
                     false);
 
+        String cacheDir = mConfig.getString(PROP_CACHE_DIR, null);
+        mCacheDir = cacheDir == null
+                ? Paths.get(CMS.getInstanceDir(), "ocsp", "crls")
+                : Paths.get(cacheDir);
+
         // init web gateway.
         initWebGateway();
 
@@ -314,7 +331,7 @@ public class DefStore implements IDefStore, IExtendedPluginInfo {
 
         // cache result to speed up the performance
         X509CertImpl theCert = null;
-        X509CRLImpl theCRL = null;
+        RevokedSerialStore theCRL = null;
         CRLIssuingPointRecord theRec = null;
         byte[] keyhsh = cid.getIssuerKeyHash().toByteArray();
         byte[] namehash = cid.getIssuerNameHash().toByteArray();
@@ -368,14 +385,7 @@ public class DefStore implements IDefStore, IExtendedPluginInfo {
                 }
 
                 if (rec.getCRLCache() == null) {
-                    logger.debug("DefStore: start building x509 crl impl");
-                    try {
-                        theCRL = new X509CRLImpl(crldata);
-                    } catch (Exception e) {
-                        logger.error(CMS.getLogMessage("OCSP_DECODE_CRL", e.toString()), e);
-                        throw e;
-                    }
-                    logger.debug("DefStore: done building x509 crl impl");
+                    theCRL = getRevokedSerials(rec, crldata);
                 } else {
                     logger.debug("DefStore: using crl cache");
                 }
@@ -388,7 +398,7 @@ public class DefStore implements IDefStore, IExtendedPluginInfo {
         } else {
             theCert = matched.getX509CertImpl();
             theRec = matched.getCRLIssuingPointRecord();
-            theCRL = matched.getX509CRLImpl();
+            theCRL = matched.getRevokedSerials();
             incReqCount(theRec.getId());
         }
 
@@ -467,8 +477,8 @@ public class DefStore implements IDefStore, IExtendedPluginInfo {
                     nextUpdate);
         }
 
-        logger.debug("DefStore: evaluating x509 crl impl");
-        X509CRLEntry crlentry = theCRL.getRevokedCertificate(new BigInteger(serialNo.toString()));
+        logger.debug("DefStore: evaluating revoked serials");
+        RevokedSerialStore.Entry crlentry = theCRL.get(new BigInteger(serialNo.toString()));
 
         if (crlentry == null) {
             // good or unknown
@@ -487,6 +497,51 @@ public class DefStore implements IDefStore, IExtendedPluginInfo {
                 nextUpdate);
     }
 
+    /**
+     * Returns the revoked serial numbers in a CRL. The CRL is parsed
+     * only if it differs from the one stored in the cache directory,
+     * otherwise the stored entries are mapped back.
+     */
+    RevokedSerialStore getRevokedSerials(CRLIssuingPointRecord rec, byte[] crldata) throws Exception {
+
+        MessageDigest md = MessageDigest.getInstance("SHA-256");
+        byte[] digest = md.digest(crldata);
+
+        String name = Hex.encodeHexString(md.digest(rec.getId().getBytes(StandardCharsets.UTF_8)));
+        Path file = mCacheDir.resolve(name + ".rss");
+
+        if (Files.exists(file)) {
+            try {
+                RevokedSerialStore store = RevokedSerialStore.open(file);
+                if (store.matches(digest)) {
+                    logger.debug("DefStore: Mapped " + store.size() + " revoked serial(s) from " + file);
+                    return store;
+                }
+            } catch (IOException e) {
+                logger.warn("DefStore: Unable to map " + file + ": " + e.getMessage(), e);
+            }
+        }
+
+        logger.debug("DefStore: start building x509 crl impl");
+        X509CRLImpl crl;
+        try {
+            crl = new X509CRLImpl(crldata);
+        } catch (Exception e) {
+            logger.error(CMS.getLogMessage("OCSP_DECODE_CRL", e.toString()), e);
+            throw e;
+        }
+        logger.debug("DefStore: done building x509 crl impl");
+
+        Files.createDirectories(mCacheDir);
+
+        return RevokedSerialStore.create(
+                file,
+                crl.getThisUpdate(),
+                crl.getNextUpdate(),
+                digest,
+                crl.getRevokedCertificates());
+    }
+
     private String transformDN(String dn) {
         String newdn = dn;
 
@@ -765,6 +820,12 @@ public class DefStore implements IDefStore, IExtendedPluginInfo {
             // update cache
             mCacheCRLIssuingPoints.clear();
 
+            OCSPAuthority ocsp = OCSPEngine.getInstance().getOCSP();
+            OCSPResponseGenerator generator = ocsp == null ? null : ocsp.getResponseGenerator();
+            if (generator != null) {
+                generator.crlUpdated();
+            }
+
             logger.info("DefStore: Finish Committing CRL." +
                     " thisUpdate=" + crl.getThisUpdate() +
                     " nextUpdate=" + crl.getNextUpdate());
@@ -800,9 +861,9 @@ class DeleteOldCRLsThread extends Thread {
 class CRLIPContainer {
     private CRLIssuingPointRecord mRec = null;
     private X509CertImpl mCert = null;
-    private X509CRLImpl mCRL = null;
+    private RevokedSerialStore mCRL = null;
 
-    public CRLIPContainer(CRLIssuingPointRecord rec, X509CertImpl cert, X509CRLImpl crl) {
+    public CRLIPContainer(CRLIssuingPointRecord rec, X509CertImpl cert, RevokedSerialStore crl) {
         mRec = rec;
         mCert = cert;
         mCRL = crl;
@@ -816,7 +877,7 @@ class CRLIPContainer {
         return mCert;
     }
 
-    public X509CRLImpl getX509CRLImpl() {
+    public RevokedSerialStore getRevokedSerials() {
         return mCRL;
     }
 }
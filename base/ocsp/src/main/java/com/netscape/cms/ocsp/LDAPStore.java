@@ -17,17 +17,24 @@
 // --- END COPYRIGHT BLOCK ---
 package com.netscape.cms.ocsp;
 
+import java.io.IOException;
 import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.security.cert.X509CRL;
-import java.security.cert.X509CRLEntry;
-import java.util.Arrays;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.Hashtable;
 import java.util.Locale;
+import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 
+import org.apache.commons.codec.binary.Hex;
 import org.dogtagpki.server.ocsp.OCSPEngine;
 import org.mozilla.jss.asn1.GeneralizedTime;
 import org.mozilla.jss.asn1.INTEGER;
@@ -44,8 +51,10 @@ import com.netscape.certsrv.ocsp.IDefStore;
 import com.netscape.cmscore.apps.CMS;
 import com.netscape.cmscore.base.ConfigStore;
 import com.netscape.cmscore.dbs.CRLIssuingPointRecord;
+import com.netscape.cmscore.dbs.CRLParser;
 import com.netscape.cmscore.dbs.DBSubsystem;
 import com.netscape.cmscore.dbs.RepositoryRecord;
+import com.netscape.cmscore.dbs.RevokedSerialStore;
 import com.netscape.cmsutil.ocsp.CertID;
 import com.netscape.cmsutil.ocsp.CertStatus;
 import com.netscape.cmsutil.ocsp.GoodInfo;
@@ -53,6 +62,8 @@ import com.netscape.cmsutil.ocsp.Request;
 import com.netscape.cmsutil.ocsp.RevokedInfo;
 import com.netscape.cmsutil.ocsp.SingleResponse;
 import com.netscape.cmsutil.ocsp.UnknownInfo;
+import com.netscape.ocsp.OCSPAuthority;
+import com.netscape.ocsp.OCSPResponseGenerator;
 
 import netscape.ldap.LDAPAttribute;
 import netscape.ldap.LDAPConnection;
@@ -82,6 +93,7 @@ public class LDAPStore implements IDefStore, IExtendedPluginInfo {
     private static final String DEF_CA_CERT_ATTR = "cACertificate;binary";
     private static final String PROP_HOST = "host";
     private static final String PROP_PORT = "port";
+    private static final String PROP_CACHE_DIR = "cacheDir";
 
     // This option enables the revocation verification of peer certificates using the CRL stored in the LDAP.
     // Peer certificate of all the outcome connections from the OCSP subsystem are verified with the CRL.
@@ -98,9 +110,20 @@ public class LDAPStore implements IDefStore, IExtendedPluginInfo {
     private boolean mByName = true;
     private String mCACertAttr = null;
     protected Hashtable<String, Long> mReqCounts = new Hashtable<>();
-    private Hashtable<X509CertImpl, X509CRLImpl> mCRLs = new Hashtable<>();
+    private ConcurrentHashMap<X509CertImpl, RevokedSerialStore> mCRLs = new ConcurrentHashMap<>();
+    private ConcurrentHashMap<X509CertImpl, BigInteger> mCRLNumbers = new ConcurrentHashMap<>();
     private boolean mValidateConnection = true;
 
+    // CA certificates by issuer name hash and key hash
+    private ConcurrentHashMap<String, X509CertImpl> mIssuers = new ConcurrentHashMap<>();
+
+    // digest algorithms used in the issuer index, others are
+    // added when first requested
+    private Set<String> mIssuerDigests = ConcurrentHashMap.newKeySet();
+
+    // directory where the CRLs and their revoked serial stores are kept
+    private Path mCacheDir;
+
 
     /**
      * Constructs the default store.
@@ -149,6 +172,14 @@ public class LDAPStore implements IDefStore, IExtendedPluginInfo {
         mByName = mConfig.getBoolean(PROP_BY_NAME, true);
 
         mValidateConnection = mConfig.getBoolean(PROP_VALIDATE_CONNECTION_WITH_CRL, true);
+
+        mIssuerDigests.add("SHA-1");
+        mIssuerDigests.add("SHA-256");
+
+        String cacheDir = mConfig.getString(PROP_CACHE_DIR, null);
+        mCacheDir = cacheDir == null
+                ? Paths.get(CMS.getInstanceDir(), "ocsp", "crls")
+                : Paths.get(cacheDir);
     }
 
     /**
@@ -205,6 +236,63 @@ public class LDAPStore implements IDefStore, IExtendedPluginInfo {
      */
     public X509CRLImpl locateCRL(LDAPConnection conn, String baseDN)
             throws EBaseException {
+
+        byte[] crlData = locateCRLData(conn, baseDN);
+        if (crlData == null) {
+            return null;
+        }
+
+        try {
+            return new X509CRLImpl(crlData);
+
+        } catch (Exception e) {
+            logger.warn("LDAPStore: locateCRL " + e.getMessage(), e);
+            logger.warn(CMS.getLogMessage("OCSP_LOCATE_CRL", e.toString()));
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the modification time of the entry containing the CRL,
+     * or null if not available.
+     */
+    public String locateCRLModifyTime(LDAPConnection conn, String baseDN) {
+        try {
+            String filter = mCRLAttr + "=*";
+            String[] attrs = { "modifyTimestamp" };
+
+            LDAPSearchResults results = conn.search(
+                    baseDN,
+                    LDAPv3.SCOPE_SUB,
+                    filter,
+                    attrs, false);
+
+            if (!results.hasMoreElements()) {
+                return null;
+            }
+
+            LDAPEntry entry = results.next();
+            LDAPAttribute attr = entry.getAttribute("modifyTimestamp");
+            if (attr == null) {
+                return null;
+            }
+
+            Enumeration<String> vals = attr.getStringValues();
+            return vals.hasMoreElements() ? vals.nextElement() : null;
+
+        } catch (Exception e) {
+            logger.warn("LDAPStore: Unable to get CRL modify time: " + e.getMessage(), e);
+        }
+
+        return null;
+    }
+
+    /**
+     * Locates the encoded CRL.
+     */
+    public byte[] locateCRLData(LDAPConnection conn, String baseDN)
+            throws EBaseException {
         try {
             String filter = mCRLAttr + "=*";
             logger.info("LDAPStore: Searching " + baseDN + " for " + filter);
@@ -236,32 +324,195 @@ public class LDAPStore implements IDefStore, IExtendedPluginInfo {
                 return null;
             }
 
-            byte crlData[] = vals.nextElement();
-            X509CRLImpl crl = new X509CRLImpl(crlData);
-
-            return crl;
+            return vals.nextElement();
 
         } catch (Exception e) {
-            logger.warn("LDAPStore: locateCRL " + e.getMessage(), e);
+            logger.warn("LDAPStore: locateCRLData " + e.getMessage(), e);
             logger.warn(CMS.getLogMessage("OCSP_LOCATE_CRL", e.toString()));
         }
 
         return null;
     }
 
-    public void updateCRLHash(X509CertImpl caCert, X509CRLImpl crl)
+    /**
+     * Updates the revoked serial numbers of a CA from an encoded CRL.
+     *
+     * The CRL is parsed only if it differs from the one the current
+     * store was created from and has a different CRL number. The
+     * entries are parsed one at a time into a new store which then
+     * replaces the current one, so lookups see either the old or the
+     * new CRL. The store is kept in a memory-mapped file, so after a
+     * restart it is mapped back instead of parsing the CRL again.
+     */
+    public void updateCRLHash(X509CertImpl caCert, byte[] crlData)
             throws EBaseException {
-        X509CRLImpl oldCRL = mCRLs.get(caCert);
 
-        if (oldCRL != null) {
-            if (oldCRL.getThisUpdate().getTime() >= crl.getThisUpdate().getTime()) {
+        String name = getCacheName(caCert);
+        Path storeFile = mCacheDir.resolve(name + ".rss");
+        Path crlFile = mCacheDir.resolve(name + ".crl");
+
+        RevokedSerialStore oldStore = mCRLs.get(caCert);
+
+        if (oldStore == null && Files.exists(storeFile)) {
+            try {
+                oldStore = RevokedSerialStore.open(storeFile);
+                logger.info("LDAPStore: Mapped " + oldStore.size() + " revoked serial(s) from " + storeFile);
+                mCRLs.put(caCert, oldStore);
+                indexIssuer(caCert);
+
+            } catch (IOException e) {
+                logger.warn("LDAPStore: Unable to map " + storeFile + ": " + e.getMessage(), e);
+            }
+        }
+
+        byte[] digest = digest(crlData);
+
+        if (oldStore != null && oldStore.matches(digest)) {
+            logger.info("LDAPStore: no update, received CRL is the same as current CRL");
+            return;
+        }
+
+        CRLParser crl;
+        try {
+            crl = new CRLParser(crlData);
+        } catch (IOException e) {
+            logger.warn(CMS.getLogMessage("OCSP_DECODE_CRL", e.toString()), e);
+            throw new EBaseException("Unable to decode CRL: " + e.getMessage(), e);
+        }
+
+        BigInteger crlNumber = crl.getCRLNumber();
+
+        if (oldStore != null && crlNumber != null && crlNumber.equals(mCRLNumbers.get(caCert))) {
+            logger.info("LDAPStore: no update, received CRL has the same CRL number " + crlNumber);
+            return;
+        }
+
+        if (oldStore != null && oldStore.getThisUpdate() != null) {
+            if (oldStore.getThisUpdate().getTime() >= crl.getThisUpdate().getTime()) {
                 logger.info("LDAPStore: no update, received CRL is not newer than current CRL");
                 return; // no update
             }
         }
+
+        RevokedSerialStore store;
+        try {
+            Files.createDirectories(mCacheDir);
+
+            // store the CRL first so it always matches the store
+            Path tmpFile = crlFile.resolveSibling(crlFile.getFileName() + ".tmp");
+            Files.write(tmpFile, crlData);
+            Files.move(tmpFile, crlFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            store = RevokedSerialStore.create(
+                    storeFile,
+                    crl.getThisUpdate(),
+                    crl.getNextUpdate(),
+                    digest,
+                    crl);
+
+        } catch (IOException e) {
+            throw new EBaseException("Unable to store CRL in " + mCacheDir + ": " + e.getMessage(), e);
+        }
+
         logger.debug("LDAPStore: updateCRLHash: Added '" + caCert.getSubjectName() + "' into CRL hash");
-        mCRLs.put(caCert, crl);
+        mCRLs.put(caCert, store);
+        if (crlNumber != null) {
+            mCRLNumbers.put(caCert, crlNumber);
+        }
+        indexIssuer(caCert);
         logger.debug("LDAPStore: updateCRLHash: mCRLs size= "+ mCRLs.size());
+
+        OCSPAuthority ocsp = OCSPEngine.getInstance().getOCSP();
+        OCSPResponseGenerator generator = ocsp == null ? null : ocsp.getResponseGenerator();
+        if (generator != null) {
+            generator.crlUpdated();
+        }
+    }
+
+    /**
+     * Adds the CA certificate to the issuer index for all digest
+     * algorithms in use.
+     */
+    void indexIssuer(X509CertImpl caCert) {
+        for (String digestName : mIssuerDigests) {
+            indexIssuer(caCert, digestName);
+        }
+    }
+
+    void indexIssuer(X509CertImpl caCert, String digestName) {
+        try {
+            MessageDigest md = MessageDigest.getInstance(digestName);
+
+            X509Key key = (X509Key) caCert.getPublicKey();
+            if (key == null) {
+                logger.warn("LDAPStore: Missing issuer key in " + caCert.getSubjectName());
+                return;
+            }
+
+            byte[] keyhsh = md.digest(key.getKey());
+            byte[] namehash = md.digest(caCert.getSubjectObj().getX500Name().getEncoded());
+
+            mIssuers.put(getIssuerKey(digestName, namehash, keyhsh), caCert);
+
+        } catch (Exception e) {
+            logger.warn("LDAPStore: Unable to index issuer with " + digestName + ": " + e.getMessage(), e);
+        }
+    }
+
+    static String getIssuerKey(String digestName, byte[] namehash, byte[] keyhsh) {
+        return digestName + ":" + Hex.encodeHexString(namehash) + ":" + Hex.encodeHexString(keyhsh);
+    }
+
+    /**
+     * Finds the CA certificate matching the issuer of a request.
+     */
+    X509CertImpl findIssuer(CertID cid) {
+
+        String digestName = cid.getDigestName();
+        if (digestName == null) {
+            return null;
+        }
+
+        String issuerKey = getIssuerKey(
+                digestName,
+                cid.getIssuerNameHash().toByteArray(),
+                cid.getIssuerKeyHash().toByteArray());
+
+        X509CertImpl caCert = mIssuers.get(issuerKey);
+
+        if (caCert == null && mIssuerDigests.add(digestName)) {
+            logger.info("LDAPStore: Adding " + digestName + " to issuer index");
+            for (X509CertImpl cert : mCRLs.keySet()) {
+                indexIssuer(cert, digestName);
+            }
+            caCert = mIssuers.get(issuerKey);
+        }
+
+        return caCert;
+    }
+
+    /**
+     * Returns the revoked serial numbers of a CA, or null if
+     * the CRL of the CA is not available.
+     */
+    public RevokedSerialStore getRevokedSerials(X509CertImpl caCert) {
+        return mCRLs.get(caCert);
+    }
+
+    String getCacheName(X509CertImpl caCert) throws EBaseException {
+        try {
+            return Hex.encodeHexString(digest(caCert.getEncoded()));
+        } catch (Exception e) {
+            throw new EBaseException("Unable to encode CA certificate: " + e.getMessage(), e);
+        }
+    }
+
+    static byte[] digest(byte[] data) throws EBaseException {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            throw new EBaseException("Unable to compute digest: " + e.getMessage(), e);
+        }
     }
 
     @Override
@@ -355,9 +606,10 @@ public class LDAPStore implements IDefStore, IExtendedPluginInfo {
 
         while (keys.hasMoreElements()) {
             X509CertImpl caCert = keys.nextElement();
-            X509CRLImpl crl = mCRLs.get(caCert);
+            RevokedSerialStore store = mCRLs.get(caCert);
+            Path crlFile = mCacheDir.resolve(getCacheName(caCert) + ".crl");
 
-            recs.addElement(new TempCRLIssuingPointRecord(caCert, crl));
+            recs.addElement(new TempCRLIssuingPointRecord(caCert, store, crlFile));
         }
         return recs.elements();
     }
@@ -420,38 +672,13 @@ public class LDAPStore implements IDefStore, IExtendedPluginInfo {
         logger.info("LDAPStore: Processing request for cert 0x" + serialNo.toString(16));
 
         // locate the right CRL
-        X509CertImpl theCert = null;
-        X509CRLImpl theCRL = null;
+        logger.debug("LDAPStore: processRequest: cert digest name=" + cid.getDigestName());
+        X509CertImpl theCert = findIssuer(cid);
+        RevokedSerialStore theCRL = null;
 
-        logger.info("LDAPStore: Checking against " + mCRLs.size() + " CA cert(s)");
-        Enumeration<X509CertImpl> caCerts = mCRLs.keys();
-
-        MessageDigest md = MessageDigest.getInstance(cid.getDigestName());
-        while (caCerts.hasMoreElements()) {
-            X509CertImpl caCert = caCerts.nextElement();
-	    logger.debug("LDAPStore: processRequest: cert digest name=" +
-                    cid.getDigestName());
-            X509Key key = (X509Key) caCert.getPublicKey();
-
-            if (key == null) {
-                logger.debug("LDAPStore: processRequest: mCRLs caCert.getPublicKey() returns null");
-                throw new Exception("Missing issuer key");
-            }
-
-            byte[] digest = md.digest(key.getKey());
-            byte[] keyhsh = cid.getIssuerKeyHash().toByteArray();
-
-
-            byte[] name = md.digest(caCert.getSubjectObj().getX500Name().getEncoded());
-            byte[] namehash = cid.getIssuerNameHash().toByteArray();
-
-            if (Arrays.equals(digest, keyhsh) && Arrays.equals(name, namehash)) {
-                theCert = caCert;
-                incReqCount(caCert.getSubjectX500Principal().getName());
-                theCRL = mCRLs.get(caCert);
-                break;
-            }
-            logger.debug("LDAPStore: processRequest: CA key digest and cert issuer key hash do not match; continue to look at next CA in mCRLs...");
+        if (theCert != null) {
+            incReqCount(theCert.getSubjectX500Principal().getName());
+            theCRL = mCRLs.get(theCert);
         }
 
         if (theCert == null) {
@@ -475,8 +702,8 @@ public class LDAPStore implements IDefStore, IExtendedPluginInfo {
         }
 
         CertStatus certStatus = null;
-        X509CRLEntry entry = theCRL.getRevokedCertificate(
-                cid.getSerialNumber());
+        RevokedSerialStore.Entry entry = theCRL.get(
+                new BigInteger(serialNo.toString()));
 
         if (entry == null) {
             if (isNotFoundGood1()) {
@@ -554,11 +781,17 @@ class CRLUpdater extends Thread {
 
     public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(CRLUpdater.class);
 
+    // retry interval when the CRL is past its next update
+    private static final int STALE_RETRY_IN_SEC = 60;
+
     private LDAPConnection mC = null;
     private String mBaseDN = null;
     private int mSec = 0;
     private LDAPStore mStore = null;
 
+    private X509CertImpl mCACert = null;
+    private String mModifyTime = null;
+
     public CRLUpdater(LDAPStore store, LDAPConnection c,
             String baseDN, int sec) {
         mC = c;
@@ -571,20 +804,54 @@ class CRLUpdater extends Thread {
 
         logger.info("LDAPStore: Updating CRL");
 
+        // skip the download if the CRL entry has not been modified
+        String modifyTime = mStore.locateCRLModifyTime(mC, mBaseDN);
+        if (modifyTime != null && modifyTime.equals(mModifyTime)
+                && mCACert != null && mStore.getRevokedSerials(mCACert) != null) {
+            logger.info("LDAPStore: CRL not modified since " + modifyTime);
+            return;
+        }
+
         X509CertImpl caCert = mStore.locateCACert(mC, mBaseDN);
         if (caCert == null) {
             logger.info("LDAPStore: Unable to find CA cert");
             return;
         }
 
-        X509CRLImpl crl = mStore.locateCRL(mC, mBaseDN);
-        if (crl == null) {
+        byte[] crlData = mStore.locateCRLData(mC, mBaseDN);
+        if (crlData == null) {
             logger.info("LDAPStore: Unable to find CRL");
             return;
         }
 
         logger.info("LDAPStore: Updating CRL cache");
-        mStore.updateCRLHash(caCert, crl);
+        mStore.updateCRLHash(caCert, crlData);
+
+        mCACert = caCert;
+        mModifyTime = modifyTime;
+    }
+
+    /**
+     * Returns the time to wait before the next update. If the CRL
+     * expires before the refresh interval, the next CRL is fetched
+     * when the current one expires.
+     */
+    long getDelay() {
+
+        long delay = mSec * 1000L;
+
+        RevokedSerialStore store = mCACert == null ? null : mStore.getRevokedSerials(mCACert);
+        if (store == null || store.getNextUpdate() == null) {
+            return delay;
+        }
+
+        long expiration = store.getNextUpdate().getTime() - System.currentTimeMillis();
+
+        if (expiration > 0) {
+            return Math.min(delay, expiration);
+        }
+
+        return Math.min(delay, STALE_RETRY_IN_SEC * 1000L);
     }
 
     @Override
@@ -597,7 +864,7 @@ class CRLUpdater extends Thread {
             }
 
             try {
-                sleep(mSec * 1000); // turn sec into millis-sec
+                sleep(getDelay());
             } catch (Exception e) {
                 // ignore
             }
@@ -609,11 +876,13 @@ class TempCRLIssuingPointRecord extends CRLIssuingPointRecord {
 
     private static final long serialVersionUID = 5299660983298765746L;
     private X509CertImpl mCACert = null;
-    private X509CRLImpl mCRL = null;
+    private RevokedSerialStore mCRL = null;
+    private Path mCRLFile = null;
 
-    TempCRLIssuingPointRecord(X509CertImpl caCert, X509CRLImpl crl) {
+    TempCRLIssuingPointRecord(X509CertImpl caCert, RevokedSerialStore crl, Path crlFile) {
         mCACert = caCert;
         mCRL = crl;
+        mCRLFile = crlFile;
     }
 
     @Override
@@ -642,7 +911,7 @@ class TempCRLIssuingPointRecord extends CRLIssuingPointRecord {
      */
     @Override
     public Long getCRLSize() {
-        return Long.valueOf(mCRL.getNumberOfRevokedCertificates());
+        return Long.valueOf(mCRL.size());
     }
 
     /**
@@ -690,7 +959,7 @@ class TempCRLIssuingPointRecord extends CRLIssuingPointRecord {
     @Override
     public byte[] getCRL() {
         try {
-            return mCRL.getEncoded();
+            return Files.readAllBytes(mCRLFile);
         } catch (Exception e) {
             return null;
         }
@@ -722,7 +991,11 @@ class TempCRLIssuingPointRecord extends CRLIssuingPointRecord {
      */
     @Override
     public Hashtable<BigInteger, RevokedCertificate> getRevokedCerts() {
-        return mCRL.getListOfRevokedCertificates();
+        try {
+            return new X509CRLImpl(getCRL()).getListOfRevokedCertificates();
+        } catch (Exception e) {
+            return null;
+        }
     }
 
     /**
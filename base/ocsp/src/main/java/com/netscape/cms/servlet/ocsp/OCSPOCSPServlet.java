@@ -23,9 +23,11 @@ import javax.servlet.annotation.WebInitParam;
 import javax.servlet.annotation.WebServlet;
 
 import com.netscape.certsrv.base.EBaseException;
+import com.netscape.cmscore.dbs.OCSPResponseStore;
 import com.netscape.cmsutil.ocsp.OCSPRequest;
 import com.netscape.cmsutil.ocsp.OCSPResponse;
 import com.netscape.ocsp.OCSPAuthority;
+import com.netscape.ocsp.OCSPResponseGenerator;
 
 @WebServlet(
         name = "ocspOCSP",
@@ -56,4 +58,16 @@ public class OCSPOCSPServlet extends OCSPServlet {
     public OCSPResponse validate(OCSPRequest ocspRequest) throws EBaseException {
         return ocsp.validate(ocspRequest);
     }
+
+    @Override
+    public OCSPResponseStore.Entry getCachedResponse(OCSPRequest ocspRequest) throws EBaseException {
+        OCSPResponseGenerator generator = ocsp.getResponseGenerator();
+        return generator == null ? null : generator.getResponse(ocspRequest);
+    }
+
+    @Override
+    public long getCacheMaxAge() {
+        OCSPResponseGenerator generator = ocsp.getResponseGenerator();
+        return generator == null ? 0 : generator.getMaxAge();
+    }
 }
@@ -97,6 +97,7 @@ public class OCSPAuthority extends Subsystem implements IAuthority, IOCSPService
     public final static String PROP_STORE = "store";
     public static final String PROP_NICKNAME = "certNickname";
     public final static String PROP_NEW_NICKNAME = "newNickname";
+    public final static String PROP_RESPONSE_STORE = "responseStore";
 
     private Hashtable<String, IOCSPStore> mStores = new Hashtable<>();
     private String mId = "ocsp";
@@ -105,6 +106,7 @@ public class OCSPAuthority extends Subsystem implements IAuthority, IOCSPService
 
     private String[] mOCSPSigningAlgorithms = null;
     private IOCSPStore mDefStore = null;
+    private OCSPResponseGenerator mResponseGenerator;
 
     public long mNumOCSPRequest = 0;
     public long mTotalTime = 0;
@@ -177,6 +179,8 @@ public class OCSPAuthority extends Subsystem implements IAuthority, IOCSPService
                 logger.warn(CMS.getLogMessage("CMSCORE_OCSP_SIGNING_UNIT", e.toString()), e);
             }
 
+            initResponseGenerator();
+
         } catch (EBaseException e) {
             logger.error("OCSPAuthority: " + e.getMessage(), e);
             throw e;
@@ -191,6 +195,33 @@ public class OCSPAuthority extends Subsystem implements IAuthority, IOCSPService
         }
     }
 
+    private void initResponseGenerator() throws EBaseException {
+
+        ConfigStore responseStoreConfig = mConfig.getSubStore(PROP_RESPONSE_STORE, ConfigStore.class);
+
+        if (!responseStoreConfig.getBoolean(OCSPResponseGenerator.PROP_ENABLE, false)) {
+            return;
+        }
+
+        if (!(mDefStore instanceof IDefStore defStore)) {
+            logger.warn("OCSPAuthority: Response store requires the default OCSP store");
+            return;
+        }
+
+        logger.info("OCSPAuthority: Initializing OCSP response generator");
+
+        mResponseGenerator = new OCSPResponseGenerator(this, defStore);
+        mResponseGenerator.init(responseStoreConfig);
+    }
+
+    /**
+     * Returns the generator of the OCSP responses served to HTTP
+     * caches, or null if the response store is disabled.
+     */
+    public OCSPResponseGenerator getResponseGenerator() {
+        return mResponseGenerator;
+    }
+
     /**
      * This method retrieves the OCSP store given its name.
      * <P>
@@ -341,6 +372,9 @@ public class OCSPAuthority extends Subsystem implements IAuthority, IOCSPService
             if (mDefStore != null)
                 mDefStore.startup();
 
+            if (mResponseGenerator != null)
+                mResponseGenerator.startup();
+
         } catch (EBaseException e) {
             logger.warn("OCSPAuthority: " + e.getMessage(), e);
             if (engine.isPreOpMode()) {
@@ -416,13 +450,7 @@ public class OCSPAuthority extends Subsystem implements IAuthority, IOCSPService
             SingleResponse res[] = new SingleResponse[singleResponses.size()];
             singleResponses.copyInto(res);
 
-            ResponderID rid = null;
-
-            if (mDefStore.isByName()) {
-                rid = getResponderIDByName();
-            } else {
-                rid = getResponderIDByHash();
-            }
+            ResponderID rid = getResponderID();
 
             Extension nonce[] = null;
 
@@ -481,6 +509,41 @@ public class OCSPAuthority extends Subsystem implements IAuthority, IOCSPService
         return response;
     }
 
+    /**
+     * This method creates a signed OCSP response without nonce
+     * for the specified single responses.
+     *
+     * @param producedAt the time the response is produced
+     * @param res the single responses
+     * @return OCSPResponse the signed OCSP response
+     * @exception EBaseException an error associated with the inability to
+     *                sign the response
+     */
+    public OCSPResponse createResponse(Date producedAt, SingleResponse[] res) throws EBaseException {
+
+        ResponseData rd = new ResponseData(getResponderID(),
+                new GeneralizedTime(producedAt), res, null);
+
+        long signStartTime = new Date().getTime();
+
+        BasicOCSPResponse basicRes = sign(rd);
+
+        long signEndTime = new Date().getTime();
+        incSignTime(signEndTime - signStartTime);
+
+        return new OCSPResponse(
+                OCSPResponseStatus.SUCCESSFUL,
+                new ResponseBytes(ResponseBytes.OCSP_BASIC,
+                        new OCTET_STRING(ASN1Util.encode(basicRes))));
+    }
+
+    private ResponderID getResponderID() {
+        if (mDefStore.isByName()) {
+            return getResponderIDByName();
+        }
+        return getResponderIDByHash();
+    }
+
     /**
      * Stops this system. The owner may call shutdown
      * anytime after initialization.
@@ -488,6 +551,9 @@ public class OCSPAuthority extends Subsystem implements IAuthority, IOCSPService
      */
     @Override
     public void shutdown() {
+        if (mResponseGenerator != null) {
+            mResponseGenerator.shutdown();
+        }
     }
 
     /**
@@ -0,0 +1,472 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.ocsp;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.codec.binary.Hex;
+import org.mozilla.jss.asn1.ASN1Util;
+import org.mozilla.jss.asn1.GeneralizedTime;
+import org.mozilla.jss.asn1.INTEGER;
+import org.mozilla.jss.asn1.NULL;
+import org.mozilla.jss.asn1.OBJECT_IDENTIFIER;
+import org.mozilla.jss.asn1.OCTET_STRING;
+import org.mozilla.jss.netscape.security.x509.X509CertImpl;
+import org.mozilla.jss.netscape.security.x509.X509Key;
+import org.mozilla.jss.pkix.primitive.AlgorithmIdentifier;
+
+import com.netscape.certsrv.base.EBaseException;
+import com.netscape.certsrv.ocsp.IDefStore;
+import com.netscape.cmscore.apps.CMS;
+import com.netscape.cmscore.base.ConfigStore;
+import com.netscape.cmscore.dbs.CRLIssuingPointRecord;
+import com.netscape.cmscore.dbs.CRLParser;
+import com.netscape.cmscore.dbs.OCSPResponseStore;
+import com.netscape.cmsutil.ocsp.CertID;
+import com.netscape.cmsutil.ocsp.OCSPRequest;
+import com.netscape.cmsutil.ocsp.OCSPResponse;
+import com.netscape.cmsutil.ocsp.Request;
+import com.netscape.cmsutil.ocsp.SingleResponse;
+import com.netscape.cmsutil.ocsp.TBSRequest;
+
+/**
+ * Generator of signed OCSP responses that can be served to HTTP
+ * caches (RFC 5019).
+ *
+ * The responses for the revoked serial numbers of each CRL issuing
+ * point are generated in advance and kept in an
+ * {@link OCSPResponseStore} until they expire or until a new CRL is
+ * received for the issuer. The responses for other serial numbers
+ * are generated on the first request and kept in a bounded cache in
+ * memory (cacheSize), so requests for arbitrary serial numbers do
+ * not fill up the disk.
+ *
+ * Only requests for a single certificate without extensions
+ * (e.g. nonce) are served from the store.
+ */
+public class OCSPResponseGenerator implements Runnable {
+
+    public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(OCSPResponseGenerator.class);
+
+    public static final String PROP_ENABLE = "enable";
+    public static final String PROP_DIR = "dir";
+    public static final String PROP_REFRESH_INTERVAL = "refreshInterval";
+    public static final String PROP_MAX_AGE = "maxAge";
+    public static final String PROP_CACHE_SIZE = "cacheSize";
+
+    public static final int DEF_REFRESH_INTERVAL = 300; // seconds
+    public static final int DEF_MAX_AGE = 3600; // seconds
+    public static final int DEF_CACHE_SIZE = 10000;
+
+    // issuer hash algorithms of the requests served from the store
+    static final String[] DIGEST_NAMES = { "SHA-1", "SHA-256" };
+
+    // RFC 5019 clients use SHA-1 CertIDs
+    static final OBJECT_IDENTIFIER SHA1_OID = new OBJECT_IDENTIFIER("1.3.14.3.2.26");
+
+    OCSPAuthority authority;
+    IDefStore defStore;
+
+    OCSPResponseStore responseStore;
+    long refreshInterval;
+    long maxAge;
+
+    ScheduledExecutorService executor;
+
+    /**
+     * Responses generated for a CRL issuing point.
+     */
+    static class Refresh {
+
+        // version of the CRL used to generate the responses
+        long version;
+
+        // earliest expiration time of the responses
+        long expirationTime;
+
+        Refresh(long version, long expirationTime) {
+            this.version = version;
+            this.expirationTime = expirationTime;
+        }
+    }
+
+    // responses generated by the last refresh indexed by CRL issuing
+    // point ID, so the stored responses are only checked again when
+    // they may need to be replaced
+    Map<String, Refresh> refreshes = new ConcurrentHashMap<>();
+
+    // responses for serial numbers not in the CRLs indexed by
+    // response store key, least recently used first
+    int cacheSize;
+    Map<String, OCSPResponseStore.Entry> cache;
+
+    // version (CRL this update in seconds) of each issuer indexed by
+    // digest name and issuer hashes, replaced on every refresh
+    volatile Map<String, Long> versions = new HashMap<>();
+    long generation;
+
+    public OCSPResponseGenerator(OCSPAuthority authority, IDefStore defStore) {
+        this.authority = authority;
+        this.defStore = defStore;
+    }
+
+    public void init(ConfigStore config) throws EBaseException {
+
+        String dir = config.getString(PROP_DIR, null);
+        Path path = dir == null
+                ? Paths.get(CMS.getInstanceDir(), "ocsp", "responses")
+                : Paths.get(dir);
+        logger.info("OCSPResponseGenerator: Response store: " + path);
+
+        responseStore = new OCSPResponseStore(path);
+
+        refreshInterval = config.getInteger(PROP_REFRESH_INTERVAL, DEF_REFRESH_INTERVAL);
+        maxAge = config.getInteger(PROP_MAX_AGE, DEF_MAX_AGE) * 1000L;
+
+        setCacheSize(config.getInteger(PROP_CACHE_SIZE, DEF_CACHE_SIZE));
+    }
+
+    void setCacheSize(int cacheSize) {
+
+        this.cacheSize = cacheSize;
+
+        cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, OCSPResponseStore.Entry> eldest) {
+                return size() > OCSPResponseGenerator.this.cacheSize;
+            }
+        };
+    }
+
+    public OCSPResponseStore getResponseStore() {
+        return responseStore;
+    }
+
+    /**
+     * Returns the maximum time in milliseconds that a response
+     * can be cached.
+     */
+    public long getMaxAge() {
+        return maxAge;
+    }
+
+    public void startup() {
+
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "OCSPResponseGenerator");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        executor.scheduleWithFixedDelay(this, 0, refreshInterval, TimeUnit.SECONDS);
+    }
+
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Stops serving the stored responses until the new CRL
+     * has been processed.
+     */
+    public synchronized void crlUpdated() {
+
+        logger.info("OCSPResponseGenerator: CRL updated, refreshing responses");
+
+        generation++;
+        versions = new HashMap<>();
+
+        synchronized (cache) {
+            cache.clear();
+        }
+
+        if (executor != null) {
+            executor.execute(this);
+        }
+    }
+
+    static String getIssuerKey(String digestName, byte[] nameHash, byte[] keyHash) {
+        return digestName + ":" + Hex.encodeHexString(nameHash) + ":" + Hex.encodeHexString(keyHash);
+    }
+
+    /**
+     * Returns the stored or cached response for the request,
+     * generating it if needed, or null if the request cannot be
+     * served from the store.
+     */
+    public OCSPResponseStore.Entry getResponse(OCSPRequest request) throws EBaseException {
+
+        TBSRequest tbsReq = request.getTBSRequest();
+
+        if (tbsReq.getRequestCount() != 1 || tbsReq.getExtensionsCount() != 0) {
+            return null;
+        }
+
+        Request req = tbsReq.getRequestAt(0);
+        if (req.getExtensionsCount() != 0) {
+            return null;
+        }
+
+        CertID cid = req.getCertID();
+
+        Long version = versions.get(getIssuerKey(
+                cid.getDigestName(),
+                cid.getIssuerNameHash().toByteArray(),
+                cid.getIssuerKeyHash().toByteArray()));
+
+        if (version == null) {
+            // unknown issuer or CRL being updated
+            return null;
+        }
+
+        byte[] certID = ASN1Util.encode(cid);
+        String key = OCSPResponseStore.createKey(certID);
+        long now = System.currentTimeMillis();
+
+        OCSPResponseStore.Entry entry;
+        synchronized (cache) {
+            entry = cache.get(key);
+        }
+
+        if (isValid(entry, version, now)) {
+            return entry;
+        }
+
+        try {
+            entry = responseStore.get(certID);
+
+            if (isValid(entry, version, now)) {
+                return entry;
+            }
+
+        } catch (IOException e) {
+            logger.warn("OCSPResponseGenerator: Unable to read response: " + e.getMessage(), e);
+        }
+
+        entry = generate(cid);
+
+        if (entry.getVersion() < version) {
+            return null;
+        }
+
+        synchronized (cache) {
+            cache.put(key, entry);
+        }
+
+        return entry;
+    }
+
+    boolean isValid(OCSPResponseStore.Entry entry, long version, long time) {
+        return entry != null
+                && entry.getVersion() >= version
+                && entry.getExpirationTime(maxAge) > time;
+    }
+
+    /**
+     * Creates a signed response for the CertID.
+     */
+    OCSPResponseStore.Entry generate(CertID cid) throws EBaseException {
+
+        SingleResponse sr;
+        try {
+            sr = defStore.processRequest(new Request(cid, null));
+        } catch (EBaseException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new EBaseException("Unable to process OCSP request: " + e.getMessage(), e);
+        }
+
+        Date producedAt = new Date();
+        OCSPResponse response = authority.createResponse(producedAt, new SingleResponse[] { sr });
+
+        Date thisUpdate = sr.getThisUpdate().toDate();
+        GeneralizedTime nextUpdate = sr.getNextUpdate();
+
+        return new OCSPResponseStore.Entry(
+                ASN1Util.encode(response),
+                producedAt,
+                thisUpdate,
+                nextUpdate == null ? null : nextUpdate.toDate(),
+                thisUpdate.getTime() / 1000);
+    }
+
+    /**
+     * Refreshes the issuer versions and generates the responses for the
+     * revoked serial numbers that are missing, outdated, or expiring
+     * before the next refresh. The stored responses of a CRL issuing
+     * point are only checked again when a new CRL is received or when
+     * some of them are expiring.
+     */
+    @Override
+    public void run() {
+
+        try {
+            long currentGeneration;
+            synchronized (this) {
+                currentGeneration = generation;
+            }
+
+            logger.info("OCSPResponseGenerator: Refreshing OCSP responses");
+
+            Map<String, Long> newVersions = new HashMap<>();
+            List<CRLIssuingPointRecord> records = new ArrayList<>();
+
+            Enumeration<CRLIssuingPointRecord> recs = defStore.searchAllCRLIssuingPointRecord(100);
+
+            while (recs.hasMoreElements()) {
+                CRLIssuingPointRecord rec = recs.nextElement();
+
+                if (rec.getCACert() == null || rec.getCRL() == null || rec.getThisUpdate() == null) {
+                    continue;
+                }
+
+                X509CertImpl caCert = new X509CertImpl(rec.getCACert());
+                long version = rec.getThisUpdate().getTime() / 1000;
+
+                for (String digestName : DIGEST_NAMES) {
+                    MessageDigest md = MessageDigest.getInstance(digestName);
+                    byte[] nameHash = md.digest(caCert.getSubjectObj().getX500Name().getEncoded());
+                    byte[] keyHash = md.digest(((X509Key) caCert.getPublicKey()).getKey());
+                    newVersions.put(getIssuerKey(digestName, nameHash, keyHash), version);
+                }
+
+                records.add(rec);
+            }
+
+            synchronized (this) {
+                if (generation != currentGeneration) {
+                    // another CRL was received, the next run will pick it up
+                    return;
+                }
+                versions = newVersions;
+            }
+
+            long time = System.currentTimeMillis() + refreshInterval * 1000;
+            boolean generated = false;
+
+            for (CRLIssuingPointRecord rec : records) {
+
+                String id = rec.getId();
+                long version = rec.getThisUpdate().getTime() / 1000;
+
+                if (!needsRefresh(id, version, time)) {
+                    logger.debug("OCSPResponseGenerator: Responses for " + id + " are up to date");
+                    continue;
+                }
+
+                long expirationTime = generate(rec, time);
+                refreshes.put(id, new Refresh(version, expirationTime));
+                generated = true;
+            }
+
+            // responses only expire between the refreshes that
+            // replace them, so the store is not scanned otherwise
+            if (generated) {
+                int count = responseStore.removeExpired(System.currentTimeMillis(), maxAge);
+                logger.info("OCSPResponseGenerator: Removed " + count + " expired response(s)");
+            }
+
+        } catch (Exception e) {
+            logger.warn("OCSPResponseGenerator: Unable to refresh OCSP responses: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Checks whether the responses of a CRL issuing point have to be
+     * generated: the CRL has been updated or some of the responses
+     * expire before the given time.
+     */
+    boolean needsRefresh(String id, long version, long time) {
+        Refresh refresh = refreshes.get(id);
+        return refresh == null
+                || refresh.version < version
+                || refresh.expirationTime <= time;
+    }
+
+    /**
+     * Generates the responses for the revoked serial numbers in the CRL
+     * that are missing, outdated, or expiring before the given time.
+     *
+     * @return the earliest expiration time of the responses
+     */
+    long generate(CRLIssuingPointRecord rec, long time) throws Exception {
+
+        X509CertImpl caCert = new X509CertImpl(rec.getCACert());
+        long version = rec.getThisUpdate().getTime() / 1000;
+
+        MessageDigest md = MessageDigest.getInstance("SHA-1");
+        OCTET_STRING nameHash = new OCTET_STRING(md.digest(caCert.getSubjectObj().getX500Name().getEncoded()));
+        OCTET_STRING keyHash = new OCTET_STRING(md.digest(((X509Key) caCert.getPublicKey()).getKey()));
+        AlgorithmIdentifier algorithm = new AlgorithmIdentifier(SHA1_OID, new NULL());
+
+        int[] counts = new int[2];
+        long[] expirationTime = { Long.MAX_VALUE };
+
+        CRLParser parser = new CRLParser(rec.getCRL());
+        parser.forEach((serialNumber, revocationDate, reason) -> {
+
+            if (Thread.currentThread().isInterrupted()) {
+                throw new IOException("OCSP response generation interrupted");
+            }
+
+            CertID cid = new CertID(algorithm, nameHash, keyHash, new INTEGER(serialNumber));
+            byte[] certID = ASN1Util.encode(cid);
+
+            counts[0]++;
+
+            try {
+                OCSPResponseStore.Entry entry = responseStore.get(certID);
+                if (isValid(entry, version, time)) {
+                    expirationTime[0] = Math.min(expirationTime[0], entry.getExpirationTime(maxAge));
+                    return;
+                }
+            } catch (IOException e) {
+                logger.warn("OCSPResponseGenerator: Replacing invalid response: " + e.getMessage());
+            }
+
+            OCSPResponseStore.Entry entry;
+            try {
+                entry = generate(cid);
+            } catch (EBaseException e) {
+                throw new IOException("Unable to generate OCSP response: " + e.getMessage(), e);
+            }
+
+            try {
+                responseStore.put(certID, entry);
+            } catch (IOException e) {
+                logger.warn("OCSPResponseGenerator: Unable to store response: " + e.getMessage(), e);
+            }
+
+            expirationTime[0] = Math.min(expirationTime[0], entry.getExpirationTime(maxAge));
+            counts[1]++;
+        });
+
+        logger.info("OCSPResponseGenerator: Generated " + counts[1] + " of " + counts[0]
+                + " revoked response(s) for " + rec.getId());
+
+        return expirationTime[0];
+    }
+}
@@ -20,7 +20,6 @@ package org.dogtagpki.server.ocsp;
 
 import java.io.IOException;
 import java.security.cert.CertificateException;
-import java.security.cert.X509CRLEntry;
 import java.security.cert.X509Certificate;
 import java.util.Arrays;
 import java.util.Enumeration;
@@ -29,7 +28,6 @@ import org.mozilla.jss.netscape.security.x509.AuthorityKeyIdentifierExtension;
 import org.mozilla.jss.netscape.security.x509.KeyIdentifier;
 import org.mozilla.jss.netscape.security.x509.PKIXExtensions;
 import org.mozilla.jss.netscape.security.x509.SubjectKeyIdentifierExtension;
-import org.mozilla.jss.netscape.security.x509.X509CRLImpl;
 import org.mozilla.jss.netscape.security.x509.X509CertImpl;
 import org.mozilla.jss.ssl.SSLCertificateApprovalCallback.ValidityStatus;
 
@@ -43,6 +41,7 @@ import com.netscape.cmscore.base.ConfigStore;
 import com.netscape.cmscore.cert.CertUtils;
 import com.netscape.cmscore.dbs.CRLIssuingPointRecord;
 import com.netscape.cmscore.dbs.DBSubsystem;
+import com.netscape.cmscore.dbs.RevokedSerialStore;
 import com.netscape.cmscore.ldapconn.LDAPAuthenticationConfig;
 import com.netscape.cmscore.ldapconn.LDAPConfig;
 import com.netscape.cmscore.ldapconn.LDAPConnectionConfig;
@@ -224,6 +223,7 @@ public class OCSPEngine extends CMSEngine {
     private boolean crlCertValid(LDAPStore crlStore, X509Certificate certificate, ValidityStatus currentStatus) {
         logger.info("OCSPEngine: validate of peer's certificate for the connection " + certificate.getSubjectX500Principal());
         CRLIssuingPointRecord pt = null;
+        X509CertImpl issuerCert = null;
         try {
             X509CertImpl peerCert = new X509CertImpl(certificate.getEncoded());
             Enumeration<CRLIssuingPointRecord> eCRL = crlStore.searchAllCRLIssuingPointRecord(-1);
@@ -248,6 +248,7 @@ public class OCSPEngine extends CMSEngine {
                     KeyIdentifier peerAKIId = (KeyIdentifier) peerAKIExt.get(AuthorityKeyIdentifierExtension.KEY_ID);
                     if(Arrays.equals(caSKIId.getIdentifier(), peerAKIId.getIdentifier())) {
                         pt = tPt;
+                        issuerCert = caCert;
                     }
                 } catch (IOException e) {
                     logger.error("OCSPEngine: problem extracting key from SKI/AKI: " + e.getMessage(), e);
@@ -262,10 +263,12 @@ public class OCSPEngine extends CMSEngine {
             return false;
         }
         try {
-            X509CRLImpl crl = new X509CRLImpl(pt.getCRL());
-            X509CRLEntry crlentry = crl.getRevokedCertificate(certificate.getSerialNumber());
+            RevokedSerialStore crl = crlStore.getRevokedSerials(issuerCert);
+            if (crl == null) {
+                throw new Exception("Missing CRL data for issuing CA: " + pt.getId());
+            }
 
-            if (crlentry == null && crlStore.isNotFoundGood()) {
+            if (!crl.contains(certificate.getSerialNumber()) && crlStore.isNotFoundGood()) {
                 return true;
             }
         } catch (Exception e) {
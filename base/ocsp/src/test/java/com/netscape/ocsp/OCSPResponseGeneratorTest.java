@@ -0,0 +1,245 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.ocsp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mozilla.jss.asn1.ASN1Util;
+import org.mozilla.jss.asn1.GeneralizedTime;
+import org.mozilla.jss.asn1.INTEGER;
+import org.mozilla.jss.asn1.NULL;
+import org.mozilla.jss.asn1.OCTET_STRING;
+import org.mozilla.jss.asn1.SEQUENCE;
+import org.mozilla.jss.pkix.primitive.AlgorithmIdentifier;
+
+import com.netscape.cms.ocsp.DefStore;
+import com.netscape.cmscore.dbs.OCSPResponseStore;
+import com.netscape.cmsutil.ocsp.CertID;
+import com.netscape.cmsutil.ocsp.GoodInfo;
+import com.netscape.cmsutil.ocsp.OCSPRequest;
+import com.netscape.cmsutil.ocsp.OCSPResponse;
+import com.netscape.cmsutil.ocsp.OCSPResponseStatus;
+import com.netscape.cmsutil.ocsp.Request;
+import com.netscape.cmsutil.ocsp.ResponseBytes;
+import com.netscape.cmsutil.ocsp.SingleResponse;
+import com.netscape.cmsutil.ocsp.TBSRequest;
+
+public class OCSPResponseGeneratorTest {
+
+    static final byte[] NAME_HASH = new byte[20];
+    static final byte[] KEY_HASH = new byte[20];
+
+    static {
+        Arrays.fill(NAME_HASH, (byte) 1);
+        Arrays.fill(KEY_HASH, (byte) 2);
+    }
+
+    /**
+     * Authority that counts the signed responses.
+     */
+    static class TestAuthority extends OCSPAuthority {
+
+        int signed;
+
+        @Override
+        public OCSPResponse createResponse(Date producedAt, SingleResponse[] res) {
+            signed++;
+            return new OCSPResponse(
+                    OCSPResponseStatus.SUCCESSFUL,
+                    new ResponseBytes(ResponseBytes.OCSP_BASIC, new OCTET_STRING(new byte[] { (byte) signed })));
+        }
+    }
+
+    /**
+     * Store that returns a good status with the current CRL
+     * this update time.
+     */
+    static class TestStore extends DefStore {
+
+        long thisUpdate;
+
+        @Override
+        public SingleResponse processRequest(Request req) {
+            return new SingleResponse(
+                    req.getCertID(),
+                    new GoodInfo(),
+                    new GeneralizedTime(new Date(thisUpdate)),
+                    new GeneralizedTime(new Date(System.currentTimeMillis() + 3600000)));
+        }
+    }
+
+    @TempDir
+    Path dir;
+
+    TestAuthority authority = new TestAuthority();
+    TestStore store = new TestStore();
+    OCSPResponseGenerator generator;
+
+    @BeforeEach
+    public void setUp() {
+
+        generator = new OCSPResponseGenerator(authority, store);
+        generator.responseStore = new OCSPResponseStore(dir);
+        generator.maxAge = 3600000;
+        generator.setCacheSize(2);
+
+        setVersion(100);
+    }
+
+    void setVersion(long version) {
+
+        store.thisUpdate = version * 1000;
+
+        Map<String, Long> versions = new HashMap<>();
+        versions.put(OCSPResponseGenerator.getIssuerKey("SHA-1", NAME_HASH, KEY_HASH), version);
+        generator.versions = versions;
+    }
+
+    static CertID createCertID(int serial) {
+        return new CertID(
+                new AlgorithmIdentifier(OCSPResponseGenerator.SHA1_OID, new NULL()),
+                new OCTET_STRING(NAME_HASH),
+                new OCTET_STRING(KEY_HASH),
+                new INTEGER(serial));
+    }
+
+    static OCSPRequest createRequest(int serial, SEQUENCE extensions) {
+
+        SEQUENCE requests = new SEQUENCE();
+        requests.addElement(new Request(createCertID(serial), null));
+
+        return new OCSPRequest(new TBSRequest(null, null, requests, extensions), null);
+    }
+
+    static OCSPRequest createRequest(int serial) {
+        return createRequest(serial, null);
+    }
+
+    long countFiles() throws Exception {
+        try (Stream<Path> files = Files.walk(dir)) {
+            return files.filter(Files::isRegularFile).count();
+        }
+    }
+
+    @Test
+    public void testUnknownIssuer() throws Exception {
+
+        generator.versions = new HashMap<>();
+
+        assertNull(generator.getResponse(createRequest(1)));
+        assertEquals(0, authority.signed);
+    }
+
+    @Test
+    public void testRequestExtensions() throws Exception {
+
+        // e.g. nonce
+        SEQUENCE extensions = new SEQUENCE();
+        extensions.addElement(new NULL());
+
+        assertNull(generator.getResponse(createRequest(1, extensions)));
+        assertEquals(0, authority.signed);
+    }
+
+    @Test
+    public void testOnDemandResponses() throws Exception {
+
+        OCSPResponseStore.Entry entry = generator.getResponse(createRequest(1));
+        assertNotNull(entry);
+        assertEquals(100, entry.getVersion());
+        assertEquals(1, authority.signed);
+
+        // responses for serial numbers not in the CRL are not stored on disk
+        assertEquals(0, countFiles());
+
+        // the response is reused
+        assertSame(entry, generator.getResponse(createRequest(1)));
+        assertEquals(1, authority.signed);
+
+        // the least recently used response is evicted
+        generator.getResponse(createRequest(2));
+        generator.getResponse(createRequest(3));
+        assertEquals(3, authority.signed);
+
+        generator.getResponse(createRequest(1));
+        assertEquals(4, authority.signed);
+        assertEquals(0, countFiles());
+    }
+
+    @Test
+    public void testStoredResponses() throws Exception {
+
+        // response generated in advance for a revoked serial number
+        CertID cid = createCertID(5);
+        byte[] certID = ASN1Util.encode(cid);
+        OCSPResponseStore.Entry stored = generator.generate(cid);
+        generator.responseStore.put(certID, stored);
+        assertEquals(1, authority.signed);
+
+        OCSPResponseStore.Entry entry = generator.getResponse(createRequest(5));
+        assertEquals(stored.getETag(), entry.getETag());
+        assertEquals(1, authority.signed);
+
+        // outdated responses are generated again but not stored on disk
+        setVersion(200);
+
+        entry = generator.getResponse(createRequest(5));
+        assertEquals(200, entry.getVersion());
+        assertEquals(2, authority.signed);
+        assertEquals(100, generator.responseStore.get(certID).getVersion());
+    }
+
+    @Test
+    public void testCRLUpdated() throws Exception {
+
+        assertNotNull(generator.getResponse(createRequest(1)));
+
+        generator.crlUpdated();
+
+        // no responses are served until the new CRL is processed
+        assertNull(generator.getResponse(createRequest(1)));
+        assertTrue(generator.cache.isEmpty());
+
+        setVersion(200);
+
+        assertEquals(200, generator.getResponse(createRequest(1)).getVersion());
+        assertEquals(2, authority.signed);
+    }
+
+    @Test
+    public void testNeedsRefresh() throws Exception {
+
+        long time = System.currentTimeMillis();
+
+        // never generated
+        assertTrue(generator.needsRefresh("MasterCRL", 100, time));
+
+        generator.refreshes.put("MasterCRL", new OCSPResponseGenerator.Refresh(100, time + 1000));
+        assertFalse(generator.needsRefresh("MasterCRL", 100, time));
+
+        // new CRL
+        assertTrue(generator.needsRefresh("MasterCRL", 200, time));
+
+        // responses expiring before the next refresh
+        assertTrue(generator.needsRefresh("MasterCRL", 100, time + 1000));
+    }
+}
@@ -78,4 +78,13 @@ public class ConnectorConfig extends ConfigStore {
     public int getMaxHttpConns() throws EBaseException {
         return getInteger("maxHttpConns", 15);
     }
+
+    /**
+     * Returns the format of the messages sent to the remote
+     * authority: serialized (default) or json. The json format
+     * requires the remote authority to support it.
+     */
+    public String getMessageFormat() throws EBaseException {
+        return getString("messageFormat", "serialized");
+    }
 }
@@ -19,6 +19,7 @@ package com.netscape.cms.jobs;
 
 import java.io.IOException;
 import java.util.Hashtable;
+import java.util.Map;
 
 import org.mozilla.jss.netscape.security.x509.X509CertImpl;
 
@@ -163,6 +164,16 @@ public abstract class Job implements Runnable {
         mId = id;
     }
 
+    /**
+     * Returns the progress of the current or last run of this job,
+     * or null if the job does not report its progress.
+     *
+     * @return status parameters
+     */
+    public Map<String, String> getStatus() {
+        return null;
+    }
+
     /**
      * get cron string associated with this job
      *
@@ -306,10 +306,12 @@ public class ConnectorServlet extends CMSServlet {
 
         // encode reply
         try {
-            String encodedrep = mReqEncoder.encode(replymsg);
+            // reply in the format used by the sender
+            String format = HttpRequestEncoder.getFormat(encodedreq);
+            String encodedrep = mReqEncoder.encode(replymsg, format);
 
             resp.setStatus(HttpServletResponse.SC_OK);
-            resp.setContentType("text/html");
+            resp.setContentType(HttpRequestEncoder.FORMAT_JSON.equals(format) ? "application/json" : "text/html");
             resp.setContentLength(encodedrep.length());
 
             // send reply
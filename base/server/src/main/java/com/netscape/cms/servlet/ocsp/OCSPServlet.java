@@ -19,6 +19,7 @@ package com.netscape.cms.servlet.ocsp;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
@@ -40,6 +41,7 @@ import com.netscape.certsrv.logging.event.OCSPGenerationEvent;
 import com.netscape.cms.servlet.base.CMSServlet;
 import com.netscape.cms.servlet.common.CMSRequest;
 import com.netscape.cmscore.apps.CMSEngine;
+import com.netscape.cmscore.dbs.OCSPResponseStore;
 import com.netscape.cmscore.logging.Auditor;
 import com.netscape.cmscore.util.StatsSubsystem;
 import com.netscape.cmsutil.ocsp.BasicOCSPResponse;
@@ -95,6 +97,60 @@ public class OCSPServlet extends CMSServlet {
         return null;
     }
 
+    /**
+     * Returns a pre-generated response for a GET request that can be
+     * served to HTTP caches (RFC 5019), or null if the response has
+     * to be generated for this request.
+     */
+    public OCSPResponseStore.Entry getCachedResponse(OCSPRequest ocspRequest) throws EBaseException {
+        return null;
+    }
+
+    /**
+     * Returns the maximum time in milliseconds that HTTP caches
+     * can keep the pre-generated responses.
+     */
+    public long getCacheMaxAge() {
+        return 0;
+    }
+
+    /**
+     * Sends a pre-generated response with the headers defined in
+     * RFC 5019 section 6.2, or a 304 response if the client already
+     * has it.
+     */
+    void sendCachedResponse(
+            HttpServletRequest httpReq,
+            HttpServletResponse httpResp,
+            OCSPResponseStore.Entry entry) throws IOException {
+
+        long now = System.currentTimeMillis();
+        long expiration = Math.min(entry.getExpirationTime(getCacheMaxAge()), now + getCacheMaxAge());
+        long maxAge = Math.max(0, (expiration - now) / 1000);
+
+        String etag = entry.getETag();
+
+        httpResp.setDateHeader("Last-Modified", entry.getProducedAt().getTime());
+        httpResp.setDateHeader("Expires", expiration);
+        httpResp.setHeader("ETag", etag);
+        httpResp.setHeader("Cache-Control", "max-age=" + maxAge + ", public, no-transform, must-revalidate");
+
+        if (etag.equals(httpReq.getHeader("If-None-Match"))) {
+            logger.debug("OCSPServlet: Response not modified: " + etag);
+            httpResp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        byte[] respbytes = entry.getResponse();
+
+        httpResp.setContentType("application/ocsp-response");
+        httpResp.setContentLength(respbytes.length);
+
+        OutputStream ooss = httpResp.getOutputStream();
+        ooss.write(respbytes);
+        ooss.flush();
+    }
+
     /**
      * Process the HTTP request.
      * This method is invoked when the OCSP service receives a OCSP
@@ -206,6 +262,7 @@ public class OCSPServlet extends CMSServlet {
             // (1) retrieve OCSP request
             // (2) decode request
             OCSPResponse response = null;
+            OCSPResponseStore.Entry cachedResponse = null;
 
             try {
                 OCSPRequest.Template reqTemplate =
@@ -239,10 +296,16 @@ public class OCSPServlet extends CMSServlet {
                     logger.info("OCSPServlet: - " + certID.toHexString());
                 }
 
-                logger.debug("OCSPServlet: validating request");
-                response = validate(ocspReq);
+                if (!"POST".equals(method)) {
+                    cachedResponse = getCachedResponse(ocspReq);
+                }
+
+                if (cachedResponse == null) {
+                    logger.debug("OCSPServlet: validating request");
+                    response = validate(ocspReq);
+                }
 
-                if (response == null) {
+                if (cachedResponse == null && response == null) {
                     auditor.log(OCSPGenerationEvent.createFailureEvent(auditSubjectID(), "Missing OCSP response"));
 
                 } else {
@@ -254,7 +317,17 @@ public class OCSPServlet extends CMSServlet {
                 auditor.log(OCSPGenerationEvent.createFailureEvent(auditSubjectID(), e.getMessage()));
             }
 
-            if (response != null) {
+            if (cachedResponse != null) {
+                logger.debug("OCSPServlet: sending pre-generated response");
+                sendCachedResponse(httpReq, httpResp, cachedResponse);
+
+                if (statsSub != null) {
+                    statsSub.endTiming("ocsp");
+                }
+
+                mRenderResult = false;
+
+            } else if (response != null) {
                 ByteArrayOutputStream fos1 = new ByteArrayOutputStream();
 
                 response.encode(fos1);
@@ -71,6 +71,7 @@ import com.netscape.cmscore.authorization.AuthzSubsystem;
 import com.netscape.cmscore.base.ConfigStorage;
 import com.netscape.cmscore.base.ConfigStore;
 import com.netscape.cmscore.base.FileConfigStorage;
+import com.netscape.cmscore.cert.CertVerificationCache;
 import com.netscape.cmscore.cert.OidLoaderSubsystem;
 import com.netscape.cmscore.cert.X500NameSubsystem;
 import com.netscape.cmscore.dbs.DBSubsystem;
@@ -147,6 +148,9 @@ public class CMSEngine {
     private Timer mSDTimer = null;
     private String mServerCertNickname = null;
     private boolean ready;
+    private Map<String, Long> startupTimes = new LinkedHashMap<>();
+
+    public static final int DEFAULT_STARTUP_THREADS = 4;
 
     private Debug debug = new Debug();
 
@@ -167,6 +171,7 @@ public class CMSEngine {
     protected OidLoaderSubsystem oidLoaderSubsystem;
     protected X500NameSubsystem x500NameSubsystem;
     protected RequestSubsystem requestSubsystem = new RequestSubsystem();
+    protected CertVerificationCache certVerificationCache = new CertVerificationCache();
     protected AuthSubsystem authSubsystem;
     protected AuthzSubsystem authzSubsystem;
     protected CMSGateway gateway;
@@ -1012,7 +1017,10 @@ public class CMSEngine {
             }
 
             ConfigStore subsystemConfig = mConfig.getSubStore(id, ConfigStore.class);
+
+            long start = System.currentTimeMillis();
             initSubsystem(subsystem, subsystemConfig);
+            logger.info("CMSEngine: " + id + " subsystem initialized in " + (System.currentTimeMillis() - start) + " ms");
         }
     }
 
@@ -1164,7 +1172,10 @@ public class CMSEngine {
             }
 
             logger.info("CMSEngine: Starting " + subsystem.getId() + " subsystem");
+
+            long start = System.currentTimeMillis();
             subsystem.startup();
+            logger.info("CMSEngine: " + subsystem.getId() + " subsystem started in " + (System.currentTimeMillis() - start) + " ms");
         }
 
         // global admin servlet. (anywhere else more fit for this ?)
@@ -1186,6 +1197,7 @@ public class CMSEngine {
 
         logger.info("Starting " + name + " engine");
 
+        long start = System.currentTimeMillis();
         ready = false;
 
         instanceDir = CMS.getInstanceDir();
@@ -1200,9 +1212,14 @@ public class CMSEngine {
         ready = true;
         isStarted = true;
 
+        long startupTime = System.currentTimeMillis() - start;
         mStartupTime = System.currentTimeMillis();
 
-        logger.info(name + " engine started");
+        logger.info(name + " engine started in " + startupTime + " ms");
+        for (Map.Entry<String, Long> entry : startupTimes.entrySet()) {
+            logger.info("CMSEngine: - " + entry.getKey() + ": " + entry.getValue() + " ms");
+        }
+
         // Register TomcatJSS socket listener
         TomcatJSS tomcatJss = TomcatJSS.getInstance();
         if(serverSocketListener == null) {
@@ -1219,6 +1236,13 @@ public class CMSEngine {
         }
     }
 
+    /**
+     * Returns the time in milliseconds spent in each startup step.
+     */
+    public Map<String, Long> getStartupTimes() {
+        return startupTimes;
+    }
+
     protected void initSequence() throws Exception {
         initDebug();
         initPasswordStore();
@@ -1234,28 +1258,43 @@ public class CMSEngine {
         testLDAPConnections();
         initDatabase();
 
-        initJssSubsystem();
-        initDBSubsystem();
-        initUGSubsystem();
-        initOIDLoaderSubsystem();
-        initX500NameSubsystem();
+        // The remaining steps are started as soon as their dependencies
+        // have completed, so independent subsystems initialize concurrently.
+        // Use startup.threads=1 to initialize them one at a time.
+        StartupGraph graph = new StartupGraph(name);
+
+        // The OID and X.500 name registrations are global and affect how
+        // certs and DNs are parsed, so they complete before anything else.
+        graph.add("OidLoaderSubsystem", this::initOIDLoaderSubsystem);
+        graph.add("X500NameSubsystem", this::initX500NameSubsystem, "OidLoaderSubsystem");
+
+        graph.add("JssSubsystem", this::initJssSubsystem, "X500NameSubsystem");
+        graph.add("DBSubsystem", this::initDBSubsystem, "JssSubsystem");
+        graph.add("UGSubsystem", this::initUGSubsystem, "JssSubsystem");
         // skip TP subsystem;
         // problem in needing dbsubsystem in constructor. and it's not used.
-        initRequestSubsystem();
+        graph.add("RequestSubsystem", this::initRequestSubsystem, "DBSubsystem");
 
-        init();
+        graph.add("Subsystems", this::init, "DBSubsystem", "UGSubsystem", "RequestSubsystem");
+        graph.add("SubsystemsStartup", this::startupSubsystems, "Subsystems");
 
-        startupSubsystems();
+        graph.add("AuthSubsystem", this::initAuthSubsystem, "SubsystemsStartup");
+        graph.add("AuthzSubsystem", this::initAuthzSubsystem, "SubsystemsStartup");
+        graph.add("CMSGateway", this::initCMSGateway, "AuthSubsystem");
+        graph.add("JobsScheduler", this::initJobsScheduler, "CMSGateway", "AuthzSubsystem");
 
-        initAuthSubsystem();
-        initAuthzSubsystem();
-        initCMSGateway();
-        initJobsScheduler();
+        graph.add("AutoShutdown", this::configureAutoShutdown, "JobsScheduler");
+        graph.add("ServerCertNickname", this::configureServerCertNickname, "JobsScheduler");
+        graph.add("SecurityDomain", this::initSecurityDomain, "AutoShutdown", "ServerCertNickname");
 
-        configureAutoShutdown();
-        configureServerCertNickname();
+        int threads = config.getInteger("startup.threads", DEFAULT_STARTUP_THREADS);
+        logger.info("CMSEngine: Starting subsystems with " + threads + " thread(s)");
 
-        initSecurityDomain();
+        try {
+            graph.run(threads);
+        } finally {
+            startupTimes = graph.getTimes();
+        }
     }
 
     public boolean isInRunningState() {
@@ -1949,6 +1988,10 @@ public class CMSEngine {
         }
     }
 
+    public CertVerificationCache getCertVerificationCache() {
+        return certVerificationCache;
+    }
+
     /**
      * Verify a certificate by its tag name, do a full verification.
      *
@@ -1992,7 +2035,12 @@ public class CMSEngine {
             }
 
             if (!checkValidityOnly) {
-                CertUtil.verifyCertificateUsage(nickname, certusage);
+                if (certVerificationCache.isVerified(nickname, certusage)) {
+                    logger.debug("CMSEngine: verifySystemCertByTag() using cached verification for " + nickname);
+                } else {
+                    CertUtil.verifyCertificateUsage(nickname, certusage);
+                    certVerificationCache.setVerified(nickname, certusage);
+                }
             } else {
                 CertUtil.verifyCertValidity(nickname);
             }
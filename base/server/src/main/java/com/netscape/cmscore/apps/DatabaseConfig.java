@@ -68,6 +68,11 @@ public class DatabaseConfig extends ConfigStore {
 
     public static final String ENABLE_SERIAL_MGMT = "enableSerialManagement";
 
+    public static final String ASYNC_CONNECTIONS = "asyncConnections";
+    public static final String ASYNC_MAX_OPERATIONS = "asyncMaxOperations";
+
+    public static final String CRL_CACHE_FORMAT = "crlCacheFormat";
+
     public DatabaseConfig(ConfigStorage storage) {
         super(storage);
     }
@@ -300,6 +305,39 @@ public class DatabaseConfig extends ConfigStore {
         putString(REPLICA_INCREMENT, replicaIncrement);
     }
 
+    /**
+     * Returns the number of connections used by the asynchronous
+     * session, or 0 if the asynchronous session is disabled.
+     */
+    public int getAsyncConnections() throws EBaseException {
+        return getInteger(ASYNC_CONNECTIONS, 0);
+    }
+
+    public void setAsyncConnections(int asyncConnections) {
+        putInteger(ASYNC_CONNECTIONS, asyncConnections);
+    }
+
+    public int getAsyncMaxOperations() throws EBaseException {
+        return getInteger(ASYNC_MAX_OPERATIONS, 64);
+    }
+
+    public void setAsyncMaxOperations(int asyncMaxOperations) {
+        putInteger(ASYNC_MAX_OPERATIONS, asyncMaxOperations);
+    }
+
+    /**
+     * Returns the format used to store the CRL caches in CRL issuing
+     * point records: serialized (Java object serialization, readable
+     * by older versions) or compact.
+     */
+    public String getCRLCacheFormat() throws EBaseException {
+        return getString(CRL_CACHE_FORMAT, "serialized");
+    }
+
+    public void setCRLCacheFormat(String crlCacheFormat) {
+        putString(CRL_CACHE_FORMAT, crlCacheFormat);
+    }
+
     public LDAPConfig getLDAPConfig() throws EBaseException {
         return getSubStore("ldap", LDAPConfig.class);
     }
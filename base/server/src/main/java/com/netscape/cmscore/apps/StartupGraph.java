@@ -0,0 +1,188 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.apps;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A set of startup steps with dependencies between them.
+ *
+ * Steps are started in the order they were added as soon as all
+ * their dependencies have completed, so independent steps run
+ * concurrently. With a single thread the steps run one at a time
+ * in the order they were added. If a step fails no further steps
+ * are started and the exception is rethrown once the running steps
+ * have finished.
+ *
+ * The time spent in each step is recorded.
+ */
+public class StartupGraph {
+
+    public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(StartupGraph.class);
+
+    public interface Step {
+        void run() throws Exception;
+    }
+
+    class Node {
+
+        String name;
+        Step step;
+        List<String> dependencies;
+
+        boolean started;
+        boolean completed;
+
+        Node(String name, Step step, List<String> dependencies) {
+            this.name = name;
+            this.step = step;
+            this.dependencies = dependencies;
+        }
+
+        boolean isReady() {
+            if (started) {
+                return false;
+            }
+            for (String dependency : dependencies) {
+                if (!nodes.get(dependency).completed) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    String name;
+    Map<String, Node> nodes = new LinkedHashMap<>();
+    Map<String, Long> times = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    public StartupGraph(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Adds a step that runs after the given steps have completed.
+     * The dependencies must have been added before.
+     */
+    public void add(String stepName, Step step, String... dependencies) {
+
+        if (nodes.containsKey(stepName)) {
+            throw new IllegalArgumentException("Duplicate startup step: " + stepName);
+        }
+
+        for (String dependency : dependencies) {
+            if (!nodes.containsKey(dependency)) {
+                throw new IllegalArgumentException("Unknown startup step: " + dependency);
+            }
+        }
+
+        nodes.put(stepName, new Node(stepName, step, List.of(dependencies)));
+    }
+
+    /**
+     * Returns the time in milliseconds spent in each completed step.
+     */
+    public Map<String, Long> getTimes() {
+        synchronized (times) {
+            return new LinkedHashMap<>(times);
+        }
+    }
+
+    void execute(Node node) throws Exception {
+        logger.debug("StartupGraph: Starting " + node.name);
+        long start = System.currentTimeMillis();
+        node.step.run();
+        long time = System.currentTimeMillis() - start;
+        times.put(node.name, time);
+        logger.info("StartupGraph: " + node.name + " completed in " + time + " ms");
+    }
+
+    public void run(int threads) throws Exception {
+
+        if (threads <= 1) {
+            for (Node node : nodes.values()) {
+                execute(node);
+                node.completed = true;
+            }
+            return;
+        }
+
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        AtomicInteger counter = new AtomicInteger();
+
+        ExecutorService executorService = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, name + "-startup-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                // plugins may be loaded with the context class loader
+                thread.setContextClassLoader(classLoader);
+                return thread;
+            }
+        });
+
+        CompletionService<Node> completionService = new ExecutorCompletionService<>(executorService);
+        Exception failure = null;
+        int running = 0;
+        int remaining = nodes.size();
+
+        try {
+            while (remaining > 0) {
+
+                if (failure == null) {
+                    for (Node node : nodes.values()) {
+                        if (!node.isReady()) {
+                            continue;
+                        }
+                        node.started = true;
+                        running++;
+                        completionService.submit(() -> {
+                            execute(node);
+                            return node;
+                        });
+                    }
+                }
+
+                if (running == 0) {
+                    break;
+                }
+
+                try {
+                    Node node = completionService.take().get();
+                    node.completed = true;
+                    remaining--;
+
+                } catch (ExecutionException e) {
+                    remaining--;
+                    if (failure == null) {
+                        Throwable cause = e.getCause();
+                        failure = cause instanceof Exception ex ? ex : new Exception(cause);
+                    }
+                }
+
+                running--;
+            }
+
+        } finally {
+            executorService.shutdown();
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
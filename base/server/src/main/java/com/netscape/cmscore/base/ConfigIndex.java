@@ -0,0 +1,171 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.base;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An immutable prefix tree of the property names in a
+ * SimpleProperties. Each node corresponds to a dot-separated
+ * name segment, so the property names and the sub-store names
+ * of a config store can be found by walking the segments of the
+ * store name instead of scanning all properties.
+ *
+ * The index is a snapshot of the property names at a particular
+ * version of the SimpleProperties. It is rebuilt on demand after
+ * properties are added or removed.
+ */
+public class ConfigIndex {
+
+    /**
+     * Orders sub-store names the same way as their first property
+     * in lexicographically sorted property names (i.e. compares
+     * the names as if they were followed by a dot).
+     */
+    public static final Comparator<String> SUBSTORE_ORDER = (a, b) -> {
+
+        int length = Math.min(a.length(), b.length());
+        for (int i = 0; i < length; i++) {
+            char c1 = a.charAt(i);
+            char c2 = b.charAt(i);
+            if (c1 != c2) {
+                return c1 - c2;
+            }
+        }
+
+        char c1 = a.length() > length ? a.charAt(length) : '.';
+        char c2 = b.length() > length ? b.charAt(length) : '.';
+        return c1 - c2;
+    };
+
+    static class Node {
+
+        Map<String, Node> children = new TreeMap<>(SUBSTORE_ORDER);
+        boolean property;
+
+        // computed on first use
+        volatile List<String> propertyNames;
+        volatile List<String> subStoreNames;
+
+        Node getChild(String name) {
+            return children.computeIfAbsent(name, n -> new Node());
+        }
+
+        List<String> getPropertyNames() {
+
+            List<String> names = propertyNames;
+            if (names != null) {
+                return names;
+            }
+
+            names = new ArrayList<>();
+            for (Map.Entry<String, Node> entry : children.entrySet()) {
+                if (entry.getValue().property) {
+                    names.add(entry.getKey());
+                }
+            }
+
+            Collections.sort(names);
+            names = Collections.unmodifiableList(names);
+            propertyNames = names;
+            return names;
+        }
+
+        List<String> getSubStoreNames() {
+
+            List<String> names = subStoreNames;
+            if (names != null) {
+                return names;
+            }
+
+            names = new ArrayList<>();
+            for (Map.Entry<String, Node> entry : children.entrySet()) {
+                if (!entry.getValue().children.isEmpty()) {
+                    names.add(entry.getKey());
+                }
+            }
+
+            names = Collections.unmodifiableList(names);
+            subStoreNames = names;
+            return names;
+        }
+    }
+
+    long version;
+    Node root = new Node();
+
+    public ConfigIndex(Collection<String> keys, long version) {
+
+        this.version = version;
+
+        for (String key : keys) {
+            Node node = root;
+            int start = 0;
+            int end;
+
+            while ((end = key.indexOf('.', start)) >= 0) {
+                node = node.getChild(key.substring(start, end));
+                start = end + 1;
+            }
+
+            node.getChild(key.substring(start)).property = true;
+        }
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    Node find(String storeName) {
+
+        Node node = root;
+        if (storeName == null) {
+            return node;
+        }
+
+        int start = 0;
+        while (node != null) {
+            int end = storeName.indexOf('.', start);
+            String segment = end < 0 ? storeName.substring(start) : storeName.substring(start, end);
+            node = node.children.get(segment);
+
+            if (end < 0) {
+                break;
+            }
+            start = end + 1;
+        }
+
+        return node;
+    }
+
+    /**
+     * Returns the sorted names of the properties directly in
+     * the given store.
+     *
+     * @param storeName store name, or null for the top store
+     */
+    public List<String> getPropertyNames(String storeName) {
+        Node node = find(storeName);
+        return node == null ? Collections.emptyList() : node.getPropertyNames();
+    }
+
+    /**
+     * Returns the names of the sub-stores directly under the
+     * given store.
+     *
+     * @param storeName store name, or null for the top store
+     */
+    public List<String> getSubStoreNames(String storeName) {
+        Node node = find(storeName);
+        return node == null ? Collections.emptyList() : node.getSubStoreNames();
+    }
+}
@@ -27,8 +27,10 @@ import java.io.PrintWriter;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.math.BigInteger;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.Hashtable;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.Vector;
@@ -101,6 +103,22 @@ public class ConfigStore implements Cloneable {
 
     protected static final String PROP_SUBSTORES = "substores";
 
+    /**
+     * Maximum number of cached sub-store views per class.
+     */
+    static final int MAX_CACHED_VIEWS = 10000;
+
+    static final ClassValue<Constructor<?>> constructors = new ClassValue<>() {
+        @Override
+        protected Constructor<?> computeValue(Class<?> clazz) {
+            try {
+                return clazz.getDeclaredConstructor(String.class, SimpleProperties.class);
+            } catch (NoSuchMethodException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    };
+
     /**
      * The name of this substore
      */
@@ -291,6 +309,7 @@ public class ConfigStore implements Cloneable {
         if (storage != null) {
             storage.commit(this, createBackup);
         }
+        mSource.invalidate();
     }
 
     /**
@@ -661,14 +680,7 @@ public class ConfigStore implements Cloneable {
          mSource.put(getFullName(PROP_SUBSTORES), name);
          */
 
-        try {
-            Constructor<T> constructor = clazz.getDeclaredConstructor(String.class, SimpleProperties.class);
-            return constructor.newInstance(fullname, mSource);
-
-        } catch (NoSuchMethodException | InvocationTargetException
-                | IllegalAccessException | InstantiationException | IllegalArgumentException e) {
-            throw new RuntimeException(e);
-        }
+        return createSubStore(fullname, clazz);
     }
 
     /**
@@ -723,13 +735,37 @@ public class ConfigStore implements Cloneable {
         String fullname = getFullName(name);
         String reference = mSource.get(fullname);
 
+        return createSubStore(reference == null ? fullname : reference, clazz);
+    }
+
+    /**
+     * Returns a sub-store view with the given full name. Sub-stores
+     * only consist of the store name and the shared source, so the
+     * views are cached and reused.
+     */
+    <T extends ConfigStore> T createSubStore(String fullname, Class<T> clazz) {
+
+        Map<String, ConfigStore> views = mSource.getViews(clazz);
+
+        ConfigStore store = views.get(fullname);
+        if (store != null) {
+            return clazz.cast(store);
+        }
+
         try {
-            Constructor<T> constructor = clazz.getDeclaredConstructor(String.class, SimpleProperties.class);
-            return reference == null ? constructor.newInstance(fullname, mSource) : constructor.newInstance(reference, mSource);
-        } catch (NoSuchMethodException | InvocationTargetException
-                | IllegalAccessException | InstantiationException | IllegalArgumentException e) {
+            store = (ConfigStore) constructors.get(clazz).newInstance(fullname, mSource);
+
+        } catch (InvocationTargetException | IllegalAccessException
+                | InstantiationException | IllegalArgumentException e) {
             throw new RuntimeException(e);
         }
+
+        if (views.size() >= MAX_CACHED_VIEWS) {
+            views.clear();
+        }
+
+        views.put(fullname, store);
+        return clazz.cast(store);
     }
 
     /**
@@ -738,19 +774,8 @@ public class ConfigStore implements Cloneable {
      * @return a list of string-based property names
      */
     public Enumeration<String> getPropertyNames() {
-        // XXX - this operation is expensive!!!
-        Map<String, String> map = getProperties();
-
-        Vector<String> v = new Vector<>();
-        for (String name : map.keySet()) {
-            int i = name.indexOf('.'); // substores have "."
-            if (i >= 0) continue;
-            if (v.contains(name)) continue;
-
-            v.addElement(name);
-        }
-
-        return v.elements();
+        List<String> names = mSource.getIndex().getPropertyNames(mStoreName);
+        return Collections.enumeration(names);
     }
 
     /**
@@ -759,21 +784,8 @@ public class ConfigStore implements Cloneable {
      * @return list of substore names
      */
     public Vector<String> getSubStoreNames() {
-        // XXX - this operation is expensive!!!
-        Map<String, String> map = getProperties();
-
-        Vector<String> v = new Vector<>();
-        for (String name : map.keySet()) {
-            int i = name.indexOf('.'); // substores have "."
-            if (i < 0) continue;
-
-            name = name.substring(0, i);
-            if (v.contains(name)) continue;
-
-            v.addElement(name);
-        }
-
-        return v;
+        // return a copy since callers may modify the list
+        return new Vector<>(mSource.getIndex().getSubStoreNames(mStoreName));
     }
 
     /**
@@ -29,6 +29,8 @@ import java.io.PrintWriter;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.Hashtable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * The <code>Properties</code> class represents a persistent set of
@@ -61,6 +63,27 @@ public class SimpleProperties extends Hashtable<String, String> {
      */
     protected SimpleProperties defaults;
 
+    /**
+     * Incremented whenever a property is added or removed.
+     */
+    private transient volatile long version;
+
+    /**
+     * Incremented whenever a property is added, changed or removed.
+     */
+    private transient volatile long modCount;
+
+    /**
+     * Index of the property names at the current version.
+     */
+    private transient volatile ConfigIndex index;
+
+    /**
+     * Config store views of this property list by class and store name.
+     * The views are stateless so they can be shared.
+     */
+    private transient volatile Map<Class<?>, Map<String, ConfigStore>> views;
+
     /**
      * Creates an empty property list with no default values.
      */
@@ -88,6 +111,103 @@ public class SimpleProperties extends Hashtable<String, String> {
         return put(key, value);
     }
 
+    @Override
+    public synchronized String put(String key, String value) {
+        String oldValue = super.put(key, value);
+        if (oldValue == null) {
+            version++;
+        }
+        if (!value.equals(oldValue)) {
+            modCount++;
+        }
+        return oldValue;
+    }
+
+    @Override
+    public synchronized String remove(Object key) {
+        String oldValue = super.remove(key);
+        if (oldValue != null) {
+            version++;
+            modCount++;
+        }
+        return oldValue;
+    }
+
+    @Override
+    public synchronized void clear() {
+        super.clear();
+        version++;
+        modCount++;
+    }
+
+    /**
+     * Returns a number that changes whenever a property is added
+     * or removed.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns a number that changes whenever a property is added,
+     * changed or removed.
+     */
+    public long getModCount() {
+        return modCount;
+    }
+
+    /**
+     * Returns the index of the current property names.
+     */
+    public ConfigIndex getIndex() {
+
+        ConfigIndex index = this.index;
+        if (index != null && index.getVersion() == version) {
+            return index;
+        }
+
+        synchronized (this) {
+            index = this.index;
+            if (index == null || index.getVersion() != version) {
+                index = new ConfigIndex(keySet(), version);
+                this.index = index;
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Discards the property name index and the cached config store views.
+     */
+    public void invalidate() {
+        index = null;
+        views = null;
+    }
+
+    Map<String, ConfigStore> getViews(Class<?> clazz) {
+
+        Map<Class<?>, Map<String, ConfigStore>> views = this.views;
+        if (views == null) {
+            synchronized (this) {
+                views = this.views;
+                if (views == null) {
+                    views = new ConcurrentHashMap<>();
+                    this.views = views;
+                }
+            }
+        }
+
+        return views.computeIfAbsent(clazz, c -> new ConcurrentHashMap<>());
+    }
+
+    @Override
+    public synchronized Object clone() {
+        SimpleProperties that = (SimpleProperties) super.clone();
+        that.index = null;
+        that.views = null;
+        return that;
+    }
+
     private static final String keyValueSeparators = "=: \t\r\n\f";
 
     private static final String strictKeyValueSeparators = "=:";
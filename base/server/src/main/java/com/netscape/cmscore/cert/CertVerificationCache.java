@@ -0,0 +1,186 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.cert;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.mozilla.jss.CryptoManager;
+import org.mozilla.jss.crypto.InternalCertificate;
+import org.mozilla.jss.crypto.X509Certificate;
+import org.mozilla.jss.netscape.security.x509.X509CertImpl;
+
+/**
+ * Cache of successful system certificate verifications.
+ *
+ * A verification is reused as long as the certificate with the
+ * same nickname in the NSS database, its issuer certificates, and
+ * their trust flags have not changed, the timeout has not expired,
+ * and no certificate in the chain has expired. Failed verifications
+ * are never cached.
+ *
+ * The revocation status of the chain is not checked while a
+ * verification is reused, so a revoked system or issuer certificate
+ * is only detected once the timeout expires.
+ */
+public class CertVerificationCache {
+
+    public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(CertVerificationCache.class);
+
+    static class Entry {
+
+        byte[] digest;
+        long expiration;
+
+        Entry(byte[] digest, long expiration) {
+            this.digest = digest;
+            this.expiration = expiration;
+        }
+    }
+
+    Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    // timeout in milliseconds, 0 disables the cache
+    long timeout;
+
+    public long getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(long timeout) {
+        this.timeout = timeout;
+        if (timeout <= 0) {
+            entries.clear();
+        }
+    }
+
+    String getKey(String nickname, String certUsage) {
+        return nickname + "\n" + certUsage;
+    }
+
+    /**
+     * Returns the digest of the certificate chain and the trust
+     * flags of each certificate in the chain.
+     */
+    byte[] getDigest(String nickname) throws Exception {
+
+        CryptoManager cm = CryptoManager.getInstance();
+        X509Certificate cert = cm.findCertByNickname(nickname);
+        X509Certificate[] chain = cm.buildCertificateChain(cert);
+
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+
+        for (X509Certificate c : chain) {
+
+            byte[] encoded = c.getEncoded();
+            ByteBuffer buffer = ByteBuffer.allocate(16);
+            buffer.putInt(encoded.length);
+
+            if (c instanceof InternalCertificate ic) {
+                buffer.putInt(ic.getSSLTrust());
+                buffer.putInt(ic.getEmailTrust());
+                buffer.putInt(ic.getObjectSigningTrust());
+            }
+
+            digest.update(buffer.array());
+            digest.update(encoded);
+        }
+
+        return digest.digest();
+    }
+
+    /**
+     * Returns the earliest expiration date of the certificates
+     * in the chain.
+     */
+    Date getNotAfter(String nickname) throws Exception {
+
+        CryptoManager cm = CryptoManager.getInstance();
+        X509Certificate cert = cm.findCertByNickname(nickname);
+        X509Certificate[] chain = cm.buildCertificateChain(cert);
+
+        Date notAfter = null;
+
+        for (X509Certificate c : chain) {
+            Date date = new X509CertImpl(c.getEncoded()).getNotAfter();
+            if (notAfter == null || date.before(notAfter)) {
+                notAfter = date;
+            }
+        }
+
+        return notAfter;
+    }
+
+    /**
+     * Returns true if the certificate has been verified for the
+     * given usage and has not changed since.
+     */
+    public boolean isVerified(String nickname, String certUsage) {
+
+        if (timeout <= 0) {
+            return false;
+        }
+
+        String key = getKey(nickname, certUsage);
+        Entry entry = entries.get(key);
+
+        if (entry == null) {
+            return false;
+        }
+
+        if (System.currentTimeMillis() >= entry.expiration) {
+            entries.remove(key, entry);
+            return false;
+        }
+
+        try {
+            byte[] digest = getDigest(nickname);
+            if (Arrays.equals(digest, entry.digest)) {
+                return true;
+            }
+
+            logger.info("CertVerificationCache: Certificate chain or trust of " + nickname + " has changed");
+
+        } catch (Exception e) {
+            logger.warn("CertVerificationCache: Unable to find certificate " + nickname + ": " + e.getMessage(), e);
+        }
+
+        entries.remove(key, entry);
+        return false;
+    }
+
+    /**
+     * Records a successful verification of the certificate for
+     * the given usage.
+     */
+    public void setVerified(String nickname, String certUsage) {
+
+        if (timeout <= 0) {
+            return;
+        }
+
+        try {
+            byte[] digest = getDigest(nickname);
+
+            long expiration = Math.min(
+                    System.currentTimeMillis() + timeout,
+                    getNotAfter(nickname).getTime());
+
+            entries.put(getKey(nickname, certUsage), new Entry(digest, expiration));
+
+        } catch (Exception e) {
+            logger.warn("CertVerificationCache: Unable to cache verification of " + nickname + ": " + e.getMessage(), e);
+        }
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+}
@@ -17,6 +17,12 @@
 // --- END COPYRIGHT BLOCK ---
 package com.netscape.cmscore.connector;
 
+import java.util.Deque;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+
 import com.netscape.certsrv.base.EBaseException;
 import com.netscape.cmscore.apps.CMSEngine;
 import com.netscape.cmsutil.http.JssSSLSocketFactory;
@@ -24,6 +30,12 @@ import com.netscape.cmsutil.net.ISocketFactory;
 
 /**
  * Factory for getting HTTP Connections to a HTTPO server
+ *
+ * Idle connections are kept in a lock-free stack so the most
+ * recently used connection, whose socket is most likely still
+ * open, is reused first. The number of connections in use is
+ * bounded by a semaphore, so threads only block when all the
+ * connections are in use.
  */
 public class HttpConnFactory {
 
@@ -33,13 +45,15 @@ public class HttpConnFactory {
     protected int mMinConns = 1;
     protected int mMaxConns = 30;
 
-    private int mNumConns = 0; // number of available conns in array
-    private int mTotal = 0; // total num conns
-    private HttpConnection mConns[];
+    private Deque<HttpConnection> mIdleConns = new ConcurrentLinkedDeque<>();
+    private Set<HttpConnection> mActiveConns = ConcurrentHashMap.newKeySet();
+    private Semaphore mPermits;
+
     private RemoteAuthority mDest;
     private String mNickname = "";
     private String mClientCiphers = null;
     private int mTimeout = 0;
+    private String mMessageFormat = HttpRequestEncoder.FORMAT_SERIALIZED;
 
     /**
      * Constructor for initializing from the config store.
@@ -86,6 +100,17 @@ public class HttpConnFactory {
         this.engine = engine;
     }
 
+    public String getMessageFormat() {
+        return mMessageFormat;
+    }
+
+    /**
+     * Sets the format of the messages sent by new connections.
+     */
+    public void setMessageFormat(String messageFormat) {
+        mMessageFormat = messageFormat;
+    }
+
     /**
      * initialize parameters obtained from either constructor or
      * config store
@@ -106,20 +131,13 @@ public class HttpConnFactory {
             throw new EBaseException("HttpConnFactory: Invalid minimum and maximum connections");
         }
 
-        logger.debug("before creating httpconn array");
-
-        mConns = new HttpConnection[mMaxConns];
-
-        // Create connection handle and make initial connection
-
-        logger.debug("before makeConnection");
-
         logger.debug(
                 "initializing HttpConnFactory with mininum " + mMinConns + " and maximum " + mMaxConns +
                         " connections to ");
 
-        // initalize minimum number of connection handles available.
-        //makeMinimum();
+        mPermits = new Semaphore(mMaxConns, true);
+
+        // connections are created on demand
 
         logger.debug("leaving HttpConnFactory init.");
     }
@@ -142,6 +160,7 @@ public class HttpConnFactory {
             }
 
             retConn.setCMSEngine(engine);
+            retConn.setMessageFormat(mMessageFormat);
             retConn.init();
 
         } catch (Exception e) {
@@ -154,29 +173,17 @@ public class HttpConnFactory {
     }
 
     /**
-     * makes the minumum number of connections
+     * Returns the number of idle connections.
      */
-    private void makeMinimum() throws EBaseException {
-
-        logger.debug("In HttpConnFactory.makeMinimum.");
-        int increment;
-
-        if (mNumConns < mMinConns && mTotal <= mMaxConns) {
-
-            increment = Math.min(mMinConns - mNumConns, mMaxConns - mTotal);
-
-            if (increment == 0)
-                return;
+    public int getIdleConns() {
+        return mIdleConns.size();
+    }
 
-            logger.debug("increasing minimum connections by " + increment);
-            for (int i = increment - 1; i >= 0; i--) {
-                mConns[i] = createConnection();
-            }
-            mTotal += increment;
-            mNumConns += increment;
-            logger.debug("new total available http connections " + mTotal);
-            logger.debug("new number of http connections " + mNumConns);
-        }
+    /**
+     * Returns the number of connections in use.
+     */
+    public int getActiveConns() {
+        return mActiveConns.size();
     }
 
     /**
@@ -204,12 +211,12 @@ public class HttpConnFactory {
     }
 
     /**
-     * Returns a Http connection - a clone of the master connection.
+     * Returns a Http connection from the pool, or a new connection
+     * if there is no idle connection.
      * All connections should be returned to the factory using returnConn()
      * to recycle connection objects.
-     * If not returned the limited max number is affected but if that
-     * number is large not much harm is done.
-     * Returns null if maximum number of connections reached.
+     * Returns null if maximum number of connections reached and
+     * waitForConn is false.
      * The best thing to do is to put returnConn in a finally clause so it
      * always gets called. For example,
      *
@@ -225,37 +232,37 @@ public class HttpConnFactory {
      * }
      * </pre>
      */
-    public synchronized HttpConnection getConn(boolean waitForConn)
+    public HttpConnection getConn(boolean waitForConn)
             throws EBaseException {
-        boolean waited = false;
 
         logger.debug("In HttpConnFactory.getConn");
-        if (mNumConns == 0)
-            makeMinimum();
-        if (mNumConns == 0) {
+
+        if (!mPermits.tryAcquire()) {
+
             if (!waitForConn)
                 return null;
-            try {
-                logger.warn("HttpConnFactory: Ran out of HTTP connections");
-                waited = true;
-                logger.debug("HttpConn:about to wait for a new http connection");
-                while (mNumConns == 0)
-                    wait();
-
-                logger.debug("HttpConn:done waiting for new http connection");
-            } catch (InterruptedException e) {
-            }
-        }
-        mNumConns--;
-        HttpConnection conn = mConns[mNumConns];
 
-        mConns[mNumConns] = null;
+            logger.warn("HttpConnFactory: Ran out of HTTP connections");
+            logger.debug("HttpConn:about to wait for a new http connection");
+
+            mPermits.acquireUninterruptibly();
 
-        if (waited) {
-            logger.warn("HttpConn:had to wait for an available connection from pool");
             logger.warn("Http connections are available again in http connection pool");
         }
-        logger.debug("HttpgetConn: mNumConns now " + mNumConns);
+
+        HttpConnection conn = mIdleConns.pollFirst();
+
+        if (conn == null) {
+            try {
+                conn = createConnection();
+            } catch (EBaseException e) {
+                mPermits.release();
+                throw e;
+            }
+        }
+
+        mActiveConns.add(conn);
+        logger.debug("HttpgetConn: active connections: " + mActiveConns.size());
 
         return conn;
     }
@@ -278,22 +285,24 @@ public class HttpConnFactory {
      * }
      * </pre>
      */
-    public synchronized void returnConn(HttpConnection conn) {
+    public void returnConn(HttpConnection conn) {
 
         logger.debug("In HttpConnFactory.returnConn");
         if (conn == null) {
             return;
         }
-        HttpConnection boundconn = conn;
 
-        for (int i = 0; i < mNumConns; i++) {
-            if (mConns[i] == conn) {
-                logger.debug("returnConn: previously returned connection. " + conn);
+        if (!mActiveConns.remove(conn)) {
+            logger.debug("returnConn: previously returned connection. " + conn);
+            return;
+        }
 
-            }
+        // idle connections never exceed the maximum
+        if (mIdleConns.size() < mMaxConns) {
+            mIdleConns.offerFirst(conn);
         }
-        mConns[mNumConns++] = boundconn;
-        logger.debug("HttpreturnConn: mNumConns now " + mNumConns);
-        notify();
+
+        mPermits.release();
+        logger.debug("HttpreturnConn: idle connections: " + mIdleConns.size());
     }
 }
@@ -56,6 +56,7 @@ public class HttpConnection {
     protected HttpRequest mHttpreq = new HttpRequest();
     protected HttpRequestEncoder mReqEncoder;
     protected HttpClient mHttpClient = null;
+    protected String messageFormat = HttpRequestEncoder.FORMAT_SERIALIZED;
 
     int timeout = 0;
     List<InetSocketAddress> targets;
@@ -82,6 +83,18 @@ public class HttpConnection {
         this.engine = engine;
     }
 
+    public String getMessageFormat() {
+        return messageFormat;
+    }
+
+    /**
+     * Sets the format of the messages sent by send(IPKIMessage).
+     * Must be called before init().
+     */
+    public void setMessageFormat(String messageFormat) {
+        this.messageFormat = messageFormat;
+    }
+
     public void init() {
 
         logger.debug("HttpConnection: Creating HttpConnection with timeout=" + timeout);
@@ -93,6 +106,7 @@ public class HttpConnection {
         }
 
         mReqEncoder = new HttpRequestEncoder();
+        mReqEncoder.setFormat(messageFormat);
         mHttpClient = new HttpClient(factory);
 
         targets = parseTarget(dest.getHost(), dest.getPort());
@@ -92,9 +92,13 @@ public class HttpConnector extends Connector {
         int maxConns = config.getMaxHttpConns();
         logger.debug("HttpConnector: maxHttpConns: " + maxConns);
 
+        String messageFormat = config.getMessageFormat();
+        logger.debug("HttpConnector: messageFormat: " + messageFormat);
+
         try {
             mConnFactory = new HttpConnFactory(minConns, maxConns, mDest, nickname, clientCiphers, mTimeout);
             mConnFactory.setCMSEngine(engine);
+            mConnFactory.setMessageFormat(messageFormat);
             mConnFactory.init();
 
         } catch (EBaseException e) {
@@ -105,6 +109,8 @@ public class HttpConnector extends Connector {
         if (resendInterval >= 0) {
             mResender = new Resender(nickname, clientCiphers, mDest, resendInterval);
             mResender.setCMSEngine(engine);
+            // share the connections with the connector
+            mResender.setConnFactory(mConnFactory);
             mResender.init();
         }
     }
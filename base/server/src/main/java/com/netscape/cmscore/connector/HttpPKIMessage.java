@@ -23,9 +23,16 @@ import java.io.ObjectOutputStream;
 import java.io.OptionalDataException;
 import java.util.Enumeration;
 import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Vector;
 
+import com.fasterxml.jackson.core.json.JsonWriteFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.netscape.certsrv.connector.IHttpPKIMessage;
 import com.netscape.cmscore.request.Request;
 
@@ -38,6 +45,17 @@ public class HttpPKIMessage implements IHttpPKIMessage {
 
     public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(HttpPKIMessage.class);
 
+    /**
+     * Version of the JSON message format.
+     */
+    public static final int JSON_VERSION = 1;
+
+    // non-ASCII characters are escaped so that the content
+    // length in characters matches the length in bytes
+    private static final JsonMapper mapper = JsonMapper.builder()
+            .enable(JsonWriteFeature.ESCAPE_NON_ASCII)
+            .build();
+
     // initialized to "" because nulls don't serialize well.
     public String reqType = "";
     public String reqId = "";
@@ -135,6 +153,104 @@ public class HttpPKIMessage implements IHttpPKIMessage {
         }
     }
 
+    /**
+     * Encodes the message in the JSON format. Attribute values
+     * other than strings and string tables are skipped.
+     */
+    @SuppressWarnings("unchecked")
+    public String toJSON() throws IOException {
+
+        ObjectNode root = mapper.createObjectNode();
+        root.put("version", JSON_VERSION);
+        root.put("reqType", reqType);
+        root.put("reqId", reqId);
+        root.put("reqStatus", reqStatus);
+        root.put("reqRealm", reqRealm);
+
+        ArrayNode attributes = root.putArray("attributes");
+        Enumeration<Object> enum1 = mNameVals.elements();
+
+        while (enum1.hasMoreElements()) {
+            Object key = enum1.nextElement();
+            Object val = enum1.hasMoreElements() ? enum1.nextElement() : null;
+
+            if (val instanceof String value) {
+                ObjectNode attribute = attributes.addObject();
+                attribute.put("name", (String) key);
+                attribute.put("value", value);
+
+            } else if (val instanceof Hashtable) {
+                ObjectNode attribute = attributes.addObject();
+                attribute.put("name", (String) key);
+                ObjectNode values = attribute.putObject("values");
+                for (Map.Entry<String, String> entry : ((Hashtable<String, String>) val).entrySet()) {
+                    values.put(entry.getKey(), entry.getValue());
+                }
+
+            } else {
+                logger.warn("HttpPKIMessage: skipped key=" + key + " val="
+                        + (val == null ? null : val.getClass().getName()));
+            }
+        }
+
+        return mapper.writeValueAsString(root);
+    }
+
+    /**
+     * Decodes a message in the JSON format.
+     */
+    public static HttpPKIMessage fromJSON(String json) throws IOException {
+
+        JsonNode root = mapper.readTree(json);
+
+        int version = root.path("version").asInt(0);
+        if (version != JSON_VERSION) {
+            throw new IOException("Unsupported message version: " + version);
+        }
+
+        HttpPKIMessage msg = new HttpPKIMessage();
+        msg.reqType = getText(root, "reqType");
+        msg.reqId = getText(root, "reqId");
+        msg.reqStatus = getText(root, "reqStatus");
+        msg.reqRealm = getText(root, "reqRealm");
+
+        for (JsonNode attribute : root.path("attributes")) {
+
+            String name = getText(attribute, "name");
+            if (name == null) {
+                throw new IOException("Missing attribute name");
+            }
+
+            JsonNode values = attribute.get("values");
+
+            if (values != null && values.isObject()) {
+                Hashtable<String, String> table = new Hashtable<>();
+                Iterator<Map.Entry<String, JsonNode>> fields = values.fields();
+                while (fields.hasNext()) {
+                    Map.Entry<String, JsonNode> field = fields.next();
+                    table.put(field.getKey(), field.getValue().asText());
+                }
+                msg.mNameVals.addElement(name);
+                msg.mNameVals.addElement(table);
+
+            } else {
+                String value = getText(attribute, "value");
+                if (value == null) {
+                    throw new IOException("Missing value for attribute " + name);
+                }
+                msg.mNameVals.addElement(name);
+                msg.mNameVals.addElement(value);
+            }
+        }
+
+        return msg;
+    }
+
+    private static String getText(JsonNode node, String name) {
+        JsonNode value = node.get(name);
+        return value == null || value.isNull() ? null : value.asText();
+    }
+
     private void writeObject(java.io.ObjectOutputStream out)
             throws IOException {
         logger.debug("writeObject");
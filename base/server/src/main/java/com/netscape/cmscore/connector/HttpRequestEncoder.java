@@ -35,6 +35,34 @@ public class HttpRequestEncoder {
 
     public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(HttpRequestEncoder.class);
 
+    /**
+     * Base64-encoded Java serialization, supported by all versions.
+     */
+    public static final String FORMAT_SERIALIZED = "serialized";
+
+    /**
+     * Versioned JSON encoding of HttpPKIMessage.
+     */
+    public static final String FORMAT_JSON = "json";
+
+    protected String format = FORMAT_SERIALIZED;
+
+    public String getFormat() {
+        return format;
+    }
+
+    public void setFormat(String format) {
+        this.format = format;
+    }
+
+    /**
+     * Returns the format of an encoded message. Base64 never
+     * contains braces so JSON messages can be told apart.
+     */
+    public static String getFormat(String s) {
+        return s != null && s.startsWith("{") ? FORMAT_JSON : FORMAT_SERIALIZED;
+    }
+
     /**
      * Encodes a request object.
      *
@@ -44,6 +72,20 @@ public class HttpRequestEncoder {
      */
     public String encode(Object r)
             throws IOException {
+        return encode(r, format);
+    }
+
+    /**
+     * Encodes a request object in the given format. Objects that
+     * cannot be encoded in JSON are serialized.
+     */
+    public String encode(Object r, String format)
+            throws IOException {
+
+        if (FORMAT_JSON.equals(format) && r instanceof HttpPKIMessage msg) {
+            return msg.toJSON();
+        }
+
         String s = null;
         byte[] serial;
         ByteArrayOutputStream ba = new ByteArrayOutputStream();
@@ -63,6 +105,10 @@ public class HttpRequestEncoder {
      */
     public Object decode(String s)
             throws IOException {
+        if (FORMAT_JSON.equals(getFormat(s))) {
+            return HttpPKIMessage.fromJSON(s);
+        }
+
         Object result = null;
         byte[] serial = null;
 
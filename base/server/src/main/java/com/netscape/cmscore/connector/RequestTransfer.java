@@ -78,6 +78,10 @@ public class RequestTransfer {
                     continue;
                 if (k.equals("AUTH_TOKEN"))
                     continue;
+                // only controls when the sender stores its own request,
+                // the receiver must store the transferred request
+                if (k.equals("delayLDAPCommit"))
+                    continue;
                 // logger.debug("RequestTransfer: attribute=" + k);
                 if (k.equalsIgnoreCase("requestStatus")) {
                     logger.debug("RequestTransfer : requestStatus=" +
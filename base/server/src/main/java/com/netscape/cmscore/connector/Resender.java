@@ -60,6 +60,9 @@ public class Resender implements Runnable {
 
     protected HttpConnection mConn = null;
 
+    // if available, connections are taken from the connector's pool
+    protected HttpConnFactory connFactory;
+
     protected String mNickName = null;
     protected String mClientCiphers = null;
     protected boolean connected = false;
@@ -98,6 +101,14 @@ public class Resender implements Runnable {
         this.engine = engine;
     }
 
+    public HttpConnFactory getConnFactory() {
+        return connFactory;
+    }
+
+    public void setConnFactory(HttpConnFactory connFactory) {
+        this.connFactory = connFactory;
+    }
+
     public void init() {
         requestRepository = engine.getRequestRepository();
         mQueue = engine.getRequestQueue();
@@ -157,13 +168,15 @@ public class Resender implements Runnable {
             return;
 
         if (! connected) {
-            logger.debug("Connecting ...");
-            JssSSLSocketFactory factory = new JssSSLSocketFactory(mNickName, mClientCiphers);
-            factory.addSocketListener(engine.getClientSocketListener());
-
-            mConn = new HttpConnection(mDest, factory);
-            mConn.setCMSEngine(engine);
-            mConn.init();
+            if (connFactory == null) {
+                logger.debug("Connecting ...");
+                JssSSLSocketFactory factory = new JssSSLSocketFactory(mNickName, mClientCiphers);
+                factory.addSocketListener(engine.getClientSocketListener());
+
+                mConn = new HttpConnection(mDest, factory);
+                mConn.setCMSEngine(engine);
+                mConn.init();
+            }
 
             initRequests();
             connected = true;
@@ -243,12 +256,24 @@ public class Resender implements Runnable {
     private boolean send(Request r)
             throws IOException, EBaseException {
 
+        HttpConnection conn = null;
+
         try {
             HttpPKIMessage tomsg = new HttpPKIMessage();
             HttpPKIMessage replymsg = null;
 
             tomsg.fromRequest(r);
-            replymsg = (HttpPKIMessage) mConn.send(tomsg);
+
+            if (connFactory == null) {
+                conn = mConn;
+            } else {
+                conn = connFactory.getConn();
+                // the connector may have changed the URI
+                if (mDest.getURI() != null)
+                    conn.setRequestURI(mDest.getURI());
+            }
+
+            replymsg = (HttpPKIMessage) conn.send(tomsg);
             if (replymsg == null)
                 return false;
             logger.debug(r.getRequestId() + " resent to CA");
@@ -278,6 +303,9 @@ public class Resender implements Runnable {
             logger.warn(CMS.getLogMessage("CMSCORE_CONNECTOR_RESEND_ERROR", r.getRequestId().toString(), e.toString()), e);
             if (e.toString().indexOf("Connection refused by peer") > 0)
                 throw new EBaseException("connection not available");
+        } finally {
+            if (connFactory != null)
+                connFactory.returnConn(conn);
         }
         return false;
 
@@ -0,0 +1,304 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.dbs;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+
+import org.mozilla.jss.netscape.security.x509.CRLExtensions;
+import org.mozilla.jss.netscape.security.x509.CRLReasonExtension;
+import org.mozilla.jss.netscape.security.x509.RevocationReason;
+import org.mozilla.jss.netscape.security.x509.RevokedCertImpl;
+import org.mozilla.jss.netscape.security.x509.RevokedCertificate;
+
+/**
+ * Compact binary encoding of the CRL caches stored in CRL issuing
+ * point records.
+ *
+ * Format (version 1):
+ *
+ * <pre>
+ * magic      4 bytes  "CRLC"
+ * version    1 byte
+ * count      varint
+ * entries    sorted by serial number:
+ *   serial   varint length + two's complement bytes of the
+ *            difference from the previous serial number
+ *   date     zigzag varint of the difference in milliseconds
+ *            from the previous revocation date
+ *   type     1 byte
+ *            0: no entry extensions
+ *            1: reason code only, followed by 1 byte reason code
+ *            2: other extensions, followed by varint length
+ *               and DER encoding of the whole CRL entry
+ * </pre>
+ *
+ * Most CRL entries only have a reason code, so an entry typically
+ * takes a few bytes instead of several hundred bytes with Java
+ * object serialization.
+ */
+public class CRLCacheCodec {
+
+    public static final byte[] MAGIC = { 'C', 'R', 'L', 'C' };
+    public static final int VERSION = 1;
+
+    static final int TYPE_NO_EXTENSIONS = 0;
+    static final int TYPE_REASON = 1;
+    static final int TYPE_DER = 2;
+
+    // reason extensions are immutable and shared between entries,
+    // the table is filled once and only read afterwards
+    private static final CRLReasonExtension[] reasonExtensions = createReasonExtensions();
+
+    /**
+     * Returns true if the data is encoded with this codec.
+     */
+    public static boolean isEncoded(byte[] data) {
+
+        if (data == null || data.length < MAGIC.length) {
+            return false;
+        }
+
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (data[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    public static byte[] encode(Map<BigInteger, RevokedCertificate> certs) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(certs == null ? 16 : 16 + certs.size() * 8);
+        write(certs, bos);
+        return bos.toByteArray();
+    }
+
+    public static Hashtable<BigInteger, RevokedCertificate> decode(byte[] data) throws IOException {
+        return read(new ByteArrayInputStream(data));
+    }
+
+    /**
+     * Writes the CRL cache into a stream.
+     */
+    public static void write(Map<BigInteger, RevokedCertificate> certs, OutputStream os) throws IOException {
+
+        DataOutputStream out = new DataOutputStream(os);
+        out.write(MAGIC);
+        out.writeByte(VERSION);
+
+        List<RevokedCertificate> entries = new ArrayList<>();
+        if (certs != null) {
+            entries.addAll(certs.values());
+        }
+
+        Collections.sort(entries, (a, b) -> a.getSerialNumber().compareTo(b.getSerialNumber()));
+        writeVarint(out, entries.size());
+
+        BigInteger prevSerial = BigInteger.ZERO;
+        long prevTime = 0;
+
+        for (RevokedCertificate entry : entries) {
+
+            BigInteger serial = entry.getSerialNumber();
+            byte[] delta = serial.subtract(prevSerial).toByteArray();
+            writeVarint(out, delta.length);
+            out.write(delta);
+            prevSerial = serial;
+
+            long time = entry.getRevocationDate().getTime();
+            writeVarint(out, zigzag(time - prevTime));
+            prevTime = time;
+
+            CRLExtensions exts = entry instanceof RevokedCertImpl impl ? impl.getExtensions() : null;
+
+            if (entry instanceof RevokedCertImpl && (exts == null || exts.isEmpty())) {
+                out.writeByte(TYPE_NO_EXTENSIONS);
+                continue;
+            }
+
+            if (exts != null
+                    && exts.size() == 1
+                    && exts.elementAt(0) instanceof CRLReasonExtension ext
+                    && !ext.isCritical()
+                    && ext.getReason() != null) {
+                out.writeByte(TYPE_REASON);
+                out.writeByte(ext.getReason().getCode());
+                continue;
+            }
+
+            byte[] der;
+            try {
+                der = entry.getEncoded();
+            } catch (Exception e) {
+                throw new IOException("Unable to encode CRL entry " + serial.toString(16) + ": " + e.getMessage(), e);
+            }
+
+            out.writeByte(TYPE_DER);
+            writeVarint(out, der.length);
+            out.write(der);
+        }
+
+        out.flush();
+    }
+
+    /**
+     * Reads the CRL cache from a stream.
+     */
+    public static Hashtable<BigInteger, RevokedCertificate> read(InputStream is) throws IOException {
+
+        DataInputStream in = new DataInputStream(is);
+
+        byte[] magic = new byte[MAGIC.length];
+        in.readFully(magic);
+        if (!isEncoded(magic)) {
+            throw new IOException("Invalid CRL cache encoding");
+        }
+
+        int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported CRL cache version: " + version);
+        }
+
+        long count = readVarint(in);
+        if (count < 0 || count > Integer.MAX_VALUE) {
+            throw new IOException("Invalid CRL cache size: " + count);
+        }
+
+        // avoid rehashing while loading large caches
+        Hashtable<BigInteger, RevokedCertificate> certs = new Hashtable<>((int) Math.min(count * 4 / 3 + 1, 1 << 24));
+
+        BigInteger prevSerial = BigInteger.ZERO;
+        long prevTime = 0;
+
+        for (long i = 0; i < count; i++) {
+
+            byte[] delta = new byte[readLength(in)];
+            in.readFully(delta);
+            BigInteger serial = prevSerial.add(new BigInteger(delta));
+            prevSerial = serial;
+
+            long time = prevTime + unzigzag(readVarint(in));
+            prevTime = time;
+
+            int type = in.readUnsignedByte();
+            RevokedCertificate entry;
+
+            switch (type) {
+            case TYPE_NO_EXTENSIONS:
+                entry = new RevokedCertImpl(serial, new Date(time), null);
+                break;
+
+            case TYPE_REASON:
+                CRLExtensions exts = new CRLExtensions();
+                CRLReasonExtension ext = getReasonExtension(in.readUnsignedByte());
+                exts.set(ext.getName(), ext);
+                entry = new RevokedCertImpl(serial, new Date(time), exts);
+                break;
+
+            case TYPE_DER:
+                byte[] der = new byte[readLength(in)];
+                in.readFully(der);
+                try {
+                    entry = new RevokedCertImpl(der);
+                } catch (Exception e) {
+                    throw new IOException("Unable to decode CRL entry " + serial.toString(16) + ": " + e.getMessage(), e);
+                }
+                break;
+
+            default:
+                throw new IOException("Invalid CRL entry type: " + type);
+            }
+
+            certs.put(serial, entry);
+        }
+
+        return certs;
+    }
+
+    static CRLReasonExtension[] createReasonExtensions() {
+
+        CRLReasonExtension[] exts = new CRLReasonExtension[256];
+
+        for (int code = 0; code < exts.length; code++) {
+
+            RevocationReason reason = RevocationReason.valueOf(code);
+            if (reason == null) {
+                continue;
+            }
+
+            try {
+                exts[code] = new CRLReasonExtension(reason);
+            } catch (Exception e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        return exts;
+    }
+
+    static CRLReasonExtension getReasonExtension(int code) throws IOException {
+
+        CRLReasonExtension ext = reasonExtensions[code];
+        if (ext == null) {
+            throw new IOException("Invalid revocation reason: " + code);
+        }
+
+        return ext;
+    }
+
+    static int readLength(DataInputStream in) throws IOException {
+        long length = readVarint(in);
+        if (length < 0 || length > Integer.MAX_VALUE) {
+            throw new IOException("Invalid length: " + length);
+        }
+        return (int) length;
+    }
+
+    static void writeVarint(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static long readVarint(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException();
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Invalid varint");
+    }
+
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,187 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.dbs;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.math.BigInteger;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.Vector;
+
+import org.mozilla.jss.netscape.security.x509.RevokedCertificate;
+
+import com.netscape.certsrv.base.EBaseException;
+import com.netscape.certsrv.dbs.DBAttrMapper;
+import com.netscape.certsrv.dbs.EDBException;
+import com.netscape.certsrv.dbs.IDBObj;
+import com.netscape.cmscore.apps.CMS;
+
+import netscape.ldap.LDAPAttribute;
+import netscape.ldap.LDAPAttributeSet;
+
+/**
+ * A class represents an attribute mapper that maps a CRL cache
+ * into LDAP attribute, and vice versa.
+ *
+ * CRL caches are read in both Java object serialization and
+ * {@link CRLCacheCodec} encodings. They are stored with Java object
+ * serialization unless the compact format is selected, since older
+ * clones sharing the database can only read that format.
+ */
+public class CRLCacheMapper extends DBAttrMapper {
+
+    public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(CRLCacheMapper.class);
+
+    public static final String FORMAT_SERIALIZED = "serialized";
+    public static final String FORMAT_COMPACT = "compact";
+
+    // Java object serialization stream header
+    static final byte[] OBJECT_STREAM_MAGIC = { (byte) 0xAC, (byte) 0xED };
+
+    private String mLdapName = null;
+    private Vector<String> v = new Vector<>();
+    private boolean compact;
+
+    /**
+     * Constructs CRL cache mapper that stores the caches with
+     * Java object serialization.
+     */
+    public CRLCacheMapper(String ldapName) {
+        mLdapName = ldapName;
+        v.addElement(mLdapName);
+    }
+
+    /**
+     * Constructs CRL cache mapper that stores the caches in the
+     * given format.
+     */
+    public CRLCacheMapper(String ldapName, String format) throws EBaseException {
+        this(ldapName);
+
+        if (FORMAT_COMPACT.equals(format)) {
+            compact = true;
+        } else if (!FORMAT_SERIALIZED.equals(format)) {
+            throw new EBaseException("Invalid CRL cache format: " + format);
+        }
+    }
+
+    /**
+     * Retrieves a list of supported ldap attributes.
+     */
+    @Override
+    public Enumeration<String> getSupportedLDAPAttributeNames() {
+        return v.elements();
+    }
+
+    /**
+     * Maps object to ldap attribute set.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void mapObjectToLDAPAttributeSet(IDBObj parent, String name,
+            Object obj, LDAPAttributeSet attrs)
+            throws EBaseException {
+
+        try {
+            byte[] data;
+
+            if (compact) {
+                data = CRLCacheCodec.encode((Map<BigInteger, RevokedCertificate>) obj);
+
+            } else {
+                ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                try (ObjectOutputStream os = new ObjectOutputStream(bos)) {
+                    os.writeObject(obj);
+                }
+                data = bos.toByteArray();
+            }
+
+            logger.debug("CRLCacheMapper: Mapping " + name + " to " + mLdapName + " (" + data.length + " bytes)");
+            attrs.add(new LDAPAttribute(mLdapName, data));
+
+        } catch (IOException | ClassCastException e) {
+            logger.error("CRLCacheMapper: Unable to encode " + name + ": " + e.getMessage(), e);
+            throw new EDBException(CMS.getUserMessage("CMS_DBS_SERIALIZE_FAILED", name), e);
+        }
+    }
+
+    /**
+     * Maps LDAP attributes into object, and put the object
+     * into 'parent'.
+     */
+    @Override
+    public void mapLDAPAttributeSetToObject(LDAPAttributeSet attrs,
+            String name, IDBObj parent) throws EBaseException {
+
+        LDAPAttribute attr = attrs.getAttribute(mLdapName);
+        if (attr == null) {
+            return;
+        }
+
+        // entries added incrementally are stored as additional values
+        // until the whole cache is stored again
+        Hashtable<BigInteger, RevokedCertificate> certs = null;
+        Enumeration<byte[]> values = attr.getByteValues();
+
+        while (values.hasMoreElements()) {
+
+            Hashtable<BigInteger, RevokedCertificate> value = decode(name, values.nextElement());
+
+            if (certs == null) {
+                certs = value;
+            } else {
+                certs.putAll(value);
+            }
+        }
+
+        if (certs != null) {
+            parent.set(name, certs);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    Hashtable<BigInteger, RevokedCertificate> decode(String name, byte[] data) throws EBaseException {
+
+        try {
+            if (CRLCacheCodec.isEncoded(data)) {
+                return CRLCacheCodec.decode(data);
+            }
+
+            if (isObjectStream(data)) {
+                logger.info("CRLCacheMapper: Converting " + name + " from Java serialization");
+                ObjectInputStream is = new ObjectInputStream(new ByteArrayInputStream(data));
+                return (Hashtable<BigInteger, RevokedCertificate>) is.readObject();
+            }
+
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            logger.error("CRLCacheMapper: Unable to decode " + name + ": " + e.getMessage(), e);
+            throw new EDBException(CMS.getUserMessage("CMS_DBS_DESERIALIZE_FAILED", name), e);
+        }
+
+        throw new EDBException(CMS.getUserMessage("CMS_DBS_DESERIALIZE_FAILED", name));
+    }
+
+    /**
+     * Maps search filters into LDAP search filter.
+     */
+    @Override
+    public String mapSearchFilter(String name, String op,
+            String value) throws EBaseException {
+        return mLdapName + op + value;
+    }
+
+    static boolean isObjectStream(byte[] data) {
+        return data != null
+                && data.length >= OBJECT_STREAM_MAGIC.length
+                && data[0] == OBJECT_STREAM_MAGIC[0]
+                && data[1] == OBJECT_STREAM_MAGIC[1];
+    }
+}
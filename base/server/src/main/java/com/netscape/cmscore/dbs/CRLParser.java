@@ -0,0 +1,332 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.dbs;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * Parser that reads a DER-encoded CRL without creating objects for
+ * the CRL entries.
+ *
+ * The header fields are read when the parser is created. The entries
+ * are decoded one at a time when requested, so a CRL with millions
+ * of entries can be loaded into a {@link RevokedSerialStore} without
+ * building the whole list of entries on the heap.
+ *
+ * The CRL signature is not verified.
+ */
+public class CRLParser implements RevokedSerialStore.EntrySource {
+
+    static final int TAG_INTEGER = 0x02;
+    static final int TAG_OCTET_STRING = 0x04;
+    static final int TAG_OID = 0x06;
+    static final int TAG_ENUMERATED = 0x0a;
+    static final int TAG_SEQUENCE = 0x30;
+    static final int TAG_UTC_TIME = 0x17;
+    static final int TAG_GENERALIZED_TIME = 0x18;
+    static final int TAG_CRL_EXTENSIONS = 0xa0;
+
+    // encoded OID values of the CRL number and reason code extensions
+    static final byte[] OID_CRL_NUMBER = { 0x55, 0x1d, 0x14 };
+    static final byte[] OID_REASON_CODE = { 0x55, 0x1d, 0x15 };
+
+    /**
+     * Position of a DER element in the data.
+     */
+    static class Element {
+
+        int tag;
+        int start;
+        int end;
+
+        boolean is(int tag) {
+            return this.tag == tag;
+        }
+    }
+
+    byte[] data;
+
+    Date thisUpdate;
+    Date nextUpdate;
+    BigInteger crlNumber;
+
+    // contents of the revokedCertificates sequence, empty if none
+    int entriesStart;
+    int entriesEnd;
+
+    public CRLParser(byte[] data) throws IOException {
+
+        this.data = data;
+
+        Element crl = read(0, data.length);
+        expect(crl, TAG_SEQUENCE);
+
+        Element tbs = read(crl.start, crl.end);
+        expect(tbs, TAG_SEQUENCE);
+
+        Element element = read(tbs.start, tbs.end);
+
+        // version
+        if (element.is(TAG_INTEGER)) {
+            element = read(element.end, tbs.end);
+        }
+
+        // signature algorithm
+        expect(element, TAG_SEQUENCE);
+
+        // issuer
+        element = read(element.end, tbs.end);
+        expect(element, TAG_SEQUENCE);
+
+        element = read(element.end, tbs.end);
+        thisUpdate = new Date(parseTime(element));
+
+        int position = element.end;
+
+        if (position < tbs.end) {
+            element = read(position, tbs.end);
+            if (element.is(TAG_UTC_TIME) || element.is(TAG_GENERALIZED_TIME)) {
+                nextUpdate = new Date(parseTime(element));
+                position = element.end;
+            }
+        }
+
+        entriesStart = position;
+        entriesEnd = position;
+
+        if (position < tbs.end) {
+            element = read(position, tbs.end);
+            if (element.is(TAG_SEQUENCE)) {
+                entriesStart = element.start;
+                entriesEnd = element.end;
+                position = element.end;
+            }
+        }
+
+        if (position < tbs.end) {
+            element = read(position, tbs.end);
+            if (element.is(TAG_CRL_EXTENSIONS)) {
+                Element extensions = read(element.start, element.end);
+                expect(extensions, TAG_SEQUENCE);
+
+                byte[] value = findExtension(extensions, OID_CRL_NUMBER);
+                if (value != null) {
+                    Element number = read(value, 0, value.length);
+                    expect(number, TAG_INTEGER);
+                    crlNumber = new BigInteger(value, number.start, number.end - number.start);
+                }
+            }
+        }
+    }
+
+    public Date getThisUpdate() {
+        return thisUpdate;
+    }
+
+    public Date getNextUpdate() {
+        return nextUpdate;
+    }
+
+    /**
+     * Returns the CRL number, or null if the CRL has no CRL number
+     * extension.
+     */
+    public BigInteger getCRLNumber() {
+        return crlNumber;
+    }
+
+    /**
+     * Decodes the CRL entries and passes them to the handler.
+     */
+    @Override
+    public void forEach(RevokedSerialStore.EntryHandler handler) throws IOException {
+
+        int position = entriesStart;
+
+        while (position < entriesEnd) {
+
+            Element entry = read(position, entriesEnd);
+            expect(entry, TAG_SEQUENCE);
+
+            Element serial = read(entry.start, entry.end);
+            expect(serial, TAG_INTEGER);
+
+            Element date = read(serial.end, entry.end);
+            long revocationDate = parseTime(date);
+
+            int reason = -1;
+
+            if (date.end < entry.end) {
+                Element extensions = read(date.end, entry.end);
+                expect(extensions, TAG_SEQUENCE);
+
+                byte[] value = findExtension(extensions, OID_REASON_CODE);
+                if (value != null) {
+                    Element code = read(value, 0, value.length);
+                    expect(code, TAG_ENUMERATED);
+                    if (code.start == code.end) {
+                        throw new IOException("Invalid reason code in CRL at " + date.end);
+                    }
+                    reason = value[code.start] & 0xff;
+                }
+            }
+
+            handler.handle(
+                    new BigInteger(data, serial.start, serial.end - serial.start),
+                    revocationDate,
+                    reason);
+
+            position = entry.end;
+        }
+    }
+
+    /**
+     * Returns the contents of the extension value with the given
+     * encoded OID, or null if not found.
+     */
+    byte[] findExtension(Element extensions, byte[] oid) throws IOException {
+
+        int position = extensions.start;
+
+        while (position < extensions.end) {
+
+            Element extension = read(position, extensions.end);
+            expect(extension, TAG_SEQUENCE);
+
+            Element id = read(extension.start, extension.end);
+            expect(id, TAG_OID);
+
+            if (Arrays.equals(data, id.start, id.end, oid, 0, oid.length)) {
+
+                // skip the optional critical flag
+                Element value = read(id.end, extension.end);
+                if (!value.is(TAG_OCTET_STRING)) {
+                    value = read(value.end, extension.end);
+                }
+
+                expect(value, TAG_OCTET_STRING);
+                return Arrays.copyOfRange(data, value.start, value.end);
+            }
+
+            position = extension.end;
+        }
+
+        return null;
+    }
+
+    Element read(int position, int limit) throws IOException {
+        return read(data, position, limit);
+    }
+
+    /**
+     * Reads the tag and length of the element at the given position.
+     */
+    static Element read(byte[] data, int position, int limit) throws IOException {
+
+        if (position + 2 > limit) {
+            throw new IOException("Truncated CRL at " + position);
+        }
+
+        Element element = new Element();
+        element.tag = data[position++] & 0xff;
+
+        int length = data[position++] & 0xff;
+
+        if (length > 0x80) {
+            int size = length & 0x7f;
+
+            if (size > 4 || position + size > limit) {
+                throw new IOException("Invalid length in CRL at " + position);
+            }
+
+            length = 0;
+            for (int i = 0; i < size; i++) {
+                length = (length << 8) | (data[position++] & 0xff);
+            }
+
+        } else if (length == 0x80) {
+            throw new IOException("Indefinite length in CRL at " + position);
+        }
+
+        if (length < 0 || position + length > limit) {
+            throw new IOException("Invalid length in CRL at " + position);
+        }
+
+        element.start = position;
+        element.end = position + length;
+
+        return element;
+    }
+
+    static void expect(Element element, int tag) throws IOException {
+        if (!element.is(tag)) {
+            throw new IOException("Unexpected tag in CRL at " + element.start + ": " + element.tag);
+        }
+    }
+
+    /**
+     * Returns the time in milliseconds of a UTCTime or GeneralizedTime.
+     */
+    long parseTime(Element element) throws IOException {
+
+        int position = element.start;
+        int year;
+
+        if (element.is(TAG_UTC_TIME)) {
+            year = parseDigits(position, 2);
+            year += year < 50 ? 2000 : 1900;
+            position += 2;
+
+        } else if (element.is(TAG_GENERALIZED_TIME)) {
+            year = parseDigits(position, 4);
+            position += 4;
+
+        } else {
+            throw new IOException("Unexpected time in CRL at " + element.start + ": " + element.tag);
+        }
+
+        // DER times are in UTC and fractional seconds are ignored
+        if (position + 10 > element.end) {
+            throw new IOException("Invalid time in CRL at " + element.start);
+        }
+
+        try {
+            LocalDateTime time = LocalDateTime.of(
+                    year,
+                    parseDigits(position, 2),
+                    parseDigits(position + 2, 2),
+                    parseDigits(position + 4, 2),
+                    parseDigits(position + 6, 2),
+                    parseDigits(position + 8, 2));
+
+            return time.toEpochSecond(ZoneOffset.UTC) * 1000;
+
+        } catch (DateTimeException e) {
+            throw new IOException("Invalid time in CRL at " + element.start + ": " + e.getMessage(), e);
+        }
+    }
+
+    int parseDigits(int position, int count) throws IOException {
+
+        int value = 0;
+
+        for (int i = 0; i < count; i++) {
+            int digit = data[position + i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new IOException("Invalid time in CRL at " + position);
+            }
+            value = value * 10 + digit;
+        }
+
+        return value;
+    }
+}
@@ -111,6 +111,8 @@ public class CertRecord extends DBRecord {
 
     private BigInteger mId = null;
     private X509CertImpl mX509Certificate = null;
+    // DER encoding of the certificate, decoded on first access
+    private byte[] mEncodedCertificate = null;
     private String mStatus = null;
     private String mAutoRenew = null;
     private MetaInfo mMetaInfo = null;
@@ -159,7 +161,13 @@ public class CertRecord extends DBRecord {
         } else if (name.equalsIgnoreCase(ATTR_META_INFO)) {
             mMetaInfo = (MetaInfo) obj;
         } else if (name.equalsIgnoreCase(ATTR_X509CERT)) {
-            mX509Certificate = (X509CertImpl) obj;
+            if (obj instanceof byte[] der) {
+                mX509Certificate = null;
+                mEncodedCertificate = der;
+            } else {
+                mX509Certificate = (X509CertImpl) obj;
+                mEncodedCertificate = null;
+            }
         } else if (name.equalsIgnoreCase(ATTR_CERT_STATUS)) {
             mStatus = (String) obj;
         } else if (name.equalsIgnoreCase(ATTR_AUTO_RENEW)) {
@@ -191,7 +199,7 @@ public class CertRecord extends DBRecord {
         } else if (name.equalsIgnoreCase(ATTR_META_INFO)) {
             return mMetaInfo;
         } else if (name.equalsIgnoreCase(ATTR_X509CERT)) {
-            return mX509Certificate;
+            return getCertificate();
         } else if (name.equalsIgnoreCase(ATTR_CERT_STATUS)) {
             return mStatus;
         } else if (name.equalsIgnoreCase(ATTR_AUTO_RENEW)) {
@@ -235,6 +243,16 @@ public class CertRecord extends DBRecord {
      * @return certificate
      */
     public X509CertImpl getCertificate() {
+
+        if (mX509Certificate == null && mEncodedCertificate != null) {
+            try {
+                mX509Certificate = new X509CertImpl(mEncodedCertificate);
+            } catch (Exception e) {
+                logger.warn("CertRecord: Unable to decode certificate " + mId + ": " + e.getMessage(), e);
+            }
+            mEncodedCertificate = null;
+        }
+
         return mX509Certificate;
     }
 
@@ -316,18 +334,18 @@ public class CertRecord extends DBRecord {
      * @return certificate serial number
      */
     public BigInteger getCertificateSerialNumber() {
-        return mX509Certificate.getSerialNumber();
+        return getCertificate().getSerialNumber();
     }
 
     /**
      * Retrieves not after.
      */
     public Date getNotAfter() {
-        return mX509Certificate.getNotAfter();
+        return getCertificate().getNotAfter();
     }
 
     public Date getNotBefore() {
-        return mX509Certificate.getNotBefore();
+        return getCertificate().getNotBefore();
     }
 
     /**
@@ -0,0 +1,143 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.dbs;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Enumeration;
+import java.util.List;
+
+import org.mozilla.jss.netscape.security.x509.CertificateValidity;
+
+import com.netscape.certsrv.base.EBaseException;
+import com.netscape.certsrv.base.MetaInfo;
+import com.netscape.cmscore.apps.CMS;
+
+/**
+ * A lightweight projection of a certificate record containing only
+ * the serial number, status, validity dates, revocation date and
+ * metadata (e.g. the request ID).
+ *
+ * It is meant for bulk scans of the certificate repository that do
+ * not need the certificate itself, so the certificate is neither
+ * retrieved from the database nor decoded.
+ */
+public class CertStatusRecord extends DBRecord {
+
+    private static final long serialVersionUID = 1L;
+
+    private BigInteger mId;
+    private String mStatus;
+    private Date mNotBefore;
+    private Date mNotAfter;
+    private Date mRevokedOn;
+    private MetaInfo mMetaInfo;
+
+    protected static List<String> mNames = Arrays.asList(
+            CertRecord.ATTR_ID, CertRecord.ATTR_CERT_STATUS,
+            CertificateValidity.NOT_BEFORE, CertificateValidity.NOT_AFTER,
+            CertRecord.ATTR_REVOKED_ON, CertRecord.ATTR_META_INFO);
+
+    public CertStatusRecord() {
+    }
+
+    /**
+     * Creates a status record from a full certificate record. The
+     * serial number and validity dates are taken from the certificate.
+     */
+    public CertStatusRecord(CertRecord record) {
+        mId = record.getCertificateSerialNumber();
+        mStatus = record.getStatus();
+        mNotBefore = record.getNotBefore();
+        mNotAfter = record.getNotAfter();
+        mRevokedOn = record.getRevokedOn();
+        mMetaInfo = record.getMetaInfo();
+    }
+
+    @Override
+    public void set(String name, Object obj) throws EBaseException {
+        if (name.equalsIgnoreCase(CertRecord.ATTR_ID)) {
+            mId = (BigInteger) obj;
+        } else if (name.equalsIgnoreCase(CertRecord.ATTR_CERT_STATUS)) {
+            mStatus = (String) obj;
+        } else if (name.equalsIgnoreCase(CertificateValidity.NOT_BEFORE)) {
+            mNotBefore = (Date) obj;
+        } else if (name.equalsIgnoreCase(CertificateValidity.NOT_AFTER)) {
+            mNotAfter = (Date) obj;
+        } else if (name.equalsIgnoreCase(CertRecord.ATTR_REVOKED_ON)) {
+            mRevokedOn = (Date) obj;
+        } else if (name.equalsIgnoreCase(CertRecord.ATTR_META_INFO)) {
+            mMetaInfo = (MetaInfo) obj;
+        } else {
+            throw new EBaseException(CMS.getUserMessage("CMS_BASE_INVALID_ATTRIBUTE", name));
+        }
+    }
+
+    @Override
+    public Object get(String name) throws EBaseException {
+        if (name.equalsIgnoreCase(CertRecord.ATTR_ID)) {
+            return mId;
+        } else if (name.equalsIgnoreCase(CertRecord.ATTR_CERT_STATUS)) {
+            return mStatus;
+        } else if (name.equalsIgnoreCase(CertificateValidity.NOT_BEFORE)) {
+            return mNotBefore;
+        } else if (name.equalsIgnoreCase(CertificateValidity.NOT_AFTER)) {
+            return mNotAfter;
+        } else if (name.equalsIgnoreCase(CertRecord.ATTR_REVOKED_ON)) {
+            return mRevokedOn;
+        } else if (name.equalsIgnoreCase(CertRecord.ATTR_META_INFO)) {
+            return mMetaInfo;
+        } else {
+            throw new EBaseException(CMS.getUserMessage("CMS_BASE_INVALID_ATTRIBUTE", name));
+        }
+    }
+
+    @Override
+    public void delete(String name) throws EBaseException {
+        throw new EBaseException(CMS.getUserMessage("CMS_BASE_INVALID_ATTRIBUTE", name));
+    }
+
+    @Override
+    public Enumeration<String> getElements() {
+        return Collections.enumeration(mNames);
+    }
+
+    @Override
+    public Enumeration<String> getSerializableAttrNames() {
+        return Collections.enumeration(mNames);
+    }
+
+    public BigInteger getSerialNumber() {
+        return mId;
+    }
+
+    public String getStatus() {
+        return mStatus;
+    }
+
+    public Date getNotBefore() {
+        return mNotBefore;
+    }
+
+    public Date getNotAfter() {
+        return mNotAfter;
+    }
+
+    public Date getRevokedOn() {
+        return mRevokedOn;
+    }
+
+    public MetaInfo getMetaInfo() {
+        return mMetaInfo;
+    }
+
+    @Override
+    public String toString() {
+        return "CertStatusRecord: " + mId + " " + mStatus;
+    }
+}
@@ -0,0 +1,509 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.dbs;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.netscape.certsrv.base.EBaseException;
+import com.netscape.certsrv.dbs.DBPagedSearch;
+import com.netscape.certsrv.dbs.IDBObj;
+
+/**
+ * Search that splits a filtered search over ranges of record IDs
+ * (e.g. serial numbers) and runs a paged search for each range
+ * concurrently, each on its own database session.
+ *
+ * The records found are put in a bounded buffer and processed by
+ * a pool of threads. When the buffer is full the searches wait
+ * until the processing threads catch up, so the memory used does
+ * not depend on the number of records.
+ *
+ * The first range has no lower bound and the last range has no
+ * upper bound, so records outside the expected ID space are still
+ * found.
+ */
+public class DBParallelSearch<T extends IDBObj> {
+
+    public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(DBParallelSearch.class);
+
+    public interface Processor<T> {
+        void process(T record) throws Exception;
+    }
+
+    /**
+     * Range of record IDs from start (inclusive) to end (exclusive).
+     * A null bound means the range is unbounded on that side.
+     */
+    public static class Range {
+
+        BigInteger start;
+        BigInteger end;
+
+        public Range(BigInteger start, BigInteger end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        public BigInteger getStart() {
+            return start;
+        }
+
+        public BigInteger getEnd() {
+            return end;
+        }
+
+        /**
+         * Returns the given filter restricted to this range.
+         */
+        public String getFilter(String filter, String idAttribute) {
+
+            if (start == null && end == null) {
+                return filter;
+            }
+
+            StringBuilder sb = new StringBuilder();
+            sb.append("(&");
+            sb.append(filter);
+
+            if (start != null) {
+                sb.append("(" + idAttribute + ">=" + start + ")");
+            }
+
+            if (end != null) {
+                sb.append("(!(" + idAttribute + ">=" + end + "))");
+            }
+
+            sb.append(")");
+            return sb.toString();
+        }
+
+        @Override
+        public String toString() {
+            return "[" + (start == null ? "" : start.toString(16)) + ", "
+                    + (end == null ? "" : end.toString(16)) + ")";
+        }
+    }
+
+    /**
+     * Throughput of a search.
+     */
+    public static class Stats {
+
+        AtomicLong found = new AtomicLong();
+        AtomicLong processed = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+
+        long startTime;
+        long endTime;
+
+        // whether a size or time limit stopped the search
+        volatile boolean truncated;
+
+        // ranges that have been searched completely
+        Set<Range> completed = ConcurrentHashMap.newKeySet();
+
+        public long getFound() {
+            return found.get();
+        }
+
+        public long getProcessed() {
+            return processed.get();
+        }
+
+        public long getFailed() {
+            return failed.get();
+        }
+
+        public boolean isTruncated() {
+            return truncated;
+        }
+
+        /**
+         * Returns true if all records in the range have been found,
+         * i.e. the search of the range was not stopped by a limit
+         * or an error.
+         */
+        public boolean isCompleted(Range range) {
+            return completed.contains(range);
+        }
+
+        public long getElapsedTime() {
+            return (endTime == 0 ? System.currentTimeMillis() : endTime) - startTime;
+        }
+
+        /**
+         * Returns the number of records processed per second.
+         */
+        public double getRate() {
+            long elapsedTime = getElapsedTime();
+            return elapsedTime == 0 ? 0 : processed.get() * 1000.0 / elapsedTime;
+        }
+
+        @Override
+        public String toString() {
+            return "found: " + found.get()
+                    + ", processed: " + processed.get()
+                    + ", failed: " + failed.get()
+                    + ", time: " + getElapsedTime() + " ms"
+                    + ", rate: " + String.format("%.1f", getRate()) + "/s";
+        }
+    }
+
+    String name;
+    DBSubsystem dbSubsystem;
+    Class<T> type;
+    String base;
+    String filter;
+    String idAttribute;
+    String[] attrs;
+
+    // whether the type is a projection of the records
+    boolean projection;
+
+    List<Range> ranges = List.of(new Range(null, null));
+
+    int pageSize = 200;
+    int searchThreads = 4;
+    int processThreads = 4;
+    int bufferSize = 1000;
+
+    // 0 means no limit
+    long sizeLimit;
+
+    // in seconds, 0 means no limit
+    int timeLimit;
+
+    public DBParallelSearch(
+            String name,
+            DBSubsystem dbSubsystem,
+            Class<T> type,
+            String base,
+            String filter,
+            String idAttribute) {
+
+        this.name = name;
+        this.dbSubsystem = dbSubsystem;
+        this.type = type;
+        this.base = base;
+        this.filter = filter;
+        this.idAttribute = idAttribute;
+    }
+
+    public String[] getAttributes() {
+        return attrs;
+    }
+
+    public void setAttributes(String[] attrs) {
+        this.attrs = attrs;
+    }
+
+    public boolean isProjection() {
+        return projection;
+    }
+
+    /**
+     * Retrieves only the attributes of the projection type instead
+     * of the full records.
+     */
+    public void setProjection(boolean projection) {
+        this.projection = projection;
+    }
+
+    public List<Range> getRanges() {
+        return ranges;
+    }
+
+    public void setRanges(List<Range> ranges) {
+        this.ranges = ranges;
+    }
+
+    /**
+     * Splits the IDs from 0 to the given limit into ranges of
+     * equal size. If the limit is not known all records are
+     * searched in a single range.
+     */
+    public void setRanges(BigInteger limit, int count) {
+        ranges = createRanges(limit, count);
+    }
+
+    public static List<Range> createRanges(BigInteger limit, int count) {
+
+        List<Range> ranges = new ArrayList<>();
+
+        if (limit == null || count <= 1 || limit.compareTo(BigInteger.valueOf(count)) < 0) {
+            ranges.add(new Range(null, null));
+            return ranges;
+        }
+
+        BigInteger size = limit.divide(BigInteger.valueOf(count));
+        BigInteger start = null;
+
+        for (int i = 1; i < count; i++) {
+            BigInteger end = size.multiply(BigInteger.valueOf(i));
+            ranges.add(new Range(start, end));
+            start = end;
+        }
+
+        ranges.add(new Range(start, null));
+        return ranges;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public void setPageSize(int pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    public int getSearchThreads() {
+        return searchThreads;
+    }
+
+    public void setSearchThreads(int searchThreads) {
+        this.searchThreads = searchThreads;
+    }
+
+    public int getProcessThreads() {
+        return processThreads;
+    }
+
+    public void setProcessThreads(int processThreads) {
+        this.processThreads = processThreads;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    public long getSizeLimit() {
+        return sizeLimit;
+    }
+
+    public void setSizeLimit(long sizeLimit) {
+        this.sizeLimit = sizeLimit;
+    }
+
+    public int getTimeLimit() {
+        return timeLimit;
+    }
+
+    /**
+     * Sets the time after which no more pages are requested.
+     * The records already found are still processed.
+     */
+    public void setTimeLimit(int timeLimit) {
+        this.timeLimit = timeLimit;
+    }
+
+    /**
+     * Creates the paged search for a range. The search may use
+     * the session until the range has been searched.
+     */
+    protected DBPagedSearch<T> createPagedSearch(DBSSession session, Range range) throws EBaseException {
+
+        if (projection) {
+            return session.createProjectedPagedSearch(type, base, range.getFilter(filter, idAttribute), null);
+        }
+
+        return session.createPagedSearch(type, base, range.getFilter(filter, idAttribute), attrs, null);
+    }
+
+    protected DBSSession createSession() throws EBaseException {
+        return dbSubsystem.createSession();
+    }
+
+    /**
+     * Searches all ranges and processes the records found. Errors
+     * from the processor are logged and counted, errors from the
+     * searches stop the search and are thrown once the records
+     * already found have been processed.
+     */
+    public Stats run(Processor<T> processor) throws EBaseException {
+
+        logger.info("DBParallelSearch: Searching " + name + " in " + ranges.size() + " range(s)");
+        logger.info("DBParallelSearch: - filter: " + filter);
+
+        Stats stats = new Stats();
+        stats.startTime = System.currentTimeMillis();
+
+        long deadline = timeLimit > 0 ? stats.startTime + timeLimit * 1000L : 0;
+
+        BlockingQueue<T> buffer = new ArrayBlockingQueue<>(bufferSize);
+        CountDownLatch searchesDone = new CountDownLatch(ranges.size());
+        AtomicReference<EBaseException> error = new AtomicReference<>();
+
+        ExecutorService searchExecutor = createExecutor("search", searchThreads);
+        ExecutorService processExecutor = createExecutor("process", processThreads);
+
+        try {
+            for (Range range : ranges) {
+                searchExecutor.execute(() -> {
+                    try {
+                        searchRange(range, buffer, deadline, stats, error);
+
+                    } catch (EBaseException e) {
+                        logger.warn("DBParallelSearch: Unable to search " + name + " in " + range + ": " + e.getMessage(), e);
+                        error.compareAndSet(null, e);
+
+                    } catch (InterruptedException e) {
+                        error.compareAndSet(null, new EBaseException("Search interrupted", e));
+
+                    } finally {
+                        searchesDone.countDown();
+                    }
+                });
+            }
+
+            CountDownLatch processesDone = new CountDownLatch(processThreads);
+
+            for (int i = 0; i < processThreads; i++) {
+                processExecutor.execute(() -> {
+                    try {
+                        processRecords(processor, buffer, searchesDone, stats);
+                    } finally {
+                        processesDone.countDown();
+                    }
+                });
+            }
+
+            processesDone.await();
+
+        } catch (InterruptedException e) {
+            error.compareAndSet(null, new EBaseException("Search interrupted", e));
+
+        } finally {
+            searchExecutor.shutdownNow();
+            processExecutor.shutdownNow();
+            stats.endTime = System.currentTimeMillis();
+        }
+
+        logger.info("DBParallelSearch: Searched " + name + ": " + stats);
+
+        if (error.get() != null) {
+            throw error.get();
+        }
+
+        return stats;
+    }
+
+    void searchRange(
+            Range range,
+            BlockingQueue<T> buffer,
+            long deadline,
+            Stats stats,
+            AtomicReference<EBaseException> error) throws EBaseException, InterruptedException {
+
+        logger.debug("DBParallelSearch: Searching " + name + " in " + range);
+
+        if (sizeLimit > 0 && stats.found.get() >= sizeLimit) {
+            // do not search ranges that have not started yet
+            logger.debug("DBParallelSearch: Size limit reached");
+            stats.truncated = true;
+            return;
+        }
+
+        try (DBSSession session = createSession()) {
+
+            DBPagedSearch<T> search = createPagedSearch(session, range);
+
+            while (error.get() == null) {
+
+                if (deadline > 0 && System.currentTimeMillis() >= deadline) {
+                    logger.debug("DBParallelSearch: Time limit reached");
+                    stats.truncated = true;
+                    break;
+                }
+
+                List<T> page = search.getPage(pageSize);
+                if (page.isEmpty()) {
+                    stats.completed.add(range);
+                    break;
+                }
+
+                for (T record : page) {
+
+                    long found = stats.found.incrementAndGet();
+
+                    if (sizeLimit > 0 && found > sizeLimit) {
+                        stats.found.decrementAndGet();
+                        logger.debug("DBParallelSearch: Size limit reached");
+                        stats.truncated = true;
+                        return;
+                    }
+
+                    // wait for the processing threads to catch up
+                    buffer.put(record);
+                }
+            }
+        }
+    }
+
+    void processRecords(
+            Processor<T> processor,
+            BlockingQueue<T> buffer,
+            CountDownLatch searchesDone,
+            Stats stats) {
+
+        while (true) {
+
+            T record;
+            try {
+                record = buffer.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            if (record == null) {
+                if (searchesDone.getCount() == 0 && buffer.isEmpty()) {
+                    return;
+                }
+                continue;
+            }
+
+            try {
+                processor.process(record);
+                stats.processed.incrementAndGet();
+
+            } catch (Exception e) {
+                logger.warn("DBParallelSearch: Unable to process " + name + " record: " + e.getMessage(), e);
+                stats.failed.incrementAndGet();
+            }
+        }
+    }
+
+    ExecutorService createExecutor(String role, int threads) {
+
+        AtomicInteger counter = new AtomicInteger();
+
+        return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "DBParallelSearch-" + name + "-" + role + "-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+}
@@ -169,6 +169,21 @@ public class DBRegistry {
         return null;
     }
 
+    /**
+     * Creates a projection object of the given type from attribute set.
+     * Unlike createObject(LDAPAttributeSet) the object class of the
+     * entry is not used to determine the type, so a lightweight type
+     * can be populated from a subset of the entry's attributes.
+     *
+     * @param attrs LDAP attribute set
+     * @param type projection type
+     * @return database object
+     * @exception EBaseException failed to create object
+     */
+    public <T extends IDBObj> T createObject(LDAPAttributeSet attrs, Class<T> type) throws EBaseException {
+        return null;
+    }
+
     public String getId() {
         return null;
     }
@@ -91,6 +91,18 @@ public class DBSSession implements AutoCloseable {
     public void delete(String name) throws EBaseException {
     }
 
+    /**
+     * Deletes object from database, optionally with its subtree
+     * if the database supports it.
+     *
+     * @param name name of the object that is to be deleted
+     * @param subtree true to delete the subtree
+     * @exception EBaseException failed to delete object
+     */
+    public void delete(String name, boolean subtree) throws EBaseException {
+        delete(name);
+    }
+
     /**
      * Modify an object in the database.
      *
@@ -390,6 +402,23 @@ public class DBSSession implements AutoCloseable {
         return null;
     }
 
+    /**
+     * Retrieves a paged search of projection objects. Only the
+     * attributes declared by the projection type are retrieved
+     * from the database and mapped into the results.
+     *
+     * @param projection the lightweight class representing the entries in the paged list
+     * @param base starting point of the search
+     * @param filter search filter
+     * @param sortKey key used to sort the list
+     * @return search results in paged list
+     * @exception EBaseException failed to search
+     */
+    public <T extends IDBObj> DBPagedSearch<T> createProjectedPagedSearch(Class<T> projection, String base, String filter,
+            String sortKey) throws EBaseException {
+        return null;
+    }
+
     public void abandon(LDAPSearchResults results) throws EBaseException {
     }
 }
@@ -76,6 +76,7 @@ public class DBSubsystem {
     private DatabaseConfig mDBConfig;
     private LDAPSocketFactory socketFactory;
     private LdapBoundConnFactory mLdapConnFactory;
+    private LDAPAsyncSession asyncSession;
     private DBRegistry mRegistry;
     private String mBaseDN;
 
@@ -335,14 +336,19 @@ public class DBSubsystem {
                     ByteArrayMapper(CRLDBSchema.LDAP_ATTR_DELTA_CRL));
             reg.registerAttribute(CRLIssuingPointRecord.ATTR_CA_CERT, new
                     ByteArrayMapper(CRLDBSchema.LDAP_ATTR_CA_CERT));
+
+            // keep the format readable by older clones until all clones are upgraded
+            String crlCacheFormat = mDBConfig.getCRLCacheFormat();
+            logger.debug("DBSubsystem: CRL cache format: " + crlCacheFormat);
+
             reg.registerAttribute(CRLIssuingPointRecord.ATTR_CRL_CACHE, new
-                    ObjectStreamMapper(CRLDBSchema.LDAP_ATTR_CRL_CACHE));
+                    CRLCacheMapper(CRLDBSchema.LDAP_ATTR_CRL_CACHE, crlCacheFormat));
             reg.registerAttribute(CRLIssuingPointRecord.ATTR_REVOKED_CERTS, new
-                    ObjectStreamMapper(CRLDBSchema.LDAP_ATTR_REVOKED_CERTS));
+                    CRLCacheMapper(CRLDBSchema.LDAP_ATTR_REVOKED_CERTS, crlCacheFormat));
             reg.registerAttribute(CRLIssuingPointRecord.ATTR_UNREVOKED_CERTS, new
-                    ObjectStreamMapper(CRLDBSchema.LDAP_ATTR_UNREVOKED_CERTS));
+                    CRLCacheMapper(CRLDBSchema.LDAP_ATTR_UNREVOKED_CERTS, crlCacheFormat));
             reg.registerAttribute(CRLIssuingPointRecord.ATTR_EXPIRED_CERTS, new
-                    ObjectStreamMapper(CRLDBSchema.LDAP_ATTR_EXPIRED_CERTS));
+                    CRLCacheMapper(CRLDBSchema.LDAP_ATTR_EXPIRED_CERTS, crlCacheFormat));
 
             boolean registered = reg.isObjectClassRegistered(RepositoryRecord.class.getName());
             logger.debug("registered: " + registered);
@@ -450,6 +456,14 @@ public class DBSubsystem {
      * Shutdowns this subsystem gracefully.
      */
     public void shutdown() {
+
+        synchronized (this) {
+            if (asyncSession != null) {
+                asyncSession.close();
+                asyncSession = null;
+            }
+        }
+
         try {
             if (mLdapConnFactory != null) {
                 mLdapConnFactory.shutdown();
@@ -542,6 +556,69 @@ public class DBSubsystem {
         return new LDAPSession(this, conn);
     }
 
+    /**
+     * Returns the shared asynchronous session, or null if it is
+     * disabled. The session is created on first use.
+     */
+    public synchronized LDAPAsyncSession getAsyncSession() throws EBaseException {
+
+        if (asyncSession != null) {
+            return asyncSession;
+        }
+
+        int connections = mDBConfig.getAsyncConnections();
+        if (connections <= 0) {
+            return null;
+        }
+
+        int maxOperations = mDBConfig.getAsyncMaxOperations();
+
+        logger.info("DBSubsystem: Creating async session");
+        logger.info("DBSubsystem: - connections: " + connections);
+        logger.info("DBSubsystem: - max operations: " + maxOperations);
+
+        LDAPConnection[] conns = new LDAPConnection[connections];
+
+        try {
+            for (int i = 0; i < connections; i++) {
+                conns[i] = getConn();
+            }
+
+        } catch (EBaseException e) {
+
+            for (LDAPConnection conn : conns) {
+                if (conn != null) {
+                    returnConn(conn);
+                }
+            }
+
+            throw e;
+        }
+
+        asyncSession = new LDAPAsyncSession(this, conns, maxOperations);
+        return asyncSession;
+    }
+
+    /**
+     * Gets a connection from the pool. The pool reestablishes the
+     * connection if it has been disconnected. The connection must
+     * be returned with returnConn().
+     */
+    public LDAPConnection getConn() throws EBaseException {
+
+        try {
+            return mLdapConnFactory.getConn();
+
+        } catch (ELdapServerDownException e) {
+            throw new EDBNotAvailException(
+                    CMS.getUserMessage("CMS_DBS_INTERNAL_DIR_UNAVAILABLE"), e);
+
+        } catch (ELdapException e) {
+            throw new EDBException(
+                    CMS.getUserMessage("CMS_DBS_CONNECT_LDAP_FAILED", e.toString()), e);
+        }
+    }
+
     public void returnConn(LDAPConnection conn) {
         mLdapConnFactory.returnConn(conn);
     }
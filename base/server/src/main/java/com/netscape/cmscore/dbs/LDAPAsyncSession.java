@@ -0,0 +1,456 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.dbs;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.netscape.certsrv.base.EBaseException;
+import com.netscape.certsrv.dbs.EDBException;
+import com.netscape.certsrv.dbs.EDBNotAvailException;
+import com.netscape.certsrv.dbs.EDBRecordNotFoundException;
+import com.netscape.certsrv.dbs.IDBObj;
+import com.netscape.certsrv.dbs.ModificationSet;
+import com.netscape.cmscore.apps.CMS;
+
+import netscape.ldap.LDAPConnection;
+import netscape.ldap.LDAPEntry;
+import netscape.ldap.LDAPException;
+import netscape.ldap.LDAPMessage;
+import netscape.ldap.LDAPResponse;
+import netscape.ldap.LDAPResponseListener;
+import netscape.ldap.LDAPSearchListener;
+import netscape.ldap.LDAPSearchResult;
+import netscape.ldap.LDAPv3;
+
+/**
+ * Database session that sends operations without waiting for
+ * the results of the previous ones.
+ *
+ * The operations are multiplexed over a small set of connections
+ * which are held for the lifetime of the session, so a connection
+ * may have many outstanding operations. Each operation returns
+ * a future which completes when the server has responded.
+ *
+ * A connection that has been disconnected or has failed with a
+ * connection error is returned to the pool and replaced with a
+ * new connection before the next operation is sent on it.
+ *
+ * The number of outstanding operations is bounded. When the limit
+ * is reached the caller waits until an operation completes.
+ *
+ * Operations sent on different connections may be processed by
+ * the server in any order, so operations that depend on each other
+ * must wait for the previous result before being sent.
+ *
+ * The session is shared and thread-safe. It is closed by the
+ * database subsystem.
+ */
+public class LDAPAsyncSession implements AutoCloseable {
+
+    public static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(LDAPAsyncSession.class);
+
+    /**
+     * Sends an operation and returns its pending result.
+     */
+    interface Operation<T> {
+        Result<T> send(LDAPConnection conn) throws EBaseException, LDAPException;
+    }
+
+    /**
+     * Waits for the result of an operation.
+     */
+    interface Result<T> {
+        T get() throws EBaseException, LDAPException;
+    }
+
+    DBSubsystem dbSubsystem;
+    int maxOperations;
+
+    // each slot is guarded by its lock, null if it needs a new connection
+    LDAPConnection[] connections;
+    Object[] locks;
+    volatile boolean closed;
+
+    AtomicInteger next = new AtomicInteger();
+    Semaphore operations;
+    ExecutorService executor;
+
+    public LDAPAsyncSession(
+            DBSubsystem dbSubsystem,
+            LDAPConnection[] connections,
+            int maxOperations) {
+
+        this.dbSubsystem = dbSubsystem;
+        this.connections = connections;
+        this.maxOperations = maxOperations;
+
+        locks = new Object[connections.length];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+
+        operations = new Semaphore(maxOperations);
+
+        // The LDAP SDK dispatches the responses to the listener of
+        // each operation but does not provide completion callbacks,
+        // so the listeners are awaited on a pool bounded by the
+        // number of outstanding operations.
+
+        AtomicInteger counter = new AtomicInteger();
+
+        executor = Executors.newFixedThreadPool(maxOperations, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "LDAPAsyncSession-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    public int getConnections() {
+        return connections.length;
+    }
+
+    public int getMaxOperations() {
+        return maxOperations;
+    }
+
+    /**
+     * Returns the number of operations waiting for a response.
+     */
+    public int getPendingOperations() {
+        return maxOperations - operations.availablePermits();
+    }
+
+    /**
+     * Returns the connection in the given slot, replacing it if it
+     * has been disconnected.
+     */
+    LDAPConnection getConnection(int slot) throws EBaseException {
+
+        synchronized (locks[slot]) {
+
+            LDAPConnection conn = connections[slot];
+            if (conn != null && conn.isConnected()) {
+                return conn;
+            }
+
+            if (conn != null) {
+                logger.info("LDAPAsyncSession: Connection " + slot + " disconnected");
+                connections[slot] = null;
+                dbSubsystem.returnConn(conn);
+            }
+
+            logger.info("LDAPAsyncSession: Reconnecting connection " + slot);
+            conn = dbSubsystem.getConn();
+            connections[slot] = conn;
+
+            return conn;
+        }
+    }
+
+    /**
+     * Disconnects a connection that has failed with a connection error
+     * so that it is replaced on the next operation. Other operations
+     * pending on the connection fail as well.
+     */
+    void reconnect(int slot, LDAPConnection conn) {
+
+        synchronized (locks[slot]) {
+
+            if (conn == null || connections[slot] != conn) {
+                // already replaced
+                return;
+            }
+
+            logger.warn("LDAPAsyncSession: Dropping connection " + slot);
+
+            try {
+                conn.disconnect();
+            } catch (LDAPException e) {
+                logger.warn("LDAPAsyncSession: Unable to disconnect: " + e.getMessage(), e);
+            }
+
+            connections[slot] = null;
+            dbSubsystem.returnConn(conn);
+        }
+    }
+
+    static boolean isConnectionError(LDAPException e) {
+        int resultCode = e.getLDAPResultCode();
+        return resultCode == LDAPException.SERVER_DOWN
+                || resultCode == LDAPException.CONNECT_ERROR;
+    }
+
+    /**
+     * Adds an object to the database.
+     *
+     * @param name the name of the ldap entry
+     * @param obj the DBobj that can be mapped to ldap attrubute set
+     */
+    public CompletableFuture<Void> add(String name, IDBObj obj) {
+
+        logger.info("LDAPAsyncSession: Adding " + name);
+
+        return submit("Unable to add LDAP entry", conn -> {
+
+            LDAPEntry entry = new LDAPEntry(name, dbSubsystem.getRegistry().createLDAPAttributeSet(obj));
+            LDAPResponseListener listener = conn.add(entry, (LDAPResponseListener) null);
+
+            return () -> {
+                checkResponse(listener.getResponse());
+                return null;
+            };
+        });
+    }
+
+    /**
+     * Reads an object from the database.
+     *
+     * @param name the name of the ldap entry
+     * @param attrs the attributes to be selected, or null for all attributes
+     */
+    public CompletableFuture<IDBObj> read(String name, String[] attrs) {
+
+        logger.info("LDAPAsyncSession: Retrieving " + name);
+
+        return submit("Unable to read LDAP record", conn -> {
+
+            DBRegistry registry = dbSubsystem.getRegistry();
+            String[] ldapAttrs = attrs == null ? null : registry.getLDAPAttributes(attrs);
+
+            LDAPSearchListener listener = conn.search(
+                    name,
+                    LDAPv3.SCOPE_BASE,
+                    "(objectclass=*)",
+                    ldapAttrs,
+                    false,
+                    (LDAPSearchListener) null);
+
+            return () -> {
+
+                IDBObj obj = null;
+
+                while (true) {
+                    LDAPMessage message = listener.getResponse();
+
+                    if (message instanceof LDAPSearchResult result) {
+                        obj = registry.createObject(result.getEntry().getAttributeSet());
+
+                    } else if (message instanceof LDAPResponse response) {
+                        checkResponse(response);
+                        break;
+
+                    } else if (message == null) {
+                        break;
+                    }
+                }
+
+                if (obj == null) {
+                    throw new EDBRecordNotFoundException(CMS.getUserMessage("CMS_DBS_RECORD_NOT_FOUND"));
+                }
+
+                return obj;
+            };
+        });
+    }
+
+    /**
+     * Modifies an object in the database.
+     */
+    public CompletableFuture<Void> modify(String name, ModificationSet mods) {
+
+        logger.info("LDAPAsyncSession: Modifying " + name);
+
+        return submit("Unable to modify LDAP record", conn -> {
+
+            LDAPResponseListener listener = conn.modify(
+                    name,
+                    LDAPSession.createLDAPModificationSet(dbSubsystem.getRegistry(), mods),
+                    (LDAPResponseListener) null);
+
+            return () -> {
+                checkResponse(listener.getResponse());
+                return null;
+            };
+        });
+    }
+
+    /**
+     * Deletes an object from the database.
+     */
+    public CompletableFuture<Void> delete(String name) {
+
+        logger.info("LDAPAsyncSession: Deleting " + name);
+
+        return submit("Unable to delete LDAP record", conn -> {
+
+            LDAPResponseListener listener = conn.delete(name, (LDAPResponseListener) null);
+
+            return () -> {
+                checkResponse(listener.getResponse());
+                return null;
+            };
+        });
+    }
+
+    <T> CompletableFuture<T> submit(String message, Operation<T> operation) {
+
+        CompletableFuture<T> future = new CompletableFuture<>();
+
+        if (closed) {
+            future.completeExceptionally(new EDBException(message + ": Session closed"));
+            return future;
+        }
+
+        try {
+            operations.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.completeExceptionally(new EDBException(message + ": Interrupted", e));
+            return future;
+        }
+
+        int slot = Math.floorMod(next.getAndIncrement(), connections.length);
+        LDAPConnection conn = null;
+
+        Result<T> result;
+        try {
+            conn = getConnection(slot);
+            result = operation.send(conn);
+
+        } catch (LDAPException e) {
+            if (isConnectionError(e)) {
+                reconnect(slot, conn);
+            }
+            operations.release();
+            future.completeExceptionally(toException(message, e));
+            return future;
+
+        } catch (EBaseException e) {
+            operations.release();
+            future.completeExceptionally(e);
+            return future;
+        }
+
+        LDAPConnection sent = conn;
+
+        try {
+            executor.execute(() -> {
+                try {
+                    future.complete(result.get());
+
+                } catch (LDAPException e) {
+                    if (isConnectionError(e)) {
+                        reconnect(slot, sent);
+                    }
+                    future.completeExceptionally(toException(message, e));
+
+                } catch (EBaseException e) {
+                    future.completeExceptionally(e);
+
+                } finally {
+                    operations.release();
+                }
+            });
+
+        } catch (RejectedExecutionException e) {
+            operations.release();
+            future.completeExceptionally(new EDBException(message + ": Session closed", e));
+        }
+
+        return future;
+    }
+
+    static void checkResponse(LDAPResponse response) throws LDAPException {
+
+        int resultCode = response.getResultCode();
+        if (resultCode == LDAPException.SUCCESS) {
+            return;
+        }
+
+        throw new LDAPException(
+                LDAPException.errorCodeToString(resultCode),
+                resultCode,
+                response.getErrorMessage(),
+                response.getMatchedDN());
+    }
+
+    static EBaseException toException(String message, LDAPException e) {
+
+        if (e.getLDAPResultCode() == LDAPException.UNAVAILABLE) {
+            return new EDBNotAvailException(CMS.getUserMessage("CMS_DBS_INTERNAL_DIR_UNAVAILABLE"), e);
+        }
+
+        if (e.getLDAPResultCode() == LDAPException.NO_SUCH_OBJECT) {
+            return new EDBRecordNotFoundException(CMS.getUserMessage("CMS_DBS_RECORD_NOT_FOUND"), e);
+        }
+
+        return new EDBException(message + ": " + e.getMessage(), e);
+    }
+
+    /**
+     * Waits for an operation to complete and returns its result.
+     */
+    public static <T> T get(CompletableFuture<T> future) throws EBaseException {
+
+        try {
+            return future.get();
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new EDBException("Interrupted while waiting for LDAP operation", e);
+
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof EBaseException be) {
+                throw be;
+            }
+            throw new EDBException("LDAP operation failed: " + cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * Waits for the outstanding operations to complete, then returns
+     * the connections to the database subsystem.
+     */
+    @Override
+    public void close() {
+
+        logger.info("LDAPAsyncSession: Closing session");
+
+        closed = true;
+        executor.shutdown();
+
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                logger.warn("LDAPAsyncSession: " + getPendingOperations() + " operation(s) still pending");
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+        }
+
+        for (int i = 0; i < connections.length; i++) {
+            synchronized (locks[i]) {
+                if (connections[i] != null) {
+                    dbSubsystem.returnConn(connections[i]);
+                    connections[i] = null;
+                }
+            }
+        }
+    }
+}
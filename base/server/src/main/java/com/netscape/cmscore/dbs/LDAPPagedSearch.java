@@ -18,6 +18,7 @@
 package com.netscape.cmscore.dbs;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import com.netscape.certsrv.base.EBaseException;
@@ -29,6 +30,7 @@ import com.netscape.cmscore.apps.CMS;
 
 import netscape.ldap.LDAPConnection;
 import netscape.ldap.LDAPControl;
+import netscape.ldap.LDAPEntry;
 import netscape.ldap.LDAPException;
 import netscape.ldap.LDAPSearchConstraints;
 import netscape.ldap.LDAPSearchResults;
@@ -53,6 +55,7 @@ public class LDAPPagedSearch<E extends IDBObj>  extends DBPagedSearch<E> {
     private String[] attrs = null;
     private String sortKey = null;
     private LDAPSearchResults res = null;
+    private boolean projection = false;
 
     public LDAPPagedSearch(Class<E> contentClassType, DBRegistry registry, LDAPConnection conn, String base, String filter, String[] attrs,
             String sortKey) throws EBaseException {
@@ -70,6 +73,24 @@ public class LDAPPagedSearch<E extends IDBObj>  extends DBPagedSearch<E> {
         }
     }
 
+    /**
+     * Creates a paged search that returns projection objects. The
+     * attributes to retrieve are the serializable attributes of the
+     * projection type, and entries are mapped directly into that type.
+     */
+    public LDAPPagedSearch(Class<E> projectionType, DBRegistry registry, LDAPConnection conn, String base, String filter,
+            String sortKey) throws EBaseException {
+        this(projectionType, registry, conn, base, filter, null, sortKey);
+        this.projection = true;
+        try {
+            this.attrs = Collections.list(
+                    projectionType.getDeclaredConstructor().newInstance().getSerializableAttrNames()
+                    ).toArray(new String[0]);
+        } catch (ReflectiveOperationException e) {
+            throw new EBaseException("Unable to create projection " + projectionType.getName() + ": " + e.getMessage(), e);
+        }
+    }
+
     @Override
     public List<E> getPage()
         throws EBaseException {
@@ -117,6 +138,16 @@ public class LDAPPagedSearch<E extends IDBObj>  extends DBPagedSearch<E> {
             cons.setServerControls(pagecon);
             res = conn.search(base,
                     LDAPv3.SCOPE_ONE, ldapfilter, ldapattrs, false, cons);
+            if (projection) {
+                while (res.hasMoreElements()) {
+                    // the last object in the search results may be an LDAPException
+                    if (res.nextElement() instanceof LDAPEntry entry) {
+                        entries.add(registry.createObject(entry.getAttributeSet(), contentClassType));
+                    }
+                }
+                return entries;
+            }
+
             DBSearchResults sr = new DBSearchResults(registry, res);
             while (sr.hasMoreElements()) {
                 entries.add(contentClassType.cast(sr.nextElement()));
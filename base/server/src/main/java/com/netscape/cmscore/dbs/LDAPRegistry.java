@@ -543,6 +543,38 @@ public class LDAPRegistry extends DBRegistry {
         }
     }
 
+    /**
+     * Creates projection object from attribute set.
+     */
+    @Override
+    public <T extends IDBObj> T createObject(LDAPAttributeSet attrs, Class<T> type)
+            throws EDBException {
+
+        try {
+            T obj = type.getDeclaredConstructor().newInstance();
+            Enumeration<String> ee = obj.getSerializableAttrNames();
+
+            while (ee.hasMoreElements()) {
+                String oname = ee.nextElement();
+                DBAttrMapper mapper = mAttrufNames.get(oname.toLowerCase());
+
+                if (mapper == null) {
+                    throw new EDBException(
+                            CMS.getUserMessage("CMS_DBS_NO_MAPPER_FOUND", oname));
+                }
+                mapper.mapLDAPAttributeSetToObject(attrs, oname, obj);
+            }
+            return obj;
+
+        } catch (EDBException e) {
+            throw e;
+
+        } catch (Exception e) {
+            logger.error("LDAPRegistry: " + CMS.getUserMessage("CMS_DBS_INVALID_ATTRS") + ": " + e.getMessage(), e);
+            throw new EDBException(CMS.getUserMessage("CMS_DBS_INVALID_ATTRS") + ": " + e.getMessage(), e);
+        }
+    }
+
     /**
      * Sorts and concate given strings.
      */
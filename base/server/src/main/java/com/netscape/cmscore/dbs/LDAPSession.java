@@ -33,6 +33,7 @@ import com.netscape.cmscore.apps.CMS;
 import netscape.ldap.LDAPAttribute;
 import netscape.ldap.LDAPAttributeSet;
 import netscape.ldap.LDAPConnection;
+import netscape.ldap.LDAPConstraints;
 import netscape.ldap.LDAPControl;
 import netscape.ldap.LDAPEntry;
 import netscape.ldap.LDAPException;
@@ -62,6 +63,8 @@ public class LDAPSession extends DBSSession {
 
     public static final int MAX_PAGED_SEARCH_SIZE = 500;
 
+    public static final String TREE_DELETE_CONTROL_OID = "1.2.840.113556.1.4.805";
+
     private DBSubsystem dbSubsystem;
     private LDAPConnection mConn = null;
 
@@ -222,6 +225,32 @@ public class LDAPSession extends DBSSession {
         }
     }
 
+    /**
+     * Deletes an object with the tree delete control if requested.
+     * Servers that do not support the control delete the entry only.
+     */
+    @Override
+    public void delete(String name, boolean subtree) throws EBaseException {
+
+        if (!subtree) {
+            delete(name);
+            return;
+        }
+
+        logger.info("LDAPSession: Deleting " + name + " subtree");
+
+        try {
+            LDAPConstraints cons = (LDAPConstraints) mConn.getConstraints().clone();
+            cons.setServerControls(new LDAPControl(TREE_DELETE_CONTROL_OID, false, null));
+            mConn.delete(name, cons);
+        } catch (LDAPException e) {
+            if (e.getLDAPResultCode() == LDAPException.UNAVAILABLE)
+                throw new EDBNotAvailException(
+                        CMS.getUserMessage("CMS_DBS_INTERNAL_DIR_UNAVAILABLE"), e);
+            throw new EDBException("Unable to delete LDAP record: " + e.getMessage(), e);
+        }
+    }
+
     /**
      * Modify an object in the database.
      */
@@ -231,35 +260,7 @@ public class LDAPSession extends DBSSession {
         logger.info("LDAPSession: Modifying " + name);
 
         try {
-            LDAPModificationSet ldapMods = new LDAPModificationSet();
-            Enumeration<?> e = mods.getModifications();
-
-            while (e.hasMoreElements()) {
-                Modification mod = (Modification) e.nextElement();
-                LDAPAttributeSet attrs = new LDAPAttributeSet();
-
-                dbSubsystem.getRegistry().mapObject(null, mod.getName(), mod.getValue(), attrs);
-                Enumeration<LDAPAttribute> e0 = attrs.getAttributes();
-
-                while (e0.hasMoreElements()) {
-                    int op = toLdapModOp(mod.getOp());
-                    LDAPAttribute attr = e0.nextElement();
-
-                    switch (op) {
-                    case LDAPModification.ADD:
-                        logger.debug("LDAPSession: - add: " + attr.getName());
-                        break;
-                    case LDAPModification.DELETE:
-                        logger.debug("LDAPSession: - delete: " + attr.getName());
-                        break;
-                    case LDAPModification.REPLACE:
-                        logger.debug("LDAPSession: - replace: " + attr.getName());
-                        break;
-                    }
-
-                    ldapMods.add(op, attr);
-                }
-            }
+            LDAPModificationSet ldapMods = createLDAPModificationSet(dbSubsystem.getRegistry(), mods);
 
             /*LogDoc
              *
@@ -282,7 +283,47 @@ public class LDAPSession extends DBSSession {
         }
     }
 
-    private int toLdapModOp(int modOp) throws EBaseException {
+    /**
+     * Maps the modifications of a database object into LDAP modifications.
+     */
+    static LDAPModificationSet createLDAPModificationSet(
+            DBRegistry registry,
+            ModificationSet mods) throws EBaseException {
+
+        LDAPModificationSet ldapMods = new LDAPModificationSet();
+        Enumeration<?> e = mods.getModifications();
+
+        while (e.hasMoreElements()) {
+            Modification mod = (Modification) e.nextElement();
+            LDAPAttributeSet attrs = new LDAPAttributeSet();
+
+            registry.mapObject(null, mod.getName(), mod.getValue(), attrs);
+            Enumeration<LDAPAttribute> e0 = attrs.getAttributes();
+
+            while (e0.hasMoreElements()) {
+                int op = toLdapModOp(mod.getOp());
+                LDAPAttribute attr = e0.nextElement();
+
+                switch (op) {
+                case LDAPModification.ADD:
+                    logger.debug("LDAPSession: - add: " + attr.getName());
+                    break;
+                case LDAPModification.DELETE:
+                    logger.debug("LDAPSession: - delete: " + attr.getName());
+                    break;
+                case LDAPModification.REPLACE:
+                    logger.debug("LDAPSession: - replace: " + attr.getName());
+                    break;
+                }
+
+                ldapMods.add(op, attr);
+            }
+        }
+
+        return ldapMods;
+    }
+
+    private static int toLdapModOp(int modOp) throws EBaseException {
         switch (modOp) {
         case Modification.MOD_ADD:
             return LDAPModification.ADD;
@@ -696,6 +737,15 @@ public class LDAPSession extends DBSSession {
                 filter, attrs, sortKey);
     }
 
+    @Override
+    public <T extends IDBObj> DBPagedSearch<T> createProjectedPagedSearch(Class<T> projection, String base, String filter,
+            String sortKey) throws EBaseException {
+        logger.debug("LDAPSession: createProjectedPagedSearch({}, {}, {})", projection.getSimpleName(), base, filter);
+
+        return new LDAPPagedSearch<>(projection, dbSubsystem.getRegistry(), mConn, base,
+                filter, sortKey);
+    }
+
     /**
      * Releases object to this interface. This allows us to
      * use memory more efficiently.
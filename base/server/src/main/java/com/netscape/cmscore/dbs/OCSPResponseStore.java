@@ -0,0 +1,319 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.dbs;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Date;
+
+import org.apache.commons.codec.binary.Hex;
+
+/**
+ * Store of signed OCSP responses keyed by the SHA-256 digest of the
+ * DER-encoded CertID.
+ *
+ * Each response is stored in a separate file in a subdirectory named
+ * after the first byte of the key, so a store with millions of
+ * responses does not end up with a single huge directory:
+ *
+ * <pre>
+ * [dir]/3f/3fa1...e9.ors
+ * </pre>
+ *
+ * Format (version 1):
+ *
+ * <pre>
+ * magic        4 bytes  "ORS1"
+ * produced at  8 bytes  milliseconds
+ * this update  8 bytes  milliseconds
+ * next update  8 bytes  milliseconds, -1 if not available
+ * version      8 bytes  version of the revocation data used to
+ *                       create the response
+ * etag        16 bytes  truncated SHA-256 digest of the response
+ * length       4 bytes
+ * response     length bytes, DER-encoded OCSPResponse
+ * </pre>
+ *
+ * Files are replaced atomically, so readers never see a partially
+ * written response. Stores are thread-safe.
+ */
+public class OCSPResponseStore {
+
+    public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(OCSPResponseStore.class);
+
+    public static final byte[] MAGIC = { 'O', 'R', 'S', '1' };
+
+    public static final int HEADER_SIZE = 56;
+    public static final int ETAG_SIZE = 16;
+
+    // responses are small, anything bigger is a corrupted file
+    public static final int MAX_RESPONSE_SIZE = 1024 * 1024;
+
+    public static final String SUFFIX = ".ors";
+
+    /**
+     * Signed OCSP response with its validity period.
+     */
+    public static class Entry {
+
+        byte[] response;
+        Date producedAt;
+        Date thisUpdate;
+        Date nextUpdate;
+        long version;
+        byte[] etag;
+
+        public Entry(byte[] response, Date producedAt, Date thisUpdate, Date nextUpdate, long version) {
+            this(response, producedAt, thisUpdate, nextUpdate, version, createETag(response));
+        }
+
+        Entry(byte[] response, Date producedAt, Date thisUpdate, Date nextUpdate, long version, byte[] etag) {
+            this.response = response;
+            this.producedAt = producedAt;
+            this.thisUpdate = thisUpdate;
+            this.nextUpdate = nextUpdate;
+            this.version = version;
+            this.etag = etag;
+        }
+
+        public byte[] getResponse() {
+            return response;
+        }
+
+        public Date getProducedAt() {
+            return producedAt;
+        }
+
+        public Date getThisUpdate() {
+            return thisUpdate;
+        }
+
+        /**
+         * Returns the next update time of the response, or null
+         * if the response does not have one.
+         */
+        public Date getNextUpdate() {
+            return nextUpdate;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        /**
+         * Returns the strong entity tag of the response in HTTP
+         * format (i.e. quoted).
+         */
+        public String getETag() {
+            return "\"" + Hex.encodeHexString(etag) + "\"";
+        }
+
+        /**
+         * Returns the time when the response should be replaced:
+         * the next update time if available, otherwise the time the
+         * response was produced plus the given maximum age.
+         */
+        public long getExpirationTime(long maxAge) {
+            return nextUpdate == null
+                    ? producedAt.getTime() + maxAge
+                    : nextUpdate.getTime();
+        }
+    }
+
+    Path dir;
+
+    public OCSPResponseStore(Path dir) {
+        this.dir = dir;
+    }
+
+    public Path getDir() {
+        return dir;
+    }
+
+    /**
+     * Returns the key of the response for a DER-encoded CertID.
+     */
+    public static String createKey(byte[] certID) {
+        return Hex.encodeHexString(digest(certID));
+    }
+
+    static byte[] createETag(byte[] response) {
+        return Arrays.copyOf(digest(response), ETAG_SIZE);
+    }
+
+    static byte[] digest(byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    Path getFile(String key) {
+        return dir.resolve(key.substring(0, 2)).resolve(key + SUFFIX);
+    }
+
+    /**
+     * Returns the response for a DER-encoded CertID, or null if the
+     * store does not have one.
+     */
+    public Entry get(byte[] certID) throws IOException {
+
+        Path file = getFile(createKey(certID));
+
+        byte[] data;
+        try {
+            data = Files.readAllBytes(file);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+
+        if (data.length < HEADER_SIZE || !Arrays.equals(data, 0, MAGIC.length, MAGIC, 0, MAGIC.length)) {
+            throw new IOException("Invalid OCSP response file: " + file);
+        }
+
+        long producedAt = buffer.getLong(4);
+        long thisUpdate = buffer.getLong(12);
+        long nextUpdate = buffer.getLong(20);
+        long version = buffer.getLong(28);
+
+        byte[] etag = new byte[ETAG_SIZE];
+        buffer.get(36, etag);
+
+        int length = buffer.getInt(52);
+
+        if (length < 0 || length != data.length - HEADER_SIZE) {
+            throw new IOException("Invalid OCSP response file: " + file);
+        }
+
+        return new Entry(
+                Arrays.copyOfRange(data, HEADER_SIZE, data.length),
+                new Date(producedAt),
+                new Date(thisUpdate),
+                nextUpdate < 0 ? null : new Date(nextUpdate),
+                version,
+                etag);
+    }
+
+    /**
+     * Stores the response for a DER-encoded CertID, replacing the
+     * existing one.
+     */
+    public void put(byte[] certID, Entry entry) throws IOException {
+
+        if (entry.response.length > MAX_RESPONSE_SIZE) {
+            throw new IOException("OCSP response too large: " + entry.response.length);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + entry.response.length);
+        buffer.put(MAGIC);
+        buffer.putLong(entry.producedAt.getTime());
+        buffer.putLong(entry.thisUpdate.getTime());
+        buffer.putLong(entry.nextUpdate == null ? -1 : entry.nextUpdate.getTime());
+        buffer.putLong(entry.version);
+        buffer.put(entry.etag);
+        buffer.putInt(entry.response.length);
+        buffer.put(entry.response);
+
+        Path file = getFile(createKey(certID));
+        Path shard = file.getParent();
+        Files.createDirectories(shard);
+
+        Path tmpFile = Files.createTempFile(shard, file.getFileName() + ".", ".tmp");
+
+        try {
+            Files.write(tmpFile, buffer.array());
+            Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        } finally {
+            Files.deleteIfExists(tmpFile);
+        }
+    }
+
+    /**
+     * Removes the response for a DER-encoded CertID.
+     */
+    public void remove(byte[] certID) throws IOException {
+        Files.deleteIfExists(getFile(createKey(certID)));
+    }
+
+    /**
+     * Removes responses that expired before the given time.
+     *
+     * @param time the time in milliseconds
+     * @param maxAge maximum age in milliseconds of responses without
+     *        next update time
+     * @return number of removed responses
+     */
+    public int removeExpired(long time, long maxAge) throws IOException {
+
+        if (!Files.isDirectory(dir)) {
+            return 0;
+        }
+
+        int count = 0;
+
+        try (DirectoryStream<Path> shards = Files.newDirectoryStream(dir)) {
+            for (Path shard : shards) {
+
+                if (!Files.isDirectory(shard)) {
+                    continue;
+                }
+
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(shard, "*" + SUFFIX)) {
+                    for (Path file : files) {
+                        if (isExpired(file, time, maxAge)) {
+                            Files.deleteIfExists(file);
+                            count++;
+                        }
+                    }
+                }
+            }
+        }
+
+        return count;
+    }
+
+    boolean isExpired(Path file, long time, long maxAge) {
+
+        // read the header only
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE);
+
+        try (SeekableByteChannel channel = Files.newByteChannel(file)) {
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // keep reading
+            }
+
+        } catch (NoSuchFileException e) {
+            return false;
+
+        } catch (IOException e) {
+            logger.warn("OCSPResponseStore: Unable to read " + file + ": " + e.getMessage(), e);
+            return true;
+        }
+
+        if (buffer.hasRemaining() || !Arrays.equals(buffer.array(), 0, MAGIC.length, MAGIC, 0, MAGIC.length)) {
+            return true;
+        }
+
+        long producedAt = buffer.getLong(4);
+        long nextUpdate = buffer.getLong(20);
+
+        long expiration = nextUpdate < 0 ? producedAt + maxAge : nextUpdate;
+        return expiration < time;
+    }
+}
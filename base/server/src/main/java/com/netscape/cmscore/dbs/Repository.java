@@ -194,6 +194,25 @@ public abstract class Repository {
         return mMinSerialNo;
     }
 
+    /**
+     * Returns the upper bound (exclusive) of the IDs generated by
+     * this repository, or null if not known. Records imported with
+     * other IDs may still exist above this limit.
+     */
+    public BigInteger getIDLimit() {
+
+        if (idGenerator == IDGenerator.RANDOM) {
+            return BigInteger.ONE.shiftLeft(idLength);
+        }
+
+        BigInteger limit = mMaxSerialNo;
+        if (mNextMaxSerialNo != null && (limit == null || mNextMaxSerialNo.compareTo(limit) > 0)) {
+            limit = mNextMaxSerialNo;
+        }
+
+        return limit == null ? null : limit.add(BigInteger.ONE);
+    }
+
     protected void setLastSerialNo(BigInteger lastSN) {
         mLastSerialNo = lastSN;
     }
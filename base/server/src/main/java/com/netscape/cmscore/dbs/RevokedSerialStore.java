@@ -0,0 +1,509 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.dbs;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.cert.CRLReason;
+import java.security.cert.X509CRLEntry;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+
+/**
+ * Read-only set of revoked serial numbers stored in a memory-mapped
+ * file outside of the Java heap.
+ *
+ * Format (version 1):
+ *
+ * <pre>
+ * magic        4 bytes  "RSS1"
+ * serial size  4 bytes
+ * count        8 bytes
+ * this update  8 bytes  milliseconds, -1 if not available
+ * next update  8 bytes  milliseconds, -1 if not available
+ * digest      32 bytes  SHA-256 digest of the source CRL, or zeros
+ * entries      sorted by serial number:
+ *   serial     serial size bytes, two's complement sign-extended
+ *   date       8 bytes  revocation date in milliseconds
+ *   reason     1 byte   CRL reason ordinal, -1 if not available
+ * </pre>
+ *
+ * The serial size is the size of the largest serial number, so all
+ * entries have the same size and are found with a binary search.
+ * An entry typically takes 29 bytes instead of several hundred bytes
+ * for a parsed CRL entry.
+ *
+ * The file is written once and replaced atomically, so a store can
+ * be mapped back after a restart instead of parsing the CRL again.
+ * Stores are thread-safe. The memory is unmapped once the store
+ * is no longer referenced.
+ */
+public class RevokedSerialStore {
+
+    public static final byte[] MAGIC = { 'R', 'S', 'S', '1' };
+
+    public static final int HEADER_SIZE = 64;
+    public static final int DIGEST_SIZE = 32;
+
+    // mapped buffers are limited to 2 GB
+    public static final long MAX_SIZE = Integer.MAX_VALUE;
+
+    static final CRLReason[] reasons = CRLReason.values();
+
+    /**
+     * Revocation status of a serial number.
+     */
+    public static class Entry {
+
+        BigInteger serialNumber;
+        Date revocationDate;
+        CRLReason reason;
+
+        public Entry(BigInteger serialNumber, Date revocationDate, CRLReason reason) {
+            this.serialNumber = serialNumber;
+            this.revocationDate = revocationDate;
+            this.reason = reason;
+        }
+
+        public BigInteger getSerialNumber() {
+            return serialNumber;
+        }
+
+        public Date getRevocationDate() {
+            return revocationDate;
+        }
+
+        public CRLReason getReason() {
+            return reason;
+        }
+    }
+
+    Path file;
+    ByteBuffer buffer;
+
+    int serialSize;
+    int entrySize;
+    long count;
+
+    Date thisUpdate;
+    Date nextUpdate;
+    byte[] digest;
+
+    RevokedSerialStore(Path file, ByteBuffer buffer) throws IOException {
+
+        this.file = file;
+        this.buffer = buffer;
+
+        if (buffer.capacity() < HEADER_SIZE) {
+            throw new IOException("Invalid revoked serial store: " + file);
+        }
+
+        byte[] magic = new byte[MAGIC.length];
+        buffer.get(0, magic);
+
+        if (!Arrays.equals(MAGIC, magic)) {
+            throw new IOException("Invalid revoked serial store: " + file);
+        }
+
+        serialSize = buffer.getInt(4);
+        entrySize = serialSize + 9;
+        count = buffer.getLong(8);
+
+        if (serialSize <= 0 || count < 0 || HEADER_SIZE + count * entrySize != buffer.capacity()) {
+            throw new IOException("Corrupted revoked serial store: " + file);
+        }
+
+        thisUpdate = toDate(buffer.getLong(16));
+        nextUpdate = toDate(buffer.getLong(24));
+
+        digest = new byte[DIGEST_SIZE];
+        buffer.get(32, digest);
+    }
+
+    /**
+     * Receives the entries of a CRL.
+     */
+    public interface EntryHandler {
+        void handle(BigInteger serialNumber, long revocationDate, int reason) throws IOException;
+    }
+
+    /**
+     * Provides the entries of a CRL. The entries may be requested
+     * more than once.
+     */
+    public interface EntrySource {
+        void forEach(EntryHandler handler) throws IOException;
+    }
+
+    /**
+     * Writes the entries of a CRL into a file and maps it. If the file
+     * is null the entries are written into a temporary file which is
+     * deleted once mapped.
+     *
+     * @param file the store file, replaced atomically if it exists
+     * @param thisUpdate the CRL this update time
+     * @param nextUpdate the CRL next update time, or null
+     * @param digest the SHA-256 digest of the CRL, or null
+     * @param entries the CRL entries, or null
+     */
+    public static RevokedSerialStore create(
+            Path file,
+            Date thisUpdate,
+            Date nextUpdate,
+            byte[] digest,
+            Collection<? extends X509CRLEntry> entries) throws IOException {
+
+        Collection<? extends X509CRLEntry> list = entries == null ? Collections.emptyList() : entries;
+
+        return create(file, thisUpdate, nextUpdate, digest, handler -> {
+            for (X509CRLEntry entry : list) {
+                CRLReason reason = entry.getRevocationReason();
+                handler.handle(
+                        entry.getSerialNumber(),
+                        entry.getRevocationDate().getTime(),
+                        reason == null ? -1 : reason.ordinal());
+            }
+        });
+    }
+
+    /**
+     * Writes the entries of a CRL into a file and maps it. The entries
+     * are requested twice, once to find the size of the store and once
+     * to write the entries, so they do not need to be kept in memory.
+     *
+     * @param file the store file, or null for a temporary store
+     * @param thisUpdate the CRL this update time
+     * @param nextUpdate the CRL next update time, or null
+     * @param digest the SHA-256 digest of the CRL, or null
+     * @param source the CRL entries with reason codes, or -1 if
+     *        the entry has no reason
+     */
+    public static RevokedSerialStore create(
+            Path file,
+            Date thisUpdate,
+            Date nextUpdate,
+            byte[] digest,
+            EntrySource source) throws IOException {
+
+        if (digest != null && digest.length != DIGEST_SIZE) {
+            throw new IllegalArgumentException("Invalid digest size: " + digest.length);
+        }
+
+        int[] serialSize = { 1 };
+        long[] count = { 0 };
+
+        source.forEach((serialNumber, revocationDate, reason) -> {
+            serialSize[0] = Math.max(serialSize[0], serialNumber.toByteArray().length);
+            count[0]++;
+        });
+
+        int entrySize = serialSize[0] + 9;
+        long size = HEADER_SIZE + count[0] * entrySize;
+
+        if (size > MAX_SIZE) {
+            throw new IOException("Too many revoked certificates: " + count[0]);
+        }
+
+        // unique temporary file so concurrent updates do not collide
+        Path tmpFile = file == null
+                ? Files.createTempFile("revoked-serials-", ".tmp")
+                : Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName() + ".", ".tmp");
+
+        MappedByteBuffer buffer;
+
+        try (FileChannel channel = FileChannel.open(
+                tmpFile,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+
+            MappedByteBuffer output = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer = output;
+
+            int[] position = { HEADER_SIZE };
+            source.forEach((serialNumber, revocationDate, reason) -> {
+                if (position[0] >= size) {
+                    throw new IOException("CRL entries changed while writing " + tmpFile);
+                }
+                putSerialNumber(output, position[0], serialSize[0], serialNumber);
+                output.putLong(position[0] + serialSize[0], revocationDate);
+                output.put(position[0] + serialSize[0] + 8, (byte) reason);
+                position[0] += entrySize;
+            });
+
+            if (position[0] != size) {
+                throw new IOException("CRL entries changed while writing " + tmpFile);
+            }
+
+            sort(buffer, serialSize[0], (int) count[0]);
+
+            // write the header last so incomplete files are rejected
+            buffer.put(0, MAGIC);
+            buffer.putInt(4, serialSize[0]);
+            buffer.putLong(8, count[0]);
+            buffer.putLong(16, thisUpdate == null ? -1 : thisUpdate.getTime());
+            buffer.putLong(24, nextUpdate == null ? -1 : nextUpdate.getTime());
+            buffer.put(32, digest == null ? new byte[DIGEST_SIZE] : digest);
+
+            buffer.force();
+
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmpFile);
+            throw e;
+        }
+
+        // the mapping remains valid after the file is moved or deleted
+        if (file == null) {
+            Files.delete(tmpFile);
+        } else {
+            Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        return new RevokedSerialStore(file, buffer.asReadOnlyBuffer());
+    }
+
+    /**
+     * Maps an existing store file.
+     */
+    public static RevokedSerialStore open(Path file) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+
+            if (channel.size() > MAX_SIZE) {
+                throw new IOException("Revoked serial store too large: " + file);
+            }
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new RevokedSerialStore(file, buffer);
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public long size() {
+        return count;
+    }
+
+    public Date getThisUpdate() {
+        return thisUpdate;
+    }
+
+    public Date getNextUpdate() {
+        return nextUpdate;
+    }
+
+    /**
+     * Returns the digest of the CRL the entries were read from,
+     * or null if not available.
+     */
+    public byte[] getDigest() {
+        return Arrays.equals(digest, new byte[DIGEST_SIZE]) ? null : digest.clone();
+    }
+
+    /**
+     * Returns true if the store was created from the given CRL.
+     */
+    public boolean matches(byte[] digest) {
+        return digest != null && Arrays.equals(this.digest, digest);
+    }
+
+    public boolean contains(BigInteger serialNumber) {
+        return find(serialNumber) >= 0;
+    }
+
+    /**
+     * Returns the revocation status of a serial number, or null
+     * if the serial number is not revoked.
+     */
+    public Entry get(BigInteger serialNumber) {
+
+        long index = find(serialNumber);
+        if (index < 0) {
+            return null;
+        }
+
+        return getEntry(index);
+    }
+
+    /**
+     * Returns the entry at the given index in serial number order.
+     */
+    public Entry getEntry(long index) {
+
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Invalid index: " + index);
+        }
+
+        int position = (int) (HEADER_SIZE + index * entrySize);
+
+        byte[] serial = new byte[serialSize];
+        buffer.get(position, serial);
+
+        long date = buffer.getLong(position + serialSize);
+        byte reason = buffer.get(position + serialSize + 8);
+
+        return new Entry(
+                new BigInteger(serial),
+                new Date(date),
+                reason < 0 || reason >= reasons.length ? null : reasons[reason]);
+    }
+
+    long find(BigInteger serialNumber) {
+
+        byte[] key = toBytes(serialNumber, serialSize);
+        if (key == null) {
+            // larger than any serial number in the store
+            return -1;
+        }
+
+        long low = 0;
+        long high = count - 1;
+
+        while (low <= high) {
+            long middle = (low + high) >>> 1;
+            int position = (int) (HEADER_SIZE + middle * entrySize);
+            int c = compare(buffer, position, key, serialSize);
+
+            if (c < 0) {
+                low = middle + 1;
+            } else if (c > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns the serial number in two's complement sign-extended
+     * to the given size, or null if it does not fit.
+     */
+    static byte[] toBytes(BigInteger serialNumber, int size) {
+
+        byte[] bytes = serialNumber.toByteArray();
+        if (bytes.length > size) {
+            return null;
+        }
+
+        byte[] result = new byte[size];
+        Arrays.fill(result, 0, size - bytes.length, serialNumber.signum() < 0 ? (byte) -1 : 0);
+        System.arraycopy(bytes, 0, result, size - bytes.length, bytes.length);
+
+        return result;
+    }
+
+    static void putSerialNumber(ByteBuffer buffer, int position, int size, BigInteger serialNumber) {
+        buffer.put(position, toBytes(serialNumber, size));
+    }
+
+    /**
+     * Compares a stored serial number with a key of the same size.
+     * The first byte is signed, so the order matches the numeric order.
+     */
+    static int compare(ByteBuffer buffer, int position, byte[] key, int size) {
+
+        int c = Byte.compare(buffer.get(position), key[0]);
+        if (c != 0) {
+            return c;
+        }
+
+        for (int i = 1; i < size; i++) {
+            c = Integer.compare(buffer.get(position + i) & 0xff, key[i] & 0xff);
+            if (c != 0) {
+                return c;
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * Sorts the entries in place with a heap sort, so no copy of
+     * the entries is needed on the heap.
+     */
+    static void sort(ByteBuffer buffer, int serialSize, int count) {
+
+        int entrySize = serialSize + 9;
+        byte[] key = new byte[serialSize];
+        byte[] tmp1 = new byte[entrySize];
+        byte[] tmp2 = new byte[entrySize];
+
+        for (int i = count / 2 - 1; i >= 0; i--) {
+            siftDown(buffer, serialSize, i, count, key, tmp1, tmp2);
+        }
+
+        for (int end = count - 1; end > 0; end--) {
+            swap(buffer, entrySize, 0, end, tmp1, tmp2);
+            siftDown(buffer, serialSize, 0, end, key, tmp1, tmp2);
+        }
+    }
+
+    static void siftDown(
+            ByteBuffer buffer,
+            int serialSize,
+            int root,
+            int count,
+            byte[] key,
+            byte[] tmp1,
+            byte[] tmp2) {
+
+        int entrySize = serialSize + 9;
+
+        while (true) {
+            int largest = root;
+            int left = 2 * root + 1;
+            int right = left + 1;
+
+            if (left < count && compareEntries(buffer, serialSize, left, largest, key) > 0) {
+                largest = left;
+            }
+
+            if (right < count && compareEntries(buffer, serialSize, right, largest, key) > 0) {
+                largest = right;
+            }
+
+            if (largest == root) {
+                return;
+            }
+
+            swap(buffer, entrySize, root, largest, tmp1, tmp2);
+            root = largest;
+        }
+    }
+
+    static int compareEntries(ByteBuffer buffer, int serialSize, int i, int j, byte[] key) {
+        int entrySize = serialSize + 9;
+        buffer.get(HEADER_SIZE + j * entrySize, key);
+        return compare(buffer, HEADER_SIZE + i * entrySize, key, serialSize);
+    }
+
+    static void swap(ByteBuffer buffer, int entrySize, int i, int j, byte[] tmp1, byte[] tmp2) {
+        int position1 = HEADER_SIZE + i * entrySize;
+        int position2 = HEADER_SIZE + j * entrySize;
+        buffer.get(position1, tmp1);
+        buffer.get(position2, tmp2);
+        buffer.put(position1, tmp2);
+        buffer.put(position2, tmp1);
+    }
+
+    static Date toDate(long time) {
+        return time < 0 ? null : new Date(time);
+    }
+}
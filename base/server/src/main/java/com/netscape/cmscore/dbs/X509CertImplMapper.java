@@ -308,6 +308,13 @@ public class X509CertImplMapper extends DBAttrMapper {
             }
             if (attr != null) {
                 byte der[] = attr.getByteValues().nextElement();
+
+                if (parent instanceof CertRecord) {
+                    // let the record decode the certificate on first access
+                    parent.set(name, der);
+                    return;
+                }
+
                 X509CertImpl impl = new X509CertImpl(der);
 
                 parent.set(name, impl);
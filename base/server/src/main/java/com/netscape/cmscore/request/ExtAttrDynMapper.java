@@ -17,9 +17,14 @@
 // --- END COPYRIGHT BLOCK ---
 package com.netscape.cmscore.request;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.netscape.certsrv.base.EBaseException;
 import com.netscape.certsrv.dbs.IDBObj;
@@ -59,6 +64,13 @@ public class ExtAttrDynMapper extends DBDynAttrMapper {
 
     protected final static Vector<String> mAttrs = new Vector<>();
 
+    // The set of ext data keys is small and mostly fixed, so the
+    // encoded and decoded keys are cached to avoid re-encoding them
+    // for every request read and update.
+    protected final static int MAX_CACHED_KEYS = 4096;
+    protected final static Map<String, String> encodedKeys = new ConcurrentHashMap<>();
+    protected final static Map<String, String> decodedKeys = new ConcurrentHashMap<>();
+
     static {
         mAttrs.add(Schema.LDAP_ATTR_EXT_ATTR);
     }
@@ -209,6 +221,36 @@ public class ExtAttrDynMapper extends DBDynAttrMapper {
         return output.toString();
     }
 
+    /**
+     * Returns the encoded key from the cache if available.
+     */
+    protected String getEncodedKey(String key) {
+        String encodedKey = encodedKeys.get(key);
+        if (encodedKey != null) {
+            return encodedKey;
+        }
+        encodedKey = encodeKey(key);
+        if (encodedKeys.size() < MAX_CACHED_KEYS) {
+            encodedKeys.put(key, encodedKey);
+        }
+        return encodedKey;
+    }
+
+    /**
+     * Returns the decoded key from the cache if available.
+     */
+    protected String getDecodedKey(String key) {
+        String decodedKey = decodedKeys.get(key);
+        if (decodedKey != null) {
+            return decodedKey;
+        }
+        decodedKey = decodeKey(key);
+        if (decodedKeys.size() < MAX_CACHED_KEYS) {
+            decodedKeys.put(key, decodedKey);
+        }
+        return decodedKey;
+    }
+
     protected boolean isAlphaNum(char in) {
         if (in >= 'a' && in <= 'z') {
             return true;
@@ -237,16 +279,18 @@ public class ExtAttrDynMapper extends DBDynAttrMapper {
         @SuppressWarnings("unchecked")
         Hashtable<String, Object> ht = (Hashtable<String, Object>) obj;
 
-        Enumeration<String> e = ht.keys();
-        while (e.hasMoreElements()) {
-            String key = e.nextElement();
+        // map the keys in a consistent order
+        List<String> keys = new ArrayList<>(ht.keySet());
+        Collections.sort(keys);
+
+        for (String key : keys) {
             Object value = ht.get(key);
 
             if (value instanceof String) {
                 String stringValue = ((String) value).trim();
                 if ("".equals(stringValue)) continue;
 
-                String attrName = extAttrPrefix + encodeKey(key);
+                String attrName = extAttrPrefix + getEncodedKey(key);
                 logger.debug("ExtAttrDynMapper: Mapping " + name + " to " + attrName);
                 attrs.add(new LDAPAttribute(attrName, stringValue));
 
@@ -260,7 +304,7 @@ public class ExtAttrDynMapper extends DBDynAttrMapper {
                     String innerValue = innerHash.get(innerKey).trim();
                     if ("".equals(innerValue)) continue;
 
-                    String attrName = extAttrPrefix + encodeKey(key) + ";" + encodeKey(innerKey);
+                    String attrName = extAttrPrefix + getEncodedKey(key) + ";" + getEncodedKey(innerKey);
                     logger.debug("ExtAttrDynMapper: Mapping " + name + " to " + attrName);
                     attrs.add(new LDAPAttribute(attrName, innerValue));
                 }
@@ -288,7 +332,7 @@ public class ExtAttrDynMapper extends DBDynAttrMapper {
                 continue;
             }
 
-            String keyName = decodeKey(baseName.substring(extAttrPrefix.length()));
+            String keyName = getDecodedKey(baseName.substring(extAttrPrefix.length()));
             String[] subTypes = attr.getSubtypes();
             String[] values = attr.getStringValueArray();
 
@@ -334,7 +378,7 @@ public class ExtAttrDynMapper extends DBDynAttrMapper {
                 ht.put(keyName, valueHashtable);
             }
 
-            valueHashtable.put(decodeKey(subTypes[0]), values[0]);
+            valueHashtable.put(getDecodedKey(subTypes[0]), values[0]);
         }
 
         parent.set(name, ht);
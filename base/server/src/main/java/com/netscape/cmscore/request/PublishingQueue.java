@@ -0,0 +1,563 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.request;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.netscape.certsrv.base.EBaseException;
+import com.netscape.certsrv.request.IRequestVirtualList;
+import com.netscape.certsrv.request.RequestId;
+import com.netscape.certsrv.request.RequestListener;
+
+/**
+ * The PublishingQueue runs the request listeners of completed
+ * requests on a bounded pool of publishing threads.
+ *
+ * Requests are queued by request ID so a request that is queued
+ * multiple times is only published once. Requests that publish to
+ * the same target (e.g. the same subject DN) are never processed
+ * concurrently; the queued requests for a target are processed
+ * together in queue order by a single thread. Requests that fail
+ * are retried with exponential backoff.
+ *
+ * A listener fails if it throws an exception or if it reports an
+ * LDAP publishing error in the ldapPublishOverAllStatus attribute of
+ * the request. A retry only runs the listeners that have not
+ * processed the request successfully, so for example notification
+ * emails are not sent again.
+ *
+ * The requests for a target are published one at a time rather
+ * than in a single LDAP operation. Each certificate goes through the
+ * publishing rules, mappers and publishers separately and may be
+ * published to different destinations. The publishers already reuse
+ * pooled LDAP connections.
+ *
+ * If the queue is full, the requests are not queued. Instead, the
+ * queue will search the request repository for the completed
+ * requests once the queue has drained.
+ *
+ * The publishing status stored in the request repository is the ID
+ * of the oldest request that has not been published, so requests
+ * that are still queued, being retried, or that could not be
+ * published at all will be published again after a restart.
+ */
+public class PublishingQueue {
+
+    public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(PublishingQueue.class);
+
+    // overall LDAP publishing result set by the publishing listeners
+    public static final String PUBLISH_STATUS = "ldapPublishOverAllStatus";
+
+    static class Item {
+
+        String requestId;
+        BigInteger id;
+        String key;
+        long queueTime;
+        int attempts;
+        long nextAttempt;
+
+        // listeners that have processed the request successfully
+        Set<RequestListener> completedListeners = new HashSet<>();
+
+        Item(String requestId, String key) {
+            this.requestId = requestId;
+            this.id = new RequestId(requestId).toBigInteger();
+            this.key = key;
+            this.queueTime = System.currentTimeMillis();
+        }
+    }
+
+    RequestNotifier notifier;
+
+    int maxSize;
+    int pageSize;
+    int maxThreads;
+    int priority;
+    int maxRetries;
+    long retryDelay;
+
+    // queued requests in queue order, guarded by this
+    Map<String, Item> items = new LinkedHashMap<>();
+
+    // targets being published, guarded by this
+    Set<String> activeKeys = new HashSet<>();
+    int activeItems;
+
+    // IDs of the requests that are queued, being published, or that
+    // could not be published, guarded by this
+    TreeSet<BigInteger> unpublished = new TreeSet<>();
+
+    // ID of the first completed request not in the queue,
+    // or null if all completed requests have been queued
+    String searchFrom;
+
+    ExecutorService executorService;
+    boolean shutdown;
+
+    AtomicLong published = new AtomicLong();
+    AtomicLong failed = new AtomicLong();
+    AtomicLong retried = new AtomicLong();
+    AtomicLong deduplicated = new AtomicLong();
+    AtomicLong coalesced = new AtomicLong();
+    AtomicLong overflowed = new AtomicLong();
+
+    /**
+     * @param notifier request notifier providing the listeners
+     * @param maxSize maximum number of queued requests
+     * @param pageSize number of requests retrieved per repository search
+     * @param maxThreads number of publishing threads
+     * @param priority publishing thread priority
+     * @param maxRetries maximum number of retries for a failed request
+     * @param retryDelay initial retry delay in milliseconds
+     */
+    public PublishingQueue(
+            RequestNotifier notifier,
+            int maxSize,
+            int pageSize,
+            int maxThreads,
+            int priority,
+            int maxRetries,
+            long retryDelay) {
+
+        this.notifier = notifier;
+        this.maxSize = Math.max(1, maxSize);
+        this.pageSize = Math.max(1, pageSize);
+        this.maxThreads = Math.max(1, maxThreads);
+        this.priority = priority;
+        this.maxRetries = Math.max(0, maxRetries);
+        this.retryDelay = Math.max(1, retryDelay);
+    }
+
+    public synchronized void start() {
+
+        if (executorService != null) {
+            return;
+        }
+
+        AtomicInteger counter = new AtomicInteger();
+        executorService = Executors.newFixedThreadPool(maxThreads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "PublishingQueue-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                if (priority > 0) {
+                    thread.setPriority(priority);
+                }
+                return thread;
+            }
+        });
+
+        for (int i = 0; i < maxThreads; i++) {
+            executorService.execute(this::run);
+        }
+    }
+
+    public void shutdown() {
+
+        synchronized (this) {
+            shutdown = true;
+            notifyAll();
+        }
+
+        if (executorService != null) {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * Adds a completed request to the queue.
+     *
+     * @param requestId request ID
+     * @param key publishing target
+     */
+    public synchronized void add(String requestId, String key) {
+
+        if (items.containsKey(requestId)) {
+            logger.debug("PublishingQueue: Request " + requestId + " already queued");
+            deduplicated.incrementAndGet();
+            return;
+        }
+
+        if (searchFrom != null) {
+            // requests will be found by the next repository search
+            overflowed.incrementAndGet();
+            return;
+        }
+
+        if (items.size() >= maxSize) {
+            logger.info("PublishingQueue: Queue is full, request " + requestId + " will be published later");
+            overflowed.incrementAndGet();
+            searchFrom = requestId;
+            return;
+        }
+
+        Item item = new Item(requestId, key);
+        items.put(requestId, item);
+        unpublished.add(item.id);
+        notifyAll();
+    }
+
+    /**
+     * Publishes the completed requests starting from the given request
+     * (e.g. after a restart).
+     *
+     * @param requestId request ID
+     */
+    public synchronized void recover(String requestId) {
+        if (searchFrom == null) {
+            searchFrom = requestId;
+        }
+        notifyAll();
+    }
+
+    /**
+     * Returns the number of requests being published or waiting
+     * in the queue.
+     */
+    public synchronized int size() {
+        return items.size() + activeItems;
+    }
+
+    /**
+     * Returns the time in milliseconds the oldest queued request
+     * has been waiting, or 0 if the queue is empty.
+     */
+    public synchronized long getLag() {
+
+        if (items.isEmpty()) {
+            return 0;
+        }
+
+        // retried requests keep their original queue time
+        long oldest = Long.MAX_VALUE;
+        for (Item item : items.values()) {
+            oldest = Math.min(oldest, item.queueTime);
+        }
+        return System.currentTimeMillis() - oldest;
+    }
+
+    public synchronized boolean hasPendingSearch() {
+        return searchFrom != null;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int getMaxThreads() {
+        return maxThreads;
+    }
+
+    public long getPublished() {
+        return published.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public long getRetried() {
+        return retried.get();
+    }
+
+    public long getDeduplicated() {
+        return deduplicated.get();
+    }
+
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    public long getOverflowed() {
+        return overflowed.get();
+    }
+
+    void run() {
+        while (true) {
+            List<Item> group;
+            try {
+                group = take();
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            if (group == null) {
+                return;
+            }
+
+            try {
+                for (Item item : group) {
+                    publish(item);
+                }
+            } finally {
+                release(group);
+            }
+        }
+    }
+
+    /**
+     * Takes the next ready request and the other ready requests
+     * for the same target. Returns null if the queue is shut down.
+     */
+    synchronized List<Item> take() throws InterruptedException {
+
+        while (!shutdown) {
+
+            if (items.isEmpty() && searchFrom != null && !search()) {
+                logger.warn("PublishingQueue: Retrying in 1 minute");
+                wait(TimeUnit.MINUTES.toMillis(1));
+                continue;
+            }
+
+            long now = System.currentTimeMillis();
+            long wait = 0;
+            List<Item> group = null;
+
+            for (Iterator<Item> i = items.values().iterator(); i.hasNext(); ) {
+                Item item = i.next();
+
+                if (group != null) {
+                    if (item.key.equals(group.get(0).key) && item.nextAttempt <= now) {
+                        i.remove();
+                        group.add(item);
+                        coalesced.incrementAndGet();
+                    }
+                    continue;
+                }
+
+                if (activeKeys.contains(item.key)) {
+                    continue;
+                }
+
+                if (item.nextAttempt > now) {
+                    long delay = item.nextAttempt - now;
+                    wait = wait == 0 ? delay : Math.min(wait, delay);
+                    continue;
+                }
+
+                i.remove();
+                group = new ArrayList<>();
+                group.add(item);
+            }
+
+            if (group != null) {
+                activeKeys.add(group.get(0).key);
+                activeItems += group.size();
+                return group;
+            }
+
+            wait(wait);
+        }
+
+        return null;
+    }
+
+    synchronized void release(List<Item> group) {
+
+        activeKeys.remove(group.get(0).key);
+        activeItems -= group.size();
+
+        if (unpublished.isEmpty() && searchFrom == null) {
+            RequestRepository requestRepository = notifier.getCMSEngine().getRequestRepository();
+            if (requestRepository != null) {
+                requestRepository.setPublishingStatus("-1");
+            }
+        }
+
+        notifyAll();
+    }
+
+    /**
+     * Searches the request repository for completed requests
+     * that have not been queued.
+     *
+     * @return false if the search failed
+     */
+    synchronized boolean search() {
+
+        RequestRepository requestRepository = notifier.getCMSEngine().getRequestRepository();
+        if (requestRepository == null) {
+            logger.warn("PublishingQueue: Unable to access request repository");
+            return false;
+        }
+
+        logger.info("PublishingQueue: Searching for completed requests from " + searchFrom);
+
+        IRequestVirtualList list;
+        try {
+            list = requestRepository.getPagedRequestsByFilter(
+                    new RequestId(searchFrom),
+                    false,
+                    "(requeststate=complete)",
+                    pageSize + 1,
+                    "requestId");
+
+        } catch (EBaseException e) {
+            logger.warn("PublishingQueue: Unable to search for completed requests: " + e.getMessage(), e);
+            return false;
+        }
+
+        int size = list.getSize() - list.getCurrentIndex();
+        String next = null;
+
+        for (int i = 0; i < size; i++) {
+
+            Request r = null;
+            try {
+                r = list.getElementAt(i);
+            } catch (Exception e) {
+                // handled below
+            }
+
+            if (r == null) {
+                continue;
+            }
+
+            if (i == pageSize) {
+                // more requests remaining
+                next = r.getRequestId().toString();
+                break;
+            }
+
+            if (!notifier.isPublishable(r)) {
+                continue;
+            }
+
+            String requestId = r.getRequestId().toString();
+            if (!items.containsKey(requestId)) {
+                Item item = new Item(requestId, notifier.getPublishingKey(r));
+                items.put(requestId, item);
+                unpublished.add(item.id);
+            }
+        }
+
+        searchFrom = next;
+        logger.info("PublishingQueue: - queued requests: " + items.size());
+
+        return true;
+    }
+
+    void publish(Item item) {
+
+        RequestRepository requestRepository = notifier.getCMSEngine().getRequestRepository();
+
+        try {
+            Request r = requestRepository.readRequest(new RequestId(item.requestId));
+            if (r == null) {
+                throw new EBaseException("Request " + item.requestId + " not found");
+            }
+
+            accept(item, r, Collections.list(notifier.getListeners()));
+
+            published.incrementAndGet();
+            String status = completed(item);
+
+            if (status != null) {
+                notifier.updatePublishingStatus(status);
+            }
+
+        } catch (Exception e) {
+            retry(item, e);
+        }
+    }
+
+    /**
+     * Runs the listeners that have not processed the request yet.
+     * A listener that fails will run again when the request is
+     * retried.
+     */
+    void accept(Item item, Request r, List<RequestListener> listeners) throws EBaseException {
+
+        for (RequestListener l : listeners) {
+
+            if (item.completedListeners.contains(l)) {
+                continue;
+            }
+
+            String name = l.getClass().getSimpleName();
+            logger.info("PublishingQueue: Processing request " + r.getRequestId().toHexString() + " with " + name);
+
+            r.deleteExtData(PUBLISH_STATUS);
+            l.accept(r);
+
+            // the publishing listeners log the LDAP errors without throwing
+            if (Request.RES_ERROR.equals(r.getExtDataInInteger(PUBLISH_STATUS))) {
+                throw new EBaseException("Unable to publish request " + item.requestId + " with " + name);
+            }
+
+            item.completedListeners.add(l);
+        }
+    }
+
+    /**
+     * Removes a published request from the unpublished requests.
+     *
+     * @return the new publishing status, or null if there are
+     * no more requests to publish
+     */
+    synchronized String completed(Item item) {
+        unpublished.remove(item.id);
+        return getPublishingStatus();
+    }
+
+    /**
+     * Returns the ID of the oldest request that has not been
+     * published, or null if all requests have been published.
+     */
+    synchronized String getPublishingStatus() {
+
+        BigInteger status = unpublished.isEmpty() ? null : unpublished.first();
+
+        if (searchFrom != null) {
+            BigInteger id = new RequestId(searchFrom).toBigInteger();
+            if (status == null || id.compareTo(status) < 0) {
+                status = id;
+            }
+        }
+
+        return status == null ? null : status.toString();
+    }
+
+    synchronized void retry(Item item, Exception e) {
+
+        item.attempts++;
+
+        if (item.attempts > maxRetries) {
+            // the request stays unpublished so the publishing status
+            // will not move past it and it will be published again
+            // after a restart
+            logger.error("PublishingQueue: Unable to publish request " + item.requestId + ": " + e.getMessage(), e);
+            failed.incrementAndGet();
+            return;
+        }
+
+        long delay = retryDelay << Math.min(item.attempts - 1, 16);
+        logger.warn("PublishingQueue: Unable to publish request " + item.requestId
+                + ", retrying in " + TimeUnit.MILLISECONDS.toSeconds(delay) + " seconds: " + e.getMessage(), e);
+
+        item.nextAttempt = System.currentTimeMillis() + delay;
+        retried.incrementAndGet();
+
+        // retries are queued regardless of the queue size
+        items.putIfAbsent(item.requestId, item);
+    }
+}
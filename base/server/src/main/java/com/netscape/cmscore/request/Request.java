@@ -30,8 +30,10 @@ import java.util.Enumeration;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.dogtagpki.server.authentication.AuthToken;
 import org.mozilla.jss.netscape.security.util.DerInputStream;
@@ -371,6 +373,23 @@ public class Request {
     protected String realm;
     protected ExtDataHashtable<Object> mExtData = new ExtDataHashtable<>();
 
+    // Decoded certificates are kept together with the encoded ext data
+    // values they were decoded from so that they are only decoded once.
+    // Entries become stale (and are ignored) as soon as the ext data
+    // value is replaced since the encoded values are compared by identity.
+    protected Map<String, DecodedExtData> mDecodedExtData = new ConcurrentHashMap<>();
+
+    static class DecodedExtData {
+
+        String[] encoded;
+        Object decoded;
+
+        DecodedExtData(String[] encoded, Object decoded) {
+            this.encoded = encoded;
+            this.decoded = decoded;
+        }
+    }
+
     Date mCreationTime = new Date();
     Date mModificationTime = new Date();
 
@@ -572,6 +591,7 @@ public class Request {
 
     public void deleteExtData(String type) {
         mExtData.remove(type);
+        mDecodedExtData.remove(type.toLowerCase());
     }
 
     public boolean setExtData(String key, String subkey, String value) {
@@ -721,24 +741,37 @@ public class Request {
         if (data == null) {
             return false;
         }
+        String value;
         try {
-            return setExtData(key, data.getEncoded());
+            value = Utils.base64encode(data.getEncoded(), true);
         } catch (CertificateEncodingException e) {
             return false;
         }
+        if (!setExtData(key, value)) {
+            return false;
+        }
+        setDecodedExtData(key, new String[] { value }, data);
+        return true;
     }
 
     public X509CertImpl getExtDataInCert(String key) {
-        byte[] data = getExtDataInByteArray(key);
-        if (data != null) {
-            try {
-                return new X509CertImpl(data);
-            } catch (CertificateException e) {
-                logger.warn("Request: getExtDataInCert(): " + e.getMessage(), e);
-                return null;
-            }
+        String value = getExtDataInString(key);
+        if (value == null) {
+            return null;
+        }
+        String[] encoded = new String[] { value };
+        Object decoded = getDecodedExtData(key, encoded);
+        if (decoded instanceof X509CertImpl cert) {
+            return cert;
+        }
+        try {
+            X509CertImpl cert = new X509CertImpl(Utils.base64decode(value));
+            setDecodedExtData(key, encoded, cert);
+            return cert;
+        } catch (CertificateException e) {
+            logger.warn("Request: getExtDataInCert(): " + e.getMessage(), e);
+            return null;
         }
-        return null;
     }
 
     public boolean setExtData(String key, X509CertImpl[] data) {
@@ -753,7 +786,11 @@ public class Request {
                 return false;
             }
         }
-        return setExtData(key, stringArray);
+        if (!setExtData(key, stringArray)) {
+            return false;
+        }
+        setDecodedExtData(key, stringArray, data.clone());
+        return true;
     }
 
     public X509CertImpl[] getExtDataInCertArray(String key) {
@@ -761,6 +798,10 @@ public class Request {
         if (stringArray == null) {
             return null;
         }
+        Object decoded = getDecodedExtData(key, stringArray);
+        if (decoded instanceof X509CertImpl[] certs) {
+            return certs.clone();
+        }
         X509CertImpl[] certArray = new X509CertImpl[stringArray.length];
         for (int index = 0; index < stringArray.length; index++) {
             try {
@@ -770,6 +811,7 @@ public class Request {
                 return null;
             }
         }
+        setDecodedExtData(key, stringArray, certArray.clone());
         return certArray;
     }
 
@@ -841,7 +883,11 @@ public class Request {
                 return false;
             }
         }
-        return setExtData(key, stringArray);
+        if (!setExtData(key, stringArray)) {
+            return false;
+        }
+        setDecodedExtData(key, stringArray, data.clone());
+        return true;
     }
 
     public RevokedCertImpl[] getExtDataInRevokedCertArray(String key) {
@@ -849,6 +895,10 @@ public class Request {
         if (stringArray == null) {
             return null;
         }
+        Object decoded = getDecodedExtData(key, stringArray);
+        if (decoded instanceof RevokedCertImpl[] certs) {
+            return certs.clone();
+        }
         RevokedCertImpl[] certArray = new RevokedCertImpl[stringArray.length];
         for (int index = 0; index < stringArray.length; index++) {
             try {
@@ -859,9 +909,31 @@ public class Request {
                 return null;
             }
         }
+        setDecodedExtData(key, stringArray, certArray.clone());
         return certArray;
     }
 
+    /**
+     * Returns the value previously decoded from the given encoded
+     * ext data values, or null if the values have changed since.
+     */
+    Object getDecodedExtData(String key, String[] encoded) {
+        DecodedExtData data = mDecodedExtData.get(key.toLowerCase());
+        if (data == null || data.encoded.length != encoded.length) {
+            return null;
+        }
+        for (int index = 0; index < encoded.length; index++) {
+            if (data.encoded[index] != encoded[index]) {
+                return null;
+            }
+        }
+        return data.decoded;
+    }
+
+    void setDecodedExtData(String key, String[] encoded, Object decoded) {
+        mDecodedExtData.put(key.toLowerCase(), new DecodedExtData(encoded, decoded));
+    }
+
     public boolean setExtData(String key, Vector<?> stringVector) {
         String[] stringArray;
         if (stringVector == null) {
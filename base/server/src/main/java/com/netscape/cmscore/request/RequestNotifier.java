@@ -20,11 +20,9 @@ package com.netscape.cmscore.request;
 import java.math.BigInteger;
 import java.util.Enumeration;
 import java.util.Hashtable;
-import java.util.Vector;
 
-import com.netscape.certsrv.base.EBaseException;
-import com.netscape.certsrv.request.IRequestVirtualList;
-import com.netscape.certsrv.request.RequestId;
+import org.mozilla.jss.netscape.security.x509.X509CertImpl;
+
 import com.netscape.certsrv.request.RequestListener;
 import com.netscape.cmscore.apps.CMSEngine;
 
@@ -41,11 +39,12 @@ public class RequestNotifier {
     protected CMSEngine engine;
 
     private Hashtable<String, RequestListener> mListeners = new Hashtable<>();
-    private Vector<Thread> mNotifierThreads = new Vector<>();
-    private Vector<String> mRequests = new Vector<>();
+    private PublishingQueue mPublishingQueue;
     private int mMaxRequests = 100;
-    private boolean mSearchForRequests = false;
     private int mMaxThreads = 1;
+    private int mMaxQueueSize = 10000;
+    private int mMaxRetries = 5;
+    private int mRetryDelay = 1;
 
     private boolean mIsPublishingQueueEnabled = false;
     private int mPublishingQueuePriority = 0;
@@ -88,6 +87,11 @@ public class RequestNotifier {
         mMaxRequests = publishingQueuePageSize;
         mSavePublishingStatus = savePublishingStatus;
 
+        if (mPublishingQueue != null) {
+            mPublishingQueue.shutdown();
+            mPublishingQueue = null;
+        }
+
         // Publishing Queue Priority Levels:  2 - maximum, 1 - higher, 0 - normal, -1 - lower, -2 - minimum
         if (publishingQueuePriorityLevel > 1) {
             mPublishingQueuePriority = Thread.MAX_PRIORITY;
@@ -101,6 +105,18 @@ public class RequestNotifier {
             mPublishingQueuePriority = Thread.currentThread().getPriority();
         }
 
+        if (mIsPublishingQueueEnabled) {
+            mPublishingQueue = new PublishingQueue(
+                    this,
+                    mMaxQueueSize,
+                    mMaxRequests,
+                    mMaxThreads,
+                    mPublishingQueuePriority,
+                    mMaxRetries,
+                    mRetryDelay * 1000L);
+            mPublishingQueue.start();
+        }
+
         RequestRepository requestRepository = engine.getRequestRepository();
 
         if (mIsPublishingQueueEnabled && mSavePublishingStatus > 0 && requestRepository != null) {
@@ -117,6 +133,32 @@ public class RequestNotifier {
 
     }
 
+    /**
+     * Sets publishing queue limits. Must be called before
+     * setPublishingQueue().
+     *
+     * @param maxQueueSize maximum number of requests kept in the publishing queue
+     * @param maxRetries maximum number of retries for a failed request
+     * @param retryDelay initial retry delay in seconds
+     */
+    public void setPublishingQueueLimits(int maxQueueSize, int maxRetries, int retryDelay) {
+        logger.debug("setPublishingQueueLimits:  Maximum Queue Size: " + maxQueueSize +
+                  "  Maximum Retries: " + maxRetries +
+                  "  Retry Delay: " + retryDelay);
+        mMaxQueueSize = maxQueueSize;
+        mMaxRetries = maxRetries;
+        mRetryDelay = retryDelay;
+    }
+
+    /**
+     * Stops the publishing queue.
+     */
+    public void shutdown() {
+        if (mPublishingQueue != null) {
+            mPublishingQueue.shutdown();
+        }
+    }
+
     /**
      * Registers a request listener.
      *
@@ -211,105 +253,61 @@ public class RequestNotifier {
     }
 
     /**
-     * Gets request from publishing queue.
+     * Checks whether a completed request needs to be published.
      *
-     * @return request
+     * @param r request
+     * @return true if the request needs to be published
      */
-    public synchronized Request getRequest() {
-        Request r = null;
-        String id = null;
-
-        logger.debug("getRequest  mRequests=" + mRequests.size() + "  mSearchForRequests=" + mSearchForRequests);
-        if (mSearchForRequests && mRequests.size() == 1) {
-
-            id = mRequests.elementAt(0);
-            RequestRepository requestRepository = engine.getRequestRepository();
-
-            if (id != null && requestRepository != null) {
-                logger.debug("getRequest  request id=" + id);
-
-                IRequestVirtualList list;
-                try {
-                    list = requestRepository.getPagedRequestsByFilter(
-                            new RequestId(id),
-                            false,
-                            "(requeststate=complete)",
-                            mMaxRequests,
-                            "requestId");
-
-                } catch (EBaseException e) {
-                    throw new RuntimeException(e);
-                }
-
-                int s = list.getSize() - list.getCurrentIndex();
-                logger.debug("getRequest  list size: " + s);
-                for (int i = 0; i < s; i++) {
-                    r = null;
-                    try {
-                        r = list.getElementAt(i);
-                    } catch (Exception e) {
-                        // handled below
-                    }
-                    if (r == null) {
-                        continue;
-                    }
-                    String requestType = r.getRequestType();
-                    if (requestType == null) {
-                        continue;
-                    }
-                    if (!(requestType.equals(Request.ENROLLMENT_REQUEST) ||
-                            requestType.equals(Request.RENEWAL_REQUEST) ||
-                            requestType.equals(Request.REVOCATION_REQUEST) ||
-                            requestType.equals(Request.CMCREVOKE_REQUEST) ||
-                            requestType.equals(Request.UNREVOCATION_REQUEST))) {
-                        continue;
-                    }
-                    if (i == 0 && id.equals(r.getRequestId().toString())) {
-                        if (s == 1) {
-                            break;
-                        }
-                        continue;
-                    }
-                    if (mRequests.size() < mMaxRequests) {
-                        mRequests.addElement(r.getRequestId().toString());
-                        logger.debug("getRequest  added "
-                                + r.getRequestType() + " request " + r.getRequestId().toString() +
-                                  " to mRequests: " + mRequests.size() + " (" + mMaxRequests + ")");
-                    } else {
-                        break;
-                    }
-                }
-                logger.debug("getRequest  done with adding requests to mRequests: " + mRequests.size());
-            } else {
-                logger.warn("getRequest  has no access to the request queue");
-            }
+    public boolean isPublishable(Request r) {
+        String requestType = r.getRequestType();
+        if (requestType == null) {
+            return false;
         }
-        if (mRequests.size() > 0) {
-            id = mRequests.elementAt(0);
-            if (id != null) {
-                logger.debug("getRequest  getting request: " + id);
-                RequestRepository requestRepository = engine.getRequestRepository();
-
-                if (requestRepository != null) {
-                    try {
-                        r = requestRepository.readRequest(new RequestId(id));
-                        mRequests.remove(0);
-                        logger.debug("getRequest  request " + id + ((r != null) ? " found" : " not found"));
-                        //updatePublishingStatus(id);
-                    } catch (EBaseException e) {
-                        logger.warn("getRequest  Exception: " + e.getMessage(), e);
-                    }
-                } else {
-                    logger.warn("getRequest  has no access to the request queue");
-                }
+        return requestType.equals(Request.ENROLLMENT_REQUEST) ||
+                requestType.equals(Request.RENEWAL_REQUEST) ||
+                requestType.equals(Request.REVOCATION_REQUEST) ||
+                requestType.equals(Request.CMCREVOKE_REQUEST) ||
+                requestType.equals(Request.UNREVOCATION_REQUEST);
+    }
+
+    /**
+     * Gets the publishing target of a request. Requests with the
+     * same target are published sequentially. By default the target
+     * is the subject DN of the issued or revoked certificate.
+     *
+     * @param r request
+     * @return publishing target
+     */
+    public String getPublishingKey(Request r) {
+
+        // profile enrollments store a single issued cert
+        X509CertImpl cert = r.getExtDataInCert(Request.REQUEST_ISSUED_CERT);
+
+        if (cert == null) {
+            X509CertImpl[] certs = r.getExtDataInCertArray(Request.ISSUED_CERTS);
+            if (certs == null || certs.length == 0) {
+                certs = r.getExtDataInCertArray(Request.OLD_CERTS);
             }
-            if (mRequests.size() == 0) {
-                mSearchForRequests = false;
+
+            if (certs != null && certs.length > 0) {
+                cert = certs[0];
             }
         }
-        logger.debug("getRequest  mRequests=" + mRequests.size() + "  mSearchForRequests=" + mSearchForRequests + " done");
 
-        return r;
+        if (cert != null) {
+            return cert.getSubjectName().toString().toLowerCase();
+        }
+
+        return r.getRequestId().toString();
+    }
+
+    /**
+     * Gets publishing queue.
+     *
+     * @return publishing queue or null if the publishing queue is disabled
+     */
+    public PublishingQueue getPublishingQueue() {
+        return mPublishingQueue;
     }
 
     /**
@@ -318,34 +316,25 @@ public class RequestNotifier {
      * @return number of requests in publishing queue
      */
     public int getNumberOfRequests() {
-        return mRequests.size();
+        return mPublishingQueue == null ? 0 : mPublishingQueue.size();
     }
 
     /**
-     * Checks if publishing queue is enabled.
+     * Gets the time the oldest request has been waiting in publishing queue.
      *
-     * @return true if publishing queue is enabled, false otherwise
+     * @return publishing lag in milliseconds
      */
-    public boolean isPublishingQueueEnabled() {
-        return mIsPublishingQueueEnabled;
+    public long getPublishingLag() {
+        return mPublishingQueue == null ? 0 : mPublishingQueue.getLag();
     }
 
     /**
-     * Removes a notifier thread from the pool of publishing queue threads.
+     * Checks if publishing queue is enabled.
      *
-     * @param notifierThread Thread
+     * @return true if publishing queue is enabled, false otherwise
      */
-    public void removeNotifierThread(Thread notifierThread) {
-        if (mNotifierThreads.size() > 0) {
-            mNotifierThreads.remove(notifierThread);
-            if (mNotifierThreads.size() == 0) {
-                RequestRepository requestRepository = engine.getRequestRepository();
-                if (requestRepository != null) {
-                    requestRepository.setPublishingStatus("-1");
-                }
-            }
-        }
-        logger.debug("Number of publishing threads: " + mNotifierThreads.size());
+    public boolean isPublishingQueueEnabled() {
+        return mIsPublishingQueueEnabled;
     }
 
     /**
@@ -386,81 +375,21 @@ public class RequestNotifier {
         }
     }
 
-    /**
-     * Checks for available publishing connections
-     *
-     * @return true if there are available publishing connections, false otherwise
-     */
-    public boolean checkAvailablePublishingConnections() {
-        return false;
-    }
-
-    /**
-     * Checks if more publishing threads can be added.
-     *
-     * @return true if more publishing threads can be added, false otherwise
-     */
-    private boolean morePublishingThreads() {
-        boolean moreThreads = false;
-
-        if (mNotifierThreads.size() == 0) {
-            moreThreads = true;
-        } else if (mNotifierThreads.size() < mMaxThreads) {
-            logger.debug("morePublishingThreads  (" + mRequests.size() + ">" +
-                      ((mMaxRequests * mNotifierThreads.size()) / mMaxThreads) +
-                      " " + "(" + mMaxRequests + "*" + mNotifierThreads.size() + "):" + mMaxThreads);
-            // gradually add new publishing threads
-            if (mRequests.size() > ((mMaxRequests * mNotifierThreads.size()) / mMaxThreads)) {
-                // check for available publishing connections
-                if (checkAvailablePublishingConnections()) {
-                    moreThreads = true;
-                }
-            }
-        }
-        logger.debug("morePublishingThreads  moreThreads: " + moreThreads);
-
-        return moreThreads;
-    }
-
     /**
      * Notifies all registered listeners about request.
      *
      * @param r request
      */
-    public synchronized void addToNotify(Request r) {
+    public void addToNotify(Request r) {
 
         logger.info("RequestNotifier: Notifying all listeners for request " + r.getRequestId().toHexString());
 
-        if (!mSearchForRequests) {
-
-            logger.info("RequestNotifier: - max requests: " + mMaxRequests);
-            logger.info("RequestNotifier: - buffer size: " + mRequests.size());
-
-            if (mRequests.size() < mMaxRequests) {
-                logger.info("RequestNotifier: Extending buffer");
-                mRequests.addElement(r.getRequestId().toString());
-
-                if (morePublishingThreads()) {
-                    try {
-                        Thread notifierThread = new Thread(new RunListeners(this), "RequestNotifier-addToNotify");
-                        if (notifierThread != null) {
-                            mNotifierThreads.addElement(notifierThread);
-                            logger.info("RequestNotifier: - publishing threads: " + mNotifierThreads.size());
-                            if (mPublishingQueuePriority > 0) {
-                                notifierThread.setPriority(mPublishingQueuePriority);
-                            }
-                            notifierThread.start();
-                        }
-
-                    } catch (Throwable e) {
-                        logger.warn("Unable to notify listeners: " + e.getMessage(), e);
-                    }
-                }
-
-            } else {
-                mSearchForRequests = true;
-            }
+        if (mPublishingQueue == null) {
+            logger.warn("RequestNotifier: Publishing queue is not started");
+            return;
         }
+
+        mPublishingQueue.add(r.getRequestId().toString(), getPublishingKey(r));
     }
 
     /**
@@ -471,33 +400,12 @@ public class RequestNotifier {
     public void recoverPublishingQueue(String id) {
 
         logger.info("RequestNotifier: Recovering publishing queue for request " + id);
-        logger.info("RequestNotifier: - requests: " + mRequests.size());
-        logger.info("RequestNotifier: - max requests: " + mMaxRequests);
 
-        if (mRequests.size() == 0) {
-            logger.info("RequestNotifier: Extending buffer");
-            mRequests.addElement(id);
-
-            if (morePublishingThreads()) {
-                synchronized (this) {
-                    mSearchForRequests = true;
-                }
-
-                try {
-                    Thread notifierThread = new Thread(new RunListeners(this), "RequestNotifier-recoverPublishingQueue");
-                    if (notifierThread != null) {
-                        mNotifierThreads.addElement(notifierThread);
-                        logger.info("RequestNotifier: - publishing threads: " + mNotifierThreads.size());
-                        if (mPublishingQueuePriority > 0) {
-                            notifierThread.setPriority(mPublishingQueuePriority);
-                        }
-                        notifierThread.start();
-                    }
-
-                } catch (Throwable e) {
-                    logger.warn("Unable to recover publishing queue: " + e.getMessage(), e);
-                }
-            }
+        if (mPublishingQueue == null) {
+            logger.warn("RequestNotifier: Publishing queue is not started");
+            return;
         }
+
+        mPublishingQueue.recover(id);
     }
 }
@@ -410,6 +410,26 @@ public class RequestQueue {
         }
     }
 
+    /**
+     * Marks as pending after the request has been deferred for
+     * agent approval.
+     *
+     * The request is stored before the pending notifier runs, so
+     * the listeners can read it from the repository.
+     *
+     * @param request request
+     */
+    public void markAsPending(Request request) throws EBaseException {
+
+        request.setRequestStatus(RequestStatus.PENDING);
+
+        requestRepository.updateRequest(request);
+
+        if (mPendingNotify != null) {
+            mPendingNotify.notify(request);
+        }
+    }
+
     /**
      * Protected access for setting the modification time of a request.
      *
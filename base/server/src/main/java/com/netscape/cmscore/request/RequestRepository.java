@@ -24,12 +24,14 @@ import java.util.Collection;
 import java.util.Date;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 
 import com.netscape.certsrv.base.EBaseException;
 import com.netscape.certsrv.base.SessionContext;
 import com.netscape.certsrv.dbs.DBPagedSearch;
 import com.netscape.certsrv.dbs.DBVirtualList;
+import com.netscape.certsrv.dbs.EDBNotAvailException;
 import com.netscape.certsrv.dbs.EDBRecordNotFoundException;
 import com.netscape.certsrv.dbs.IDBObj;
 import com.netscape.certsrv.dbs.Modification;
@@ -260,6 +262,11 @@ public class RequestRepository extends Repository {
      *
      * The request must be locked to make this call.
      *
+     * If the delayLDAPCommit ext data is "true" the request is only updated
+     * in memory. The caller is responsible for removing the flag and calling
+     * this method again to store all pending changes with a single add or
+     * modify operation.
+     *
      * @param request the request that is being updated
      * @exception EBaseException failed to update request
      */
@@ -345,6 +352,41 @@ public class RequestRepository extends Repository {
         }
     }
 
+    /**
+     * Removes requests using a single database session.
+     * Requests that cannot be removed are logged and skipped.
+     *
+     * @param requestIDs IDs of the requests
+     * @param subtree true to delete with the tree delete control
+     * @return IDs of the removed requests
+     * @exception EBaseException database not available
+     */
+    public List<RequestId> removeRequests(List<RequestId> requestIDs, boolean subtree) throws EBaseException {
+
+        List<RequestId> removed = new ArrayList<>();
+
+        try (DBSSession dbs = dbSubsystem.createSession()) {
+            for (RequestId requestID : requestIDs) {
+                String name = "cn=" + requestID + "," + mBaseDN;
+
+                try {
+                    dbs.delete(name, subtree);
+
+                } catch (EDBNotAvailException e) {
+                    throw e;
+
+                } catch (EBaseException e) {
+                    logger.warn("RequestRepository: Unable to remove request " + requestID.toHexString() + ": " + e.getMessage(), e);
+                    continue;
+                }
+
+                removed.add(requestID);
+            }
+        }
+
+        return removed;
+    }
+
     /**
      * Removes all objects with this repository.
      */
@@ -24,16 +24,31 @@ package com.netscape.cmscore.selftests;
 // import statements //
 ///////////////////////
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
 import java.util.StringTokenizer;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.netscape.certsrv.base.EBaseException;
 import com.netscape.certsrv.base.EPropertyNotFound;
+import com.netscape.certsrv.base.SessionContext;
 import com.netscape.certsrv.base.Subsystem;
 import com.netscape.certsrv.logging.AuditEvent;
 import com.netscape.certsrv.logging.ELogException;
@@ -71,6 +86,13 @@ public class SelfTestSubsystem extends Subsystem {
     public static final String PROP_ORDER = "order";
     public static final String PROP_ON_DEMAND = "onDemand";
     public static final String PROP_STARTUP = "startup";
+    public static final String PROP_THREADS = "threads";
+    public static final String PROP_TIMEOUT = "timeout";
+    public static final String PROP_CACHE_TIMEOUT = "cacheTimeout";
+
+    public static final int DEFAULT_THREADS = 4;
+    public static final int DEFAULT_TIMEOUT = 300; // seconds
+    public static final int DEFAULT_CACHE_TIMEOUT = 300; // seconds
 
     private static LogEventListener mLogger;
 
@@ -95,6 +117,156 @@ public class SelfTestSubsystem extends Subsystem {
     public Vector<SelfTestOrderedInstance> mOnDemandOrder = new Vector<>();
     public Vector<SelfTestOrderedInstance> mStartupOrder = new Vector<>();
 
+    // number of self tests that can run concurrently
+    int mThreads = DEFAULT_THREADS;
+
+    // self test timeout in milliseconds, 0 means no timeout
+    long mTimeout = TimeUnit.SECONDS.toMillis(DEFAULT_TIMEOUT);
+
+    private ExecutorService mExecutorService;
+
+    // limits the number of self tests running concurrently
+    private Semaphore mPermits;
+
+    // duration of the last execution of each self test in milliseconds
+    private Map<String, Long> mDurations = new ConcurrentHashMap<>();
+
+    /**
+     * A self test execution.
+     *
+     * The self test holds a permit while it is running. If the self
+     * test times out or is cancelled its thread is interrupted and
+     * the permit is released right away, so a self test that does not
+     * respond to the interruption does not block the other self tests.
+     */
+    class SelfTestRun {
+
+        String name;
+        SelfTest test;
+
+        // whether a failure stops the remaining self tests
+        boolean critical;
+
+        // caller's session context for auditing
+        Map<Object, Object> context;
+
+        Semaphore permits;
+        Future<?> future;
+
+        // start time, or 0 if not started
+        volatile long start;
+
+        // permit state, guarded by this
+        boolean acquired;
+        boolean released;
+        boolean cancelled;
+
+        Exception exception;
+
+        SelfTestRun(String name, SelfTest test) {
+            this.name = name;
+            this.test = test;
+        }
+
+        void submit(ExecutorService executorService, Semaphore permits) {
+            this.permits = permits;
+
+            // the self test threads are pooled, so the context is
+            // copied from the caller and released after each run
+            context = new HashMap<>(SessionContext.getContext());
+
+            future = executorService.submit(() -> {
+                run();
+                return null;
+            });
+        }
+
+        void run() throws Exception {
+
+            permits.acquire();
+
+            synchronized (this) {
+                if (cancelled) {
+                    permits.release();
+                    return;
+                }
+                acquired = true;
+            }
+
+            start = System.currentTimeMillis();
+            SessionContext.getContext().putAll(context);
+            try {
+                logger.debug("SelfTestSubsystem: running " + test.getSelfTestName());
+                test.runSelfTest(mLogger);
+            } finally {
+                SessionContext.releaseContext();
+                long duration = System.currentTimeMillis() - start;
+                mDurations.put(name, duration);
+                logger.info("SelfTestSubsystem: " + name + " completed in " + duration + " ms");
+                release();
+            }
+        }
+
+        synchronized void release() {
+            if (acquired && !released) {
+                released = true;
+                permits.release();
+            }
+        }
+
+        /**
+         * Stops the self test if it has not completed.
+         */
+        void cancel() {
+
+            synchronized (this) {
+                cancelled = true;
+            }
+
+            if (future != null) {
+                future.cancel(true);
+            }
+
+            release();
+        }
+
+        /**
+         * Waits until the self test completes or times out.
+         */
+        void await() throws InterruptedException {
+
+            while (true) {
+                try {
+                    if (mTimeout <= 0) {
+                        future.get();
+                    } else {
+                        // the timeout starts when the self test starts
+                        long started = start;
+                        long wait = started == 0 ? mTimeout : started + mTimeout - System.currentTimeMillis();
+                        future.get(Math.max(1, wait), TimeUnit.MILLISECONDS);
+                    }
+                    return;
+
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    exception = cause instanceof Exception ex ? ex : new ESelfTestException(cause.toString(), cause);
+                    return;
+
+                } catch (TimeoutException e) {
+                    long started = start;
+                    if (started == 0 || System.currentTimeMillis() - started < mTimeout) {
+                        continue;
+                    }
+                    logger.warn("SelfTestSubsystem: Selftest " + name + " timed out, abandoning thread");
+                    cancel();
+                    exception = new ESelfTestException("Selftest " + name + " timed out after "
+                            + TimeUnit.MILLISECONDS.toSeconds(mTimeout) + " seconds");
+                    return;
+                }
+            }
+        }
+    }
+
     ///////////////////////////
     // Subsystem parameters  //
     ///////////////////////////
@@ -464,77 +636,193 @@ public class SelfTestSubsystem extends Subsystem {
 
         logger.debug("SelfTestSubsystem: runSelfTestsOnDemand()");
 
-        // loop through all self test plugin instances
+        // run all self test plugin instances
         // specified to be executed on demand
-        Enumeration<SelfTestOrderedInstance> instances = mOnDemandOrder.elements();
+        List<SelfTestRun> runs = createRuns(mOnDemandOrder);
 
-        while (instances.hasMoreElements()) {
+        try {
+            execute(runs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ESelfTestException("Selftests interrupted", e);
+        }
 
-            SelfTestOrderedInstance instance = instances.nextElement();
-            String instanceName = instance.getSelfTestName();
+        for (SelfTestRun run : runs) {
 
-            if (instanceName == null) {
+            Exception e = run.exception;
+            if (e == null) {
+                continue;
+            }
+
+            // Check to see if the self test was critical:
+            if (isSelfTestCriticalOnDemand(run.name)) {
                 log(mLogger,
                         CMS.getLogMessage(
-                                "CMSCORE_SELFTESTS_PROPERTY_NAME_IS_NULL"));
+                                "CMSCORE_SELFTESTS_RUN_ON_DEMAND_FAILED",
+                                getFullName(mPrefix, run.name)));
 
-                throw new EMissingSelfTestException();
+                logger.error("SelfTestSubsystem: Disabling subsystem due to selftest failure: " + e.getMessage(), e);
+
+                engine.disableSubsystem();
+
+                throw new ESelfTestException("Selftest failed: " + e.getMessage(), e);
             }
 
-            instanceName = instanceName.trim();
+            logger.warn("SelfTestSubsystem: Selftest failed: " + e.getMessage(), e);
+        }
+    }
 
-            String instanceFullName = getFullName(mPrefix, instanceName);
+    /**
+     * Execute a self test.
+     *
+     * @exception Exception self test exception
+     */
+    public void runSelfTest(String instanceName) throws Exception {
 
-            if (!mSelfTestInstances.containsKey(instanceName)) {
-                // self test plugin instance property name is not present
-                log(mLogger,
-                        CMS.getLogMessage(
-                                "CMSCORE_SELFTESTS_PROPERTY_MISSING_NAME",
-                                instanceFullName));
+        logger.debug("SelfTestSubsystem: runSelfTest(" + instanceName + ")");
 
-                throw new EMissingSelfTestException(instanceFullName);
-            }
+        SelfTest test = mSelfTestInstances.get(instanceName);
 
-            try {
-                runSelfTest(instanceName);
+        if (test == null) {
+            throw new EMissingSelfTestException(instanceName);
+        }
 
-            } catch (Exception e) {
+        SelfTestRun run = new SelfTestRun(instanceName, test);
+        execute(List.of(run));
 
-                // Check to see if the self test was critical:
-                if (isSelfTestCriticalOnDemand(instanceName)) {
-                    log(mLogger,
-                            CMS.getLogMessage(
-                                    "CMSCORE_SELFTESTS_RUN_ON_DEMAND_FAILED",
-                                    instanceFullName));
+        if (run.exception != null) {
+            throw run.exception;
+        }
+    }
 
-                    logger.error("SelfTestSubsystem: Disabling subsystem due to selftest failure: " + e.getMessage(), e);
+    /**
+     * Returns the duration in milliseconds of the last execution
+     * of each self test.
+     */
+    public Map<String, Long> getDurations() {
+        return Collections.unmodifiableMap(mDurations);
+    }
 
-                    engine.disableSubsystem();
+    /**
+     * Returns the duration in milliseconds of the last execution
+     * of a self test, or null if the self test has not been run.
+     */
+    public Long getDuration(String instanceName) {
+        return mDurations.get(instanceName);
+    }
 
-                    throw new ESelfTestException("Selftest failed: " + e.getMessage(), e);
+    synchronized ExecutorService getExecutorService() {
+
+        if (mExecutorService == null) {
+            // The number of running self tests is limited by the permits.
+            // Threads of self tests that time out are abandoned, so the
+            // pool has to be able to replace them.
+            AtomicInteger counter = new AtomicInteger();
+            mExecutorService = Executors.newCachedThreadPool(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "SelfTest-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
                 }
+            });
+            mPermits = new Semaphore(mThreads, true);
+        }
 
-                logger.warn("SelfTestSubsystem: Selftest failed: " + e.getMessage(), e);
+        return mExecutorService;
+    }
+
+    synchronized Semaphore getPermits() {
+        getExecutorService();
+        return mPermits;
+    }
+
+    /**
+     * Runs the self tests on the self test threads and waits
+     * for them to complete or time out. The failures are stored
+     * in the runs. If a critical self test fails, the remaining
+     * self tests are cancelled.
+     */
+    void execute(List<SelfTestRun> runs) throws InterruptedException {
+
+        ExecutorService executorService = getExecutorService();
+        Semaphore permits = getPermits();
+
+        if (mThreads > 1) {
+            for (SelfTestRun run : runs) {
+                run.submit(executorService, permits);
             }
         }
+
+        for (int i = 0; i < runs.size(); i++) {
+
+            SelfTestRun run = runs.get(i);
+
+            try {
+                if (mThreads <= 1) {
+                    // run one at a time in order
+                    run.submit(executorService, permits);
+                }
+
+                run.await();
+
+            } catch (InterruptedException e) {
+                cancel(runs.subList(i, runs.size()));
+                throw e;
+            }
+
+            if (run.exception != null && run.critical) {
+                logger.info("SelfTestSubsystem: Cancelling remaining selftests");
+                cancel(runs.subList(i + 1, runs.size()));
+                return;
+            }
+        }
+    }
+
+    void cancel(List<SelfTestRun> runs) {
+        for (SelfTestRun run : runs) {
+            run.cancel();
+        }
     }
 
     /**
-     * Execute a self test.
-     *
-     * @exception Exception self test exception
+     * Creates the runs for the self tests in the given order.
      */
-    public void runSelfTest(String instanceName) throws Exception {
+    List<SelfTestRun> createRuns(Vector<SelfTestOrderedInstance> order) throws EMissingSelfTestException {
 
-        logger.debug("SelfTestSubsystem: runSelfTest(" + instanceName + ")");
+        List<SelfTestRun> runs = new ArrayList<>();
 
-        SelfTest test = mSelfTestInstances.get(instanceName);
+        for (SelfTestOrderedInstance instance : order) {
+            String instanceName = instance.getSelfTestName();
 
-        if (test == null) {
-            throw new EMissingSelfTestException(instanceName);
+            if (instanceName == null) {
+                log(mLogger,
+                        CMS.getLogMessage(
+                                "CMSCORE_SELFTESTS_PROPERTY_NAME_IS_NULL"));
+
+                throw new EMissingSelfTestException();
+            }
+
+            instanceName = instanceName.trim();
+
+            SelfTest test = mSelfTestInstances.get(instanceName);
+            if (test == null) {
+                // self test plugin instance property name is not present
+                String instanceFullName = getFullName(mPrefix, instanceName);
+                log(mLogger,
+                        CMS.getLogMessage(
+                                "CMSCORE_SELFTESTS_PROPERTY_MISSING_NAME",
+                                instanceFullName));
+
+                throw new EMissingSelfTestException(instanceFullName);
+            }
+
+            SelfTestRun run = new SelfTestRun(instanceName, test);
+            run.critical = instance.isSelfTestCritical();
+            runs.add(run);
         }
 
-        test.runSelfTest(mLogger);
+        return runs;
     }
 
     //
@@ -780,60 +1068,32 @@ public class SelfTestSubsystem extends Subsystem {
                 CMS.getLogMessage(
                         "CMSCORE_SELFTESTS_RUN_AT_STARTUP"));
 
-        // loop through all self test plugin instances
+        // run all self test plugin instances
         // specified to be executed at server startup
-        Enumeration<SelfTestOrderedInstance> instances = mStartupOrder.elements();
+        List<SelfTestRun> runs = createRuns(mStartupOrder);
+        execute(runs);
 
-        while (instances.hasMoreElements()) {
-            SelfTestOrderedInstance instance = instances.nextElement();
-
-            String instanceFullName = null;
-            String instanceName = instance.getSelfTestName();
-
-            if (instanceName == null) {
-                log(mLogger,
-                        CMS.getLogMessage(
-                                "CMSCORE_SELFTESTS_PROPERTY_NAME_IS_NULL"));
+        for (SelfTestRun run : runs) {
 
-                throw new EMissingSelfTestException();
+            Exception e = run.exception;
+            if (e == null) {
+                continue;
             }
 
-            instanceName = instanceName.trim();
-            instanceFullName = getFullName(mPrefix, instanceName);
-
-            if (!mSelfTestInstances.containsKey(instanceName)) {
-                // self test plugin instance property name is not present
-                log(mLogger,
-                        CMS.getLogMessage(
-                                "CMSCORE_SELFTESTS_PROPERTY_MISSING_NAME",
-                                instanceFullName));
-
-                throw new EMissingSelfTestException(instanceFullName);
+            // Check to see if the self test was critical:
+            if (!isSelfTestCriticalAtStartup(run.name)) {
+                logger.warn("SelfTestSubsystem: selftest failed: " + e.getMessage(), e);
+                continue;
             }
 
-            SelfTest test = mSelfTestInstances.get(instanceName);
-
-            try {
-                logger.debug("SelfTestSubsystem: running " + test.getSelfTestName());
-                test.runSelfTest(mLogger);
-
-            } catch (Exception e) {
-
-                // Check to see if the self test was critical:
-                if (!isSelfTestCriticalAtStartup(instanceName)) {
-                    logger.warn("SelfTestSubsystem: selftest failed: " + e.getMessage(), e);
-                    continue;
-                }
-
-                logger.error("SelfTestSubsystem: selftest failed: " + e.getMessage(), e);
+            logger.error("SelfTestSubsystem: selftest failed: " + e.getMessage(), e);
 
-                log(mLogger,
-                        CMS.getLogMessage(
-                                "CMSCORE_SELFTESTS_RUN_AT_STARTUP_FAILED",
-                                instanceFullName));
+            log(mLogger,
+                    CMS.getLogMessage(
+                            "CMSCORE_SELFTESTS_RUN_AT_STARTUP_FAILED",
+                            getFullName(mPrefix, run.name)));
 
-                throw e;
-            }
+            throw e;
         }
 
         // log that execution of all "critical" startup self tests
@@ -1173,6 +1433,15 @@ public class SelfTestSubsystem extends Subsystem {
             mRootPrefix = mConfig.getName().trim();
         }
 
+        mThreads = Math.max(1, mConfig.getInteger(PROP_CONTAINER + "." + PROP_THREADS, DEFAULT_THREADS));
+        mTimeout = TimeUnit.SECONDS.toMillis(mConfig.getInteger(PROP_CONTAINER + "." + PROP_TIMEOUT, DEFAULT_TIMEOUT));
+        logger.debug("SelfTestSubsystem: threads: " + mThreads + ", timeout: " + mTimeout + " ms");
+
+        // reuse successful system cert verifications until the certs change
+        int cacheTimeout = mConfig.getInteger(PROP_CONTAINER + "." + PROP_CACHE_TIMEOUT, DEFAULT_CACHE_TIMEOUT);
+        engine.getCertVerificationCache().setTimeout(TimeUnit.SECONDS.toMillis(cacheTimeout));
+        logger.debug("SelfTestSubsystem: cert verification cache timeout: " + cacheTimeout + " s");
+
         int loadStatus = 0;
 
         // NOTE:  Obviously, we must load the self test logger parameters
@@ -1781,6 +2050,13 @@ public class SelfTestSubsystem extends Subsystem {
             instance.shutdownSelfTest();
         }
 
+        synchronized (this) {
+            if (mExecutorService != null) {
+                mExecutorService.shutdownNow();
+                mExecutorService = null;
+            }
+        }
+
         if (mLogger != null)
             mLogger.shutdown();
     }
@@ -0,0 +1,291 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.util;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * A bounded pool of long-lived external worker processes.
+ *
+ * Each worker is started once with the PKI_EXTERNAL_PROCESS_MODE
+ * environment variable set to "persistent" and then processes one
+ * request at a time:
+ *
+ * <ul>
+ * <li>the request is written to the worker's stdin as a single line
+ *     of JSON</li>
+ * <li>the worker writes a single line of JSON to its stdout:
+ *     {"status": &lt;int&gt;, "output": &lt;string&gt;} where status
+ *     has the same meaning as the exit code in one-shot mode</li>
+ * </ul>
+ *
+ * A worker that does not respond within the timeout is killed.
+ * A worker that exits or breaks the protocol is discarded and
+ * replaced with a new worker on demand. Workers exit when their
+ * stdin is closed.
+ */
+public class ExternalProcessPool {
+
+    public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(ExternalProcessPool.class);
+
+    public static final String ENV_MODE = "PKI_EXTERNAL_PROCESS_MODE";
+    public static final String MODE_PERSISTENT = "persistent";
+
+    public static class Response {
+
+        int status;
+        String output;
+
+        public Response(int status, String output) {
+            this.status = status;
+            this.output = output;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public String getOutput() {
+            return output;
+        }
+    }
+
+    class Worker {
+
+        Process process;
+        BufferedWriter in;
+        BufferedReader out;
+
+        Worker(Process process) {
+            this.process = process;
+            this.in = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+            this.out = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+        }
+
+        Response execute(String request, long timeout) throws IOException, TimeoutException, InterruptedException {
+
+            in.write(request);
+            in.newLine();
+            in.flush();
+
+            String line;
+            try {
+                Future<String> future = readers.submit(out::readLine);
+                line = future.get(timeout, TimeUnit.MILLISECONDS);
+
+            } catch (RejectedExecutionException e) {
+                throw new IOException(name + " is shut down", e);
+
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException ioe) {
+                    throw ioe;
+                }
+                throw new IOException(cause);
+            }
+
+            if (line == null) {
+                throw new IOException("Worker process exited");
+            }
+
+            JsonNode root = mapper.readTree(line);
+            JsonNode status = root.path("status");
+            if (!status.isInt()) {
+                throw new IOException("Invalid worker response: missing status");
+            }
+
+            return new Response(status.intValue(), root.path("output").asText(""));
+        }
+
+        boolean isAlive() {
+            return process.isAlive();
+        }
+
+        void close() {
+            try {
+                in.close();
+            } catch (IOException e) {
+                // ignore
+            }
+            process.destroy();
+        }
+
+        void destroy() {
+            process.destroyForcibly();
+        }
+    }
+
+    String name;
+    List<String> command;
+    int size;
+
+    Semaphore permits;
+    ConcurrentLinkedDeque<Worker> idleWorkers = new ConcurrentLinkedDeque<>();
+    ExecutorService readers;
+    ObjectMapper mapper = new ObjectMapper();
+
+    AtomicInteger started = new AtomicInteger();
+    volatile boolean shutdown;
+
+    /**
+     * @param name pool name used in logs and thread names
+     * @param command command to start a worker
+     * @param size maximum number of workers
+     */
+    public ExternalProcessPool(String name, List<String> command, int size) {
+        this.name = name;
+        this.command = new ArrayList<>(command);
+        this.size = Math.max(1, size);
+        this.permits = new Semaphore(this.size, true);
+
+        AtomicInteger counter = new AtomicInteger();
+        readers = Executors.newCachedThreadPool(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, name + "-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the number of workers started so far, including
+     * the workers that replaced crashed workers.
+     */
+    public int getStarted() {
+        return started.get();
+    }
+
+    /**
+     * Sends a request to an idle worker and waits for the response.
+     * If an idle worker turns out to be dead the request is retried
+     * once with a new worker.
+     *
+     * @param request single line JSON request
+     * @param timeout timeout in milliseconds
+     * @throws TimeoutException if no worker became available or the
+     *         worker did not respond in time
+     * @throws IOException if the worker could not be started or
+     *         did not follow the protocol
+     */
+    public Response execute(String request, long timeout)
+            throws IOException, TimeoutException, InterruptedException {
+
+        if (shutdown) {
+            throw new IOException(name + " is shut down");
+        }
+
+        long deadline = System.currentTimeMillis() + timeout;
+
+        if (!permits.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+            throw new TimeoutException("No " + name + " worker available");
+        }
+
+        try {
+            boolean retried = false;
+
+            while (true) {
+                Worker worker = idleWorkers.pollFirst();
+                boolean fresh = false;
+
+                if (worker != null && !worker.isAlive()) {
+                    logger.warn("ExternalProcessPool: " + name + " worker exited with RC="
+                            + worker.process.exitValue() + ", restarting");
+                    worker.destroy();
+                    worker = null;
+                }
+
+                if (worker == null) {
+                    worker = start();
+                    fresh = true;
+                }
+
+                long remaining = Math.max(1, deadline - System.currentTimeMillis());
+
+                try {
+                    Response response = worker.execute(request, remaining);
+                    if (shutdown) {
+                        worker.close();
+                    } else {
+                        idleWorkers.offerFirst(worker);
+                    }
+                    return response;
+
+                } catch (TimeoutException e) {
+                    logger.warn("ExternalProcessPool: " + name + " worker timed out, killing worker");
+                    worker.destroy();
+                    throw e;
+
+                } catch (IOException e) {
+                    worker.destroy();
+                    if (fresh || retried) {
+                        throw e;
+                    }
+                    logger.warn("ExternalProcessPool: " + name + " worker failed, restarting: " + e.getMessage());
+                    retried = true;
+                }
+            }
+
+        } finally {
+            permits.release();
+        }
+    }
+
+    Worker start() throws IOException {
+
+        logger.info("ExternalProcessPool: Starting " + name + " worker: " + command);
+
+        ProcessBuilder pb = new ProcessBuilder(command)
+                .redirectError(ProcessBuilder.Redirect.INHERIT);
+        pb.environment().put(ENV_MODE, MODE_PERSISTENT);
+
+        Worker worker = new Worker(pb.start());
+        started.incrementAndGet();
+        return worker;
+    }
+
+    /**
+     * Stops the idle workers by closing their stdin. Busy workers
+     * are stopped as soon as they finish their current request.
+     */
+    public void shutdown() {
+
+        shutdown = true;
+
+        Worker worker;
+        while ((worker = idleWorkers.pollFirst()) != null) {
+            worker.close();
+        }
+
+        readers.shutdownNow();
+    }
+}
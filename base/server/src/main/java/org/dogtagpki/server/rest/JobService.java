@@ -20,6 +20,7 @@ import org.dogtagpki.job.JobResource;
 
 import com.netscape.certsrv.base.EBaseException;
 import com.netscape.certsrv.base.ResourceNotFoundException;
+import com.netscape.cms.jobs.Job;
 import com.netscape.cms.realm.PKIPrincipal;
 import com.netscape.cms.servlet.base.SubsystemService;
 import com.netscape.cmscore.apps.CMSEngine;
@@ -153,6 +154,12 @@ public class JobService extends SubsystemService implements JobResource {
 
         JobInfo jobInfo = createJobInfo(id, jobConfig, true);
 
+        JobsScheduler jobsScheduler = engine.getJobsScheduler();
+        Job job = jobsScheduler.getJob(id);
+        if (job != null) {
+            jobInfo.setStatus(job.getStatus());
+        }
+
         return createOKResponse(jobInfo);
     }
 
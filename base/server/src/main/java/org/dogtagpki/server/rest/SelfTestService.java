@@ -225,6 +225,8 @@ public class SelfTestService extends PKIService implements SelfTestResource {
             result.setOutput(sw.toString());
         }
 
+        result.setDuration(subsystem.getDuration(selfTestID));
+
         logger.info("SelfTestService: Status: " + result.getStatus());
 
         return createOKResponse(result);
@@ -0,0 +1,200 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cms.servlet.ocsp;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Proxy;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.jupiter.api.Test;
+
+import com.netscape.cmscore.dbs.OCSPResponseStore;
+
+public class OCSPServletTest {
+
+    static final byte[] RESPONSE = { 0x30, 0x03, 0x0a, 0x01, 0x00 };
+
+    /**
+     * Servlet with a fixed cache lifetime.
+     */
+    static class TestServlet extends OCSPServlet {
+
+        long cacheMaxAge;
+
+        TestServlet(long cacheMaxAge) {
+            this.cacheMaxAge = cacheMaxAge;
+        }
+
+        @Override
+        public long getCacheMaxAge() {
+            return cacheMaxAge;
+        }
+    }
+
+    /**
+     * Records the status, headers, and body sent by the servlet.
+     */
+    static class TestResponse {
+
+        Integer status;
+        String contentType;
+        Integer contentLength;
+        Map<String, Object> headers = new HashMap<>();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+        HttpServletResponse create() {
+            return (HttpServletResponse) Proxy.newProxyInstance(
+                    getClass().getClassLoader(),
+                    new Class<?>[] { HttpServletResponse.class },
+                    (proxy, method, args) -> {
+                        switch (method.getName()) {
+                        case "setStatus":
+                            status = (Integer) args[0];
+                            return null;
+                        case "setContentType":
+                            contentType = (String) args[0];
+                            return null;
+                        case "setContentLength":
+                            contentLength = (Integer) args[0];
+                            return null;
+                        case "setHeader":
+                        case "setDateHeader":
+                            headers.put((String) args[0], args[1]);
+                            return null;
+                        case "getOutputStream":
+                            return new ServletOutputStream() {
+                                @Override
+                                public void write(int b) {
+                                    body.write(b);
+                                }
+
+                                @Override
+                                public boolean isReady() {
+                                    return true;
+                                }
+
+                                @Override
+                                public void setWriteListener(WriteListener listener) {
+                                }
+                            };
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                        }
+                    });
+        }
+    }
+
+    static HttpServletRequest createRequest(String ifNoneMatch) {
+        return (HttpServletRequest) Proxy.newProxyInstance(
+                OCSPServletTest.class.getClassLoader(),
+                new Class<?>[] { HttpServletRequest.class },
+                (proxy, method, args) -> {
+                    if (method.getName().equals("getHeader")) {
+                        return "If-None-Match".equals(args[0]) ? ifNoneMatch : null;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    static OCSPResponseStore.Entry createEntry(long producedAt, Long nextUpdate) {
+        return new OCSPResponseStore.Entry(
+                RESPONSE,
+                new Date(producedAt),
+                new Date(producedAt),
+                nextUpdate == null ? null : new Date(nextUpdate),
+                producedAt / 1000);
+    }
+
+    static long getMaxAge(TestResponse response) {
+        String cacheControl = (String) response.headers.get("Cache-Control");
+        return Long.parseLong(cacheControl.substring("max-age=".length(), cacheControl.indexOf(',')));
+    }
+
+    @Test
+    public void testSendResponse() throws Exception {
+
+        long now = System.currentTimeMillis();
+        OCSPResponseStore.Entry entry = createEntry(now, now + 600000);
+
+        TestResponse response = new TestResponse();
+        new TestServlet(3600000).sendCachedResponse(createRequest(null), response.create(), entry);
+
+        assertNull(response.status);
+        assertEquals("application/ocsp-response", response.contentType);
+        assertEquals(RESPONSE.length, response.contentLength);
+        assertArrayEquals(RESPONSE, response.body.toByteArray());
+
+        assertEquals(now, response.headers.get("Last-Modified"));
+        assertEquals(now + 600000, response.headers.get("Expires"));
+        assertEquals(entry.getETag(), response.headers.get("ETag"));
+
+        String cacheControl = (String) response.headers.get("Cache-Control");
+        assertEquals(", public, no-transform, must-revalidate", cacheControl.substring(cacheControl.indexOf(',')));
+
+        // the response can be cached until the next update
+        long maxAge = getMaxAge(response);
+        assertTrue(maxAge > 590 && maxAge <= 600, "max-age: " + maxAge);
+    }
+
+    @Test
+    public void testCacheMaxAge() throws Exception {
+
+        long now = System.currentTimeMillis();
+
+        // the cache lifetime is limited by the servlet configuration
+        TestResponse response = new TestResponse();
+        new TestServlet(60000).sendCachedResponse(
+                createRequest(null),
+                response.create(),
+                createEntry(now, now + 600000));
+
+        long maxAge = getMaxAge(response);
+        assertTrue(maxAge > 50 && maxAge <= 60, "max-age: " + maxAge);
+
+        // responses without next update expire after the cache lifetime
+        response = new TestResponse();
+        new TestServlet(60000).sendCachedResponse(
+                createRequest(null),
+                response.create(),
+                createEntry(now - 120000, null));
+
+        assertEquals(0, getMaxAge(response));
+    }
+
+    @Test
+    public void testNotModified() throws Exception {
+
+        long now = System.currentTimeMillis();
+        OCSPResponseStore.Entry entry = createEntry(now, now + 600000);
+
+        TestResponse response = new TestResponse();
+        new TestServlet(3600000).sendCachedResponse(createRequest(entry.getETag()), response.create(), entry);
+
+        assertEquals(HttpServletResponse.SC_NOT_MODIFIED, response.status);
+        assertEquals(entry.getETag(), response.headers.get("ETag"));
+        assertNull(response.contentType);
+        assertEquals(0, response.body.size());
+
+        // a different entity tag gets the full response
+        response = new TestResponse();
+        new TestServlet(3600000).sendCachedResponse(createRequest("\"00\""), response.create(), entry);
+
+        assertNull(response.status);
+        assertArrayEquals(RESPONSE, response.body.toByteArray());
+    }
+}
@@ -0,0 +1,79 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.apps;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class StartupGraphTest {
+
+    StartupGraph createGraph(List<String> steps) {
+
+        StartupGraph graph = new StartupGraph("test");
+        graph.add("a", () -> steps.add("a"));
+        graph.add("b", () -> steps.add("b"), "a");
+        graph.add("c", () -> steps.add("c"), "a");
+        graph.add("d", () -> steps.add("d"), "b", "c");
+        return graph;
+    }
+
+    @Test
+    public void testSequential() throws Exception {
+
+        List<String> steps = new ArrayList<>();
+        StartupGraph graph = createGraph(steps);
+        graph.run(1);
+
+        assertEquals(List.of("a", "b", "c", "d"), steps);
+        assertEquals(List.of("a", "b", "c", "d"), new ArrayList<>(graph.getTimes().keySet()));
+    }
+
+    @Test
+    public void testConcurrent() throws Exception {
+
+        List<String> steps = Collections.synchronizedList(new ArrayList<>());
+        StartupGraph graph = createGraph(steps);
+        graph.run(4);
+
+        assertEquals(4, steps.size());
+        assertEquals("a", steps.get(0));
+        assertEquals("d", steps.get(3));
+        assertEquals(4, graph.getTimes().size());
+    }
+
+    @Test
+    public void testFailure() {
+
+        List<String> steps = Collections.synchronizedList(new ArrayList<>());
+
+        StartupGraph graph = new StartupGraph("test");
+        graph.add("a", () -> steps.add("a"));
+        graph.add("b", () -> {
+            throw new Exception("failed");
+        }, "a");
+        graph.add("c", () -> steps.add("c"), "b");
+
+        Exception e = assertThrows(Exception.class, () -> graph.run(4));
+        assertEquals("failed", e.getMessage());
+
+        assertTrue(steps.contains("a"));
+        assertFalse(steps.contains("c"));
+    }
+
+    @Test
+    public void testUnknownDependency() {
+        StartupGraph graph = new StartupGraph("test");
+        assertThrows(IllegalArgumentException.class, () -> graph.add("a", () -> { }, "b"));
+    }
+}
@@ -0,0 +1,111 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.base;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Vector;
+
+import org.junit.jupiter.api.Test;
+
+public class ConfigStoreTest {
+
+    ConfigStore createConfig() {
+        ConfigStore config = new ConfigStore();
+        config.put("param1", "value1");
+        config.put("store1.param11", "value11");
+        config.put("store1.param12", "value12");
+        config.put("store1.sub1.param111", "value111");
+        config.put("store1-x.param", "value");
+        config.put("store2.param21", "value21");
+        config.put("alias", "store2");
+        return config;
+    }
+
+    @Test
+    public void testNames() {
+
+        ConfigStore config = createConfig();
+
+        assertEquals(List.of("alias", "param1"), Collections.list(config.getPropertyNames()));
+        assertEquals(List.of("store1-x", "store1", "store2"), config.getSubStoreNames());
+
+        ConfigStore store1 = config.getSubStore("store1");
+        assertEquals(List.of("param11", "param12"), Collections.list(store1.getPropertyNames()));
+        assertEquals(List.of("sub1"), store1.getSubStoreNames());
+
+        ConfigStore missing = config.getSubStore("missing");
+        assertEquals(List.of(), Collections.list(missing.getPropertyNames()));
+        assertEquals(List.of(), missing.getSubStoreNames());
+    }
+
+    @Test
+    public void testIndexUpdate() {
+
+        ConfigStore config = createConfig();
+        ConfigStore store1 = config.getSubStore("store1");
+        assertEquals(List.of("sub1"), store1.getSubStoreNames());
+
+        store1.put("sub2.param", "value");
+        assertEquals(List.of("sub1", "sub2"), store1.getSubStoreNames());
+
+        store1.removeSubStore("sub1");
+        assertEquals(List.of("sub2"), store1.getSubStoreNames());
+
+        // callers may modify the returned list
+        Vector<String> names = store1.getSubStoreNames();
+        names.add("sub3");
+        assertEquals(List.of("sub2"), store1.getSubStoreNames());
+    }
+
+    @Test
+    public void testSubStoreViews() {
+
+        ConfigStore config = createConfig();
+
+        ConfigStore store1 = config.getSubStore("store1");
+        assertSame(store1, config.getSubStore("store1"));
+        assertSame(store1, config.makeSubStore("store1"));
+        assertEquals("value11", store1.get("param11"));
+
+        // references are resolved on each lookup
+        ConfigStore alias = config.getSubStore("alias");
+        assertEquals("store2", alias.getName());
+        assertEquals("value21", alias.get("param21"));
+
+        config.put("alias", "store1");
+        alias = config.getSubStore("alias");
+        assertEquals("store1", alias.getName());
+        assertEquals("value11", alias.get("param11"));
+    }
+
+    @Test
+    public void testModCount() {
+
+        ConfigStore config = createConfig();
+        SimpleProperties source = config.getSource();
+
+        long modCount = source.getModCount();
+        long version = source.getVersion();
+
+        // same value
+        config.put("param1", "value1");
+        assertEquals(modCount, source.getModCount());
+
+        // changed value
+        config.put("param1", "value2");
+        assertNotEquals(modCount, source.getModCount());
+        assertEquals(version, source.getVersion());
+
+        modCount = source.getModCount();
+        config.getSubStore("store1").remove("param11");
+        assertNotEquals(modCount, source.getModCount());
+    }
+}
@@ -0,0 +1,130 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.cert;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+public class CertVerificationCacheTest {
+
+    static final long HOUR = 60 * 60 * 1000L;
+
+    /**
+     * Cache that uses the chain digests and expiration dates
+     * provided by the test instead of the NSS database.
+     */
+    static class TestCache extends CertVerificationCache {
+
+        Map<String, byte[]> digests = new HashMap<>();
+        Map<String, Date> notAfterDates = new HashMap<>();
+
+        void setCert(String nickname, String digest, Date notAfter) {
+            digests.put(nickname, digest.getBytes());
+            notAfterDates.put(nickname, notAfter);
+        }
+
+        @Override
+        byte[] getDigest(String nickname) throws Exception {
+            byte[] digest = digests.get(nickname);
+            if (digest == null) {
+                throw new Exception("Certificate not found: " + nickname);
+            }
+            return digest;
+        }
+
+        @Override
+        Date getNotAfter(String nickname) throws Exception {
+            return notAfterDates.get(nickname);
+        }
+    }
+
+    @Test
+    public void testVerified() throws Exception {
+
+        TestCache cache = new TestCache();
+        cache.setTimeout(HOUR);
+        cache.setCert("signing", "chain1", new Date(System.currentTimeMillis() + HOUR));
+
+        assertFalse(cache.isVerified("signing", "ObjectSigner"));
+
+        cache.setVerified("signing", "ObjectSigner");
+
+        assertTrue(cache.isVerified("signing", "ObjectSigner"));
+
+        // verifications are cached per usage
+        assertFalse(cache.isVerified("signing", "SSLServer"));
+    }
+
+    @Test
+    public void testChainChanged() throws Exception {
+
+        TestCache cache = new TestCache();
+        cache.setTimeout(HOUR);
+        cache.setCert("signing", "chain1", new Date(System.currentTimeMillis() + HOUR));
+        cache.setVerified("signing", "ObjectSigner");
+
+        // a new issuer cert or new trust flags change the digest
+        cache.setCert("signing", "chain2", new Date(System.currentTimeMillis() + HOUR));
+        assertFalse(cache.isVerified("signing", "ObjectSigner"));
+
+        // the entry is not reused when the digest changes back
+        cache.setCert("signing", "chain1", new Date(System.currentTimeMillis() + HOUR));
+        assertFalse(cache.isVerified("signing", "ObjectSigner"));
+    }
+
+    @Test
+    public void testCertRemoved() throws Exception {
+
+        TestCache cache = new TestCache();
+        cache.setTimeout(HOUR);
+        cache.setCert("signing", "chain1", new Date(System.currentTimeMillis() + HOUR));
+        cache.setVerified("signing", "ObjectSigner");
+
+        cache.digests.clear();
+        assertFalse(cache.isVerified("signing", "ObjectSigner"));
+        assertTrue(cache.entries.isEmpty());
+    }
+
+    @Test
+    public void testExpiration() throws Exception {
+
+        TestCache cache = new TestCache();
+        cache.setTimeout(HOUR);
+
+        // the entry expires with the cert
+        cache.setCert("signing", "chain1", new Date(System.currentTimeMillis() - 1));
+        cache.setVerified("signing", "ObjectSigner");
+        assertFalse(cache.isVerified("signing", "ObjectSigner"));
+
+        // or when the timeout passes
+        cache.setTimeout(1);
+        cache.setCert("signing", "chain1", new Date(System.currentTimeMillis() + HOUR));
+        cache.setVerified("signing", "ObjectSigner");
+        Thread.sleep(10);
+        assertFalse(cache.isVerified("signing", "ObjectSigner"));
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+
+        TestCache cache = new TestCache();
+        cache.setTimeout(HOUR);
+        cache.setCert("signing", "chain1", new Date(System.currentTimeMillis() + HOUR));
+        cache.setVerified("signing", "ObjectSigner");
+
+        cache.setTimeout(0);
+        assertTrue(cache.entries.isEmpty());
+
+        cache.setVerified("signing", "ObjectSigner");
+        assertFalse(cache.isVerified("signing", "ObjectSigner"));
+    }
+}
@@ -0,0 +1,73 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.connector;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.Hashtable;
+
+import org.junit.jupiter.api.Test;
+
+public class HttpPKIMessageTest {
+
+    @Test
+    public void testJSON() throws Exception {
+
+        Hashtable<String, String> table = new Hashtable<>();
+        table.put("key1", "value1");
+        table.put("key2", "v\u00e4lue2");
+
+        HttpPKIMessage before = new HttpPKIMessage();
+        before.reqType = "enrollment";
+        before.reqId = "ca1:12";
+        before.reqStatus = "complete";
+        before.mNameVals.addElement("attr1");
+        before.mNameVals.addElement("value1");
+        before.mNameVals.addElement("attr2");
+        before.mNameVals.addElement(table);
+
+        String json = before.toJSON();
+
+        // content length is computed in characters
+        assertTrue(json.chars().allMatch(c -> c < 0x80));
+
+        HttpPKIMessage after = HttpPKIMessage.fromJSON(json);
+
+        assertEquals(before.reqType, after.reqType);
+        assertEquals(before.reqId, after.reqId);
+        assertEquals(before.reqStatus, after.reqStatus);
+        assertEquals(before.reqRealm, after.reqRealm);
+        assertEquals(before.mNameVals, after.mNameVals);
+    }
+
+    @Test
+    public void testEncoder() throws Exception {
+
+        HttpPKIMessage before = new HttpPKIMessage();
+        before.reqType = "enrollment";
+        before.reqId = "ca1:12";
+        before.reqStatus = "complete";
+
+        HttpRequestEncoder encoder = new HttpRequestEncoder();
+
+        String serialized = encoder.encode(before, HttpRequestEncoder.FORMAT_SERIALIZED);
+        assertEquals(HttpRequestEncoder.FORMAT_SERIALIZED, HttpRequestEncoder.getFormat(serialized));
+
+        String json = encoder.encode(before, HttpRequestEncoder.FORMAT_JSON);
+        assertEquals(HttpRequestEncoder.FORMAT_JSON, HttpRequestEncoder.getFormat(json));
+
+        HttpPKIMessage after = (HttpPKIMessage) encoder.decode(json);
+        assertEquals(before.reqId, after.reqId);
+    }
+
+    @Test
+    public void testUnsupportedVersion() {
+        assertThrows(IOException.class, () -> HttpPKIMessage.fromJSON("{\"version\":2}"));
+    }
+}
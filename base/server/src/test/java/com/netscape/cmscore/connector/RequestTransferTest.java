@@ -0,0 +1,39 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.connector;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+
+import com.netscape.certsrv.request.RequestId;
+import com.netscape.cmscore.request.Request;
+
+public class RequestTransferTest {
+
+    @Test
+    public void testDelayLDAPCommitNotTransferred() throws Exception {
+
+        Request src = new Request(new RequestId(1));
+        src.setExtData(Request.PROFILE_ID, "caServerKeygen_UserCert");
+        src.setExtData("delayLDAPCommit", "true");
+        src.setExtData("serverSideKeygenP12Passwd", "secret");
+
+        Request dest = new Request(new RequestId(2));
+        RequestTransfer.transfer(src, dest);
+
+        // the receiver must store the transferred request
+        assertNull(dest.getExtDataInString("delayLDAPCommit"));
+        assertEquals("caServerKeygen_UserCert", dest.getExtDataInString(Request.PROFILE_ID));
+        assertEquals("secret", dest.getExtDataInString("serverSideKeygenP12Passwd"));
+
+        // the response does not clear the flag of the sender
+        dest.setExtData("delayLDAPCommit", "false");
+        RequestTransfer.transfer(dest, src);
+        assertEquals("true", src.getExtDataInString("delayLDAPCommit"));
+    }
+}
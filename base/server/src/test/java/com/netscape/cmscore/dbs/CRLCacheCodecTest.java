@@ -0,0 +1,170 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.dbs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.math.BigInteger;
+import java.util.Date;
+import java.util.Hashtable;
+
+import org.junit.jupiter.api.Test;
+import org.mozilla.jss.netscape.security.x509.CRLExtensions;
+import org.mozilla.jss.netscape.security.x509.CRLReasonExtension;
+import org.mozilla.jss.netscape.security.x509.RevocationReason;
+import org.mozilla.jss.netscape.security.x509.RevokedCertImpl;
+import org.mozilla.jss.netscape.security.x509.RevokedCertificate;
+
+import netscape.ldap.LDAPAttribute;
+import netscape.ldap.LDAPAttributeSet;
+
+public class CRLCacheCodecTest {
+
+    Hashtable<BigInteger, RevokedCertificate> createCache(int size) throws Exception {
+
+        Hashtable<BigInteger, RevokedCertificate> certs = new Hashtable<>();
+        long time = 1700000000000L;
+
+        for (int i = 0; i < size; i++) {
+            BigInteger serial = BigInteger.valueOf(0x10000 + i * 3L);
+            Date date = new Date(time + i * 1000L);
+
+            CRLExtensions exts = null;
+            if (i % 3 != 0) {
+                CRLReasonExtension ext = new CRLReasonExtension(
+                        i % 3 == 1 ? RevocationReason.KEY_COMPROMISE : RevocationReason.CERTIFICATE_HOLD);
+                exts = new CRLExtensions();
+                exts.set(ext.getName(), ext);
+            }
+
+            certs.put(serial, new RevokedCertImpl(serial, date, exts));
+        }
+
+        return certs;
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+
+        Hashtable<BigInteger, RevokedCertificate> before = createCache(100);
+
+        byte[] data = CRLCacheCodec.encode(before);
+        assertTrue(CRLCacheCodec.isEncoded(data));
+
+        Hashtable<BigInteger, RevokedCertificate> after = CRLCacheCodec.decode(data);
+        assertEquals(before.size(), after.size());
+
+        for (RevokedCertificate entry : before.values()) {
+            RevokedCertificate decoded = after.get(entry.getSerialNumber());
+            assertEquals(entry.getSerialNumber(), decoded.getSerialNumber());
+            assertEquals(entry.getRevocationDate(), decoded.getRevocationDate());
+            assertEquals(new BigInteger(1, entry.getEncoded()), new BigInteger(1, decoded.getEncoded()));
+        }
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        byte[] data = CRLCacheCodec.encode(new Hashtable<>());
+        assertTrue(CRLCacheCodec.decode(data).isEmpty());
+    }
+
+    @Test
+    public void testVarint() {
+        for (long value : new long[] { 0, 1, -1, 127, 128, Long.MAX_VALUE, Long.MIN_VALUE }) {
+            assertEquals(value, CRLCacheCodec.unzigzag(CRLCacheCodec.zigzag(value)));
+        }
+    }
+
+    @Test
+    public void testSize() throws Exception {
+
+        Hashtable<BigInteger, RevokedCertificate> certs = createCache(10000);
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (ObjectOutputStream os = new ObjectOutputStream(bos)) {
+            os.writeObject(certs);
+        }
+        byte[] serialized = bos.toByteArray();
+
+        assertFalse(CRLCacheCodec.isEncoded(serialized));
+        assertTrue(CRLCacheMapper.isObjectStream(serialized));
+
+        byte[] data = CRLCacheCodec.encode(certs);
+        assertTrue(data.length * 4 < serialized.length,
+                "Encoded size: " + data.length + ", serialized size: " + serialized.length);
+    }
+
+    @Test
+    public void testIncrementalValues() throws Exception {
+
+        Hashtable<BigInteger, RevokedCertificate> certs = createCache(10);
+
+        Hashtable<BigInteger, RevokedCertificate> first = new Hashtable<>();
+        Hashtable<BigInteger, RevokedCertificate> second = new Hashtable<>();
+        for (RevokedCertificate cert : certs.values()) {
+            (first.size() < 5 ? first : second).put(cert.getSerialNumber(), cert);
+        }
+
+        // entries added incrementally are stored as separate values
+        LDAPAttribute attr = new LDAPAttribute(CRLDBSchema.LDAP_ATTR_REVOKED_CERTS);
+        attr.addValue(CRLCacheCodec.encode(first));
+        attr.addValue(CRLCacheCodec.encode(second));
+
+        LDAPAttributeSet attrs = new LDAPAttributeSet();
+        attrs.add(attr);
+
+        CRLIssuingPointRecord record = new CRLIssuingPointRecord();
+        new CRLCacheMapper(CRLDBSchema.LDAP_ATTR_REVOKED_CERTS).mapLDAPAttributeSetToObject(
+                attrs, CRLIssuingPointRecord.ATTR_REVOKED_CERTS, record);
+
+        assertEquals(certs.keySet(), record.getRevokedCerts().keySet());
+    }
+
+    @Test
+    public void testWriteFormat() throws Exception {
+
+        Hashtable<BigInteger, RevokedCertificate> certs = createCache(10);
+
+        // older clones can only read Java serialization
+        LDAPAttributeSet attrs = new LDAPAttributeSet();
+        new CRLCacheMapper(CRLDBSchema.LDAP_ATTR_REVOKED_CERTS).mapObjectToLDAPAttributeSet(
+                null, CRLIssuingPointRecord.ATTR_REVOKED_CERTS, certs, attrs);
+
+        byte[] data = attrs.getAttribute(CRLDBSchema.LDAP_ATTR_REVOKED_CERTS).getByteValueArray()[0];
+        assertTrue(CRLCacheMapper.isObjectStream(data));
+
+        attrs = new LDAPAttributeSet();
+        new CRLCacheMapper(CRLDBSchema.LDAP_ATTR_REVOKED_CERTS, CRLCacheMapper.FORMAT_COMPACT).mapObjectToLDAPAttributeSet(
+                null, CRLIssuingPointRecord.ATTR_REVOKED_CERTS, certs, attrs);
+
+        byte[] compact = attrs.getAttribute(CRLDBSchema.LDAP_ATTR_REVOKED_CERTS).getByteValueArray()[0];
+        assertTrue(CRLCacheCodec.isEncoded(compact));
+
+        // both formats are readable
+        CRLIssuingPointRecord record = new CRLIssuingPointRecord();
+        new CRLCacheMapper(CRLDBSchema.LDAP_ATTR_REVOKED_CERTS).mapLDAPAttributeSetToObject(
+                attrs, CRLIssuingPointRecord.ATTR_REVOKED_CERTS, record);
+        assertEquals(certs.keySet(), record.getRevokedCerts().keySet());
+
+        assertEquals(certs.keySet(), new CRLCacheMapper(CRLDBSchema.LDAP_ATTR_REVOKED_CERTS)
+                .decode(CRLIssuingPointRecord.ATTR_REVOKED_CERTS, data).keySet());
+    }
+
+    @Test
+    public void testInvalidReason() throws Exception {
+
+        assertEquals(RevocationReason.KEY_COMPROMISE,
+                CRLCacheCodec.getReasonExtension(RevocationReason.KEY_COMPROMISE.getCode()).getReason());
+
+        assertThrows(IOException.class, () -> CRLCacheCodec.getReasonExtension(255));
+    }
+}
@@ -0,0 +1,174 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.dbs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.cert.CRLReason;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509CRL;
+import java.security.cert.X509CRLEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class CRLParserTest {
+
+    static byte[] der(int tag, byte[]... contents) {
+
+        ByteArrayOutputStream value = new ByteArrayOutputStream();
+        for (byte[] content : contents) {
+            value.writeBytes(content);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(tag);
+
+        int length = value.size();
+        if (length < 0x80) {
+            out.write(length);
+        } else if (length < 0x100) {
+            out.write(0x81);
+            out.write(length);
+        } else {
+            out.write(0x82);
+            out.write(length >> 8);
+            out.write(length);
+        }
+
+        out.writeBytes(value.toByteArray());
+        return out.toByteArray();
+    }
+
+    static byte[] bytes(int... values) {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = (byte) values[i];
+        }
+        return bytes;
+    }
+
+    static byte[] integer(BigInteger value) {
+        return der(0x02, value.toByteArray());
+    }
+
+    static byte[] time(int tag, String value) {
+        return der(tag, value.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    static byte[] extension(byte[] oid, byte[] value) {
+        return der(0x30, der(0x06, oid), der(0x04, value));
+    }
+
+    static byte[] createCRL(List<byte[]> entries, boolean withExtensions) {
+
+        byte[] algorithm = der(0x30,
+                der(0x06, bytes(0x2a, 0x86, 0x48, 0x86, 0xf7, 0x0d, 0x01, 0x01, 0x0b)),
+                bytes(0x05, 0x00));
+
+        byte[] issuer = der(0x30, der(0x31, der(0x30,
+                der(0x06, bytes(0x55, 0x04, 0x03)),
+                der(0x0c, "CA".getBytes(StandardCharsets.UTF_8)))));
+
+        List<byte[]> tbs = new ArrayList<>();
+        tbs.add(integer(BigInteger.ONE));
+        tbs.add(algorithm);
+        tbs.add(issuer);
+        tbs.add(time(0x17, "240101000000Z"));
+        tbs.add(time(0x18, "20240108000000Z"));
+
+        if (!entries.isEmpty()) {
+            tbs.add(der(0x30, entries.toArray(new byte[0][])));
+        }
+
+        if (withExtensions) {
+            tbs.add(der(0xa0, der(0x30,
+                    extension(CRLParser.OID_CRL_NUMBER, integer(BigInteger.valueOf(42))))));
+        }
+
+        return der(0x30,
+                der(0x30, tbs.toArray(new byte[0][])),
+                algorithm,
+                der(0x03, bytes(0x00, 0x00)));
+    }
+
+    @Test
+    public void testParse() throws Exception {
+
+        List<byte[]> entries = new ArrayList<>();
+
+        for (int i = 0; i < 300; i++) {
+            BigInteger serialNumber = BigInteger.ONE.shiftLeft(100).add(BigInteger.valueOf(i * 7919));
+            byte[] date = time(0x17, String.format("2312%02d101010Z", i % 28 + 1));
+
+            if (i % 3 == 0) {
+                entries.add(der(0x30, integer(serialNumber), date));
+            } else {
+                byte[] reason = der(0x0a, bytes(i % 3));
+                entries.add(der(0x30, integer(serialNumber), date,
+                        der(0x30, extension(CRLParser.OID_REASON_CODE, reason))));
+            }
+        }
+
+        byte[] data = createCRL(entries, true);
+
+        // compare with the JDK parser
+        CertificateFactory factory = CertificateFactory.getInstance("X.509");
+        X509CRL crl = (X509CRL) factory.generateCRL(new ByteArrayInputStream(data));
+
+        CRLParser parser = new CRLParser(data);
+
+        assertEquals(crl.getThisUpdate(), parser.getThisUpdate());
+        assertEquals(crl.getNextUpdate(), parser.getNextUpdate());
+        assertEquals(BigInteger.valueOf(42), parser.getCRLNumber());
+
+        List<BigInteger> serialNumbers = new ArrayList<>();
+
+        parser.forEach((serialNumber, revocationDate, reason) -> {
+            X509CRLEntry entry = crl.getRevokedCertificate(serialNumber);
+            assertEquals(entry.getRevocationDate().getTime(), revocationDate);
+
+            CRLReason expected = entry.getRevocationReason();
+            assertEquals(expected == null ? -1 : expected.ordinal(), reason);
+
+            serialNumbers.add(serialNumber);
+        });
+
+        assertEquals(crl.getRevokedCertificates().size(), serialNumbers.size());
+
+        RevokedSerialStore store = RevokedSerialStore.create(null, parser.getThisUpdate(), parser.getNextUpdate(), null, parser);
+        assertEquals(300, store.size());
+        assertEquals(CRLReason.KEY_COMPROMISE, store.get(serialNumbers.get(1)).getReason());
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+
+        CRLParser parser = new CRLParser(createCRL(List.of(), false));
+
+        assertNull(parser.getCRLNumber());
+        parser.forEach((serialNumber, revocationDate, reason) -> {
+            throw new IOException("Unexpected entry");
+        });
+    }
+
+    @Test
+    public void testTruncated() throws Exception {
+
+        byte[] data = createCRL(List.of(der(0x30, integer(BigInteger.TEN), time(0x17, "231201101010Z"))), true);
+
+        assertThrows(IOException.class, () -> new CRLParser(Arrays.copyOf(data, data.length - 10)));
+    }
+}
@@ -0,0 +1,42 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.dbs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.math.BigInteger;
+
+import org.junit.jupiter.api.Test;
+
+import netscape.ldap.LDAPAttribute;
+import netscape.ldap.LDAPAttributeSet;
+
+public class CertRecordTest {
+
+    static final byte[] CORRUPTED_CERT = { 0x30, 0x03, 0x02, 0x01 };
+
+    @Test
+    public void testCorruptedCertificate() throws Exception {
+
+        LDAPAttributeSet attrs = new LDAPAttributeSet();
+        attrs.add(new LDAPAttribute(CertDBSchema.LDAP_ATTR_SIGNED_CERT + ";binary", CORRUPTED_CERT));
+
+        CertRecord record = new CertRecord();
+        record.set(CertRecord.ATTR_ID, BigInteger.TEN);
+        record.set(CertRecord.ATTR_CERT_STATUS, CertRecord.STATUS_VALID);
+
+        // the certificate is not decoded while the record is loaded
+        new X509CertImplMapper().mapLDAPAttributeSetToObject(attrs, CertRecord.ATTR_X509CERT, record);
+
+        assertEquals(BigInteger.TEN, record.getSerialNumber());
+        assertEquals(CertRecord.STATUS_VALID, record.getStatus());
+
+        // only the callers reading the certificate are affected
+        assertNull(record.getCertificate());
+        assertNull(record.get(CertRecord.ATTR_X509CERT));
+    }
+}
@@ -0,0 +1,176 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.dbs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.Test;
+
+import com.netscape.certsrv.base.EBaseException;
+import com.netscape.certsrv.dbs.DBPagedSearch;
+
+public class DBParallelSearchTest {
+
+    /**
+     * Search over IDs from 0 to limit without a database.
+     */
+    static class TestSearch extends DBParallelSearch<RepositoryRecord> {
+
+        int limit;
+        BigInteger failure;
+
+        TestSearch(int limit) {
+            super("test", null, RepositoryRecord.class, "ou=test", "(objectClass=*)", RepositoryRecord.ATTR_SERIALNO);
+            this.limit = limit;
+        }
+
+        @Override
+        protected DBSSession createSession() {
+            return new DBSSession();
+        }
+
+        @Override
+        protected DBPagedSearch<RepositoryRecord> createPagedSearch(DBSSession session, Range range) {
+
+            int start = range.getStart() == null ? 0 : range.getStart().intValue();
+            int end = range.getEnd() == null ? limit : range.getEnd().intValue();
+
+            return new DBPagedSearch<>() {
+
+                int next = start;
+
+                @Override
+                public List<RepositoryRecord> getPage() throws EBaseException {
+                    return getPage(10);
+                }
+
+                @Override
+                public List<RepositoryRecord> getPage(int size) throws EBaseException {
+
+                    List<RepositoryRecord> page = new ArrayList<>();
+
+                    while (page.size() < size && next < end) {
+                        BigInteger id = BigInteger.valueOf(next++);
+                        if (id.equals(failure)) {
+                            throw new EBaseException("Search failed");
+                        }
+                        RepositoryRecord record = new RepositoryRecord();
+                        record.set(RepositoryRecord.ATTR_SERIALNO, id);
+                        page.add(record);
+                    }
+
+                    return page;
+                }
+            };
+        }
+    }
+
+    @Test
+    public void testCreateRanges() throws Exception {
+
+        List<DBParallelSearch.Range> ranges = DBParallelSearch.createRanges(BigInteger.valueOf(100), 4);
+
+        assertEquals(4, ranges.size());
+        assertNull(ranges.get(0).getStart());
+        assertEquals(BigInteger.valueOf(25), ranges.get(0).getEnd());
+        assertEquals(BigInteger.valueOf(75), ranges.get(3).getStart());
+        assertNull(ranges.get(3).getEnd());
+
+        assertEquals(
+                "(&(objectClass=*)(serialNo>=25)(!(serialNo>=50)))",
+                ranges.get(1).getFilter("(objectClass=*)", "serialNo"));
+
+        // unknown limit
+        ranges = DBParallelSearch.createRanges(null, 4);
+        assertEquals(1, ranges.size());
+        assertEquals("(objectClass=*)", ranges.get(0).getFilter("(objectClass=*)", "serialNo"));
+    }
+
+    @Test
+    public void testRun() throws Exception {
+
+        TestSearch search = new TestSearch(1000);
+        search.setRanges(BigInteger.valueOf(1000), 7);
+        search.setSearchThreads(3);
+        search.setProcessThreads(2);
+        search.setBufferSize(5);
+
+        Set<BigInteger> ids = ConcurrentHashMap.newKeySet();
+
+        DBParallelSearch.Stats stats = search.run(record -> {
+            BigInteger id = record.getSerialNumber();
+            if (id.intValue() % 100 == 0) {
+                throw new Exception("Processing failed");
+            }
+            ids.add(id);
+        });
+
+        assertEquals(1000, stats.getFound());
+        assertEquals(990, stats.getProcessed());
+        assertEquals(10, stats.getFailed());
+        assertEquals(990, ids.size());
+        assertFalse(stats.isTruncated());
+    }
+
+    @Test
+    public void testSizeLimit() throws Exception {
+
+        TestSearch search = new TestSearch(1000);
+        search.setRanges(BigInteger.valueOf(1000), 4);
+        search.setSizeLimit(50);
+
+        DBParallelSearch.Stats stats = search.run(record -> {});
+
+        assertEquals(50, stats.getFound());
+        assertEquals(50, stats.getProcessed());
+        assertTrue(stats.isTruncated());
+    }
+
+    @Test
+    public void testCompletedRanges() throws Exception {
+
+        TestSearch search = new TestSearch(100);
+        search.setRanges(BigInteger.valueOf(100), 4);
+        search.setSearchThreads(1);
+        search.setSizeLimit(30);
+
+        DBParallelSearch.Stats stats = search.run(record -> {});
+
+        // the ranges are started in order
+        List<DBParallelSearch.Range> ranges = search.getRanges();
+        assertTrue(stats.isCompleted(ranges.get(0)));
+        assertFalse(stats.isCompleted(ranges.get(1)));
+        assertFalse(stats.isCompleted(ranges.get(2)));
+        assertFalse(stats.isCompleted(ranges.get(3)));
+
+        search.setSizeLimit(0);
+        stats = search.run(record -> {});
+
+        for (DBParallelSearch.Range range : ranges) {
+            assertTrue(stats.isCompleted(range));
+        }
+    }
+
+    @Test
+    public void testSearchFailure() throws Exception {
+
+        TestSearch search = new TestSearch(1000);
+        search.setRanges(BigInteger.valueOf(1000), 4);
+        search.failure = BigInteger.valueOf(600);
+
+        assertThrows(EBaseException.class, () -> search.run(record -> {}));
+    }
+}
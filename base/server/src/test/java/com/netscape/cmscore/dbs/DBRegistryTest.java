@@ -2,15 +2,19 @@ package com.netscape.cmscore.dbs;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.math.BigInteger;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Date;
 import java.util.Enumeration;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mozilla.jss.netscape.security.x509.CertificateValidity;
 
 import com.netscape.certsrv.base.EBaseException;
 import com.netscape.certsrv.dbs.EDBException;
@@ -108,6 +112,33 @@ public class DBRegistryTest {
         assertTrue(extAttrMapper.mapLDAPAttrsCalled);
     }
 
+    @Test
+    public void testCreateProjectedObject() throws EBaseException {
+        registry.registerAttribute(CertRecord.ATTR_ID, new BigIntegerMapper("serialno"));
+        registry.registerAttribute(CertRecord.ATTR_CERT_STATUS, new StringMapper("certStatus"));
+        registry.registerAttribute(CertificateValidity.NOT_BEFORE, new DateMapper("notValidBefore"));
+        registry.registerAttribute(CertificateValidity.NOT_AFTER, new DateMapper("notValidAfter"));
+        registry.registerAttribute(CertRecord.ATTR_REVOKED_ON, new DateMapper("revokedOn"));
+        registry.registerAttribute(CertRecord.ATTR_META_INFO, new MetaInfoMapper("metaInfo"));
+
+        Date notAfter = new Date(1700000000000L);
+
+        LDAPAttributeSet attrs = new LDAPAttributeSet();
+        attrs.add(new LDAPAttribute("serialno", BigIntegerMapper.BigIntegerToDB(BigInteger.TEN)));
+        attrs.add(new LDAPAttribute("certStatus", CertRecord.STATUS_VALID));
+        attrs.add(new LDAPAttribute("notValidAfter", DateMapper.dateToDB(notAfter)));
+        attrs.add(new LDAPAttribute("metaInfo", CertRecord.META_REQUEST_ID + ":20"));
+
+        CertStatusRecord record = registry.createObject(attrs, CertStatusRecord.class);
+
+        assertEquals(BigInteger.TEN, record.getSerialNumber());
+        assertEquals(CertRecord.STATUS_VALID, record.getStatus());
+        assertEquals(notAfter, record.getNotAfter());
+        assertNull(record.getNotBefore());
+        assertNull(record.getRevokedOn());
+        assertEquals("20", record.getMetaInfo().get(CertRecord.META_REQUEST_ID));
+    }
+
     static class DBSubsystemStub extends DBSubsystem {
         DBRegistry registry;
 
@@ -0,0 +1,194 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.dbs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.netscape.certsrv.base.EBaseException;
+import com.netscape.certsrv.dbs.EDBException;
+
+import netscape.ldap.LDAPConnection;
+import netscape.ldap.LDAPException;
+
+public class LDAPAsyncSessionTest {
+
+    static class TestConnection extends LDAPConnection {
+
+        volatile boolean connected = true;
+
+        @Override
+        public boolean isConnected() {
+            return connected;
+        }
+
+        @Override
+        public void disconnect() throws LDAPException {
+            connected = false;
+        }
+    }
+
+    /**
+     * Database subsystem that creates connections without a server.
+     */
+    static class TestDBSubsystem extends DBSubsystem {
+
+        List<LDAPConnection> returned = new ArrayList<>();
+
+        @Override
+        public LDAPConnection getConn() {
+            return new TestConnection();
+        }
+
+        @Override
+        public synchronized void returnConn(LDAPConnection conn) {
+            returned.add(conn);
+        }
+    }
+
+    TestDBSubsystem dbSubsystem = new TestDBSubsystem();
+
+    LDAPAsyncSession createSession(int connections, int maxOperations) {
+
+        LDAPConnection[] conns = new LDAPConnection[connections];
+        for (int i = 0; i < connections; i++) {
+            conns[i] = dbSubsystem.getConn();
+        }
+
+        return new LDAPAsyncSession(dbSubsystem, conns, maxOperations);
+    }
+
+    @Test
+    public void testReconnect() throws Exception {
+
+        LDAPAsyncSession session = createSession(2, 4);
+
+        TestConnection conn0 = (TestConnection) session.connections[0];
+        TestConnection conn1 = (TestConnection) session.connections[1];
+        conn1.connected = false;
+
+        assertSame(conn0, session.getConnection(0));
+
+        // the disconnected connection is returned and replaced
+        LDAPConnection newConn = session.getConnection(1);
+        assertNotSame(conn1, newConn);
+        assertTrue(dbSubsystem.returned.contains(conn1));
+        assertSame(newConn, session.getConnection(1));
+
+        session.close();
+    }
+
+    @Test
+    public void testConnectionError() throws Exception {
+
+        LDAPAsyncSession session = createSession(1, 4);
+        LDAPConnection conn = session.connections[0];
+
+        CompletableFuture<Void> future = session.submit("Unable to modify LDAP record", c -> {
+            throw new LDAPException("Server down", LDAPException.SERVER_DOWN);
+        });
+
+        assertThrows(EDBException.class, () -> LDAPAsyncSession.get(future));
+        assertEquals(0, session.getPendingOperations());
+
+        // the failed connection is dropped and replaced on the next operation
+        assertFalse(conn.isConnected());
+        assertTrue(dbSubsystem.returned.contains(conn));
+
+        List<LDAPConnection> used = new ArrayList<>();
+        LDAPAsyncSession.get(session.submit("Unable to modify LDAP record", c -> {
+            used.add(c);
+            return () -> null;
+        }));
+
+        assertNotSame(conn, used.get(0));
+        assertTrue(used.get(0).isConnected());
+
+        session.close();
+    }
+
+    @Test
+    public void testResultError() throws Exception {
+
+        LDAPAsyncSession session = createSession(1, 4);
+        LDAPConnection conn = session.connections[0];
+
+        CompletableFuture<Void> future = session.submit("Unable to modify LDAP record", c -> () -> {
+            throw new LDAPException("Constraint violation", LDAPException.CONSTRAINT_VIOLATION);
+        });
+
+        EBaseException e = assertThrows(EDBException.class, () -> LDAPAsyncSession.get(future));
+        assertTrue(e.getMessage().startsWith("Unable to modify LDAP record"));
+
+        // operation errors do not affect the connection
+        assertSame(conn, session.getConnection(0));
+        assertFalse(dbSubsystem.returned.contains(conn));
+
+        session.close();
+    }
+
+    @Test
+    public void testMaxOperations() throws Exception {
+
+        LDAPAsyncSession session = createSession(1, 1);
+
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<Void> first = session.submit("Unable to add LDAP entry", c -> () -> {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new EDBException("Interrupted", e);
+            }
+            return null;
+        });
+
+        assertEquals(1, session.getPendingOperations());
+
+        // the next operation waits for the first one to complete
+        CompletableFuture<CompletableFuture<Void>> second = CompletableFuture.supplyAsync(
+                () -> session.submit("Unable to add LDAP entry", c -> () -> null));
+
+        Thread.sleep(100);
+        assertFalse(second.isDone());
+
+        release.countDown();
+
+        LDAPAsyncSession.get(first);
+        LDAPAsyncSession.get(second.get(10, TimeUnit.SECONDS));
+        assertEquals(0, session.getPendingOperations());
+
+        session.close();
+    }
+
+    @Test
+    public void testClose() throws Exception {
+
+        LDAPAsyncSession session = createSession(2, 4);
+        LDAPConnection conn0 = session.connections[0];
+        LDAPConnection conn1 = session.connections[1];
+
+        session.close();
+
+        assertTrue(dbSubsystem.returned.contains(conn0));
+        assertTrue(dbSubsystem.returned.contains(conn1));
+
+        CompletableFuture<Void> future = session.submit("Unable to add LDAP entry", c -> () -> null);
+        assertThrows(EDBException.class, () -> LDAPAsyncSession.get(future));
+    }
+}
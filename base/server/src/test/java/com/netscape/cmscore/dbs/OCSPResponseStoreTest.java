@@ -0,0 +1,104 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.dbs;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class OCSPResponseStoreTest {
+
+    @TempDir
+    Path dir;
+
+    static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    @Test
+    public void testPutAndGet() throws Exception {
+
+        OCSPResponseStore store = new OCSPResponseStore(dir);
+
+        byte[] certID = bytes("cert-1");
+        assertNull(store.get(certID));
+
+        OCSPResponseStore.Entry entry = new OCSPResponseStore.Entry(
+                bytes("response-1"), new Date(3000), new Date(1000), new Date(5000), 7);
+        store.put(certID, entry);
+
+        // stored in a shard named after the first byte of the key
+        String key = OCSPResponseStore.createKey(certID);
+        assertTrue(Files.exists(dir.resolve(key.substring(0, 2)).resolve(key + OCSPResponseStore.SUFFIX)));
+
+        OCSPResponseStore.Entry found = store.get(certID);
+        assertArrayEquals(bytes("response-1"), found.getResponse());
+        assertEquals(new Date(3000), found.getProducedAt());
+        assertEquals(new Date(1000), found.getThisUpdate());
+        assertEquals(new Date(5000), found.getNextUpdate());
+        assertEquals(7, found.getVersion());
+        assertEquals(entry.getETag(), found.getETag());
+
+        // replace the response
+        store.put(certID, new OCSPResponseStore.Entry(bytes("response-2"), new Date(4000), new Date(2000), null, 8));
+
+        found = store.get(certID);
+        assertArrayEquals(bytes("response-2"), found.getResponse());
+        assertNull(found.getNextUpdate());
+        assertNotEquals(entry.getETag(), found.getETag());
+        assertEquals(4000 + 60000, found.getExpirationTime(60000));
+
+        store.remove(certID);
+        assertNull(store.get(certID));
+    }
+
+    @Test
+    public void testRemoveExpired() throws Exception {
+
+        OCSPResponseStore store = new OCSPResponseStore(dir);
+
+        for (int i = 0; i < 10; i++) {
+            Date nextUpdate = i % 2 == 0 ? new Date(1000L * i) : null;
+            store.put(bytes("cert-" + i), new OCSPResponseStore.Entry(bytes("response-" + i), new Date(1000L * i), new Date(0), nextUpdate, 1));
+        }
+
+        // even responses expire at next update, odd ones 500 ms after being produced
+        assertEquals(5, store.removeExpired(5000, 500));
+
+        for (int i = 0; i < 10; i++) {
+            OCSPResponseStore.Entry entry = store.get(bytes("cert-" + i));
+            assertEquals(i < 5, entry == null);
+        }
+    }
+
+    @Test
+    public void testCorruptedFile() throws Exception {
+
+        OCSPResponseStore store = new OCSPResponseStore(dir);
+
+        byte[] certID = bytes("cert-1");
+        store.put(certID, new OCSPResponseStore.Entry(bytes("response"), new Date(1), new Date(1), null, 1));
+
+        String key = OCSPResponseStore.createKey(certID);
+        Path file = dir.resolve(key.substring(0, 2)).resolve(key + OCSPResponseStore.SUFFIX);
+        Files.write(file, new byte[OCSPResponseStore.HEADER_SIZE + 5]);
+
+        assertThrows(IOException.class, () -> store.get(certID));
+        assertEquals(1, store.removeExpired(0, 0));
+    }
+}
@@ -0,0 +1,169 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.dbs;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.cert.CRLReason;
+import java.security.cert.X509CRLEntry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class RevokedSerialStoreTest {
+
+    static class TestEntry extends X509CRLEntry {
+
+        BigInteger serialNumber;
+        Date revocationDate;
+        CRLReason reason;
+
+        TestEntry(BigInteger serialNumber, Date revocationDate, CRLReason reason) {
+            this.serialNumber = serialNumber;
+            this.revocationDate = revocationDate;
+            this.reason = reason;
+        }
+
+        @Override
+        public BigInteger getSerialNumber() {
+            return serialNumber;
+        }
+
+        @Override
+        public Date getRevocationDate() {
+            return revocationDate;
+        }
+
+        @Override
+        public CRLReason getRevocationReason() {
+            return reason;
+        }
+
+        @Override
+        public byte[] getEncoded() {
+            return null;
+        }
+
+        @Override
+        public boolean hasExtensions() {
+            return false;
+        }
+
+        @Override
+        public boolean hasUnsupportedCriticalExtension() {
+            return false;
+        }
+
+        @Override
+        public Set<String> getCriticalExtensionOIDs() {
+            return null;
+        }
+
+        @Override
+        public Set<String> getNonCriticalExtensionOIDs() {
+            return null;
+        }
+
+        @Override
+        public byte[] getExtensionValue(String oid) {
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return serialNumber.toString(16);
+        }
+    }
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testLookup() throws Exception {
+
+        Random random = new Random(1);
+        List<TestEntry> entries = new ArrayList<>();
+
+        for (int i = 0; i < 1000; i++) {
+            // random 128-bit serial numbers with some short and negative ones
+            BigInteger serialNumber = i % 100 == 0
+                    ? BigInteger.valueOf(i - 500)
+                    : new BigInteger(128, random);
+            CRLReason reason = i % 2 == 0 ? CRLReason.KEY_COMPROMISE : null;
+            entries.add(new TestEntry(serialNumber, new Date(1000L * i), reason));
+        }
+
+        byte[] digest = new byte[RevokedSerialStore.DIGEST_SIZE];
+        digest[0] = 1;
+
+        Path file = dir.resolve("test.rss");
+        RevokedSerialStore store = RevokedSerialStore.create(file, new Date(1), null, digest, entries);
+
+        assertEquals(1000, store.size());
+        assertEquals(new Date(1), store.getThisUpdate());
+        assertNull(store.getNextUpdate());
+        assertTrue(store.matches(digest));
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(1, files.count());
+        }
+
+        for (TestEntry entry : entries) {
+            RevokedSerialStore.Entry found = store.get(entry.serialNumber);
+            assertEquals(entry.serialNumber, found.getSerialNumber());
+            assertEquals(entry.revocationDate, found.getRevocationDate());
+            assertEquals(entry.reason, found.getReason());
+        }
+
+        assertFalse(store.contains(BigInteger.valueOf(1)));
+        assertFalse(store.contains(BigInteger.ONE.shiftLeft(200)));
+
+        // entries are sorted by serial number
+        for (long i = 1; i < store.size(); i++) {
+            assertTrue(store.getEntry(i - 1).getSerialNumber().compareTo(store.getEntry(i).getSerialNumber()) < 0);
+        }
+
+        // map the file back
+        RevokedSerialStore reopened = RevokedSerialStore.open(file);
+        assertEquals(1000, reopened.size());
+        assertArrayEquals(digest, reopened.getDigest());
+        assertEquals(entries.get(7).revocationDate, reopened.get(entries.get(7).serialNumber).getRevocationDate());
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+
+        RevokedSerialStore store = RevokedSerialStore.create(null, new Date(1), new Date(2), null, Collections.emptyList());
+
+        assertEquals(0, store.size());
+        assertNull(store.getDigest());
+        assertNull(store.get(BigInteger.ONE));
+    }
+
+    @Test
+    public void testCorruptedFile() throws Exception {
+
+        Path file = dir.resolve("corrupted.rss");
+        Files.write(file, new byte[RevokedSerialStore.HEADER_SIZE + 5]);
+
+        assertThrows(IOException.class, () -> RevokedSerialStore.open(file));
+    }
+}
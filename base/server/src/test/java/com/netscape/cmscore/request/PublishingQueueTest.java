@@ -0,0 +1,180 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.request;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.netscape.certsrv.base.EBaseException;
+import com.netscape.certsrv.base.Subsystem;
+import com.netscape.certsrv.request.RequestId;
+import com.netscape.certsrv.request.RequestListener;
+import com.netscape.cmscore.base.ConfigStore;
+import com.netscape.cmscore.test.CMSBaseTestHelper;
+
+public class PublishingQueueTest {
+
+    @Test
+    public void testPublishingStatus() throws Exception {
+
+        PublishingQueue queue = new PublishingQueue(null, 10, 10, 1, 0, 0, 1000);
+        assertNull(queue.getPublishingStatus());
+
+        queue.add("12", "cn=a");
+        queue.add("10", "cn=b");
+        queue.add("11", "cn=c");
+        assertEquals("10", queue.getPublishingStatus());
+
+        // requests published out of order do not move the status
+        // past the oldest unpublished request
+        List<PublishingQueue.Item> group = queue.take();
+        assertEquals("12", group.get(0).requestId);
+        assertEquals("10", queue.completed(group.get(0)));
+
+        group = queue.take();
+        assertEquals("10", group.get(0).requestId);
+        assertEquals("11", queue.completed(group.get(0)));
+
+        group = queue.take();
+        assertEquals("11", queue.completed(group.get(0)));
+        assertNull(queue.getPublishingStatus());
+    }
+
+    @Test
+    public void testFailedRequest() throws Exception {
+
+        PublishingQueue queue = new PublishingQueue(null, 10, 10, 1, 0, 0, 1000);
+
+        queue.add("1", "cn=a");
+        queue.add("2", "cn=b");
+
+        // no retries left
+        List<PublishingQueue.Item> group = queue.take();
+        queue.retry(group.get(0), new Exception("failed"));
+        queue.release(group);
+        assertEquals(1, queue.getFailed());
+        assertEquals(1, queue.size());
+
+        // the failed request keeps the status
+        group = queue.take();
+        assertEquals("1", queue.completed(group.get(0)));
+    }
+
+    @Test
+    public void testRetry() throws Exception {
+
+        PublishingQueue queue = new PublishingQueue(null, 10, 10, 1, 0, 3, 1000);
+
+        queue.add("1", "cn=a");
+
+        List<PublishingQueue.Item> group = queue.take();
+        queue.retry(group.get(0), new Exception("failed"));
+
+        assertEquals(1, queue.getRetried());
+        assertTrue(queue.items.get("1").nextAttempt > System.currentTimeMillis());
+        assertEquals("1", queue.getPublishingStatus());
+    }
+
+    @Test
+    public void testOverflow() throws Exception {
+
+        PublishingQueue queue = new PublishingQueue(null, 2, 10, 1, 0, 0, 1000);
+
+        queue.add("5", "cn=a");
+        queue.add("6", "cn=b");
+        queue.add("7", "cn=c");
+        queue.add("8", "cn=d");
+
+        assertTrue(queue.hasPendingSearch());
+        assertEquals(2, queue.getOverflowed());
+
+        List<PublishingQueue.Item> group = queue.take();
+        assertEquals("6", queue.completed(group.get(0)));
+
+        // the overflowed requests have not been published either
+        group = queue.take();
+        assertEquals("7", queue.completed(group.get(0)));
+    }
+
+    /**
+     * Listener that counts the requests it processes and reports
+     * a publishing error while failures remain.
+     */
+    static class TestListener extends RequestListener {
+
+        int accepted;
+        int failures;
+
+        @Override
+        public void init(Subsystem sub, ConfigStore config) {
+        }
+
+        @Override
+        public void set(String name, String val) {
+        }
+
+        @Override
+        public void accept(Request r) {
+            accepted++;
+            if (failures > 0) {
+                failures--;
+                r.setExtData(PublishingQueue.PUBLISH_STATUS, Request.RES_ERROR);
+            } else {
+                r.setExtData(PublishingQueue.PUBLISH_STATUS, Request.RES_SUCCESS);
+            }
+        }
+    }
+
+    @Test
+    public void testRetryFailedListener() throws Exception {
+
+        PublishingQueue queue = new PublishingQueue(null, 10, 10, 1, 0, 3, 1000);
+        queue.add("1", "cn=a");
+
+        // e.g. a notification listener that does not publish
+        TestListener notifier = new TestListener() {
+            @Override
+            public void accept(Request r) {
+                accepted++;
+            }
+        };
+
+        TestListener publisher = new TestListener();
+        publisher.failures = 1;
+
+        List<RequestListener> listeners = List.of(notifier, publisher);
+        Request request = new Request(new RequestId("1"));
+
+        PublishingQueue.Item item = queue.take().get(0);
+
+        // the publishing error reaches the retry
+        assertThrows(EBaseException.class, () -> queue.accept(item, request, listeners));
+
+        // only the failed listener runs again
+        queue.accept(item, request, listeners);
+        assertEquals(1, notifier.accepted);
+        assertEquals(2, publisher.accepted);
+    }
+
+    @Test
+    public void testPublishingKey() throws Exception {
+
+        RequestNotifier notifier = new RequestNotifier();
+
+        Request request = new Request(new RequestId("1"));
+        assertEquals("1", notifier.getPublishingKey(request));
+
+        // profile enrollment
+        request.setExtData(Request.REQUEST_ISSUED_CERT, CMSBaseTestHelper.getFakeCert());
+        assertEquals("cn=testing", notifier.getPublishingKey(request));
+    }
+}
@@ -1,16 +1,22 @@
 package com.netscape.cmscore.request;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.List;
 
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
 import com.netscape.certsrv.base.EBaseException;
+import com.netscape.certsrv.request.RequestId;
+import com.netscape.certsrv.request.RequestStatus;
 import com.netscape.cmscore.test.CMSBaseTestHelper;
 
 public class RequestQueueTest {
@@ -42,6 +48,46 @@ public class RequestQueueTest {
         assertTrue(request.getExtDataKeysCalled);
     }
 
+    @Test
+    public void testMarkAsPending() throws Exception {
+
+        List<String> events = new ArrayList<>();
+
+        // deferred enrollment stored with a single write
+        Request deferred = new Request(new RequestId(1));
+        deferred.setExtData("delayLDAPCommit", "true");
+
+        RequestRepository repository = new RequestRepository(null, CMSBaseTestHelper.getDbSubsystem(), null) {
+            @Override
+            public void updateRequest(Request request) {
+                events.add("update " + request.getExtDataInString("delayLDAPCommit"));
+            }
+        };
+
+        RequestNotifier pendingNotifier = new RequestNotifier() {
+            @Override
+            public void notify(Request request) {
+                events.add("notify " + request.getRequestStatus());
+            }
+        };
+
+        RequestQueue pendingQueue = new RequestQueue(
+                CMSBaseTestHelper.getDbSubsystem(),
+                repository,
+                null,
+                null,
+                null,
+                pendingNotifier);
+
+        deferred.deleteExtData("delayLDAPCommit");
+        pendingQueue.markAsPending(deferred);
+
+        // the request is stored before the pending notifier reads it
+        assertEquals(List.of("update null", "notify " + RequestStatus.PENDING), events);
+        assertEquals(RequestStatus.PENDING, deferred.getRequestStatus());
+        assertNull(deferred.getExtDataInString("delayLDAPCommit"));
+    }
+
     static class RequestStub extends RequestDefaultStub {
 
         String[] keys = new String[] { "key1", "key2" };
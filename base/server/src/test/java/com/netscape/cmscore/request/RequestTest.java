@@ -4,7 +4,9 @@ import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.math.BigInteger;
@@ -335,6 +337,27 @@ public class RequestTest {
         assertFalse(request.setExtData("key", (X509CertImpl) null));
     }
 
+    @Test
+    public void testDecodedCertCache() throws CertificateException {
+        X509CertImpl cert = CMSBaseTestHelper.getFakeCert();
+        assertTrue(request.setExtData("cachedCert", cert));
+
+        // decoded cert is reused until the value changes
+        assertSame(cert, request.getExtDataInCert("cachedCert"));
+        assertSame(cert, request.getExtDataInCert("CachedCert"));
+
+        String value = request.getExtDataInString("cachedCert");
+        assertTrue(request.setExtData("cachedCert", new String(value)));
+
+        X509CertImpl retval = request.getExtDataInCert("cachedCert");
+        assertNotSame(cert, retval);
+        assertEquals(cert, retval);
+        assertSame(retval, request.getExtDataInCert("cachedCert"));
+
+        request.deleteExtData("cachedCert");
+        assertNull(request.getExtDataInCert("cachedCert"));
+    }
+
     @Test
     public void testGetSetCertArray() throws Exception {
         // this test is also pretty weak, but fortunately relies on the
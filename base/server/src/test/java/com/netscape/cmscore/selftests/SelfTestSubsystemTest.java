@@ -0,0 +1,237 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.selftests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.netscape.certsrv.base.SessionContext;
+import com.netscape.certsrv.logging.LogEventListener;
+import com.netscape.certsrv.selftests.ESelfTestException;
+import com.netscape.cms.selftests.SelfTest;
+
+public class SelfTestSubsystemTest {
+
+    interface Body {
+        void run() throws Exception;
+    }
+
+    static class TestSelfTest extends SelfTest {
+
+        Body body;
+
+        TestSelfTest(Body body) {
+            this.body = body;
+        }
+
+        @Override
+        public void startupSelfTest() {
+        }
+
+        @Override
+        public void shutdownSelfTest() {
+        }
+
+        @Override
+        public String getSelfTestDescription(Locale locale) {
+            return null;
+        }
+
+        @Override
+        public void runSelfTest(LogEventListener logger) throws Exception {
+            body.run();
+        }
+    }
+
+    SelfTestSubsystem subsystem = new SelfTestSubsystem();
+
+    SelfTestSubsystem.SelfTestRun createRun(String name, boolean critical, Body body) {
+        SelfTestSubsystem.SelfTestRun run = subsystem.new SelfTestRun(name, new TestSelfTest(body));
+        run.critical = critical;
+        return run;
+    }
+
+    @AfterEach
+    public void tearDown() {
+        subsystem.shutdown();
+    }
+
+    @Test
+    public void testConcurrentRuns() throws Exception {
+
+        subsystem.mThreads = 3;
+
+        // each self test waits until all of them have started
+        CountDownLatch started = new CountDownLatch(3);
+        Body body = () -> {
+            started.countDown();
+            if (!started.await(10, TimeUnit.SECONDS)) {
+                throw new Exception("Self tests did not run concurrently");
+            }
+        };
+
+        List<SelfTestSubsystem.SelfTestRun> runs = List.of(
+                createRun("a", true, body),
+                createRun("b", true, body),
+                createRun("c", true, body));
+
+        subsystem.execute(runs);
+
+        for (SelfTestSubsystem.SelfTestRun run : runs) {
+            assertNull(run.exception);
+            assertNotNull(subsystem.getDuration(run.name));
+        }
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+
+        subsystem.mThreads = 2;
+
+        Exception exception = new Exception("failed");
+        AtomicBoolean ran = new AtomicBoolean();
+
+        List<SelfTestSubsystem.SelfTestRun> runs = List.of(
+                createRun("a", false, () -> { throw exception; }),
+                createRun("b", false, () -> ran.set(true)));
+
+        subsystem.execute(runs);
+
+        // non-critical failures do not stop the other self tests
+        assertSame(exception, runs.get(0).exception);
+        assertNull(runs.get(1).exception);
+        assertTrue(ran.get());
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+
+        subsystem.mThreads = 1;
+        subsystem.mTimeout = 200;
+
+        // self test that ignores interruptions until released
+        CountDownLatch release = new CountDownLatch(1);
+        Body hang = () -> {
+            while (true) {
+                try {
+                    if (release.await(10, TimeUnit.SECONDS)) {
+                        return;
+                    }
+                } catch (InterruptedException e) {
+                    // ignore
+                }
+            }
+        };
+
+        AtomicBoolean ran = new AtomicBoolean();
+
+        List<SelfTestSubsystem.SelfTestRun> runs = List.of(
+                createRun("hang", false, hang),
+                createRun("next", false, () -> ran.set(true)));
+
+        try {
+            subsystem.execute(runs);
+        } finally {
+            release.countDown();
+        }
+
+        assertTrue(runs.get(0).exception instanceof ESelfTestException);
+
+        // the hung self test does not hold the only thread
+        assertNull(runs.get(1).exception);
+        assertTrue(ran.get());
+        assertEquals(1, subsystem.getPermits().availablePermits());
+    }
+
+    @Test
+    public void testCriticalFailureStopsSequentialRuns() throws Exception {
+
+        subsystem.mThreads = 1;
+
+        AtomicBoolean ran = new AtomicBoolean();
+
+        List<SelfTestSubsystem.SelfTestRun> runs = List.of(
+                createRun("a", true, () -> { throw new Exception("failed"); }),
+                createRun("b", false, () -> ran.set(true)));
+
+        subsystem.execute(runs);
+
+        assertNotNull(runs.get(0).exception);
+        assertFalse(ran.get());
+        assertNull(subsystem.getDuration("b"));
+    }
+
+    @Test
+    public void testCriticalFailureCancelsRunningTests() throws Exception {
+
+        subsystem.mThreads = 2;
+
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+
+        List<SelfTestSubsystem.SelfTestRun> runs = List.of(
+                createRun("a", true, () -> {
+                    started.await();
+                    throw new Exception("failed");
+                }),
+                createRun("b", false, () -> {
+                    started.countDown();
+                    try {
+                        Thread.sleep(TimeUnit.SECONDS.toMillis(10));
+                    } catch (InterruptedException e) {
+                        interrupted.countDown();
+                    }
+                }));
+
+        subsystem.execute(runs);
+
+        assertNotNull(runs.get(0).exception);
+        assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+        assertEquals(2, subsystem.getPermits().availablePermits());
+    }
+
+    @Test
+    public void testSessionContext() throws Exception {
+
+        subsystem.mThreads = 1;
+
+        List<Object> users = new ArrayList<>();
+        Body body = () -> {
+            users.add(SessionContext.getContext().get(SessionContext.USER_ID));
+            SessionContext.getContext().put("test", "value");
+        };
+
+        List<SelfTestSubsystem.SelfTestRun> runs = List.of(
+                createRun("a", false, body),
+                createRun("b", false, () -> users.add(SessionContext.getContext().get("test"))));
+
+        SessionContext.getContext().put(SessionContext.USER_ID, "admin");
+        try {
+            subsystem.execute(runs);
+        } finally {
+            SessionContext.releaseContext();
+        }
+
+        // the self tests see the caller's context for auditing but
+        // not the context left by a previous self test on the same thread
+        assertEquals("admin", users.get(0));
+        assertNull(users.get(1));
+    }
+}
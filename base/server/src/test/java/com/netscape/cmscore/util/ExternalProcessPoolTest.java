@@ -0,0 +1,188 @@
+//
+// Copyright Red Hat, Inc.
+//
+// SPDX-License-Identifier: GPL-2.0-or-later
+//
+package com.netscape.cmscore.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ExternalProcessPoolTest {
+
+    /**
+     * Worker that responds with the mode and its process ID.
+     * Some requests make it sleep, exit, or break the protocol.
+     * The first "crash" request makes it exit, later ones succeed.
+     */
+    static final String WORKER = """
+            dir=$(dirname "$0")
+            while read -r line; do
+                case "$line" in
+                *sleep*) sleep 10 ;;
+                *slow*) sleep 1 ;;
+                *crash*)
+                    if [ ! -f "$dir/crashed" ]; then
+                        touch "$dir/crashed"
+                        exit 1
+                    fi ;;
+                *die*) exit 1 ;;
+                *invalid*) echo "invalid"; continue ;;
+                *fail*) echo '{"status": 2, "output": "failed"}'; continue ;;
+                esac
+                echo "{\\"status\\": 0, \\"output\\": \\"$PKI_EXTERNAL_PROCESS_MODE $$\\"}"
+            done
+            """;
+
+    @TempDir
+    Path dir;
+
+    ExternalProcessPool pool;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        Path script = dir.resolve("worker.sh");
+        Files.writeString(script, WORKER);
+        pool = createPool(script, 2);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    ExternalProcessPool createPool(Path script, int size) {
+        return new ExternalProcessPool("TestWorker", List.of("/bin/sh", script.toString()), size);
+    }
+
+    static long getPID(ExternalProcessPool.Response response) {
+        String output = response.getOutput();
+        return Long.parseLong(output.substring(output.indexOf(' ') + 1));
+    }
+
+    static void awaitExit(long pid) throws Exception {
+        ProcessHandle process = ProcessHandle.of(pid).orElse(null);
+        if (process != null) {
+            process.onExit().get(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testProtocol() throws Exception {
+
+        ExternalProcessPool.Response response = pool.execute("{\"op\": \"ping\"}", 10000);
+        assertEquals(0, response.getStatus());
+        assertTrue(response.getOutput().startsWith(ExternalProcessPool.MODE_PERSISTENT + " "));
+
+        long pid = getPID(response);
+
+        // the status is returned as is and the worker is reused
+        response = pool.execute("{\"op\": \"fail\"}", 10000);
+        assertEquals(2, response.getStatus());
+        assertEquals("failed", response.getOutput());
+
+        assertEquals(pid, getPID(pool.execute("{\"op\": \"ping\"}", 10000)));
+        assertEquals(1, pool.getStarted());
+
+        // a response that is not JSON is a protocol error
+        assertThrows(IOException.class, () -> pool.execute("{\"op\": \"invalid\"}", 10000));
+        awaitExit(pid);
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+
+        long pid = getPID(pool.execute("{\"op\": \"ping\"}", 10000));
+
+        assertThrows(TimeoutException.class, () -> pool.execute("{\"op\": \"sleep\"}", 500));
+
+        // the worker is killed and replaced
+        awaitExit(pid);
+        assertTrue(pool.idleWorkers.isEmpty());
+
+        assertNotEquals(pid, getPID(pool.execute("{\"op\": \"ping\"}", 10000)));
+        assertEquals(2, pool.getStarted());
+    }
+
+    @Test
+    public void testCrash() throws Exception {
+
+        long pid = getPID(pool.execute("{\"op\": \"ping\"}", 10000));
+
+        // the request is retried once with a new worker
+        ExternalProcessPool.Response response = pool.execute("{\"op\": \"crash\"}", 10000);
+        assertEquals(0, response.getStatus());
+        assertNotEquals(pid, getPID(response));
+        assertEquals(2, pool.getStarted());
+
+        // but not again if the new worker fails too
+        assertThrows(IOException.class, () -> pool.execute("{\"op\": \"die\"}", 10000));
+        assertEquals(3, pool.getStarted());
+
+        // idle workers that have exited are replaced
+        pid = getPID(pool.execute("{\"op\": \"ping\"}", 10000));
+        ProcessHandle.of(pid).ifPresent(ProcessHandle::destroy);
+        awaitExit(pid);
+
+        assertNotEquals(pid, getPID(pool.execute("{\"op\": \"ping\"}", 10000)));
+    }
+
+    @Test
+    public void testExhaustion() throws Exception {
+
+        pool.shutdown();
+        pool = createPool(dir.resolve("worker.sh"), 1);
+
+        CompletableFuture<ExternalProcessPool.Response> slow = CompletableFuture.supplyAsync(() -> {
+            try {
+                return pool.execute("{\"op\": \"slow\"}", 10000);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        // wait until the only worker is busy
+        long deadline = System.currentTimeMillis() + 10000;
+        while (pool.getStarted() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        TimeoutException e = assertThrows(TimeoutException.class, () -> pool.execute("{\"op\": \"ping\"}", 200));
+        assertEquals("No TestWorker worker available", e.getMessage());
+
+        long pid = getPID(slow.get(10, TimeUnit.SECONDS));
+
+        // the worker is available again
+        assertEquals(pid, getPID(pool.execute("{\"op\": \"ping\"}", 10000)));
+        assertEquals(1, pool.getStarted());
+    }
+
+    @Test
+    public void testShutdown() throws Exception {
+
+        long pid = getPID(pool.execute("{\"op\": \"ping\"}", 10000));
+
+        pool.shutdown();
+
+        // idle workers exit when their stdin is closed
+        awaitExit(pid);
+        assertTrue(pool.idleWorkers.isEmpty());
+
+        assertThrows(IOException.class, () -> pool.execute("{\"op\": \"ping\"}", 10000));
+    }
+}
@@ -9,10 +9,15 @@ import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
 import java.util.Vector;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.Option;
@@ -26,7 +31,11 @@ import org.mozilla.jss.netscape.security.x509.X509CertImpl;
 
 import com.netscape.certsrv.ca.AuthorityID;
 import com.netscape.certsrv.ca.CACertClient;
+import com.netscape.certsrv.cert.CertBatchEnrollmentRequest;
+import com.netscape.certsrv.cert.CertBatchEnrollmentResult;
+import com.netscape.certsrv.cert.CertBatchEnrollmentResults;
 import com.netscape.certsrv.cert.CertEnrollmentRequest;
+import com.netscape.certsrv.cert.CertRequestInfo;
 import com.netscape.certsrv.cert.CertRequestInfos;
 import com.netscape.certsrv.dbs.certdb.CertId;
 import com.netscape.certsrv.profile.ProfileAttribute;
@@ -40,6 +49,10 @@ public class CACertRequestSubmitCLI extends CommandCLI {
 
     public static org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(CACertRequestSubmitCLI.class);
 
+    static final Pattern CSR_PATTERN = Pattern.compile(
+            "-----BEGIN ([A-Z ]+)-----.*?-----END \\1-----",
+            Pattern.DOTALL);
+
     CACertRequestCLI certRequestCLI;
 
     public CACertRequestSubmitCLI(CACertRequestCLI CACertRequestCLI) {
@@ -89,6 +102,10 @@ public class CACertRequestSubmitCLI extends CommandCLI {
         option.setArgName("path");
         options.addOption(option);
 
+        option = new Option(null, "batch", true, "File containing multiple CSRs to submit in a single batch");
+        option.setArgName("path");
+        options.addOption(option);
+
         option = new Option(null, "serial", true, "Serial number of certificate for renewal");
         option.setArgName("number");
         options.addOption(option);
@@ -167,6 +184,20 @@ public class CACertRequestSubmitCLI extends CommandCLI {
             throw new Exception("--issuer-id and --issuer-dn options are mutually exclusive");
         }
 
+        String batchFilename = cmd.getOptionValue("batch");
+
+        if (batchFilename != null) {
+            if (cmd.hasOption("csr-file")) {
+                throw new Exception("--batch and --csr-file options are mutually exclusive");
+            }
+            if (cmd.hasOption("session") || cmd.hasOption("install-token")) {
+                throw new Exception("--batch option cannot be used with a session");
+            }
+            if (cmd.hasOption("renewal")) {
+                throw new Exception("--batch option cannot be used for renewal");
+            }
+        }
+
         String requestType = cmd.getOptionValue("request-type");
 
         CertEnrollmentRequest request;
@@ -336,6 +367,11 @@ public class CACertRequestSubmitCLI extends CommandCLI {
 
         CACertClient certClient = certRequestCLI.getCertClient();
 
+        if (batchFilename != null) {
+            submitBatch(certClient, request, batchFilename, aid, adn);
+            return;
+        }
+
         String installToken = cmd.getOptionValue("install-token");
         String sessionID;
 
@@ -392,6 +428,58 @@ public class CACertRequestSubmitCLI extends CommandCLI {
         }
     }
 
+    public void submitBatch(
+            CACertClient certClient,
+            CertEnrollmentRequest request,
+            String batchFilename,
+            AuthorityID aid,
+            X500Name adn) throws Exception {
+
+        logger.info("Loading CSRs from " + batchFilename);
+
+        CertBatchEnrollmentRequest batch = new CertBatchEnrollmentRequest();
+        batch.setRequest(request);
+
+        Matcher matcher = CSR_PATTERN.matcher(loadFile(batchFilename));
+        while (matcher.find()) {
+            batch.addCertRequest(matcher.group());
+        }
+
+        if (batch.getCertRequests().isEmpty()) {
+            throw new Exception("No CSRs found in " + batchFilename);
+        }
+
+        logger.info("Submitting " + batch.getCertRequests().size() + " CSR(s)");
+
+        CertBatchEnrollmentResults results = certClient.enrollRequests(batch, aid, adn);
+
+        MainCLI.printMessage("Submitted " + results.getTotal() + " certificate request(s)");
+
+        // results are returned in completion order
+        List<CertBatchEnrollmentResult> entries = new ArrayList<>(results.getEntries());
+        entries.sort(Comparator.comparing(CertBatchEnrollmentResult::getIndex));
+
+        boolean first = true;
+        for (CertBatchEnrollmentResult result : entries) {
+
+            if (first) {
+                first = false;
+            } else {
+                System.out.println();
+            }
+
+            System.out.println("  Index: " + result.getIndex());
+
+            if (result.getError() != null) {
+                System.out.println("  Error: " + result.getError());
+            }
+
+            for (CertRequestInfo info : result.getRequests()) {
+                CACertRequestCLI.printCertRequestInfo(info);
+            }
+        }
+    }
+
     private String loadFile(String fileName) throws FileNotFoundException {
         try (Scanner scanner = new Scanner(new File(fileName))) {
             return scanner.useDelimiter("\\A").next();
@@ -67,5 +67,15 @@ public class JobCLI extends CLI {
                 System.out.println("  - " + name + ": " + value);
             }
         }
+
+        Map<String, String> status = jobInfo.getStatus();
+        if (status != null && !status.isEmpty()) {
+            System.out.println();
+            System.out.println("  Status:");
+            for (String name : status.keySet()) {
+                String value = status.get(name);
+                System.out.println("  - " + name + ": " + value);
+            }
+        }
     }
 }